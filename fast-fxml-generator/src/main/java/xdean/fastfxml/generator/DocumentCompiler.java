@@ -0,0 +1,1324 @@
+/*
+ * Copyright 2019 XDean
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xdean.fastfxml.generator;
+
+import static xdean.fastfxml.BeanAdapter.GET_PREFIX;
+import static xdean.fastfxml.BeanAdapter.IS_PREFIX;
+import static xdean.fastfxml.BeanAdapter.SET_PREFIX;
+import static xdean.fastfxml.BeanAdapter.VALUE_OF_METHOD_NAME;
+import static xdean.fastfxml.FXMLLoader.*;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.regex.Pattern;
+
+import com.sun.javafx.beans.IDProperty;
+
+import javafx.beans.DefaultProperty;
+import javafx.beans.NamedArg;
+import javafx.event.Event;
+import javafx.fxml.FXML;
+import javafx.fxml.Initializable;
+import xdean.fastfxml.generator.FXMLSource.Attribute;
+import xdean.fastfxml.generator.FXMLSource.Element;
+
+/**
+ * Compiles one FXML document into the source of a {@link xdean.fastfxml.CompiledFXML} subclass.
+ * <p>
+ * Elements are visited in the order {@link xdean.fastfxml.FXMLLoader} processes them and each one
+ * is turned into the statements the loader would have executed reflectively. Anything that can't
+ * be resolved at build time throws {@link UnsupportedFXMLException}.
+ */
+final class DocumentCompiler {
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+  // An expression of the generated code and its static type
+  private static final class Value {
+    final String expression;
+    final Class<?> type;
+
+    Value(String expression, Class<?> type) {
+      this.expression = expression;
+      this.type = type;
+    }
+
+    @Override
+    public String toString() {
+      return expression;
+    }
+  }
+
+  // A bean property as BeanAdapter sees it: a getter and the setter of the getter type
+  private static final class Property {
+    final Method getter;
+    final Method setter;
+
+    Property(Method getter, Method setter) {
+      this.getter = getter;
+      this.setter = setter;
+    }
+
+    Class<?> getType() {
+      return getter.getReturnType();
+    }
+
+    Type getGenericType() {
+      return getter.getGenericReturnType();
+    }
+
+    boolean isReadOnly() {
+      return setter == null;
+    }
+  }
+
+  private final FXMLGenerator generator;
+  private final Path path;
+  private final FXMLSource source;
+  private final String packageName;
+  private final String className;
+  private final String fileName;
+  private final ClassLoader classLoader;
+
+  private final List<String> packages = new ArrayList<>();
+  private final Map<String, Class<?>> classes = new HashMap<>();
+  private final Map<String, Value> ids = new HashMap<>();
+  private final Map<Member, String> constants = new LinkedHashMap<>();
+  private final StringBuilder constantCode = new StringBuilder();
+  private final StringBuilder code = new StringBuilder();
+  private int variableCount = 0;
+  private int includeCount = 0;
+
+  private Class<?> controllerType = null;
+  private Class<?> rootType = Object.class;
+
+  DocumentCompiler(FXMLGenerator generator, Path path, FXMLSource source, String packageName, String className,
+      String fileName, ClassLoader classLoader) {
+    this.generator = generator;
+    this.path = path;
+    this.source = source;
+    this.packageName = packageName;
+    this.className = className;
+    this.fileName = fileName;
+    this.classLoader = classLoader;
+  }
+
+  Class<?> getRootType() {
+    return rootType;
+  }
+
+  Class<?> getControllerType() {
+    return controllerType;
+  }
+
+  String compile() throws UnsupportedFXMLException {
+    if (source.language != null) {
+      throw new UnsupportedFXMLException("Script language \"" + source.language + "\" is declared");
+    }
+
+    for (String name : source.imports) {
+      importName(name);
+    }
+
+    Element root = source.root;
+    String controllerName = root.getFXAttribute(FX_CONTROLLER_ATTRIBUTE);
+    if (controllerName != null) {
+      controllerType = forName(controllerName);
+      if (controllerType == null) {
+        throw new UnsupportedFXMLException(root, "Controller class " + controllerName + " not found");
+      }
+      statement(typeName(controllerType) + " controller = createController(" + typeName(controllerType) + ".class);");
+    }
+
+    Value value = valueElement(root, true);
+    rootType = value.type.isPrimitive() ? Object.class : value.type;
+
+    initializeController();
+    statement("return " + value + ";");
+
+    StringBuilder out = header(packageName, fileName);
+    out.append("@SuppressWarnings({ \"unchecked\", \"rawtypes\" })\n");
+    out.append("public final class ").append(className).append(" extends xdean.fastfxml.CompiledFXML {\n");
+    out.append(constantCode);
+    if (constantCode.length() > 0) {
+      out.append('\n');
+    }
+    constructor(out, className, fileName);
+    out.append("  @Override\n");
+    out.append("  protected Object create() throws Exception {\n");
+    out.append("    java.util.Map<String, Object> namespace = getNamespace();\n");
+    out.append(code);
+    out.append("  }\n");
+    out.append("}\n");
+    return out.toString();
+  }
+
+  /**
+   * Returns the source of a class that loads the document with {@link xdean.fastfxml.FXMLLoader}.
+   */
+  static String fallback(String packageName, String className, String fileName, String reason) {
+    StringBuilder out = header(packageName, fileName);
+    out.append("// Loaded by FXMLLoader: ").append(reason.replace('\n', ' ')).append('\n');
+    out.append("public final class ").append(className).append(" extends xdean.fastfxml.CompiledFXML {\n");
+    constructor(out, className, fileName);
+    out.append("  @Override\n");
+    out.append("  protected Object create() throws Exception {\n");
+    out.append("    return loadWithFXMLLoader();\n");
+    out.append("  }\n");
+    out.append("}\n");
+    return out.toString();
+  }
+
+  private static StringBuilder header(String packageName, String fileName) {
+    StringBuilder out = new StringBuilder();
+    out.append("// Generated by ").append(FXMLGenerator.class.getName()).append(" from ").append(fileName)
+        .append(". Do not edit.\n");
+    if (!packageName.isEmpty()) {
+      out.append("package ").append(packageName).append(";\n");
+    }
+    out.append('\n');
+    return out;
+  }
+
+  private static void constructor(StringBuilder out, String className, String fileName) {
+    out.append("  public ").append(className).append("() {\n");
+    out.append("    super(").append(className).append(".class.getResource(").append(quote(fileName)).append("));\n");
+    out.append("  }\n\n");
+  }
+
+  // Elements
+
+  private Value valueElement(Element element, boolean documentRoot) throws UnsupportedFXMLException {
+    boolean include = element.isFX(INCLUDE_TAG);
+    boolean reference = element.isFX(REFERENCE_TAG);
+    boolean copy = element.isFX(COPY_TAG);
+    boolean root = element.isFX(ROOT_TAG);
+    if (element.prefix != null && !(include || reference || copy || root)) {
+      throw new UnsupportedFXMLException(element, "Unsupported element");
+    }
+
+    String fxId = null;
+    String fxValue = null;
+    String fxConstant = null;
+    String fxFactory = null;
+    String sourceAttribute = null;
+    String resourcesAttribute = null;
+    String typeAttribute = null;
+    List<Attribute> instanceAttributes = new ArrayList<>();
+    List<Attribute> eventAttributes = new ArrayList<>();
+    List<Attribute> staticAttributes = new ArrayList<>();
+    for (Attribute attribute : element.attributes) {
+      String name = attribute.localName;
+      if (attribute.isFX()) {
+        if (name.equals(FX_ID_ATTRIBUTE)) {
+          fxId = identifier(element, attribute.value);
+        } else if (name.equals(FX_CONTROLLER_ATTRIBUTE) && documentRoot) {
+          // Handled before the root element
+        } else if (name.equals(FX_VALUE_ATTRIBUTE) && element.prefix == null) {
+          fxValue = attribute.value;
+        } else if (name.equals(FX_CONSTANT_ATTRIBUTE) && element.prefix == null) {
+          fxConstant = attribute.value;
+        } else if (name.equals(FX_FACTORY_ATTRIBUTE) && element.prefix == null) {
+          fxFactory = attribute.value;
+        } else {
+          throw new UnsupportedFXMLException(element, "Unsupported attribute fx:" + name);
+        }
+      } else if (attribute.prefix != null) {
+        throw new UnsupportedFXMLException(element, "Unsupported attribute " + attribute.prefix + ":" + name);
+      } else if (include && (name.equals(INCLUDE_SOURCE_ATTRIBUTE) || name.equals(INCLUDE_RESOURCES_ATTRIBUTE)
+          || name.equals(INCLUDE_CHARSET_ATTRIBUTE))) {
+        if (name.equals(INCLUDE_SOURCE_ATTRIBUTE)) {
+          sourceAttribute = attribute.value;
+        } else if (name.equals(INCLUDE_RESOURCES_ATTRIBUTE)) {
+          resourcesAttribute = attribute.value;
+        }
+      } else if ((reference || copy) && name.equals(REFERENCE_SOURCE_ATTRIBUTE)) {
+        sourceAttribute = attribute.value;
+      } else if (root && name.equals(ROOT_TYPE_ATTRIBUTE)) {
+        typeAttribute = attribute.value;
+      } else if (name.startsWith(EVENT_HANDLER_PREFIX)) {
+        eventAttributes.add(attribute);
+      } else if (name.indexOf('.') != -1) {
+        staticAttributes.add(attribute);
+      } else {
+        instanceAttributes.add(attribute);
+      }
+    }
+
+    Value value;
+    if (include) {
+      value = include(element, sourceAttribute, resourcesAttribute, fxId);
+    } else if (reference) {
+      value = reference(element, sourceAttribute);
+    } else if (copy) {
+      Value sourceValue = reference(element, sourceAttribute);
+      try {
+        sourceValue.type.getConstructor(sourceValue.type);
+      } catch (NoSuchMethodException exception) {
+        throw new UnsupportedFXMLException(element, sourceValue.type.getName() + " has no copy constructor");
+      }
+      value = variable(sourceValue.type, "new " + instantiableTypeName(element, sourceValue.type) + "(" + sourceValue
+          + ")");
+    } else if (root) {
+      if (!documentRoot || typeAttribute == null) {
+        throw new UnsupportedFXMLException(element, "Unsupported fx:root");
+      }
+      Class<?> type = requireType(element, typeAttribute);
+      value = variable(type, "requireRoot(" + typeName(type) + ".class)");
+    } else {
+      Class<?> type = requireType(element, element.localName);
+      if (fxValue != null) {
+        value = variable(type, literal(fxValue, type));
+      } else if (fxConstant != null) {
+        Field field;
+        try {
+          field = type.getField(fxConstant);
+        } catch (NoSuchFieldException exception) {
+          throw new UnsupportedFXMLException(element, "Constant " + fxConstant + " not found");
+        }
+        if (!Modifier.isStatic(field.getModifiers())) {
+          throw new UnsupportedFXMLException(element, "Constant " + fxConstant + " is not static");
+        }
+        value = variable(field.getType(), typeName(type) + "." + fxConstant);
+      } else if (fxFactory != null) {
+        Method method;
+        try {
+          method = type.getMethod(fxFactory);
+        } catch (NoSuchMethodException exception) {
+          throw new UnsupportedFXMLException(element, "Factory method " + fxFactory + " not found");
+        }
+        if (!Modifier.isStatic(method.getModifiers())) {
+          throw new UnsupportedFXMLException(element, "Factory method " + fxFactory + " is not static");
+        }
+        value = variable(method.getReturnType(), typeName(type) + "." + fxFactory + "()");
+      } else if (hasDefaultConstructor(type)) {
+        value = variable(type, "new " + instantiableTypeName(element, type) + "()");
+      } else {
+        return namedArgInstance(element, type, fxId, instanceAttributes, eventAttributes, staticAttributes);
+      }
+    }
+
+    register(element, fxId, value);
+    content(element, value);
+    for (Attribute attribute : instanceAttributes) {
+      instanceProperty(element, value, attribute.localName, attribute.value);
+    }
+    for (Attribute attribute : eventAttributes) {
+      eventHandler(element, value, attribute);
+    }
+    for (Attribute attribute : staticAttributes) {
+      staticProperty(element, value, attribute);
+    }
+    return value;
+  }
+
+  // A class without default constructor, built with its @NamedArg constructor as
+  // JavaFXBuilderFactory does
+  private Value namedArgInstance(Element element, Class<?> type, String fxId, List<Attribute> instanceAttributes,
+      List<Attribute> eventAttributes, List<Attribute> staticAttributes) throws UnsupportedFXMLException {
+    Map<String, String> attributeValues = new LinkedHashMap<>();
+    for (Attribute attribute : instanceAttributes) {
+      attributeValues.put(attribute.localName, attribute.value);
+    }
+    Map<String, Element> propertyElements = new LinkedHashMap<>();
+    List<Element> staticPropertyElements = new ArrayList<>();
+    for (Object item : element.content) {
+      if (!(item instanceof Element)) {
+        throw new UnsupportedFXMLException(element, "Unsupported text");
+      }
+      Element child = (Element) item;
+      if (child.isFX(DEFINE_TAG)) {
+        define(child);
+      } else if (!isPropertyElement(child)) {
+        throw new UnsupportedFXMLException(child, type.getName() + " has no default constructor");
+      } else if (child.localName.indexOf('.') != -1) {
+        staticPropertyElements.add(child);
+      } else {
+        propertyElements.put(child.localName, child);
+      }
+    }
+
+    Constructor<?> constructor = namedArgConstructor(type, attributeValues.keySet(), propertyElements.keySet());
+    if (constructor == null) {
+      throw new UnsupportedFXMLException(element, type.getName() + " has no matching constructor");
+    }
+
+    Class<?>[] parameterTypes = constructor.getParameterTypes();
+    StringBuilder arguments = new StringBuilder();
+    for (int i = 0; i < parameterTypes.length; i++) {
+      NamedArg namedArg = namedArg(constructor, i);
+      String name = namedArg.value();
+      Class<?> parameterType = parameterTypes[i];
+      String argument;
+      if (attributeValues.containsKey(name)) {
+        argument = attributeValue(element, attributeValues.remove(name), parameterType);
+      } else if (propertyElements.containsKey(name)) {
+        argument = propertyElementValue(propertyElements.remove(name), parameterType);
+      } else if (!namedArg.defaultValue().isEmpty()) {
+        argument = literal(namedArg.defaultValue(), parameterType);
+      } else {
+        argument = zero(parameterType);
+      }
+      if (i > 0) {
+        arguments.append(", ");
+      }
+      arguments.append('(').append(typeName(parameterType)).append(") ").append(argument);
+    }
+    Value value = variable(type, "new " + instantiableTypeName(element, type) + "(" + arguments + ")");
+
+    register(element, fxId, value);
+    for (Map.Entry<String, String> entry : attributeValues.entrySet()) {
+      instanceProperty(element, value, entry.getKey(), entry.getValue());
+    }
+    for (Element child : propertyElements.values()) {
+      propertyElement(child, value);
+    }
+    for (Element child : staticPropertyElements) {
+      propertyElement(child, value);
+    }
+    for (Attribute attribute : eventAttributes) {
+      eventHandler(element, value, attribute);
+    }
+    for (Attribute attribute : staticAttributes) {
+      staticProperty(element, value, attribute);
+    }
+    return value;
+  }
+
+  private Constructor<?> namedArgConstructor(Class<?> type, Iterable<String> attributes, Iterable<String> elements) {
+    List<String> names = new ArrayList<>();
+    attributes.forEach(names::add);
+    elements.forEach(names::add);
+
+    Constructor<?> best = null;
+    int bestMatches = -1;
+    for (Constructor<?> constructor : type.getConstructors()) {
+      int n = constructor.getParameterTypes().length;
+      if (n == 0) {
+        continue;
+      }
+      List<String> arguments = new ArrayList<>();
+      for (int i = 0; i < n; i++) {
+        NamedArg namedArg = namedArg(constructor, i);
+        if (namedArg == null) {
+          arguments = null;
+          break;
+        }
+        arguments.add(namedArg.value());
+      }
+      if (arguments == null) {
+        continue;
+      }
+      int matches = 0;
+      boolean valid = true;
+      for (String name : names) {
+        if (arguments.contains(name)) {
+          matches++;
+        } else if (property(type, name) == null) {
+          valid = false;
+        }
+      }
+      if (valid && (matches > bestMatches
+          || (matches == bestMatches && n < best.getParameterTypes().length))) {
+        best = constructor;
+        bestMatches = matches;
+      }
+    }
+    return best;
+  }
+
+  private static NamedArg namedArg(Constructor<?> constructor, int index) {
+    for (java.lang.annotation.Annotation annotation : constructor.getParameterAnnotations()[index]) {
+      if (annotation instanceof NamedArg) {
+        return (NamedArg) annotation;
+      }
+    }
+    return null;
+  }
+
+  private Value include(Element element, String source, String resources, String fxId)
+      throws UnsupportedFXMLException {
+    if (source == null) {
+      throw new UnsupportedFXMLException(element, INCLUDE_SOURCE_ATTRIBUTE + " is required");
+    }
+    FXMLGenerator.GeneratedClass included = generator.generateInclude(path, source, element);
+
+    String name = "include" + includeCount++;
+    statement(included.getClassName() + " " + name + " = new " + included.getClassName() + "();");
+    if (resources == null) {
+      statement(name + ".setResources(getResources());");
+    } else {
+      statement(name + ".setResources(java.util.ResourceBundle.getBundle(" + quote(resources)
+          + ", java.util.Locale.getDefault(), getResources().getClass().getClassLoader()));");
+    }
+    statement(name + ".setControllerFactory(getControllerFactory());");
+    statement(name + ".setClassLoader(getClassLoader());");
+    Value value = variable(included.rootType, name + ".load()");
+
+    if (fxId != null) {
+      Class<?> type = included.controllerType == null ? Object.class : included.controllerType;
+      Value controller = variable(type, name + ".getController()");
+      statement("namespace.put(" + quote(fxId + CONTROLLER_SUFFIX) + ", " + controller + ");");
+      inject(fxId + CONTROLLER_SUFFIX, controller);
+    }
+    return value;
+  }
+
+  private Value reference(Element element, String source) throws UnsupportedFXMLException {
+    if (source == null) {
+      throw new UnsupportedFXMLException(element, REFERENCE_SOURCE_ATTRIBUTE + " is required");
+    }
+    Value value = ids.get(source);
+    if (value == null) {
+      throw new UnsupportedFXMLException(element, "Value \"" + source + "\" is not declared before");
+    }
+    return value;
+  }
+
+  private void define(Element element) throws UnsupportedFXMLException {
+    if (!element.attributes.isEmpty()) {
+      throw new UnsupportedFXMLException(element, "Unsupported attribute");
+    }
+    for (Object item : element.content) {
+      if (!(item instanceof Element) || isPropertyElement((Element) item)) {
+        throw new UnsupportedFXMLException(element, "Unsupported content");
+      }
+      valueElement((Element) item, false);
+    }
+  }
+
+  private void content(Element element, Value value) throws UnsupportedFXMLException {
+    for (Object item : element.content) {
+      if (item instanceof String) {
+        characters(element, value, (String) item);
+        continue;
+      }
+      Element child = (Element) item;
+      if (child.isFX(DEFINE_TAG)) {
+        define(child);
+      } else if (child.isFX(SCRIPT_TAG)) {
+        throw new UnsupportedFXMLException(child, "Script");
+      } else if (isPropertyElement(child)) {
+        propertyElement(child, value);
+      } else {
+        add(child, value, valueElement(child, false));
+      }
+    }
+  }
+
+  private static boolean isPropertyElement(Element element) {
+    return element.prefix == null
+        && Character.isLowerCase(element.localName.charAt(element.localName.lastIndexOf('.') + 1));
+  }
+
+  // Adds a child value to its parent, as Element.add() and Element.set() do
+  private void add(Element element, Value parent, Value value) throws UnsupportedFXMLException {
+    if (List.class.isAssignableFrom(parent.type)) {
+      statement(parent + ".add(" + value + ");");
+      return;
+    }
+    DefaultProperty defaultProperty = parent.type.getAnnotation(DefaultProperty.class);
+    if (defaultProperty == null) {
+      throw new UnsupportedFXMLException(element, parent.type.getName() + " does not have a default property");
+    }
+    Property property = property(parent.type, defaultProperty.value());
+    if (property == null) {
+      throw new UnsupportedFXMLException(element, "Default property " + defaultProperty.value() + " not found");
+    }
+    if (List.class.isAssignableFrom(property.getType())) {
+      statement(parent + "." + property.getter.getName() + "().add("
+          + convert(value, itemType(property.getGenericType())) + ");");
+    } else if (property.setter != null) {
+      statement(parent + "." + property.setter.getName() + "(" + convert(value, property.getType()) + ");");
+    } else {
+      throw new UnsupportedFXMLException(element, "Default property " + defaultProperty.value() + " is read-only");
+    }
+  }
+
+  // Text inside a value element goes to the default property
+  private void characters(Element element, Value value, String text) throws UnsupportedFXMLException {
+    DefaultProperty defaultProperty = value.type.getAnnotation(DefaultProperty.class);
+    Property property = defaultProperty == null ? null : property(value.type, defaultProperty.value());
+    if (property == null) {
+      throw new UnsupportedFXMLException(element, "Unexpected characters");
+    }
+    text = WHITESPACE.matcher(text).replaceAll(" ");
+    if (property.isReadOnly() && List.class.isAssignableFrom(property.getType())) {
+      statement(value + "." + property.getter.getName() + "().add("
+          + literal(text, itemType(property.getGenericType())) + ");");
+    } else if (property.setter != null) {
+      statement(value + "." + property.setter.getName() + "(" + literal(text.trim(), property.getType()) + ");");
+    } else {
+      throw new UnsupportedFXMLException(element, "Unexpected characters");
+    }
+  }
+
+  private void propertyElement(Element element, Value parent) throws UnsupportedFXMLException {
+    String name = element.localName;
+    int i = name.lastIndexOf('.');
+    if (i != -1) {
+      Class<?> sourceType = requireType(element, name.substring(0, i));
+      Method setter = staticSetter(sourceType, name.substring(i + 1), parent.type);
+      if (setter == null || !element.attributes.isEmpty()) {
+        throw new UnsupportedFXMLException(element, name + " is not a valid property");
+      }
+      statement(typeName(sourceType) + "." + setter.getName() + "(" + parent + ", "
+          + propertyElementValue(element, setter.getParameterTypes()[1]) + ");");
+      return;
+    }
+
+    Property property = name.startsWith(EVENT_HANDLER_PREFIX) || Map.class.isAssignableFrom(parent.type) ? null
+        : property(parent.type, name);
+    if (property == null) {
+      throw new UnsupportedFXMLException(element, name + " is not a valid property");
+    }
+    if (!property.isReadOnly()) {
+      if (!element.attributes.isEmpty()) {
+        throw new UnsupportedFXMLException(element, "Attributes are not supported for writable property elements");
+      }
+      for (Object item : element.content) {
+        statement(parent + "." + property.setter.getName() + "(" + itemValue(element, item, property.getType())
+            + ");");
+      }
+    } else if (List.class.isAssignableFrom(property.getType()) && element.attributes.isEmpty()) {
+      Class<?> itemType = itemType(property.getGenericType());
+      for (Object item : element.content) {
+        statement(parent + "." + property.getter.getName() + "().add(" + itemValue(element, item, itemType) + ");");
+      }
+    } else if (Map.class.isAssignableFrom(property.getType()) && element.content.isEmpty()) {
+      for (Attribute attribute : element.attributes) {
+        if (attribute.prefix != null || attribute.localName.startsWith(EVENT_HANDLER_PREFIX)) {
+          throw new UnsupportedFXMLException(element, "Unsupported attribute " + attribute.localName);
+        }
+        statement(parent + "." + property.getter.getName() + "().put(" + quote(attribute.localName) + ", "
+            + attributeValue(element, attribute.value, Object.class) + ");");
+      }
+    } else {
+      throw new UnsupportedFXMLException(element, "Unsupported read-only property " + name);
+    }
+  }
+
+  // The value of a property element with a single value
+  private String propertyElementValue(Element element, Class<?> type) throws UnsupportedFXMLException {
+    if (!element.attributes.isEmpty() || element.content.size() != 1) {
+      throw new UnsupportedFXMLException(element, "Unsupported property element");
+    }
+    return itemValue(element, element.content.get(0), type);
+  }
+
+  private String itemValue(Element element, Object item, Class<?> type) throws UnsupportedFXMLException {
+    if (item instanceof String) {
+      return literal(WHITESPACE.matcher((String) item).replaceAll(" ").trim(), type);
+    }
+    Element child = (Element) item;
+    if (child.prefix == null ? isPropertyElement(child) : child.isFX(DEFINE_TAG) || child.isFX(SCRIPT_TAG)) {
+      throw new UnsupportedFXMLException(child, "Unsupported content of " + element.localName);
+    }
+    return convert(valueElement(child, false), type);
+  }
+
+  // Attributes
+
+  private void register(Element element, String fxId, Value value) throws UnsupportedFXMLException {
+    if (fxId == null) {
+      return;
+    }
+    statement("namespace.put(" + quote(fxId) + ", " + value + ");");
+    ids.put(fxId, value);
+
+    IDProperty idProperty = value.type.getAnnotation(IDProperty.class);
+    if (idProperty != null) {
+      Property property = property(value.type, idProperty.value());
+      if (property != null && property.setter != null) {
+        statement("if (" + value + "." + property.getter.getName() + "() == null) {");
+        statement("  " + value + "." + property.setter.getName() + "(" + literal(fxId, property.getType()) + ");");
+        statement("}");
+      }
+    }
+
+    inject(fxId, value);
+  }
+
+  private void instanceProperty(Element element, Value value, String name, String raw)
+      throws UnsupportedFXMLException {
+    if (Map.class.isAssignableFrom(value.type)) {
+      statement(value + ".put(" + quote(name) + ", " + attributeValue(element, raw, Object.class) + ");");
+      return;
+    }
+    Property property = property(value.type, name);
+    if (property == null) {
+      throw new UnsupportedFXMLException(element, "Property \"" + name + "\" does not exist");
+    }
+    Class<?> type = property.getType();
+    if (List.class.isAssignableFrom(type) && property.isReadOnly()) {
+      checkPlain(element, raw);
+      Class<?> itemType = itemType(property.getGenericType());
+      if (raw.length() > 0) {
+        for (String item : raw.split(ARRAY_COMPONENT_DELIMITER)) {
+          statement(value + "." + property.getter.getName() + "().add(" + attributeValue(element, item.trim(), itemType)
+              + ");");
+        }
+      }
+    } else if (property.isReadOnly()) {
+      throw new UnsupportedFXMLException(element, "Property \"" + name + "\" is read-only");
+    } else if (type.isArray()) {
+      checkPlain(element, raw);
+      Class<?> componentType = type.getComponentType();
+      StringBuilder items = new StringBuilder();
+      if (raw.length() > 0) {
+        for (String item : raw.split(ARRAY_COMPONENT_DELIMITER)) {
+          items.append(items.length() == 0 ? "" : ", ").append(attributeValue(element, item.trim(), componentType));
+        }
+      }
+      statement(value + "." + property.setter.getName() + "(new " + typeName(type) + " { " + items + " });");
+    } else {
+      statement(value + "." + property.setter.getName() + "(" + attributeValue(element, raw, type) + ");");
+    }
+  }
+
+  private void staticProperty(Element element, Value value, Attribute attribute) throws UnsupportedFXMLException {
+    String name = attribute.localName;
+    int i = name.lastIndexOf('.');
+    Class<?> sourceType = requireType(element, name.substring(0, i));
+    checkPlain(element, attribute.value);
+    Method setter = staticSetter(sourceType, name.substring(i + 1), value.type);
+    if (setter == null) {
+      throw new UnsupportedFXMLException(element, "Static property \"" + name + "\" does not exist");
+    }
+    statement(typeName(sourceType) + "." + setter.getName() + "(" + value + ", "
+        + attributeValue(element, attribute.value, setter.getParameterTypes()[1]) + ");");
+  }
+
+  private void eventHandler(Element element, Value value, Attribute attribute) throws UnsupportedFXMLException {
+    String name = attribute.localName;
+    String handler = attribute.value;
+    Property property = name.endsWith(CHANGE_EVENT_HANDLER_SUFFIX) ? null : property(value.type, name);
+    if (property == null || property.setter == null) {
+      throw new UnsupportedFXMLException(element, "Unsupported event handler " + name);
+    }
+
+    String expression;
+    if (handler.startsWith(CONTROLLER_METHOD_PREFIX) && !handler.startsWith(CONTROLLER_METHOD_PREFIX, 1)
+        && handler.length() > CONTROLLER_METHOD_PREFIX.length() && controllerType != null) {
+      String methodName = handler.substring(CONTROLLER_METHOD_PREFIX.length());
+      Method method = controllerMethod(methodName, true);
+      if (method == null) {
+        throw new UnsupportedFXMLException(element, "Controller method " + methodName + " not found");
+      }
+      Class<?> eventType = eventType(property.setter);
+      String argument = "";
+      if (method.getParameterTypes().length == 1) {
+        Class<?> parameterType = method.getParameterTypes()[0];
+        argument = parameterType.isAssignableFrom(eventType) ? "event"
+            : "(" + typeName(parameterType) + ") event";
+      }
+      String call;
+      if (isDirectlyAccessible(method) && method.getExceptionTypes().length == 0) {
+        call = "controller." + methodName + "(" + argument + ")";
+      } else {
+        call = "handle(" + constant(method) + ", controller" + (argument.isEmpty() ? "" : ", event") + ")";
+      }
+      expression = "(javafx.event.EventHandler<" + typeName(eventType) + ">) event -> " + call;
+    } else if (handler.startsWith(EXPRESSION_PREFIX)) {
+      expression = attributeValue(element, handler, property.getType());
+    } else {
+      throw new UnsupportedFXMLException(element, "Script event handler " + name);
+    }
+    statement(value + "." + property.setter.getName() + "(" + expression + ");");
+  }
+
+  private Class<?> eventType(Method setter) {
+    Type type = setter.getGenericParameterTypes()[0];
+    if (type instanceof ParameterizedType) {
+      Type argument = ((ParameterizedType) type).getActualTypeArguments()[0];
+      if (argument instanceof WildcardType) {
+        WildcardType wildcard = (WildcardType) argument;
+        argument = wildcard.getLowerBounds().length > 0 ? wildcard.getLowerBounds()[0] : wildcard.getUpperBounds()[0];
+      }
+      if (argument instanceof Class && Event.class.isAssignableFrom((Class<?>) argument)
+          && isAccessible((Class<?>) argument)) {
+        return (Class<?>) argument;
+      }
+    }
+    return Event.class;
+  }
+
+  // Resolves a prefixed attribute value, as resolvePrefixedValue() does, and converts it
+  private String attributeValue(Element element, String raw, Class<?> type) throws UnsupportedFXMLException {
+    checkPlain(element, raw);
+    if (raw.startsWith(ESCAPE_PREFIX)) {
+      String value = raw.substring(ESCAPE_PREFIX.length());
+      if (value.length() == 0
+          || !(value.startsWith(ESCAPE_PREFIX)
+              || value.startsWith(RELATIVE_PATH_PREFIX)
+              || value.startsWith(RESOURCE_KEY_PREFIX)
+              || value.startsWith(EXPRESSION_PREFIX)
+              || value.startsWith(BI_DIRECTIONAL_BINDING_PREFIX))) {
+        throw new UnsupportedFXMLException(element, "Invalid escape sequence");
+      }
+      return literal(value, type);
+    } else if (raw.startsWith(RELATIVE_PATH_PREFIX)) {
+      String value = raw.substring(RELATIVE_PATH_PREFIX.length());
+      if (value.length() == 0 || value.startsWith(RELATIVE_PATH_PREFIX)) {
+        throw new UnsupportedFXMLException(element, "Unsupported relative path " + raw);
+      }
+      return convert(new Value("resolve(" + quote(value) + ")", String.class), type);
+    } else if (raw.startsWith(RESOURCE_KEY_PREFIX)) {
+      String value = raw.substring(RESOURCE_KEY_PREFIX.length());
+      if (value.length() == 0 || value.startsWith(RESOURCE_KEY_PREFIX)) {
+        throw new UnsupportedFXMLException(element, "Unsupported resource key " + raw);
+      }
+      return convert(new Value("resource(" + quote(value) + ")", String.class), type);
+    } else if (raw.startsWith(EXPRESSION_PREFIX)) {
+      String value = raw.substring(EXPRESSION_PREFIX.length());
+      if (value.equals(NULL_KEYWORD)) {
+        return convert(new Value("null", Object.class), type);
+      }
+      Value reference = ids.get(value);
+      if (reference == null) {
+        throw new UnsupportedFXMLException(element, "Unsupported expression " + raw);
+      }
+      return convert(reference, type);
+    }
+    return literal(raw, type);
+  }
+
+  private static void checkPlain(Element element, String raw) throws UnsupportedFXMLException {
+    if ((raw.startsWith(BINDING_EXPRESSION_PREFIX) && raw.endsWith(BINDING_EXPRESSION_SUFFIX))
+        || raw.startsWith(BI_DIRECTIONAL_BINDING_PREFIX)) {
+      throw new UnsupportedFXMLException(element, "Binding expression " + raw);
+    }
+  }
+
+  private static String identifier(Element element, String id) throws UnsupportedFXMLException {
+    if (id.isEmpty() || id.equals(NULL_KEYWORD)) {
+      throw new UnsupportedFXMLException(element, "Invalid identifier");
+    }
+    for (int i = 0, n = id.length(); i < n; i++) {
+      if (!Character.isJavaIdentifierPart(id.charAt(i))) {
+        throw new UnsupportedFXMLException(element, "Invalid identifier");
+      }
+    }
+    return id;
+  }
+
+  // Controller
+
+  private void inject(String name, Value value) throws UnsupportedFXMLException {
+    if (controllerType == null) {
+      return;
+    }
+    boolean hidden = false;
+    for (Class<?> type = controllerType; type != Object.class; type = type.getSuperclass()) {
+      Field field;
+      try {
+        field = type.getDeclaredField(name);
+      } catch (NoSuchFieldException exception) {
+        continue;
+      }
+      int modifiers = field.getModifiers();
+      if ((modifiers & (Modifier.STATIC | Modifier.FINAL)) != 0
+          || (!(Modifier.isPublic(type.getModifiers()) && Modifier.isPublic(modifiers))
+              && field.getAnnotation(FXML.class) == null)) {
+        hidden = true;
+        continue;
+      }
+      String target = fieldTarget(field, hidden);
+      if (target != null && (isAccessible(field.getType()) || isAssignable(value.type, field.getType()))) {
+        statement(target + "." + name + " = " + cast(value, field.getType()) + ";");
+      } else {
+        statement("set(" + constant(field) + ", controller, " + value + ");");
+      }
+      hidden = true;
+    }
+  }
+
+  // The expression the generated class assigns the field through, or null if only reflection can reach it
+  private String fieldTarget(Field field, boolean hidden) throws UnsupportedFXMLException {
+    int modifiers = field.getModifiers();
+    if (Modifier.isPrivate(modifiers)) {
+      return null;
+    }
+    Class<?> type = field.getDeclaringClass();
+    if (isAccessible(type) && (Modifier.isPublic(modifiers) || isSamePackage(type))) {
+      return type == controllerType ? "controller" : "((" + typeName(type) + ") controller)";
+    }
+    // A public field of a non-public superclass is still reachable through the controller type
+    if (Modifier.isPublic(modifiers) && !hidden && isAccessible(controllerType)) {
+      return "controller";
+    }
+    return null;
+  }
+
+  private void initializeController() throws UnsupportedFXMLException {
+    if (controllerType == null) {
+      statement("initializeController();");
+      return;
+    }
+    if (Initializable.class.isAssignableFrom(controllerType)) {
+      statement("controller.initialize(getLocation(), getResources());");
+      return;
+    }
+    inject(LOCATION_KEY, new Value("getLocation()", URL.class));
+    inject(RESOURCES_KEY, new Value("getResources()", ResourceBundle.class));
+    Method initialize = controllerMethod(INITIALIZE_METHOD_NAME, false);
+    if (initialize != null) {
+      if (isDirectlyAccessible(initialize)) {
+        statement("controller." + INITIALIZE_METHOD_NAME + "();");
+      } else {
+        statement("invoke(" + constant(initialize) + ", controller);");
+      }
+    }
+  }
+
+  // Finds a controller method as ControllerAccessor does: a method taking an event wins over a
+  // parameterless one, and subclasses win over superclasses
+  private Method controllerMethod(String name, boolean event) {
+    Method parameterless = null;
+    for (Class<?> type = controllerType; type != Object.class; type = type.getSuperclass()) {
+      for (Method method : type.getDeclaredMethods()) {
+        int modifiers = method.getModifiers();
+        if (!method.getName().equals(name)
+            || (modifiers & (Modifier.STATIC | Modifier.NATIVE)) != 0
+            || (!(Modifier.isPublic(type.getModifiers()) && Modifier.isPublic(modifiers))
+                && method.getAnnotation(FXML.class) == null)) {
+          continue;
+        }
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        if (event && parameterTypes.length == 1 && Event.class.isAssignableFrom(parameterTypes[0])) {
+          return method;
+        } else if (parameterTypes.length == 0 && parameterless == null) {
+          parameterless = method;
+        }
+      }
+    }
+    return parameterless;
+  }
+
+  // Types and members
+
+  private void importName(String name) throws UnsupportedFXMLException {
+    if (name.endsWith(".*")) {
+      packages.add(name.substring(0, name.length() - 2));
+      return;
+    }
+    int i = qualifiedNameSplit(name);
+    Class<?> type = i == -1 ? null : forName(name.substring(0, i) + "." + name.substring(i + 1).replace('.', '$'));
+    if (type == null) {
+      throw new UnsupportedFXMLException("Imported class " + name + " not found");
+    }
+    classes.put(name.substring(i + 1), type);
+  }
+
+  // Mirrors FXMLLoader.getType()
+  private Class<?> getType(String name) {
+    if (Character.isLowerCase(name.charAt(0))) {
+      int i = qualifiedNameSplit(name);
+      return i == -1 ? null : forName(name.substring(0, i) + "." + name.substring(i + 1).replace('.', '$'));
+    }
+    Class<?> type = classes.get(name);
+    if (type == null) {
+      for (String packageName : packages) {
+        type = forName(packageName + "." + name.replace('.', '$'));
+        if (type != null) {
+          classes.put(name, type);
+          break;
+        }
+      }
+    }
+    return type;
+  }
+
+  private Class<?> requireType(Element element, String name) throws UnsupportedFXMLException {
+    Class<?> type = getType(name);
+    if (type == null) {
+      throw new UnsupportedFXMLException(element, name + " is not a valid type");
+    }
+    return type;
+  }
+
+  private static int qualifiedNameSplit(String name) {
+    int i = name.indexOf('.');
+    int n = name.length();
+    while (i != -1 && i + 1 < n && Character.isLowerCase(name.charAt(i + 1))) {
+      i = name.indexOf('.', i + 1);
+    }
+    return i + 1 < n ? i : -1;
+  }
+
+  private Class<?> forName(String name) {
+    try {
+      return Class.forName(name, false, classLoader);
+    } catch (ClassNotFoundException | LinkageError exception) {
+      return null;
+    }
+  }
+
+  private static Property property(Class<?> type, String name) {
+    if (name.isEmpty()) {
+      return null;
+    }
+    String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    Method getter = publicMethod(type, GET_PREFIX + suffix);
+    if (getter == null) {
+      getter = publicMethod(type, IS_PREFIX + suffix);
+    }
+    if (getter == null) {
+      return null;
+    }
+    return new Property(getter, publicMethod(type, SET_PREFIX + suffix, getter.getReturnType()));
+  }
+
+  private static Method publicMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+    try {
+      Method method = type.getMethod(name, parameterTypes);
+      return Modifier.isStatic(method.getModifiers()) ? null : method;
+    } catch (NoSuchMethodException exception) {
+      return null;
+    }
+  }
+
+  // Finds the static setter of an attached property, preferring the one matching the getter type
+  private static Method staticSetter(Class<?> sourceType, String name, Class<?> targetType) {
+    String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    Class<?> propertyType = null;
+    List<Method> setters = new ArrayList<>();
+    for (Method method : sourceType.getMethods()) {
+      Class<?>[] parameterTypes = method.getParameterTypes();
+      if (!Modifier.isStatic(method.getModifiers()) || parameterTypes.length == 0
+          || !parameterTypes[0].isAssignableFrom(targetType)) {
+        continue;
+      }
+      if (parameterTypes.length == 1
+          && (method.getName().equals(GET_PREFIX + suffix) || method.getName().equals(IS_PREFIX + suffix))) {
+        propertyType = method.getReturnType();
+      } else if (parameterTypes.length == 2 && method.getName().equals(SET_PREFIX + suffix)) {
+        setters.add(method);
+      }
+    }
+    for (Method setter : setters) {
+      if (setter.getParameterTypes()[1] == propertyType) {
+        return setter;
+      }
+    }
+    return setters.size() == 1 ? setters.get(0) : null;
+  }
+
+  private static Class<?> itemType(Type listType) {
+    for (Type type = listType; type != null;) {
+      if (type instanceof ParameterizedType) {
+        ParameterizedType parameterizedType = (ParameterizedType) type;
+        Class<?> rawType = (Class<?>) parameterizedType.getRawType();
+        if (rawType == List.class) {
+          Type itemType = parameterizedType.getActualTypeArguments()[0];
+          if (itemType instanceof ParameterizedType) {
+            itemType = ((ParameterizedType) itemType).getRawType();
+          }
+          return itemType instanceof Class ? (Class<?>) itemType : Object.class;
+        }
+        type = rawType;
+      }
+      Class<?> classType = (Class<?>) type;
+      type = null;
+      for (Type superType : classType.getGenericInterfaces()) {
+        Class<?> rawType = superType instanceof ParameterizedType
+            ? (Class<?>) ((ParameterizedType) superType).getRawType() : (Class<?>) superType;
+        if (List.class.isAssignableFrom(rawType)) {
+          type = superType;
+          break;
+        }
+      }
+      if (type == null && classType.getGenericSuperclass() != null
+          && List.class.isAssignableFrom(classType.getSuperclass())) {
+        type = classType.getGenericSuperclass();
+      }
+    }
+    return Object.class;
+  }
+
+  private boolean hasDefaultConstructor(Class<?> type) {
+    if (Modifier.isAbstract(type.getModifiers()) || type.isInterface() || type.isPrimitive()) {
+      return false;
+    }
+    try {
+      type.getConstructor();
+      return true;
+    } catch (NoSuchMethodException exception) {
+      return false;
+    }
+  }
+
+  private String instantiableTypeName(Element element, Class<?> type) throws UnsupportedFXMLException {
+    if (type.getDeclaringClass() != null && !Modifier.isStatic(type.getModifiers())) {
+      throw new UnsupportedFXMLException(element, type.getName() + " is an inner class");
+    }
+    return typeName(type);
+  }
+
+  private String typeName(Class<?> type) throws UnsupportedFXMLException {
+    if (type.isPrimitive()) {
+      return type.getName();
+    } else if (type.isArray()) {
+      return typeName(type.getComponentType()) + "[]";
+    } else if (!isAccessible(type)) {
+      throw new UnsupportedFXMLException(type.getName() + " is not accessible from " + packageName);
+    }
+    return type.getCanonicalName();
+  }
+
+  private boolean isAccessible(Class<?> type) {
+    if (type.isArray()) {
+      return isAccessible(type.getComponentType());
+    }
+    if (type.isPrimitive()) {
+      return true;
+    }
+    if (type.getCanonicalName() == null) {
+      return false;
+    }
+    for (Class<?> c = type; c != null; c = c.getDeclaringClass()) {
+      int modifiers = c.getModifiers();
+      if (Modifier.isPrivate(modifiers) || (!Modifier.isPublic(modifiers) && !isSamePackage(c))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Whether the generated class can use the member without reflection
+  private boolean isDirectlyAccessible(Member member) {
+    int modifiers = member.getModifiers();
+    if (!isAccessible(controllerType) || Modifier.isPrivate(modifiers)) {
+      return false;
+    }
+    if (Modifier.isPublic(modifiers)) {
+      return isAccessible(member.getDeclaringClass()) || member instanceof Method;
+    }
+    return isSamePackage(member.getDeclaringClass()) && isSamePackage(controllerType);
+  }
+
+  private boolean isSamePackage(Class<?> type) {
+    String name = type.getName();
+    int i = name.lastIndexOf('.');
+    return (i == -1 ? "" : name.substring(0, i)).equals(packageName);
+  }
+
+  // A reflective handle kept in a static constant of the generated class
+  private String constant(Member member) throws UnsupportedFXMLException {
+    String name = constants.get(member);
+    if (name == null) {
+      name = (member instanceof Field ? "FIELD_" : "METHOD_") + constants.size();
+      StringBuilder initializer = new StringBuilder();
+      initializer.append(typeName(member.getDeclaringClass())).append(".class, ").append(quote(member.getName()));
+      String type = "java.lang.reflect.Field";
+      String factory = "field";
+      if (member instanceof Method) {
+        type = "java.lang.reflect.Method";
+        factory = "method";
+        for (Class<?> parameterType : ((Method) member).getParameterTypes()) {
+          initializer.append(", ").append(typeName(parameterType)).append(".class");
+        }
+      }
+      constantCode.append("  private static final ").append(type).append(' ').append(name).append(" = ")
+          .append(factory).append('(').append(initializer).append(");\n");
+      constants.put(member, name);
+    }
+    return name;
+  }
+
+  // Values
+
+  private Value variable(Class<?> type, String expression) throws UnsupportedFXMLException {
+    Value value = new Value("v" + variableCount++, type);
+    statement(typeName(type) + " " + value + " = " + expression + ";");
+    return value;
+  }
+
+  private void statement(String statement) {
+    code.append("    ").append(statement).append('\n');
+  }
+
+  // Converts a value to the given type, as BeanAdapter.coerce() does
+  private String convert(Value value, Class<?> type) throws UnsupportedFXMLException {
+    if (isAssignable(value.type, type)) {
+      return value.expression;
+    }
+    return "coerce(" + value + ", " + typeName(boxed(type)) + ".class)";
+  }
+
+  private String cast(Value value, Class<?> type) throws UnsupportedFXMLException {
+    if (isAssignable(value.type, type)) {
+      return value.expression;
+    }
+    return "(" + typeName(type) + ") " + value;
+  }
+
+  private static boolean isAssignable(Class<?> from, Class<?> to) {
+    if (to.isPrimitive() || from.isPrimitive()) {
+      return boxed(from) == boxed(to) || (!to.isPrimitive() && to.isAssignableFrom(boxed(from)));
+    }
+    return to.isAssignableFrom(from);
+  }
+
+  // Converts a string to the given type at build time when possible
+  private String literal(String value, Class<?> type) throws UnsupportedFXMLException {
+    Class<?> boxed = boxed(type);
+    try {
+      if (type == String.class || type == Object.class || type == CharSequence.class) {
+        return quote(value);
+      } else if (boxed == Boolean.class) {
+        return String.valueOf(Boolean.valueOf(value));
+      } else if (boxed == Character.class) {
+        return charLiteral(value.charAt(0));
+      } else if (boxed == Byte.class) {
+        return "(byte) " + Byte.valueOf(value);
+      } else if (boxed == Short.class) {
+        return "(short) " + Short.valueOf(value);
+      } else if (boxed == Integer.class) {
+        return String.valueOf(Integer.valueOf(value));
+      } else if (boxed == Long.class) {
+        return Long.valueOf(value) + "L";
+      } else if (boxed == Float.class) {
+        float f = Float.parseFloat(value);
+        return Float.isNaN(f) || Float.isInfinite(f) ? "java.lang.Float.valueOf(" + quote(value) + ")"
+            : Float.toString(f) + "f";
+      } else if (boxed == Double.class) {
+        double d = Double.parseDouble(value);
+        return Double.isNaN(d) || Double.isInfinite(d) ? "java.lang.Double.valueOf(" + quote(value) + ")"
+            : Double.toString(d);
+      } else if (type == BigInteger.class) {
+        new BigInteger(value);
+        return "new java.math.BigInteger(" + quote(value) + ")";
+      } else if (type == BigDecimal.class) {
+        new BigDecimal(value);
+        return "new java.math.BigDecimal(" + quote(value) + ")";
+      } else if (type.isEnum() && isAccessible(type)) {
+        String name = Character.isLowerCase(value.charAt(0)) ? toAllCaps(value) : value;
+        for (Object constant : type.getEnumConstants()) {
+          if (((Enum<?>) constant).name().equals(name)) {
+            return typeName(type) + "." + name;
+          }
+        }
+      } else if (type != Number.class && type != Class.class && isAccessible(type)) {
+        Method valueOf = type.getDeclaredMethod(VALUE_OF_METHOD_NAME, String.class);
+        if (Modifier.isPublic(valueOf.getModifiers()) && Modifier.isStatic(valueOf.getModifiers())
+            && type.isAssignableFrom(valueOf.getReturnType())) {
+          return typeName(type) + "." + valueOf.getName() + "(" + quote(value) + ")";
+        }
+      }
+    } catch (NumberFormatException | IndexOutOfBoundsException | NoSuchMethodException exception) {
+      // Left to the runtime coercion, which fails the same way FXMLLoader does
+    }
+    return "coerce(" + quote(value) + ", " + typeName(boxed) + ".class)";
+  }
+
+  private String zero(Class<?> type) {
+    if (type == Boolean.TYPE) {
+      return "false";
+    } else if (type == Character.TYPE) {
+      return "'\\0'";
+    } else if (type == Long.TYPE) {
+      return "0L";
+    } else if (type == Float.TYPE) {
+      return "0f";
+    } else if (type == Double.TYPE) {
+      return "0.0";
+    } else if (type.isPrimitive()) {
+      return "0";
+    }
+    return "null";
+  }
+
+  private static Class<?> boxed(Class<?> type) {
+    if (!type.isPrimitive()) {
+      return type;
+    } else if (type == Boolean.TYPE) {
+      return Boolean.class;
+    } else if (type == Character.TYPE) {
+      return Character.class;
+    } else if (type == Byte.TYPE) {
+      return Byte.class;
+    } else if (type == Short.TYPE) {
+      return Short.class;
+    } else if (type == Integer.TYPE) {
+      return Integer.class;
+    } else if (type == Long.TYPE) {
+      return Long.class;
+    } else if (type == Float.TYPE) {
+      return Float.class;
+    } else if (type == Double.TYPE) {
+      return Double.class;
+    }
+    return Void.class;
+  }
+
+  private static String toAllCaps(String value) {
+    StringBuilder allCapsBuilder = new StringBuilder();
+    for (int i = 0, n = value.length(); i < n; i++) {
+      char c = value.charAt(i);
+      if (Character.isUpperCase(c)) {
+        allCapsBuilder.append('_');
+      }
+      allCapsBuilder.append(Character.toUpperCase(c));
+    }
+    return allCapsBuilder.toString();
+  }
+
+  static String quote(String value) {
+    StringBuilder builder = new StringBuilder("\"");
+    for (int i = 0, n = value.length(); i < n; i++) {
+      appendEscaped(builder, value.charAt(i), '"');
+    }
+    return builder.append('"').toString();
+  }
+
+  private static String charLiteral(char c) {
+    StringBuilder builder = new StringBuilder("'");
+    appendEscaped(builder, c, '\'');
+    return builder.append('\'').toString();
+  }
+
+  private static void appendEscaped(StringBuilder builder, char c, char quote) {
+    if (c == quote || c == '\\') {
+      builder.append('\\').append(c);
+    } else if (c == '\n') {
+      builder.append("\\n");
+    } else if (c == '\r') {
+      builder.append("\\r");
+    } else if (c == '\t') {
+      builder.append("\\t");
+    } else if (c < 0x20 || c > 0x7E) {
+      builder.append(String.format("\\u%04x", (int) c));
+    } else {
+      builder.append(c);
+    }
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2019 XDean
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xdean.fastfxml.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import xdean.fastfxml.FXMLLoader;
+
+/**
+ * Build step that turns FXML documents into Java classes extending
+ * {@link xdean.fastfxml.CompiledFXML}, so that the documents are loaded without parsing or
+ * reflection at runtime.
+ * <p>
+ * The generator resolves classes with the given class loader, so it runs after the controllers
+ * and custom components have been compiled, and the generated sources are compiled in a second
+ * pass. <tt>foo/bar/main_view.fxml</tt> under the source root generates <tt>foo.bar.MainViewFXML</tt>,
+ * which locates its document with {@link Class#getResource(String)}. Documents using scripts,
+ * binding expressions or anything else that needs the runtime generate a class delegating to
+ * {@link FXMLLoader}.
+ * <p>
+ * Usage:
+ * <tt>java xdean.fastfxml.generator.FXMLGenerator &lt;source root&gt; &lt;output directory&gt; [class path]</tt>
+ */
+public class FXMLGenerator {
+  /**
+   * Suffix of the generated class names.
+   */
+  public static final String CLASS_SUFFIX = "FXML";
+
+  /**
+   * The result of generating one document.
+   */
+  public static final class GeneratedClass {
+    private final Path source;
+    private final String className;
+    private final Path file;
+    private final String fallbackReason;
+    final Class<?> rootType;
+    final Class<?> controllerType;
+
+    GeneratedClass(Path source, String className, Path file, String fallbackReason, Class<?> rootType,
+        Class<?> controllerType) {
+      this.source = source;
+      this.className = className;
+      this.file = file;
+      this.fallbackReason = fallbackReason;
+      this.rootType = rootType;
+      this.controllerType = controllerType;
+    }
+
+    /**
+     * Returns the FXML document.
+     */
+    public Path getSource() {
+      return source;
+    }
+
+    /**
+     * Returns the fully qualified name of the generated class.
+     */
+    public String getClassName() {
+      return className;
+    }
+
+    /**
+     * Returns the generated Java file.
+     */
+    public Path getFile() {
+      return file;
+    }
+
+    /**
+     * Returns whether the document was compiled, or is loaded by {@link FXMLLoader}.
+     */
+    public boolean isCompiled() {
+      return fallbackReason == null;
+    }
+
+    /**
+     * Returns why the document is loaded by {@link FXMLLoader}, or <tt>null</tt> if it was compiled.
+     */
+    public String getFallbackReason() {
+      return fallbackReason;
+    }
+  }
+
+  private final Path sourceRoot;
+  private final Path outputRoot;
+  private final ClassLoader classLoader;
+
+  private final Map<Path, GeneratedClass> generated = new HashMap<>();
+  private final Set<Path> generating = new HashSet<>();
+
+  /**
+   * @param sourceRoot The root of the FXML documents, usually the resources directory.
+   * @param outputRoot The root of the generated sources.
+   * @param classLoader The class loader of the classes referenced by the documents.
+   */
+  public FXMLGenerator(Path sourceRoot, Path outputRoot, ClassLoader classLoader) {
+    this.sourceRoot = sourceRoot.toAbsolutePath().normalize();
+    this.outputRoot = outputRoot;
+    this.classLoader = classLoader;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2 || args.length > 3) {
+      System.err.println("Usage: FXMLGenerator <source root> <output directory> [class path]");
+      System.exit(1);
+    }
+
+    List<URL> urls = new ArrayList<>();
+    if (args.length == 3) {
+      for (String entry : args[2].split(File.pathSeparator)) {
+        urls.add(Paths.get(entry).toUri().toURL());
+      }
+    }
+    ClassLoader classLoader = new URLClassLoader(urls.toArray(new URL[0]), FXMLGenerator.class.getClassLoader());
+
+    for (GeneratedClass generatedClass : new FXMLGenerator(Paths.get(args[0]), Paths.get(args[1]), classLoader)
+        .generateAll()) {
+      if (generatedClass.isCompiled()) {
+        System.out.println(generatedClass.getFile());
+      } else {
+        System.out.println(generatedClass.getFile() + " (FXMLLoader: " + generatedClass.getFallbackReason() + ")");
+      }
+    }
+  }
+
+  /**
+   * Generates the classes of all FXML documents under the source root.
+   *
+   * @return The generated classes.
+   */
+  public List<GeneratedClass> generateAll() throws IOException {
+    List<Path> sources;
+    try (Stream<Path> stream = Files.walk(sourceRoot)) {
+      sources = stream.filter(p -> p.toString().endsWith(FXMLLoader.FXML_EXTENSION) && Files.isRegularFile(p))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+    List<GeneratedClass> result = new ArrayList<>();
+    for (Path source : sources) {
+      result.add(generate(source));
+    }
+    return result;
+  }
+
+  /**
+   * Generates the class of the given FXML document, and the classes of the documents it includes.
+   *
+   * @param source A FXML document under the source root.
+   * @return The generated class.
+   */
+  public GeneratedClass generate(Path source) throws IOException {
+    source = source.toAbsolutePath().normalize();
+    GeneratedClass generatedClass = generated.get(source);
+    if (generatedClass != null) {
+      return generatedClass;
+    }
+    if (!source.startsWith(sourceRoot)) {
+      throw new IllegalArgumentException(source + " is not under " + sourceRoot);
+    }
+
+    Path relative = sourceRoot.relativize(source);
+    String fileName = relative.getFileName().toString();
+    String packageName = packageName(relative);
+    String simpleName = className(fileName);
+    String className = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+
+    FXMLSource document;
+    try (InputStream inputStream = Files.newInputStream(source)) {
+      document = FXMLSource.parse(inputStream);
+    }
+
+    String code;
+    String fallbackReason = null;
+    Class<?> rootType = Object.class;
+    Class<?> controllerType = null;
+    generating.add(source);
+    try {
+      DocumentCompiler compiler = new DocumentCompiler(this, source, document, packageName, simpleName, fileName,
+          classLoader);
+      code = compiler.compile();
+      rootType = compiler.getRootType();
+      controllerType = compiler.getControllerType();
+    } catch (UnsupportedFXMLException exception) {
+      fallbackReason = exception.getMessage();
+      code = DocumentCompiler.fallback(packageName, simpleName, fileName, fallbackReason);
+    } finally {
+      generating.remove(source);
+    }
+
+    Path file = outputRoot.resolve(className.replace('.', File.separatorChar) + ".java");
+    Files.createDirectories(file.getParent());
+    Files.write(file, code.getBytes(StandardCharsets.UTF_8));
+
+    generatedClass = new GeneratedClass(source, className, file, fallbackReason, rootType, controllerType);
+    generated.put(source, generatedClass);
+    return generatedClass;
+  }
+
+  // Generates the class of an included document, resolved as FXMLLoader resolves fx:include source
+  GeneratedClass generateInclude(Path from, String source, FXMLSource.Element element)
+      throws UnsupportedFXMLException {
+    Path path = (source.startsWith("/") ? sourceRoot.resolve(source.substring(1)) : from.resolveSibling(source))
+        .normalize();
+    if (!path.startsWith(sourceRoot) || !path.toString().endsWith(FXMLLoader.FXML_EXTENSION)
+        || !Files.isRegularFile(path)) {
+      throw new UnsupportedFXMLException(element, "Cannot resolve include " + source);
+    }
+    if (generating.contains(path)) {
+      throw new UnsupportedFXMLException(element, "Cyclic include " + source);
+    }
+    try {
+      return generate(path);
+    } catch (IOException exception) {
+      throw new UnsupportedFXMLException(element, "Cannot read include " + source + ": " + exception.getMessage());
+    }
+  }
+
+  private static String packageName(Path relative) {
+    StringBuilder packageName = new StringBuilder();
+    for (int i = 0, n = relative.getNameCount() - 1; i < n; i++) {
+      String name = relative.getName(i).toString();
+      if (name.isEmpty() || !Character.isJavaIdentifierStart(name.charAt(0))
+          || !name.chars().allMatch(Character::isJavaIdentifierPart)) {
+        throw new IllegalArgumentException(relative + " is not in a valid package");
+      }
+      packageName.append(i == 0 ? "" : ".").append(name);
+    }
+    return packageName.toString();
+  }
+
+  /**
+   * Returns the simple name of the class generated from the given file, <tt>main_view.fxml</tt>
+   * generates <tt>MainViewFXML</tt>.
+   *
+   * @param fileName
+   */
+  public static String className(String fileName) {
+    if (fileName.endsWith(FXMLLoader.FXML_EXTENSION)) {
+      fileName = fileName.substring(0, fileName.length() - FXMLLoader.FXML_EXTENSION.length());
+    }
+    StringBuilder className = new StringBuilder();
+    boolean upper = true;
+    for (int i = 0, n = fileName.length(); i < n; i++) {
+      char c = fileName.charAt(i);
+      if (!Character.isJavaIdentifierPart(c) || c == '_' || c == '$') {
+        upper = true;
+      } else {
+        className.append(upper ? Character.toUpperCase(c) : c);
+        upper = false;
+      }
+    }
+    if (className.length() == 0 || !Character.isJavaIdentifierStart(className.charAt(0))) {
+      className.insert(0, '_');
+    }
+    return className.append(CLASS_SUFFIX).toString();
+  }
+}
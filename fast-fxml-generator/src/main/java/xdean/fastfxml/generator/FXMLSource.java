@@ -0,0 +1,152 @@
+/*
+ * Copyright 2019 XDean
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xdean.fastfxml.generator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import xdean.fastfxml.FXMLLoader;
+
+/**
+ * A FXML document parsed into a tree, as the generator needs to look ahead (constructor arguments,
+ * default properties) where {@link FXMLLoader} works on the event stream.
+ */
+final class FXMLSource {
+
+  static final class Attribute {
+    final String prefix;
+    final String localName;
+    final String value;
+
+    Attribute(String prefix, String localName, String value) {
+      this.prefix = prefix;
+      this.localName = localName;
+      this.value = value;
+    }
+
+    boolean isFX() {
+      return FXMLLoader.FX_NAMESPACE_PREFIX.equals(prefix);
+    }
+  }
+
+  static final class Element {
+    final String prefix;
+    final String localName;
+    final int line;
+    final List<Attribute> attributes = new ArrayList<>();
+    // child elements and non-whitespace text, in document order
+    final List<Object> content = new ArrayList<>();
+
+    Element(String prefix, String localName, int line) {
+      this.prefix = prefix;
+      this.localName = localName;
+      this.line = line;
+    }
+
+    boolean isFX(String name) {
+      return FXMLLoader.FX_NAMESPACE_PREFIX.equals(prefix) && localName.equals(name);
+    }
+
+    String getAttribute(String name) {
+      for (Attribute attribute : attributes) {
+        if (attribute.prefix == null && attribute.localName.equals(name)) {
+          return attribute.value;
+        }
+      }
+      return null;
+    }
+
+    String getFXAttribute(String name) {
+      for (Attribute attribute : attributes) {
+        if (attribute.isFX() && attribute.localName.equals(name)) {
+          return attribute.value;
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public String toString() {
+      return (prefix == null ? "" : prefix + ":") + localName + " (line " + line + ")";
+    }
+  }
+
+  final List<String> imports = new ArrayList<>();
+  String language = null;
+  Element root = null;
+
+  static FXMLSource parse(InputStream inputStream) throws IOException {
+    FXMLSource source = new FXMLSource();
+    try {
+      XMLInputFactory xmlInputFactory = XMLInputFactory.newFactory();
+      xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+      XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(inputStream);
+      List<Element> stack = new ArrayList<>();
+      while (reader.hasNext()) {
+        switch (reader.next()) {
+        case XMLStreamConstants.PROCESSING_INSTRUCTION:
+          String target = reader.getPITarget().trim();
+          if (target.equals(FXMLLoader.IMPORT_PROCESSING_INSTRUCTION)) {
+            source.imports.add(reader.getPIData().trim());
+          } else if (target.equals(FXMLLoader.LANGUAGE_PROCESSING_INSTRUCTION)) {
+            source.language = reader.getPIData().trim();
+          }
+          break;
+        case XMLStreamConstants.START_ELEMENT:
+          Element element = new Element(emptyToNull(reader.getPrefix()), reader.getLocalName(),
+              reader.getLocation().getLineNumber());
+          for (int i = 0, n = reader.getAttributeCount(); i < n; i++) {
+            element.attributes.add(new Attribute(emptyToNull(reader.getAttributePrefix(i)),
+                reader.getAttributeLocalName(i), reader.getAttributeValue(i)));
+          }
+          if (stack.isEmpty()) {
+            source.root = element;
+          } else {
+            stack.get(stack.size() - 1).content.add(element);
+          }
+          stack.add(element);
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          stack.remove(stack.size() - 1);
+          break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+          if (!stack.isEmpty() && !reader.isWhiteSpace() && !reader.getText().trim().isEmpty()) {
+            stack.get(stack.size() - 1).content.add(reader.getText());
+          }
+          break;
+        }
+      }
+    } catch (XMLStreamException exception) {
+      throw new IOException(exception);
+    }
+    if (source.root == null) {
+      throw new IOException("Empty document.");
+    }
+    return source;
+  }
+
+  private static String emptyToNull(String string) {
+    return string == null || string.isEmpty() ? null : string;
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2019 XDean
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xdean.fastfxml.generator;
+
+/**
+ * Thrown when a document uses a construct that can only be handled at runtime. The generator then
+ * emits a class that delegates to {@link xdean.fastfxml.FXMLLoader}.
+ */
+class UnsupportedFXMLException extends Exception {
+  private static final long serialVersionUID = 1L;
+
+  UnsupportedFXMLException(String message) {
+    super(message);
+  }
+
+  UnsupportedFXMLException(FXMLSource.Element element, String message) {
+    super(message + " at " + element);
+  }
+}
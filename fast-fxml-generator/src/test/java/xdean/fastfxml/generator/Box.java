@@ -0,0 +1,78 @@
+package xdean.fastfxml.generator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.beans.DefaultProperty;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+
+@DefaultProperty("children")
+public class Box {
+  private final List<Box> children = new ArrayList<>();
+  private final Map<String, Object> properties = new HashMap<>();
+  private String name;
+  private double width;
+  private Side side;
+  private Margin margin;
+  private EventHandler<ActionEvent> onAction;
+
+  public List<Box> getChildren() {
+    return children;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public double getWidth() {
+    return width;
+  }
+
+  public void setWidth(double width) {
+    this.width = width;
+  }
+
+  public Side getSide() {
+    return side;
+  }
+
+  public void setSide(Side side) {
+    this.side = side;
+  }
+
+  public Margin getMargin() {
+    return margin;
+  }
+
+  public void setMargin(Margin margin) {
+    this.margin = margin;
+  }
+
+  public EventHandler<ActionEvent> getOnAction() {
+    return onAction;
+  }
+
+  public void setOnAction(EventHandler<ActionEvent> onAction) {
+    this.onAction = onAction;
+  }
+
+  public void fire() {
+    onAction.handle(new ActionEvent());
+  }
+
+  public static void setIndex(Box box, int index) {
+    box.properties.put("index", index);
+  }
+
+  public static int getIndex(Box box) {
+    Integer index = (Integer) box.properties.get("index");
+    return index == null ? 0 : index;
+  }
+}
@@ -0,0 +1,34 @@
+package xdean.fastfxml.generator;
+
+import java.net.URL;
+
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+
+public class BoxController {
+  @FXML
+  Box child;
+  @FXML
+  private URL location;
+  public Box include;
+
+  int handled;
+  boolean initialized;
+
+  public Box getChild() {
+    return child;
+  }
+
+  public URL getLocation() {
+    return location;
+  }
+
+  @FXML
+  private void handle(ActionEvent event) {
+    handled++;
+  }
+
+  public void initialize() {
+    initialized = true;
+  }
+}
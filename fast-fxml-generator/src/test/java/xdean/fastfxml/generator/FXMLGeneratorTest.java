@@ -0,0 +1,143 @@
+package xdean.fastfxml.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.tools.ToolProvider;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import xdean.fastfxml.CompiledFXML;
+import xdean.fastfxml.FXMLLoader;
+import xdean.fastfxml.generator.FXMLGenerator.GeneratedClass;
+
+public class FXMLGeneratorTest {
+  private static FXMLGenerator generator;
+  private static Path sourceRoot;
+  private static Path sources;
+  private static Path classes;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    sourceRoot = Paths.get(FXMLGeneratorTest.class.getResource("box.fxml").toURI()).getParent()
+        .getParent().getParent().getParent();
+    Path output = Files.createTempDirectory("fxml-generator");
+    sources = output.resolve("src");
+    classes = Files.createDirectories(output.resolve("classes"));
+    generator = new FXMLGenerator(sourceRoot, sources, FXMLGeneratorTest.class.getClassLoader());
+  }
+
+  @Test
+  public void testClassName() {
+    assertEquals("BoxFXML", FXMLGenerator.className("box.fxml"));
+    assertEquals("MainViewFXML", FXMLGenerator.className("main_view.fxml"));
+    assertEquals("_1stFXML", FXMLGenerator.className("1st.fxml"));
+  }
+
+  @Test
+  public void testCompiled() throws Exception {
+    GeneratedClass generated = generate("box.fxml");
+    assertTrue(generated.getFallbackReason(), generated.isCompiled());
+    assertEquals("xdean.fastfxml.generator.BoxFXML", generated.getClassName());
+
+    CompiledFXML fxml = load(generated);
+    Box root = fxml.load();
+    BoxController controller = fxml.getController();
+
+    FXMLLoader loader = new FXMLLoader(getClass().getResource("box.fxml"));
+    Box expected = loader.load();
+
+    assertBox(expected, root);
+    assertEquals(expected.getChildren().size(), root.getChildren().size());
+    for (int i = 0; i < expected.getChildren().size(); i++) {
+      assertBox(expected.getChildren().get(i), root.getChildren().get(i));
+    }
+    assertEquals(Side.TOP_LEFT, root.getSide());
+    assertEquals(4, Box.getIndex(controller.getChild()));
+    assertEquals(2, controller.getChild().getMargin().getTop(), 0);
+    assertEquals(1, controller.getChild().getMargin().getLeft(), 0);
+
+    assertTrue(controller.initialized);
+    assertSame(root.getChildren().get(0), controller.getChild());
+    assertSame(root.getChildren().get(1), controller.include);
+    assertEquals(getClass().getResource("box.fxml"), controller.getLocation());
+    assertSame(controller.getChild(), fxml.getNamespace().get("child"));
+
+    controller.getChild().fire();
+    assertEquals(1, controller.handled);
+  }
+
+  @Test
+  public void testInitializableController() throws Exception {
+    GeneratedClass generated = generate("box_plain.fxml");
+    assertTrue(generated.getFallbackReason(), generated.isCompiled());
+
+    CompiledFXML fxml = load(generated);
+    InitializableController controller = new InitializableController();
+    fxml.setController(controller);
+    Box root = fxml.load();
+
+    assertSame(root.getChildren().get(0), controller.getChild());
+    assertSame(controller.getChild(), controller.initializedChild);
+    assertEquals(getClass().getResource("box_plain.fxml"), controller.location);
+  }
+
+  @Test
+  public void testFieldInjection() throws Exception {
+    String source = new String(Files.readAllBytes(generate("box.fxml").getFile()), "UTF-8");
+    assertTrue(source.contains("controller.child = "));
+    assertTrue(source.contains("controller.include = "));
+    assertTrue(source.contains("field(xdean.fastfxml.generator.BoxController.class, \"location\")"));
+    assertFalse(source.contains("field(xdean.fastfxml.generator.BoxController.class, \"child\")"));
+  }
+
+  @Test
+  public void testFallback() throws Exception {
+    GeneratedClass generated = generate("box_script.fxml");
+    assertFalse(generated.isCompiled());
+    assertNotNull(generated.getFallbackReason());
+
+    Box root = load(generated).load();
+    assertEquals("script", root.getName());
+  }
+
+  private static void assertBox(Box expected, Box actual) {
+    assertEquals(expected.getName(), actual.getName());
+    assertEquals(expected.getWidth(), actual.getWidth(), 0);
+    assertEquals(expected.getSide(), actual.getSide());
+    assertEquals(Box.getIndex(expected), Box.getIndex(actual));
+  }
+
+  private static GeneratedClass generate(String name) throws IOException {
+    return generator.generate(sourceRoot.resolve("xdean/fastfxml/generator").resolve(name));
+  }
+
+  private static CompiledFXML load(GeneratedClass generated) throws Exception {
+    List<String> arguments = new ArrayList<>();
+    arguments.add("-d");
+    arguments.add(classes.toString());
+    arguments.add("-cp");
+    arguments.add(System.getProperty("java.class.path"));
+    arguments.add("-sourcepath");
+    arguments.add(sources.toString());
+    arguments.add(generated.getFile().toString());
+    assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null, arguments.toArray(new String[0])));
+
+    ClassLoader classLoader = new URLClassLoader(new URL[] { classes.toUri().toURL() },
+        FXMLGeneratorTest.class.getClassLoader());
+    return (CompiledFXML) classLoader.loadClass(generated.getClassName()).newInstance();
+  }
+}
@@ -0,0 +1,25 @@
+package xdean.fastfxml.generator;
+
+import java.net.URL;
+import java.util.ResourceBundle;
+
+import javafx.fxml.FXML;
+import javafx.fxml.Initializable;
+
+public class InitializableController implements Initializable {
+  @FXML
+  private Box child;
+
+  Box initializedChild;
+  URL location;
+
+  public Box getChild() {
+    return child;
+  }
+
+  @Override
+  public void initialize(URL location, ResourceBundle resources) {
+    this.initializedChild = child;
+    this.location = location;
+  }
+}
@@ -0,0 +1,21 @@
+package xdean.fastfxml.generator;
+
+import javafx.beans.NamedArg;
+
+public class Margin {
+  private final double top;
+  private final double left;
+
+  public Margin(@NamedArg("top") double top, @NamedArg(value = "left", defaultValue = "1") double left) {
+    this.top = top;
+    this.left = left;
+  }
+
+  public double getTop() {
+    return top;
+  }
+
+  public double getLeft() {
+    return left;
+  }
+}
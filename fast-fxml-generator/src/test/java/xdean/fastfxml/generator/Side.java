@@ -0,0 +1,7 @@
+package xdean.fastfxml.generator;
+
+public enum Side {
+  LEFT,
+  RIGHT,
+  TOP_LEFT
+}
@@ -0,0 +1,1244 @@
+/*
+ * Copyright (c) 2010, 2015, Oracle and/or its affiliates. All rights reserved. DO NOT ALTER OR
+ * REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License version 2 only, as published by the Free Software Foundation. Oracle
+ * designates this particular file as subject to the "Classpath" exception as provided by Oracle in
+ * the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version 2 along with this work;
+ * if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA or visit www.oracle.com
+ * if you need additional information or have any questions.
+ */
+
+package xdean.fastfxml;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import com.sun.javafx.fxml.PropertyNotFoundException;
+
+import java.lang.reflect.*;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+
+import javafx.beans.value.ObservableValue;
+import sun.reflect.misc.FieldUtil;
+import sun.reflect.misc.MethodUtil;
+import sun.reflect.misc.ReflectUtil;
+import xdean.fastfxml.FXMLCache.ClassCache;
+
+/**
+ * Exposes Java Bean properties of an object via the {@link Map} interface. A call to
+ * {@link Map#get(Object)} invokes the getter for the corresponding property, and a call to
+ * {@link Map#put(Object, Object)} invokes the property's setter. Appending a "Property" suffix to
+ * the key returns the corresponding property model.
+ */
+public class BeanAdapter extends AbstractMap<String, Object> {
+  private final Object bean;
+
+  private static class MethodCache {
+    private final Map<String, List<Method>> methods;
+    private final MethodCache nextClassCache;
+    private final ConcurrentMap<String, Property> properties = new ConcurrentHashMap<>();
+
+    private MethodCache(Map<String, List<Method>> methods, MethodCache nextClassCache) {
+      this.methods = methods;
+      this.nextClassCache = nextClassCache;
+    }
+
+    private Method getMethod(String name, Class<?>... parameterTypes) {
+      List<Method> namedMethods = methods.get(name);
+      if (namedMethods != null) {
+        for (int i = 0; i < namedMethods.size(); i++) {
+          Method namedMethod = namedMethods.get(i);
+          if (namedMethod.getName().equals(name)
+              && Arrays.equals(namedMethod.getParameterTypes(), parameterTypes)) {
+            return namedMethod;
+          }
+        }
+      }
+
+      return nextClassCache != null ? nextClassCache.getMethod(name, parameterTypes) : null;
+    }
+
+    /**
+     * Returns the descriptor of the given property, computed once for this class.
+     */
+    private Property getProperty(String key) {
+      Property property = properties.get(key);
+      if (property == null) {
+        property = properties.computeIfAbsent(key, k -> new Property(this, k));
+      }
+      return property;
+    }
+
+    private Method getGetterMethod(String key) {
+      if (key.isEmpty()) {
+        return null;
+      }
+
+      Method getterMethod = getMethod(getMethodName(GET_PREFIX, key));
+
+      if (getterMethod == null) {
+        getterMethod = getMethod(getMethodName(IS_PREFIX, key));
+      }
+
+      return getterMethod;
+    }
+  }
+
+  /**
+   * The accessors of one property of a class. Handles are <tt>null</tt> where the method must be
+   * called reflectively.
+   */
+  private static final class Property {
+    private final Method getter;
+    private final Method setter;
+    private final Method model;
+    private final MethodHandle getterHandle;
+    private final MethodHandle setterHandle;
+    // The setter as (Object, primitive)void, for the primitive types parsed from strings
+    private final MethodHandle primitiveSetterHandle;
+    private final MethodHandle modelHandle;
+    private final Class<?> type;
+    // The type the setter handle accepts without a cast failure, boxed
+    private final Class<?> valueType;
+    private final Type genericType;
+    // Resolved from the generic type on first use, null if not yet
+    private volatile Optional<Class<?>> listItemType = null;
+    private volatile Optional<Class<?>> mapValueType = null;
+
+    private Property(MethodCache cache, String key) {
+      getter = cache.getGetterMethod(key);
+      type = getter == null ? null : getter.getReturnType();
+      valueType = type == null ? null : box(type);
+      genericType = getter == null ? null : getter.getGenericReturnType();
+      setter = type == null ? null : cache.getMethod(getMethodName(SET_PREFIX, key), type);
+      model = cache.getMethod(key + PROPERTY_SUFFIX);
+      getterHandle = createHandle(getter, GETTER_TYPE);
+      setterHandle = createHandle(setter, SETTER_TYPE);
+      primitiveSetterHandle = isParsed(type)
+          ? createHandle(setter, MethodType.methodType(void.class, Object.class, type))
+          : null;
+      modelHandle = createHandle(model, GETTER_TYPE);
+    }
+
+    private static boolean isParsed(Class<?> type) {
+      return type == Double.TYPE || type == Integer.TYPE || type == Boolean.TYPE
+          || type == Float.TYPE || type == Long.TYPE;
+    }
+
+    private Class<?> getListItemType() {
+      Optional<Class<?>> itemType = listItemType;
+      if (itemType == null) {
+        listItemType = itemType = Optional.ofNullable(BeanAdapter.getListItemType(genericType));
+      }
+      return itemType.orElse(null);
+    }
+
+    private Class<?> getMapValueType() {
+      Optional<Class<?>> valueType = mapValueType;
+      if (valueType == null) {
+        mapValueType = valueType = Optional.ofNullable(BeanAdapter.getMapValueType(genericType));
+      }
+      return valueType.orElse(null);
+    }
+
+    private boolean isReadOnly() {
+      if (type == null) {
+        throw new UnsupportedOperationException("Cannot determine type for property.");
+      }
+      return setter == null;
+    }
+
+    private static Class<?> box(Class<?> type) {
+      return MethodType.methodType(type).wrap().returnType();
+    }
+
+    private static MethodHandle createHandle(Method method, MethodType type) {
+      if (method == null) {
+        return null;
+      }
+      try {
+        return MethodHandles.publicLookup().unreflect(method).asType(type);
+      } catch (IllegalAccessException e) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * The accessors of one attached property for one target class.
+   */
+  private static final class StaticProperty {
+    // Marks a value class without setter
+    private static final StaticSetter NO_SETTER = new StaticSetter(null);
+
+    private final Class<?> sourceType;
+    private final String key;
+    private final Class<?> targetType;
+    private final Method getter;
+    private final MethodHandle getterHandle;
+    private final Class<?> type;
+    private final Type genericType;
+    // value class -> setter
+    private final ConcurrentMap<Class<?>, StaticSetter> setters = new ConcurrentHashMap<>();
+
+    private StaticProperty(Class<?> sourceType, String key, Class<?> targetType) {
+      this.sourceType = sourceType;
+      this.key = key;
+      this.targetType = targetType;
+      getter = getStaticGetterMethod(sourceType, key, targetType);
+      getterHandle = Property.createHandle(getter, GETTER_TYPE);
+      type = getter == null ? null : getter.getReturnType();
+      genericType = getter == null ? null : getter.getGenericReturnType();
+    }
+
+    private StaticSetter getSetter(Class<?> valueType) {
+      StaticSetter setter = setters.get(valueType);
+      if (setter == null) {
+        Method method = getStaticSetterMethod(sourceType, key, valueType, targetType);
+        setter = method == null ? NO_SETTER : new StaticSetter(method);
+        // A value class that may be unloaded before this property is not kept
+        if (ClassCache.isVisible(valueType, sourceType) && ClassCache.isVisible(valueType, targetType)) {
+          setters.put(valueType, setter);
+        }
+      }
+      return setter == NO_SETTER ? null : setter;
+    }
+  }
+
+  private static final class StaticSetter {
+    private final Method method;
+    private final MethodHandle handle;
+    private final Class<?> valueType;
+    private final boolean primitive;
+
+    private StaticSetter(Method method) {
+      this.method = method;
+      this.handle = Property.createHandle(method, SETTER_TYPE);
+      Class<?> parameterType = method == null ? null : method.getParameterTypes()[1];
+      this.valueType = parameterType == null ? null : Property.box(parameterType);
+      this.primitive = parameterType != null && parameterType.isPrimitive();
+    }
+  }
+
+  // class -> constant name -> value
+  private static final ClassCache<Map<String, Object>> constants = new ClassCache<>(
+      type -> new ConcurrentHashMap<>());
+  // Marks a constant whose value is null
+  private static final Object NULL_CONSTANT = new Object();
+
+  // Getters as (Object)Object and setters as (Object, Object)void
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+  private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+  private static final ClassCache<MethodCache> globalMethodCache = new ClassCache<>(
+      BeanAdapter::createClassMethodCache);
+  // Attached properties are kept by the class of the pair that the other class cannot outlive:
+  // target class -> source class -> property name -> accessors
+  private static final ClassCache<Map<Class<?>, Map<String, StaticProperty>>> staticPropertiesByTarget =
+      new ClassCache<>(type -> new ConcurrentHashMap<>());
+  // source class -> target class -> property name -> accessors
+  private static final ClassCache<Map<Class<?>, Map<String, StaticProperty>>> staticPropertiesBySource =
+      new ClassCache<>(type -> new ConcurrentHashMap<>());
+
+  private final MethodCache localCache;
+
+  public static final String GET_PREFIX = "get";
+  public static final String IS_PREFIX = "is";
+  public static final String SET_PREFIX = "set";
+  public static final String PROPERTY_SUFFIX = "Property";
+
+  public static final String VALUE_OF_METHOD_NAME = "valueOf";
+
+  /**
+   * Creates a new Bean adapter.
+   *
+   * @param bean The Bean object to wrap.
+   */
+  public BeanAdapter(Object bean) {
+    this.bean = bean;
+
+    localCache = getClassMethodCache(bean.getClass());
+    FXMLManifest.recordBean(bean.getClass());
+  }
+
+  /**
+   * Scans the methods of the given class ahead of its first adapter.
+   */
+  static void warmup(Class<?> type) {
+    getClassMethodCache(type);
+  }
+
+  /**
+   * Returns whether the methods of the given class are scanned already.
+   */
+  static boolean isWarm(Class<?> type) {
+    return globalMethodCache.contains(type);
+  }
+
+  private static MethodCache getClassMethodCache(final Class<?> type) {
+    if (type == Object.class) {
+      return null;
+    }
+    return globalMethodCache.get(type);
+  }
+
+  private static MethodCache createClassMethodCache(final Class<?> type) {
+    Map<String, List<Method>> classMethods = new HashMap<>();
+
+    ReflectUtil.checkPackageAccess(type);
+    if (Modifier.isPublic(type.getModifiers())) {
+      // only interested in public methods in public classes in
+      // non-restricted packages
+      final Method[] declaredMethods = AccessController.doPrivileged(
+          (PrivilegedAction<Method[]>) () -> type.getDeclaredMethods());
+      for (int i = 0; i < declaredMethods.length; i++) {
+        Method method = declaredMethods[i];
+        int modifiers = method.getModifiers();
+
+        if (Modifier.isPublic(modifiers) && !Modifier.isStatic(modifiers)) {
+          String name = method.getName();
+          List<Method> namedMethods = classMethods.get(name);
+
+          if (namedMethods == null) {
+            namedMethods = new ArrayList<>();
+            classMethods.put(name, namedMethods);
+          }
+
+          namedMethods.add(method);
+        }
+      }
+    }
+    return new MethodCache(classMethods, getClassMethodCache(type.getSuperclass()));
+  }
+
+  /**
+   * Returns the Bean object this adapter wraps.
+   *
+   * @return The Bean object, or <tt>null</tt> if no Bean has been set.
+   */
+  public Object getBean() {
+    return bean;
+  }
+
+  private static String getMethodName(String prefix, String key) {
+    return prefix + Character.toUpperCase(key.charAt(0)) + key.substring(1);
+  }
+
+  /**
+   * Invokes the getter method for the given property.
+   *
+   * @param key The property name.
+   *
+   * @return The value returned by the method, or <tt>null</tt> if no such method exists.
+   */
+  @Override
+  public Object get(Object key) {
+    if (key == null) {
+      throw new NullPointerException();
+    }
+
+    return get(key.toString());
+  }
+
+  private Object get(String key) {
+    if (key.endsWith(PROPERTY_SUFFIX)) {
+      Property property = localCache.getProperty(key.substring(0, key.length() - PROPERTY_SUFFIX.length()));
+      return invoke(property.model, property.modelHandle);
+    }
+    Property property = localCache.getProperty(key);
+    return invoke(property.getter, property.getterHandle);
+  }
+
+  private Object invoke(Method getterMethod, MethodHandle getterHandle) {
+    if (getterMethod == null) {
+      return null;
+    }
+    if (getterHandle != null && System.getSecurityManager() == null) {
+      try {
+        return (Object) getterHandle.invokeExact(bean);
+      } catch (Error error) {
+        throw error;
+      } catch (Throwable exception) {
+        throw invocationFailed(exception);
+      }
+    }
+    // Reflective calls go through the trampoline of MethodUtil
+    try {
+      return MethodUtil.invoke(getterMethod, bean, (Object[]) null);
+    } catch (IllegalAccessException exception) {
+      throw new RuntimeException(exception);
+    } catch (InvocationTargetException exception) {
+      throw new RuntimeException(exception);
+    }
+  }
+
+  /**
+   * Invokes a setter method for the given property. The {@link #coerce(Object, Class)} method is
+   * used as needed to attempt to convert a given value to the property type, as defined by the
+   * return value of the getter method.
+   *
+   * @param key The property name.
+   *
+   * @param value The new property value.
+   *
+   * @return Returns <tt>null</tt>, since returning the previous value would require an unnecessary
+   *         call to the getter method.
+   *
+   * @throws PropertyNotFoundException If the given property does not exist or is read-only.
+   */
+  @Override
+  public Object put(String key, Object value) {
+    if (key == null) {
+      throw new NullPointerException();
+    }
+
+    Property property = localCache.getProperty(key);
+
+    if (property.isReadOnly()) {
+      throw new PropertyNotFoundException("Property \"" + key + "\" does not exist"
+          + " or is read-only.");
+    }
+
+    if (value instanceof String
+        && property.primitiveSetterHandle != null
+        && System.getSecurityManager() == null
+        && !Coercion.isRegistered(property.type)) {
+      putPrimitive(property, (String) value);
+      return null;
+    }
+
+    Object coercedValue = coerce(value, property.type);
+    if (property.setterHandle != null && System.getSecurityManager() == null) {
+      if (coercedValue == null && property.type.isPrimitive()) {
+        throw new IllegalArgumentException("Cannot set " + key + " to null.");
+      }
+      checkArgument(property.valueType, coercedValue);
+      try {
+        property.setterHandle.invokeExact(bean, coercedValue);
+      } catch (Error error) {
+        throw error;
+      } catch (Throwable exception) {
+        throw invocationFailed(exception);
+      }
+    } else {
+      try {
+        MethodUtil.invoke(property.setter, bean, new Object[] { coercedValue });
+      } catch (IllegalAccessException exception) {
+        throw new RuntimeException(exception);
+      } catch (InvocationTargetException exception) {
+        throw new RuntimeException(exception);
+      }
+    }
+
+    return null;
+  }
+
+  // Parses the value as coerce() does, and passes it to the setter unboxed
+  private void putPrimitive(Property property, String value) {
+    MethodHandle setterHandle = property.primitiveSetterHandle;
+    Class<?> type = property.type;
+    if (type == Double.TYPE) {
+      double d = Double.parseDouble(value);
+      try {
+        setterHandle.invokeExact(bean, d);
+      } catch (Error error) {
+        throw error;
+      } catch (Throwable exception) {
+        throw invocationFailed(exception);
+      }
+    } else if (type == Integer.TYPE) {
+      int i = Integer.parseInt(value);
+      try {
+        setterHandle.invokeExact(bean, i);
+      } catch (Error error) {
+        throw error;
+      } catch (Throwable exception) {
+        throw invocationFailed(exception);
+      }
+    } else if (type == Boolean.TYPE) {
+      boolean b = Boolean.parseBoolean(value);
+      try {
+        setterHandle.invokeExact(bean, b);
+      } catch (Error error) {
+        throw error;
+      } catch (Throwable exception) {
+        throw invocationFailed(exception);
+      }
+    } else if (type == Float.TYPE) {
+      float f = Float.parseFloat(value);
+      try {
+        setterHandle.invokeExact(bean, f);
+      } catch (Error error) {
+        throw error;
+      } catch (Throwable exception) {
+        throw invocationFailed(exception);
+      }
+    } else {
+      long l = Long.parseLong(value);
+      try {
+        setterHandle.invokeExact(bean, l);
+      } catch (Error error) {
+        throw error;
+      } catch (Throwable exception) {
+        throw invocationFailed(exception);
+      }
+    }
+  }
+
+  // Rejects a value of the wrong type as Method.invoke does, instead of failing the cast of the handle
+  private static void checkArgument(Class<?> valueType, Object value) {
+    if (value != null && !valueType.isInstance(value)) {
+      throw new IllegalArgumentException("argument type mismatch");
+    }
+  }
+
+  // Wraps an exception thrown by an accessor called through its handle as MethodUtil does
+  private static RuntimeException invocationFailed(Throwable exception) {
+    return new RuntimeException(new InvocationTargetException(exception));
+  }
+
+  /**
+   * Verifies the existence of a property.
+   *
+   * @param key The property name.
+   *
+   * @return <tt>true</tt> if the property exists; <tt>false</tt>, otherwise.
+   */
+  @Override
+  public boolean containsKey(Object key) {
+    if (key == null) {
+      throw new NullPointerException();
+    }
+
+    return getType(key.toString()) != null;
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Tests the mutability of a property.
+   *
+   * @param key The property name.
+   *
+   * @return <tt>true</tt> if the property is read-only; <tt>false</tt>, otherwise.
+   */
+  public boolean isReadOnly(String key) {
+    if (key == null) {
+      throw new NullPointerException();
+    }
+
+    return localCache.getProperty(key).isReadOnly();
+  }
+
+  /**
+   * Returns the property model for the given property.
+   *
+   * @param key The property name.
+   *
+   * @return The named property model, or <tt>null</tt> if no such property exists.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> ObservableValue<T> getPropertyModel(String key) {
+    if (key == null) {
+      throw new NullPointerException();
+    }
+
+    Property property = localCache.getProperty(key);
+    return (ObservableValue<T>) invoke(property.model, property.modelHandle);
+  }
+
+  /**
+   * Returns the type of a property.
+   *
+   * @param key The property name.
+   */
+  public Class<?> getType(String key) {
+    if (key == null) {
+      throw new NullPointerException();
+    }
+
+    return localCache.getProperty(key).type;
+  }
+
+  /**
+   * Returns the generic type of a property.
+   *
+   * @param key The property name.
+   */
+  public Type getGenericType(String key) {
+    if (key == null) {
+      throw new NullPointerException();
+    }
+
+    return localCache.getProperty(key).genericType;
+  }
+
+  /**
+   * Returns the item type of a list property, resolved once per class.
+   *
+   * @param key The property name.
+   */
+  Class<?> getListItemType(String key) {
+    return localCache.getProperty(key).getListItemType();
+  }
+
+  /**
+   * Returns the value type of a map property, resolved once per class.
+   *
+   * @param key The property name.
+   */
+  Class<?> getMapValueType(String key) {
+    return localCache.getProperty(key).getMapValueType();
+  }
+
+  /**
+   * Returns the type of a property of the given class, or <tt>null</tt> if it has no getter.
+   *
+   * @param type The bean class.
+   * @param key The property name.
+   */
+  static Class<?> getPropertyType(Class<?> type, String key) {
+    MethodCache cache = getClassMethodCache(type);
+    return cache == null ? null : cache.getProperty(key).type;
+  }
+
+  /**
+   * Returns the getter of a property of the given class, or <tt>null</tt> if it has none.
+   *
+   * @param type The bean class.
+   * @param key The property name.
+   */
+  static Method getGetter(Class<?> type, String key) {
+    MethodCache cache = getClassMethodCache(type);
+    return cache == null ? null : cache.getProperty(key).getter;
+  }
+
+  /**
+   * Returns the setter of a property of the given class, or <tt>null</tt> if it is read-only.
+   *
+   * @param type The bean class.
+   * @param key The property name.
+   */
+  static Method getSetter(Class<?> type, String key) {
+    MethodCache cache = getClassMethodCache(type);
+    return cache == null ? null : cache.getProperty(key).setter;
+  }
+
+  /**
+   * Returns the item type of a list property of the given class, resolved once per class.
+   *
+   * @param type The bean class.
+   * @param key The property name.
+   */
+  static Class<?> getListItemType(Class<?> type, String key) {
+    MethodCache cache = getClassMethodCache(type);
+    return cache == null ? null : cache.getProperty(key).getListItemType();
+  }
+
+  /**
+   * Tests whether a property of the given class is a list without a setter.
+   *
+   * @param type The bean class.
+   * @param key The property name.
+   */
+  static boolean isReadOnlyList(Class<?> type, String key) {
+    MethodCache cache = getClassMethodCache(type);
+    if (cache == null) {
+      return false;
+    }
+    Property property = cache.getProperty(key);
+    return property.type != null && property.setter == null && List.class.isAssignableFrom(property.type);
+  }
+
+  @Override
+  public boolean equals(Object object) {
+    boolean equals = false;
+
+    if (object instanceof BeanAdapter) {
+      BeanAdapter beanAdapter = (BeanAdapter) object;
+      equals = (bean == beanAdapter.bean);
+    }
+
+    return equals;
+  }
+
+  @Override
+  public int hashCode() {
+    return (bean == null) ? -1 : bean.hashCode();
+  }
+
+  /**
+   * Coerces a value to a given type. The conversion of a value class to a type is resolved once
+   * and reused, see {@link #registerConverter(Class, Class, Function)}.
+   *
+   * @param value
+   * @param type
+   *
+   * @return The coerced value.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> T coerce(Object value, Class<? extends T> type) {
+    if (type == null) {
+      throw new NullPointerException();
+    }
+
+    if (value == null) {
+      // Null values can only be coerced to null
+      return null;
+    }
+
+    return (T) Coercion.coerce(value, type);
+  }
+
+  /**
+   * Registers the converter of the given value class to the given type, used by
+   * {@link #coerce(Object, Class)} for values of the class and its subclasses that are not already
+   * of the type. A registered converter takes precedence over the built-in conversions and
+   * <tt>valueOf</tt> methods. Converters are held until unregistered or until
+   * {@link FXMLLoader#clearCaches(ClassLoader)} is called for the class loader of either class.
+   *
+   * @param valueType The class of the values to convert.
+   * @param type The type to convert to.
+   * @param converter
+   */
+  public static <S, T> void registerConverter(Class<S> valueType, Class<T> type,
+      Function<? super S, ? extends T> converter) {
+    if (valueType == null || type == null || converter == null) {
+      throw new NullPointerException();
+    }
+
+    Coercion.register(valueType, type, converter);
+  }
+
+  /**
+   * Removes the converter registered for the given value class and type.
+   *
+   * @param valueType
+   * @param type
+   */
+  public static void unregisterConverter(Class<?> valueType, Class<?> type) {
+    if (valueType == null || type == null) {
+      throw new NullPointerException();
+    }
+
+    Coercion.unregister(valueType, type);
+  }
+
+  /**
+   * Invokes the static getter method for the given property.
+   *
+   * @param target The object to which the property is attached.
+   *
+   * @param sourceType The class that defines the property.
+   *
+   * @param key The property name.
+   *
+   * @return The value returned by the method, or <tt>null</tt> if no such method exists.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> T get(Object target, Class<?> sourceType, String key) {
+    T value = null;
+
+    StaticProperty property = getStaticProperty(sourceType, key, target.getClass());
+    Method getterMethod = property.getter;
+
+    if (getterMethod != null) {
+      if (property.getterHandle != null && System.getSecurityManager() == null) {
+        try {
+          value = (T) property.getterHandle.invokeExact(target);
+        } catch (Error error) {
+          throw error;
+        } catch (Throwable exception) {
+          throw invocationFailed(exception);
+        }
+      } else {
+        try {
+          value = (T) MethodUtil.invoke(getterMethod, null, new Object[] { target });
+        } catch (InvocationTargetException exception) {
+          throw new RuntimeException(exception);
+        } catch (IllegalAccessException exception) {
+          throw new RuntimeException(exception);
+        }
+      }
+    }
+
+    return value;
+  }
+
+  /**
+   * Invokes a static setter method for the given property. If the value is <tt>null</tt> or there
+   * is no explicit setter for a given type, the {@link #coerce(Object, Class)} method is used to
+   * attempt to convert the value to the actual property type (defined by the return value of the
+   * getter method).
+   *
+   * @param target The object to which the property is or will be attached.
+   *
+   * @param sourceType The class that defines the property.
+   *
+   * @param key The property name.
+   *
+   * @param value The new property value.
+   *
+   * @throws PropertyNotFoundException If the given static property does not exist or is read-only.
+   */
+  public static void put(Object target, Class<?> sourceType, String key, Object value) {
+    StaticProperty property = getStaticProperty(sourceType, key, target.getClass());
+
+    StaticSetter setter = null;
+    if (value != null) {
+      setter = property.getSetter(value.getClass());
+    }
+
+    if (setter == null) {
+      // Get the property type and attempt to coerce the value to it
+      Class<?> propertyType = property.type;
+
+      if (propertyType != null) {
+        setter = property.getSetter(propertyType);
+        value = coerce(value, propertyType);
+      }
+    }
+
+    if (setter == null) {
+      throw new PropertyNotFoundException("Static property \"" + key + "\" does not exist"
+          + " or is read-only.");
+    }
+
+    // Invoke the setter
+    if (setter.handle != null && System.getSecurityManager() == null) {
+      if (value == null && setter.primitive) {
+        throw new IllegalArgumentException("Cannot set " + key + " to null.");
+      }
+      checkArgument(setter.valueType, value);
+      try {
+        setter.handle.invokeExact(target, value);
+      } catch (Error error) {
+        throw error;
+      } catch (Throwable exception) {
+        throw invocationFailed(exception);
+      }
+    } else {
+      try {
+        MethodUtil.invoke(setter.method, null, new Object[] { target, value });
+      } catch (InvocationTargetException exception) {
+        throw new RuntimeException(exception);
+      } catch (IllegalAccessException exception) {
+        throw new RuntimeException(exception);
+      }
+    }
+  }
+
+  /**
+   * Tests the existence of a static property.
+   *
+   * @param sourceType The class that defines the property.
+   *
+   * @param key The property name.
+   *
+   * @param targetType The type of the object to which the property applies.
+   *
+   * @return <tt>true</tt> if the property exists; <tt>false</tt>, otherwise.
+   */
+  public static boolean isDefined(Class<?> sourceType, String key, Class<?> targetType) {
+    return (getStaticProperty(sourceType, key, targetType).getter != null);
+  }
+
+  /**
+   * Returns the type of a static property.
+   *
+   * @param sourceType The class that defines the property.
+   *
+   * @param key The property name.
+   *
+   * @param targetType The type of the object to which the property applies.
+   */
+  public static Class<?> getType(Class<?> sourceType, String key, Class<?> targetType) {
+    return getStaticProperty(sourceType, key, targetType).type;
+  }
+
+  /**
+   * Returns the generic type of a static property.
+   *
+   * @param sourceType The class that defines the property.
+   *
+   * @param key The property name.
+   *
+   * @param targetType The type of the object to which the property applies.
+   */
+  public static Type getGenericType(Class<?> sourceType, String key, Class<?> targetType) {
+    return getStaticProperty(sourceType, key, targetType).genericType;
+  }
+
+  /**
+   * Determines the type of a list item.
+   *
+   * @param listType
+   */
+  public static Class<?> getListItemType(Type listType) {
+    Type itemType = getGenericListItemType(listType);
+
+    if (itemType instanceof ParameterizedType) {
+      itemType = ((ParameterizedType) itemType).getRawType();
+    }
+
+    return (Class<?>) itemType;
+  }
+
+  /**
+   * Determines the type of a map value.
+   *
+   * @param mapType
+   */
+  public static Class<?> getMapValueType(Type mapType) {
+    Type valueType = getGenericMapValueType(mapType);
+
+    if (valueType instanceof ParameterizedType) {
+      valueType = ((ParameterizedType) valueType).getRawType();
+    }
+
+    return (Class<?>) valueType;
+  }
+
+  /**
+   * Determines the type of a list item.
+   *
+   * @param listType
+   */
+  public static Type getGenericListItemType(Type listType) {
+    Type itemType = null;
+
+    Type parentType = listType;
+    while (parentType != null) {
+      if (parentType instanceof ParameterizedType) {
+        ParameterizedType parameterizedType = (ParameterizedType) parentType;
+        Class<?> rawType = (Class<?>) parameterizedType.getRawType();
+
+        if (List.class.isAssignableFrom(rawType)) {
+          itemType = parameterizedType.getActualTypeArguments()[0];
+        }
+
+        break;
+      }
+
+      Class<?> classType = (Class<?>) parentType;
+      Type[] genericInterfaces = classType.getGenericInterfaces();
+
+      for (int i = 0; i < genericInterfaces.length; i++) {
+        Type genericInterface = genericInterfaces[i];
+
+        if (genericInterface instanceof ParameterizedType) {
+          ParameterizedType parameterizedType = (ParameterizedType) genericInterface;
+          Class<?> interfaceType = (Class<?>) parameterizedType.getRawType();
+
+          if (List.class.isAssignableFrom(interfaceType)) {
+            itemType = parameterizedType.getActualTypeArguments()[0];
+            break;
+          }
+        }
+      }
+
+      if (itemType != null) {
+        break;
+      }
+
+      parentType = classType.getGenericSuperclass();
+    }
+
+    if (itemType != null && itemType instanceof TypeVariable<?>) {
+      itemType = Object.class;
+    }
+
+    return itemType;
+  }
+
+  /**
+   * Determines the type of a map value.
+   *
+   * @param mapType
+   */
+  public static Type getGenericMapValueType(Type mapType) {
+    Type valueType = null;
+
+    Type parentType = mapType;
+    while (parentType != null) {
+      if (parentType instanceof ParameterizedType) {
+        ParameterizedType parameterizedType = (ParameterizedType) parentType;
+        Class<?> rawType = (Class<?>) parameterizedType.getRawType();
+
+        if (Map.class.isAssignableFrom(rawType)) {
+          valueType = parameterizedType.getActualTypeArguments()[1];
+        }
+
+        break;
+      }
+
+      Class<?> classType = (Class<?>) parentType;
+      Type[] genericInterfaces = classType.getGenericInterfaces();
+
+      for (int i = 0; i < genericInterfaces.length; i++) {
+        Type genericInterface = genericInterfaces[i];
+
+        if (genericInterface instanceof ParameterizedType) {
+          ParameterizedType parameterizedType = (ParameterizedType) genericInterface;
+          Class<?> interfaceType = (Class<?>) parameterizedType.getRawType();
+
+          if (Map.class.isAssignableFrom(interfaceType)) {
+            valueType = parameterizedType.getActualTypeArguments()[1];
+            break;
+          }
+        }
+      }
+
+      if (valueType != null) {
+        break;
+      }
+
+      parentType = classType.getGenericSuperclass();
+    }
+
+    if (valueType != null && valueType instanceof TypeVariable<?>) {
+      valueType = Object.class;
+    }
+
+    return valueType;
+  }
+
+  /**
+   * Returns the value of a named constant.
+   *
+   * @param type The type that defines the constant.
+   *
+   * @param name The name of the constant.
+   */
+  public static Object getConstantValue(Class<?> type, String name) {
+    if (type == null) {
+      throw new IllegalArgumentException();
+    }
+
+    if (name == null) {
+      throw new IllegalArgumentException();
+    }
+
+    // Constants never change, so they are read once
+    Map<String, Object> typeConstants = constants.get(type);
+    Object value = typeConstants.get(name);
+    if (value != null) {
+      ReflectUtil.checkPackageAccess(type);
+      return value == NULL_CONSTANT ? null : value;
+    }
+
+    Field field;
+    try {
+      field = FieldUtil.getField(type, name);
+    } catch (NoSuchFieldException exception) {
+      throw new IllegalArgumentException(exception);
+    }
+
+    int fieldModifiers = field.getModifiers();
+    if ((fieldModifiers & Modifier.STATIC) == 0
+        || (fieldModifiers & Modifier.FINAL) == 0) {
+      throw new IllegalArgumentException("Field is not a constant.");
+    }
+
+    try {
+      value = field.get(null);
+    } catch (IllegalAccessException exception) {
+      throw new IllegalArgumentException(exception);
+    }
+
+    typeConstants.put(name, value == null ? NULL_CONSTANT : value);
+    return value;
+  }
+
+  private static StaticProperty getStaticProperty(Class<?> sourceType, String key,
+      Class<?> targetType) {
+    if (sourceType == null || key == null) {
+      throw new NullPointerException();
+    }
+
+    Map<Class<?>, Map<String, StaticProperty>> classProperties;
+    Class<?> other;
+    if (targetType == null) {
+      return new StaticProperty(sourceType, key, targetType);
+    } else if (ClassCache.isVisible(sourceType, targetType)) {
+      classProperties = staticPropertiesByTarget.get(targetType);
+      other = sourceType;
+    } else if (ClassCache.isVisible(targetType, sourceType)) {
+      classProperties = staticPropertiesBySource.get(sourceType);
+      other = targetType;
+    } else {
+      // Neither class can hold the other
+      return new StaticProperty(sourceType, key, targetType);
+    }
+    Map<String, StaticProperty> properties = classProperties.get(other);
+    if (properties == null) {
+      properties = classProperties.computeIfAbsent(other, k -> new ConcurrentHashMap<>());
+    }
+    StaticProperty property = properties.get(key);
+    if (property == null) {
+      property = properties.computeIfAbsent(key, k -> new StaticProperty(sourceType, k, targetType));
+    }
+    return property;
+  }
+
+  private static Method getStaticGetterMethod(Class<?> sourceType, String key,
+      Class<?> targetType) {
+    if (sourceType == null) {
+      throw new NullPointerException();
+    }
+
+    if (key == null) {
+      throw new NullPointerException();
+    }
+
+    Method method = null;
+
+    if (targetType != null) {
+      key = Character.toUpperCase(key.charAt(0)) + key.substring(1);
+
+      String getMethodName = GET_PREFIX + key;
+      String isMethodName = IS_PREFIX + key;
+
+      try {
+        method = MethodUtil.getMethod(sourceType, getMethodName, new Class[] { targetType });
+      } catch (NoSuchMethodException exception) {
+        // No-op
+      }
+
+      if (method == null) {
+        try {
+          method = MethodUtil.getMethod(sourceType, isMethodName, new Class[] { targetType });
+        } catch (NoSuchMethodException exception) {
+          // No-op
+        }
+      }
+
+      // Check for interfaces
+      if (method == null) {
+        Class<?>[] interfaces = targetType.getInterfaces();
+        for (int i = 0; i < interfaces.length; i++) {
+          try {
+            method = MethodUtil.getMethod(sourceType, getMethodName, new Class[] { interfaces[i] });
+          } catch (NoSuchMethodException exception) {
+            // No-op
+          }
+
+          if (method == null) {
+            try {
+              method = MethodUtil.getMethod(sourceType, isMethodName, new Class[] { interfaces[i] });
+            } catch (NoSuchMethodException exception) {
+              // No-op
+            }
+          }
+
+          if (method != null) {
+            break;
+          }
+        }
+      }
+
+      if (method == null) {
+        method = getStaticGetterMethod(sourceType, key, targetType.getSuperclass());
+      }
+    }
+
+    return method;
+  }
+
+  static Method getStaticSetterMethod(Class<?> sourceType, String key,
+      Class<?> valueType, Class<?> targetType) {
+    if (sourceType == null) {
+      throw new NullPointerException();
+    }
+
+    if (key == null) {
+      throw new NullPointerException();
+    }
+
+    if (valueType == null) {
+      throw new NullPointerException();
+    }
+
+    Method method = null;
+
+    if (targetType != null) {
+      key = Character.toUpperCase(key.charAt(0)) + key.substring(1);
+
+      String setMethodName = SET_PREFIX + key;
+      try {
+        method = MethodUtil.getMethod(sourceType, setMethodName, new Class[] { targetType, valueType });
+      } catch (NoSuchMethodException exception) {
+        // No-op
+      }
+
+      // Check for interfaces
+      if (method == null) {
+        Class<?>[] interfaces = targetType.getInterfaces();
+        for (int i = 0; i < interfaces.length; i++) {
+          try {
+            method = MethodUtil.getMethod(sourceType, setMethodName, new Class[] { interfaces[i], valueType });
+          } catch (NoSuchMethodException exception) {
+            // No-op
+          }
+
+          if (method != null) {
+            break;
+          }
+        }
+      }
+
+      if (method == null) {
+        method = getStaticSetterMethod(sourceType, key, valueType, targetType.getSuperclass());
+      }
+    }
+
+    return method;
+  }
+
+  static String toAllCaps(String value) {
+    if (value == null) {
+      throw new NullPointerException();
+    }
+
+    StringBuilder allCapsBuilder = new StringBuilder();
+
+    for (int i = 0, n = value.length(); i < n; i++) {
+      char c = value.charAt(i);
+
+      if (Character.isUpperCase(c)) {
+        allCapsBuilder.append('_');
+      }
+
+      allCapsBuilder.append(Character.toUpperCase(c));
+    }
+
+    return allCapsBuilder.toString();
+  }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2019 XDean
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xdean.fastfxml;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import sun.reflect.misc.MethodUtil;
+import sun.reflect.misc.ReflectUtil;
+import xdean.fastfxml.FXMLCache.ClassCache;
+
+/**
+ * The converters of {@link BeanAdapter#coerce(Object, Class)}. The converter of a pair of value
+ * class and target class is resolved once: a registered converter, a built-in conversion, a
+ * constant lookup for enums, or the <tt>valueOf</tt> method of the target class.
+ */
+final class Coercion {
+  private Coercion() {
+  }
+
+  // target class -> value class -> converter
+  private static final ClassCache<ConcurrentMap<Class<?>, Function<Object, Object>>> converters = new ClassCache<>(
+      type -> new ConcurrentHashMap<>());
+  // target class -> value class -> converter, registered by the application, primitive classes boxed
+  private static final Map<Class<?>, Map<Class<?>, Function<Object, Object>>> registered = new ConcurrentHashMap<>();
+  // Incremented on each change of the registered converters
+  private static final AtomicInteger version = new AtomicInteger();
+  // enum class -> name or camel case name -> constant
+  private static final ClassCache<Map<String, Object>> enumConstants = new ClassCache<>(Coercion::createEnumConstants);
+
+  static Object coerce(Object value, Class<?> type) {
+    return getCachedConverter(value.getClass(), type).apply(value);
+  }
+
+  /**
+   * Returns the converter of the given value class to the given type, resolved once.
+   */
+  static Function<Object, Object> getCachedConverter(Class<?> valueType, Class<?> type) {
+    ConcurrentMap<Class<?>, Function<Object, Object>> typeConverters = converters.get(type);
+    Function<Object, Object> converter = typeConverters.get(valueType);
+    if (converter == null) {
+      int stamp = version.get();
+      converter = getConverter(valueType, type);
+      // A value class that may be unloaded before the target class is not kept
+      if (ClassCache.isVisible(valueType, type)) {
+        typeConverters.put(valueType, converter);
+        // The converter may be stale if a registration changed since, and cleared the map before the put
+        if (version.get() != stamp) {
+          typeConverters.remove(valueType, converter);
+        }
+      }
+    }
+    return converter;
+  }
+
+  /**
+   * Returns the number of changes of the registered converters so far.
+   */
+  static int getVersion() {
+    return version.get();
+  }
+
+  @SuppressWarnings("unchecked")
+  static <S, T> void register(Class<S> valueType, Class<T> type, Function<? super S, ? extends T> converter) {
+    synchronized (registered) {
+      registered.computeIfAbsent(box(type), k -> new HashMap<>()).put(box(valueType),
+          (Function<Object, Object>) converter);
+      version.incrementAndGet();
+    }
+    clearConverters(type);
+  }
+
+  static void unregister(Class<?> valueType, Class<?> type) {
+    synchronized (registered) {
+      Map<Class<?>, Function<Object, Object>> typeConverters = registered.get(box(type));
+      if (typeConverters == null || typeConverters.remove(box(valueType)) == null) {
+        return;
+      }
+      if (typeConverters.isEmpty()) {
+        registered.remove(box(type));
+      }
+      version.incrementAndGet();
+    }
+    clearConverters(type);
+  }
+
+  /**
+   * Returns whether a converter to the given type, or to its primitive or boxed class, is
+   * registered.
+   */
+  static boolean isRegistered(Class<?> type) {
+    return registered.containsKey(box(type));
+  }
+
+  // A primitive class and its boxed class share their registered converters
+  private static void clearConverters(Class<?> type) {
+    converters.get(box(type)).clear();
+    converters.get(MethodType.methodType(type).unwrap().returnType()).clear();
+  }
+
+  private static Class<?> box(Class<?> type) {
+    return MethodType.methodType(type).wrap().returnType();
+  }
+
+  static void clear(ClassLoader classLoader) {
+    synchronized (registered) {
+      Iterator<Map.Entry<Class<?>, Map<Class<?>, Function<Object, Object>>>> iterator = registered.entrySet()
+          .iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<Class<?>, Map<Class<?>, Function<Object, Object>>> entry = iterator.next();
+        if (ClassCache.isLoadedBy(entry.getKey(), classLoader)) {
+          iterator.remove();
+        } else {
+          entry.getValue().keySet().removeIf(t -> ClassCache.isLoadedBy(t, classLoader));
+        }
+      }
+      version.incrementAndGet();
+    }
+  }
+
+  private static Function<Object, Object> getConverter(Class<?> valueType, Class<?> type) {
+    if (type.isAssignableFrom(valueType)) {
+      // Value doesn't require coercion
+      return value -> value;
+    }
+    Function<Object, Object> converter = getRegisteredConverter(valueType, type);
+    if (converter != null) {
+      return converter;
+    }
+    if (type == Boolean.class || type == Boolean.TYPE) {
+      return value -> Boolean.valueOf(value.toString());
+    } else if (type == Character.class || type == Character.TYPE) {
+      return value -> value.toString().charAt(0);
+    } else if (type == Byte.class || type == Byte.TYPE) {
+      return Number.class.isAssignableFrom(valueType)
+          ? value -> ((Number) value).byteValue()
+          : value -> Byte.valueOf(value.toString());
+    } else if (type == Short.class || type == Short.TYPE) {
+      return Number.class.isAssignableFrom(valueType)
+          ? value -> ((Number) value).shortValue()
+          : value -> Short.valueOf(value.toString());
+    } else if (type == Integer.class || type == Integer.TYPE) {
+      return Number.class.isAssignableFrom(valueType)
+          ? value -> ((Number) value).intValue()
+          : value -> Integer.valueOf(value.toString());
+    } else if (type == Long.class || type == Long.TYPE) {
+      return Number.class.isAssignableFrom(valueType)
+          ? value -> ((Number) value).longValue()
+          : value -> Long.valueOf(value.toString());
+    } else if (type == BigInteger.class) {
+      return Number.class.isAssignableFrom(valueType)
+          ? value -> BigInteger.valueOf(((Number) value).longValue())
+          : value -> new BigInteger(value.toString());
+    } else if (type == Float.class || type == Float.TYPE) {
+      return Number.class.isAssignableFrom(valueType)
+          ? value -> ((Number) value).floatValue()
+          : value -> Float.valueOf(value.toString());
+    } else if (type == Double.class || type == Double.TYPE) {
+      return Number.class.isAssignableFrom(valueType)
+          ? value -> ((Number) value).doubleValue()
+          : value -> Double.valueOf(value.toString());
+    } else if (type == Number.class) {
+      return value -> {
+        String number = value.toString();
+        if (number.contains(".")) {
+          return Double.valueOf(number);
+        } else {
+          return Long.valueOf(number);
+        }
+      };
+    } else if (type == BigDecimal.class) {
+      return Number.class.isAssignableFrom(valueType)
+          ? value -> BigDecimal.valueOf(((Number) value).doubleValue())
+          : value -> new BigDecimal(value.toString());
+    } else if (type == Class.class) {
+      return value -> {
+        try {
+          final String className = value.toString();
+          ReflectUtil.checkPackageAccess(className);
+          final ClassLoader cl = Thread.currentThread().getContextClassLoader();
+          return Class.forName(className, false, cl);
+        } catch (ClassNotFoundException exception) {
+          throw new IllegalArgumentException(exception);
+        }
+      };
+    }
+
+    Function<Object, Object> valueOf = getValueOfConverter(valueType, type);
+    if (type.isEnum() && valueType == String.class) {
+      Map<String, Object> constants = enumConstants.get(type);
+      return value -> {
+        Object constant = constants.get(value);
+        return constant != null ? constant : valueOf.apply(value);
+      };
+    }
+    return valueOf;
+  }
+
+  private static Function<Object, Object> getRegisteredConverter(Class<?> valueType, Class<?> type) {
+    synchronized (registered) {
+      Map<Class<?>, Function<Object, Object>> typeConverters = registered.get(box(type));
+      if (typeConverters == null) {
+        return null;
+      }
+      valueType = box(valueType);
+      for (Class<?> t = valueType; t != null; t = t.getSuperclass()) {
+        Function<Object, Object> converter = typeConverters.get(t);
+        if (converter != null) {
+          return converter;
+        }
+      }
+      for (Map.Entry<Class<?>, Function<Object, Object>> entry : typeConverters.entrySet()) {
+        if (entry.getKey().isAssignableFrom(valueType)) {
+          return entry.getValue();
+        }
+      }
+      return null;
+    }
+  }
+
+  private static Function<Object, Object> getValueOfConverter(Class<?> valueType, Class<?> type) {
+    Method valueOfMethod = null;
+
+    while (valueOfMethod == null
+        && valueType != null) {
+      try {
+        ReflectUtil.checkPackageAccess(type);
+        valueOfMethod = type.getDeclaredMethod(BeanAdapter.VALUE_OF_METHOD_NAME, valueType);
+      } catch (NoSuchMethodException exception) {
+        // No-op
+      }
+
+      if (valueOfMethod == null) {
+        valueType = valueType.getSuperclass();
+      }
+    }
+
+    if (valueOfMethod == null) {
+      return value -> {
+        throw new IllegalArgumentException("Unable to coerce " + value + " to " + type + ".");
+      };
+    }
+
+    Method method = valueOfMethod;
+    boolean isEnum = type.isEnum();
+    return value -> {
+      if (isEnum
+          && value instanceof String
+          && Character.isLowerCase(((String) value).charAt(0))) {
+        value = BeanAdapter.toAllCaps((String) value);
+      }
+
+      try {
+        ReflectUtil.checkPackageAccess(type);
+        return MethodUtil.invoke(method, null, new Object[] { value });
+      } catch (IllegalAccessException exception) {
+        throw new RuntimeException(exception);
+      } catch (InvocationTargetException exception) {
+        throw new RuntimeException(exception);
+      } catch (SecurityException exception) {
+        throw new RuntimeException(exception);
+      }
+    };
+  }
+
+  // The names of the constants, and the camel case names that toAllCaps() turns into them
+  private static Map<String, Object> createEnumConstants(Class<?> type) {
+    Map<String, Object> constants = new HashMap<>();
+    Object[] values = type.getEnumConstants();
+    if (values == null) {
+      return constants;
+    }
+    for (Object value : values) {
+      String name = ((Enum<?>) value).name();
+      if (!name.isEmpty() && !Character.isLowerCase(name.charAt(0))) {
+        constants.put(name, value);
+      }
+      String camelCase = toCamelCase(name);
+      if (!camelCase.isEmpty()
+          && Character.isLowerCase(camelCase.charAt(0))
+          && BeanAdapter.toAllCaps(camelCase).equals(name)) {
+        constants.put(camelCase, value);
+      }
+    }
+    return constants;
+  }
+
+  private static String toCamelCase(String name) {
+    StringBuilder camelCaseBuilder = new StringBuilder(name.length());
+    boolean upper = false;
+    for (int i = 0, n = name.length(); i < n; i++) {
+      char c = name.charAt(i);
+      if (c == '_') {
+        upper = true;
+      } else {
+        camelCaseBuilder.append(upper ? Character.toUpperCase(c) : Character.toLowerCase(c));
+        upper = false;
+      }
+    }
+    return camelCaseBuilder.toString();
+  }
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright 2019 XDean
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xdean.fastfxml;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import javafx.fxml.FXML;
+import javafx.fxml.Initializable;
+import javafx.fxml.LoadException;
+import javafx.util.Callback;
+
+/**
+ * Base class of the classes generated from FXML documents at build time. A generated class builds
+ * the object hierarchy of its document with direct constructor, setter and field access, and is
+ * used like a {@link FXMLLoader} bound to that document:
+ *
+ * <pre>
+ * MainFXML fxml = new MainFXML();
+ * fxml.setResources(resources);
+ * Parent root = fxml.load();
+ * MainController controller = fxml.getController();
+ * </pre>
+ *
+ * Documents the generator can't compile (scripts, binding expressions) produce a class that
+ * delegates to {@link FXMLLoader}, so both kinds behave the same for callers.
+ */
+public abstract class CompiledFXML {
+  private final URL location;
+  private ResourceBundle resources = null;
+  private Object root = null;
+  private Object controller = null;
+  private Callback<Class<?>, Object> controllerFactory = null;
+  private ClassLoader classLoader = null;
+
+  private final Map<String, Object> namespace = new HashMap<>();
+
+  /**
+   * @param location The location of the compiled document, used to resolve relative paths.
+   */
+  protected CompiledFXML(URL location) {
+    this.location = location;
+  }
+
+  /**
+   * Returns the location of the compiled document.
+   */
+  public URL getLocation() {
+    return location;
+  }
+
+  /**
+   * Returns the resources used to resolve resource key attribute values.
+   */
+  public ResourceBundle getResources() {
+    return resources;
+  }
+
+  /**
+   * Sets the resources used to resolve resource key attribute values.
+   *
+   * @param resources
+   */
+  public void setResources(ResourceBundle resources) {
+    this.resources = resources;
+  }
+
+  /**
+   * Returns the root of the object hierarchy.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T getRoot() {
+    return (T) root;
+  }
+
+  /**
+   * Sets the root of the object hierarchy. Must be called prior to loading a document that uses
+   * <tt>&lt;fx:root&gt;</tt>.
+   *
+   * @param root
+   */
+  public void setRoot(Object root) {
+    this.root = root;
+  }
+
+  /**
+   * Returns the controller associated with the root object.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T getController() {
+    return (T) controller;
+  }
+
+  /**
+   * Sets the controller associated with the root object, see
+   * {@link FXMLLoader#setController(Object)}.
+   *
+   * @param controller
+   */
+  public void setController(Object controller) {
+    this.controller = controller;
+  }
+
+  /**
+   * Returns the controller factory used by this loader.
+   */
+  public Callback<Class<?>, Object> getControllerFactory() {
+    return controllerFactory;
+  }
+
+  /**
+   * Sets the controller factory used by this loader.
+   *
+   * @param controllerFactory
+   */
+  public void setControllerFactory(Callback<Class<?>, Object> controllerFactory) {
+    this.controllerFactory = controllerFactory;
+  }
+
+  /**
+   * Returns the class loader used to resolve absolute resource paths.
+   */
+  public ClassLoader getClassLoader() {
+    return classLoader == null ? getClass().getClassLoader() : classLoader;
+  }
+
+  /**
+   * Sets the class loader used to resolve absolute resource paths.
+   *
+   * @param classLoader
+   */
+  public void setClassLoader(ClassLoader classLoader) {
+    this.classLoader = classLoader;
+  }
+
+  /**
+   * Returns the objects declared with <tt>fx:id</tt> by the last load.
+   */
+  public Map<String, Object> getNamespace() {
+    return namespace;
+  }
+
+  /**
+   * Creates the object hierarchy.
+   *
+   * @return The loaded object hierarchy.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T load() throws IOException {
+    namespace.put(FXMLLoader.LOCATION_KEY, location);
+    namespace.put(FXMLLoader.RESOURCES_KEY, resources);
+    if (controller != null) {
+      namespace.put(FXMLLoader.CONTROLLER_KEYWORD, controller);
+    }
+    Object value;
+    try {
+      value = create();
+    } catch (LoadException exception) {
+      throw exception;
+    } catch (Exception exception) {
+      throw new LoadException("\n" + (location == null ? "unknown path" : location.getPath()) + "\n", exception);
+    }
+    if (root == null) {
+      root = value;
+    }
+    return (T) value;
+  }
+
+  /**
+   * Creates the object hierarchy of the document.
+   */
+  protected abstract Object create() throws Exception;
+
+  /**
+   * Loads the document with {@link FXMLLoader}. Used by the classes generated from documents that
+   * can't be compiled.
+   */
+  protected final Object loadWithFXMLLoader() throws IOException {
+    FXMLLoader fxmlLoader = new FXMLLoader(location, resources, null, controllerFactory);
+    fxmlLoader.setClassLoader(getClassLoader());
+    fxmlLoader.setRoot(root);
+    fxmlLoader.setController(controller);
+    Object value = fxmlLoader.load();
+    controller = fxmlLoader.getController();
+    namespace.putAll(fxmlLoader.getNamespace());
+    return value;
+  }
+
+  /**
+   * Creates the controller declared by <tt>fx:controller</tt>.
+   */
+  protected final <T> T createController(Class<T> type) throws Exception {
+    if (controller != null) {
+      throw new LoadException("Controller value already specified.");
+    }
+    Object value = controllerFactory == null ? type.newInstance() : controllerFactory.call(type);
+    controller = value;
+    namespace.put(FXMLLoader.CONTROLLER_KEYWORD, value);
+    return type.cast(value);
+  }
+
+  /**
+   * Returns the root set by {@link #setRoot(Object)}, for <tt>&lt;fx:root&gt;</tt>.
+   */
+  protected final <T> T requireRoot(Class<T> type) throws LoadException {
+    if (root == null) {
+      throw new LoadException("Root hasn't been set. Use method setRoot() before load.");
+    }
+    if (!type.isInstance(root)) {
+      throw new LoadException("Root is not an instance of " + type.getName() + ".");
+    }
+    return type.cast(root);
+  }
+
+  /**
+   * Resolves a path relative to the document location, as <tt>@path</tt> does.
+   */
+  protected final String resolve(String path) throws LoadException {
+    if (path.charAt(0) == '/') {
+      URL resource = getClassLoader().getResource(path.substring(1));
+      if (resource == null) {
+        throw new LoadException("Invalid resource: " + path + " not found on the classpath");
+      }
+      return resource.toString();
+    }
+    try {
+      return new URL(location, path).toString();
+    } catch (MalformedURLException exception) {
+      throw new LoadException(exception);
+    }
+  }
+
+  /**
+   * Looks up a resource key, as <tt>%key</tt> does.
+   */
+  protected final String resource(String key) throws LoadException {
+    return resource(resources, key);
+  }
+
+  /**
+   * Looks up a resource key in the given resources.
+   */
+  protected static String resource(ResourceBundle resources, String key) throws LoadException {
+    if (resources == null) {
+      throw new LoadException("No resources specified.");
+    }
+    if (!resources.containsKey(key)) {
+      throw new LoadException("Resource \"" + key + "\" not found.");
+    }
+    return resources.getString(key);
+  }
+
+  /**
+   * Coerces a value computed at load time, see {@link BeanAdapter#coerce(Object, Class)}.
+   */
+  protected static <T> T coerce(Object value, Class<? extends T> type) {
+    return BeanAdapter.coerce(value, type);
+  }
+
+  /**
+   * Injects the namespace into a controller set by {@link #setController(Object)} and initializes
+   * it. Used when the document does not declare <tt>fx:controller</tt>, so the controller type is
+   * unknown at build time.
+   */
+  protected final void initializeController() throws Exception {
+    if (controller == null) {
+      return;
+    }
+    // As FXMLLoader does, an Initializable gets its location and resources as arguments
+    boolean initializable = controller instanceof Initializable;
+    for (Class<?> type = controller.getClass(); type != Object.class; type = type.getSuperclass()) {
+      for (Field field : type.getDeclaredFields()) {
+        int modifiers = field.getModifiers();
+        if ((modifiers & (Modifier.STATIC | Modifier.FINAL)) != 0
+            || (!(Modifier.isPublic(type.getModifiers()) && Modifier.isPublic(modifiers))
+                && field.getAnnotation(FXML.class) == null)) {
+          continue;
+        }
+        String name = field.getName();
+        Object value;
+        if (namespace.containsKey(name)) {
+          value = namespace.get(name);
+        } else if (!initializable && name.equals(FXMLLoader.LOCATION_KEY)) {
+          value = location;
+        } else if (!initializable && name.equals(FXMLLoader.RESOURCES_KEY)) {
+          value = resources;
+        } else {
+          continue;
+        }
+        set(field(type, name), controller, value);
+      }
+    }
+    if (initializable) {
+      ((Initializable) controller).initialize(location, resources);
+      return;
+    }
+    for (Class<?> type = controller.getClass(); type != Object.class; type = type.getSuperclass()) {
+      try {
+        Method method = type.getDeclaredMethod(FXMLLoader.INITIALIZE_METHOD_NAME);
+        if ((Modifier.isPublic(type.getModifiers()) && Modifier.isPublic(method.getModifiers()))
+            || method.getAnnotation(FXML.class) != null) {
+          invoke(method(type, FXMLLoader.INITIALIZE_METHOD_NAME), controller);
+        }
+        break;
+      } catch (NoSuchMethodException exception) {
+        // No-op
+      }
+    }
+  }
+
+  /**
+   * Returns an accessible declared field. Generated classes keep the result in a constant, so the
+   * lookup is done once per class rather than once per load.
+   */
+  protected static Field field(Class<?> type, String name) {
+    try {
+      Field field = type.getDeclaredField(name);
+      field.setAccessible(true);
+      return field;
+    } catch (NoSuchFieldException exception) {
+      throw new IllegalStateException(exception);
+    }
+  }
+
+  /**
+   * Returns an accessible declared method, see {@link #field(Class, String)}.
+   */
+  protected static Method method(Class<?> type, String name, Class<?>... parameterTypes) {
+    try {
+      Method method = type.getDeclaredMethod(name, parameterTypes);
+      method.setAccessible(true);
+      return method;
+    } catch (NoSuchMethodException exception) {
+      throw new IllegalStateException(exception);
+    }
+  }
+
+  protected static void set(Field field, Object target, Object value) throws IllegalAccessException {
+    field.set(target, value);
+  }
+
+  protected static Object invoke(Method method, Object target, Object... arguments) throws Exception {
+    try {
+      return method.invoke(target, arguments);
+    } catch (InvocationTargetException exception) {
+      Throwable cause = exception.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw exception;
+    }
+  }
+
+  /**
+   * Invokes a controller event handler method from an event handler.
+   */
+  protected static void handle(Method method, Object target, Object... arguments) {
+    try {
+      method.invoke(target, arguments);
+    } catch (InvocationTargetException exception) {
+      Throwable cause = exception.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    } catch (IllegalAccessException exception) {
+      throw new RuntimeException(exception);
+    }
+  }
+}
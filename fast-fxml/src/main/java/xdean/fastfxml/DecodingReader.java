@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 XDean
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xdean.fastfxml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A reader decoding an input stream like {@link java.io.InputStreamReader}, which can be reopened
+ * on another stream. The buffers and decoders are kept between uses, so a pooled instance reads a
+ * document without allocating.
+ * <p>
+ * The input stream belongs to the caller, {@link #close()} does not close it.
+ */
+final class DecodingReader extends Reader {
+  private static final int BUFFER_SIZE = 8192;
+
+  private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+  private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+  private final Map<Charset, CharsetDecoder> decoders = new HashMap<>();
+
+  private InputStream inputStream = null;
+  private CharsetDecoder decoder = null;
+  private boolean endOfInput;
+  private boolean flushed;
+
+  void open(InputStream inputStream, Charset charset) {
+    this.inputStream = inputStream;
+    decoder = decoders.computeIfAbsent(charset, c -> c.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE));
+    decoder.reset();
+    bytes.clear();
+    bytes.flip();
+    chars.clear();
+    chars.flip();
+    endOfInput = false;
+    flushed = false;
+  }
+
+  @Override
+  public int read(char[] cbuf, int off, int len) throws IOException {
+    if (inputStream == null) {
+      throw new IOException("Reader is not open.");
+    }
+    if (len == 0) {
+      return 0;
+    }
+    if (!chars.hasRemaining() && !fill()) {
+      return -1;
+    }
+    int n = Math.min(len, chars.remaining());
+    chars.get(cbuf, off, n);
+    return n;
+  }
+
+  // Decodes the next chunk, returns false at the end of the stream
+  private boolean fill() throws IOException {
+    chars.clear();
+    try {
+      while (chars.position() == 0) {
+        if (flushed) {
+          return false;
+        }
+        if (!endOfInput) {
+          bytes.compact();
+          int n = inputStream.read(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+          if (n < 0) {
+            endOfInput = true;
+          } else {
+            bytes.position(bytes.position() + n);
+          }
+          bytes.flip();
+        }
+        CoderResult result = decoder.decode(bytes, chars, endOfInput);
+        if (result.isError()) {
+          result.throwException();
+        }
+        if (endOfInput && result.isUnderflow() && decoder.flush(chars).isUnderflow()) {
+          flushed = true;
+        }
+      }
+      return true;
+    } finally {
+      chars.flip();
+    }
+  }
+
+  @Override
+  public void close() {
+    inputStream = null;
+  }
+}
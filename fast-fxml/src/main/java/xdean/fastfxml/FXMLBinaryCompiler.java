@@ -0,0 +1,93 @@
+/*
+ * Copyright 2019 XDean
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xdean.fastfxml;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Build step that writes a precompiled <tt>foo.fxmlb</tt> next to each <tt>foo.fxml</tt>. Loaders
+ * read them when {@link FXMLLoader#setUseBinary(boolean)} or the <tt>xdean.fastfxml.binary</tt>
+ * system property is enabled.
+ * <p>
+ * Usage: <tt>java xdean.fastfxml.FXMLBinaryCompiler &lt;file or directory&gt;...</tt>
+ */
+public final class FXMLBinaryCompiler {
+
+  private FXMLBinaryCompiler() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      System.err.println("Usage: FXMLBinaryCompiler <file or directory>...");
+      System.exit(1);
+    }
+
+    for (String arg : args) {
+      for (Path binary : compile(Paths.get(arg))) {
+        System.out.println(binary);
+      }
+    }
+  }
+
+  /**
+   * Compiles the given FXML file, or all FXML files under the given directory.
+   *
+   * @param path
+   * @return The written binary files.
+   */
+  public static List<Path> compile(Path path) throws IOException {
+    List<Path> sources;
+    if (Files.isDirectory(path)) {
+      try (Stream<Path> stream = Files.walk(path)) {
+        sources = stream.filter(p -> p.toString().endsWith(FXMLLoader.FXML_EXTENSION) && Files.isRegularFile(p))
+            .collect(Collectors.toList());
+      }
+    } else {
+      sources = new ArrayList<>();
+      sources.add(path);
+    }
+
+    List<Path> binaries = new ArrayList<>();
+    for (Path source : sources) {
+      binaries.add(compileFile(source));
+    }
+    return binaries;
+  }
+
+  private static Path compileFile(Path source) throws IOException {
+    String name = source.getFileName().toString();
+    if (!name.endsWith(FXMLLoader.FXML_EXTENSION)) {
+      throw new IllegalArgumentException(source + " is not a FXML file.");
+    }
+
+    FXMLTemplate template = FXMLTemplate.compile(source.toUri().toURL());
+    Path binary = source.resolveSibling(
+        name.substring(0, name.length() - FXMLLoader.FXML_EXTENSION.length()) + FXMLLoader.BINARY_EXTENSION);
+    try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(binary))) {
+      template.write(outputStream);
+    }
+    return binary;
+  }
+}
@@ -0,0 +1,559 @@
+/*
+ * Copyright 2019 XDean
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xdean.fastfxml;
+
+import java.io.InputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.Charset;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import xdean.fastfxml.Util.PackageClass;
+
+class FXMLCache {
+
+  private static final ThreadLocal<FXMLCache> global = new ThreadLocal<FXMLCache>() {
+    @Override
+    protected FXMLCache initialValue() {
+      return new FXMLCache();
+    }
+  };
+
+  static final FXMLCache getContext() {
+    return global.get();
+  }
+
+  // Class resolutions are shared by all threads, see getClassLoaderCache()
+  private static final ConcurrentMap<LoaderKey, ClassLoaderCache> classLoaders = new ConcurrentHashMap<>();
+  private static final ReferenceQueue<ClassLoader> classLoaderQueue = new ReferenceQueue<>();
+
+  // Identifies a class loader without holding it. A cleared key only equals itself.
+  private static final class LoaderKey extends WeakReference<ClassLoader> {
+    private final int hash;
+
+    LoaderKey(ClassLoader classLoader, ReferenceQueue<ClassLoader> queue) {
+      super(classLoader, queue);
+      hash = System.identityHashCode(classLoader);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      if (!(obj instanceof LoaderKey)) {
+        return false;
+      }
+      ClassLoader classLoader = get();
+      return classLoader != null && classLoader == ((LoaderKey) obj).get();
+    }
+  }
+
+  /**
+   * The default maximum number of classes of each {@link ClassCache}.
+   */
+  static final int CLASS_CACHE_SIZE = AccessController
+      .doPrivileged((PrivilegedAction<Integer>) () -> Integer.getInteger("xdean.fastfxml.classCacheSize", 4096));
+
+  // Loads nothing, as a null class loader can't be weakly referenced
+  private static final ClassLoaderCache nullClassLoaderCache = new ClassLoaderCache(null);
+
+  /**
+   * Values computed from classes, such as their reflective members. A value is kept on its class
+   * through a {@link ClassValue}, so it never holds the class loader of the class alive. When more
+   * classes than the maximum size have values, the least recently used are evicted.
+   * <p>
+   * Getting a value takes no lock, and computing the value of a class only blocks the threads
+   * getting the same class. Only the first use of a value and evictions lock, and the use order is
+   * approximated the way a clock does: a use marks the value, and eviction spares and unmarks the
+   * marked ones.
+   */
+  static final class ClassCache<V> {
+    private static final List<ClassCache<?>> instances = new CopyOnWriteArrayList<>();
+
+    // Identifies the value of a class in the use order, without holding the value
+    private static final class Key extends WeakReference<Class<?>> {
+      volatile boolean added = false;
+      volatile boolean used = false;
+
+      Key(Class<?> type, ReferenceQueue<Class<?>> queue) {
+        super(type, queue);
+      }
+    }
+
+    private static final class Entry<V> {
+      final Key key;
+      final V value;
+
+      Entry(Key key, V value) {
+        this.key = key;
+        this.value = value;
+      }
+    }
+
+    private final Function<Class<?>, V> function;
+    private final int maximumSize;
+    // The entry of a class, computed on its first use so that contains() never computes it
+    private static final class Holder<V> {
+      volatile Entry<V> entry = null;
+    }
+
+    private final ReferenceQueue<Class<?>> queue = new ReferenceQueue<>();
+    private final ClassValue<Holder<V>> values = new ClassValue<Holder<V>>() {
+      @Override
+      protected Holder<V> computeValue(Class<?> type) {
+        return new Holder<>();
+      }
+    };
+    // oldest first
+    private final LinkedHashSet<Key> keys = new LinkedHashSet<>();
+
+    ClassCache(Function<Class<?>, V> function) {
+      this(function, CLASS_CACHE_SIZE);
+    }
+
+    ClassCache(Function<Class<?>, V> function, int maximumSize) {
+      if (maximumSize < 1) {
+        throw new IllegalArgumentException("maximumSize is less than 1.");
+      }
+      this.function = function;
+      this.maximumSize = maximumSize;
+      instances.add(this);
+    }
+
+    V get(Class<?> type) {
+      Holder<V> holder = values.get(type);
+      Entry<V> entry = holder.entry;
+      if (entry == null) {
+        entry = compute(holder, type);
+      }
+      Key key = entry.key;
+      if (!key.added) {
+        add(key, type);
+      } else if (!key.used) {
+        key.used = true;
+      }
+      return entry.value;
+    }
+
+    private Entry<V> compute(Holder<V> holder, Class<?> type) {
+      synchronized (holder) {
+        Entry<V> entry = holder.entry;
+        if (entry == null) {
+          holder.entry = entry = new Entry<>(new Key(type, queue), function.apply(type));
+        }
+        return entry;
+      }
+    }
+
+    private void add(Key key, Class<?> type) {
+      synchronized (keys) {
+        if (!key.added) {
+          key.added = true;
+          keys.add(key);
+          expunge();
+          evict(type);
+        }
+      }
+    }
+
+    /**
+     * Returns whether the given class has a value, without computing it.
+     */
+    boolean contains(Class<?> type) {
+      return values.get(type).entry != null;
+    }
+
+    int size() {
+      synchronized (keys) {
+        expunge();
+        return keys.size();
+      }
+    }
+
+    void clear(ClassLoader classLoader) {
+      synchronized (keys) {
+        Iterator<Key> iterator = keys.iterator();
+        while (iterator.hasNext()) {
+          Class<?> type = iterator.next().get();
+          if (type == null || isLoadedBy(type, classLoader)) {
+            iterator.remove();
+            if (type != null) {
+              values.remove(type);
+            }
+          }
+        }
+      }
+    }
+
+    private void expunge() {
+      Reference<? extends Class<?>> key;
+      while ((key = queue.poll()) != null) {
+        keys.remove(key);
+      }
+    }
+
+    private void evict(Class<?> keep) {
+      // Used values are spared once, so two rounds always find an unused one
+      for (int spared = 0; keys.size() > maximumSize; ) {
+        Iterator<Key> iterator = keys.iterator();
+        Key key = iterator.next();
+        iterator.remove();
+        Class<?> type = key.get();
+        if (type == keep || (key.used && spared++ < 2 * maximumSize)) {
+          key.used = false;
+          keys.add(key);
+        } else if (type != null) {
+          values.remove(type);
+        }
+      }
+    }
+
+    /**
+     * Returns whether the given class lives at least as long as the class that would keep it.
+     */
+    static boolean isVisible(Class<?> type, Class<?> from) {
+      ClassLoader classLoader = type.getClassLoader();
+      if (classLoader == null) {
+        return true;
+      }
+      for (ClassLoader cl = from.getClassLoader(); cl != null; cl = cl.getParent()) {
+        if (cl == classLoader) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    static boolean isLoadedBy(Class<?> type, ClassLoader classLoader) {
+      for (ClassLoader cl = type.getClassLoader(); cl != null; cl = cl.getParent()) {
+        if (cl == classLoader) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    static void clearAll(ClassLoader classLoader) {
+      for (ClassCache<?> cache : instances) {
+        cache.clear(classLoader);
+      }
+    }
+  }
+
+  /**
+   * The classes resolved through one class loader. It is shared by all threads and lock-free, and
+   * keeps its class loader and classes weakly, so that it never holds a class loader alive.
+   * <p>
+   * The class names, the classes found missing and the import indexes are each bounded by the
+   * maximum size, and forgotten all at once when they reach it: they are only keyed by names, so
+   * unlike a {@link ClassCache} nothing else would ever remove them.
+   */
+  static final class ClassLoaderCache {
+    // Marks a class known to be missing from a package
+    private static final WeakReference<Class<?>> NOT_FOUND = new WeakReference<>(null);
+
+    private final WeakReference<ClassLoader> classLoader;
+    private final int maximumSize;
+    // simple class name -> package name -> class
+    private final ConcurrentMap<String, ConcurrentMap<String, WeakReference<Class<?>>>> classPackages =
+        new ConcurrentHashMap<>();
+    // the number of NOT_FOUND entries, approximately
+    private final AtomicInteger misses = new AtomicInteger();
+    private final ConcurrentMap<List<String>, ImportIndex> importIndexes = new ConcurrentHashMap<>();
+
+    ClassLoaderCache(ClassLoader classLoader) {
+      this(classLoader, CLASS_CACHE_SIZE);
+    }
+
+    ClassLoaderCache(ClassLoader classLoader, int maximumSize) {
+      if (maximumSize < 1) {
+        throw new IllegalArgumentException("maximumSize is less than 1.");
+      }
+      this.classLoader = new WeakReference<>(classLoader);
+      this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Returns the class of the given name in the first of the given packages containing it, or
+     * <tt>null</tt>.
+     */
+    Class<?> findClass(List<String> packages, String className) {
+      String relClassName = Util.subclassName(className);
+      ConcurrentMap<String, WeakReference<Class<?>>> classes = getPackages(relClassName);
+      for (String packageName : packages) {
+        Class<?> result = findClass(classes, packageName, relClassName);
+        if (result != null) {
+          return result;
+        }
+      }
+      return null;
+    }
+
+    Class<?> findClass(String name) {
+      PackageClass s = Util.splitClassName(name);
+      return findClass(getPackages(s.className), s.packageName, s.className);
+    }
+
+    // The classes of the given simple name, by package
+    private ConcurrentMap<String, WeakReference<Class<?>>> getPackages(String className) {
+      ConcurrentMap<String, WeakReference<Class<?>>> classes = classPackages.get(className);
+      if (classes == null) {
+        if (classPackages.size() >= maximumSize) {
+          classPackages.clear();
+          misses.set(0);
+        }
+        classes = classPackages.computeIfAbsent(className, k -> new ConcurrentHashMap<>());
+      }
+      return classes;
+    }
+
+    private Class<?> findClass(ConcurrentMap<String, WeakReference<Class<?>>> classes, String packageName,
+        String className) {
+      WeakReference<Class<?>> cache = classes.get(packageName);
+      if (cache == NOT_FOUND) {
+        return null;
+      }
+      Class<?> result = cache == null ? null : cache.get();
+      if (result != null) {
+        return result;
+      }
+      ClassLoader cl = classLoader.get();
+      if (cl == null) {
+        return null;
+      }
+      try {
+        result = cl.loadClass(packageName + "." + className);
+        classes.put(packageName, new WeakReference<>(result));
+        return result;
+      } catch (ClassNotFoundException e) {
+        if (misses.incrementAndGet() > maximumSize) {
+          clearMisses();
+        }
+        classes.put(packageName, NOT_FOUND);
+        return null;
+      }
+    }
+
+    /**
+     * Adds a class loaded in advance.
+     */
+    void add(Class<?> type) {
+      String name = type.getName();
+      int i = name.lastIndexOf('.');
+      if (i != -1) {
+        getPackages(name.substring(i + 1)).put(name.substring(0, i), new WeakReference<>(type));
+      }
+    }
+
+    /**
+     * Returns the index shared by all documents with the given imports.
+     *
+     * @param imports The import targets in document order, <tt>foo.bar.*</tt> or
+     *          <tt>foo.bar.Baz</tt>.
+     */
+    ImportIndex getImportIndex(List<String> imports) {
+      ImportIndex index = importIndexes.get(imports);
+      if (index == null) {
+        if (importIndexes.size() >= maximumSize) {
+          importIndexes.clear();
+        }
+        List<String> key = Collections.unmodifiableList(new ArrayList<>(imports));
+        index = importIndexes.computeIfAbsent(key, k -> new ImportIndex(this, k));
+      }
+      return index;
+    }
+
+    /**
+     * Forgets the classes found missing, so that they are looked up again.
+     */
+    void clearMisses() {
+      misses.set(0);
+      for (ConcurrentMap<String, WeakReference<Class<?>>> classes : classPackages.values()) {
+        classes.values().removeIf(r -> r == NOT_FOUND);
+      }
+    }
+  }
+
+  /**
+   * The classes visible by simple name to the documents with the same imports. Each name is
+   * resolved once for all of them; the imports themselves never change.
+   */
+  static final class ImportIndex {
+    private final ClassLoaderCache classLoaderCache;
+    private final List<String> packages = new ArrayList<>();
+    // simple name -> qualified name, of the classes imported one by one
+    private final Map<String, String> classNames = new HashMap<>();
+    private final ConcurrentMap<String, WeakReference<Class<?>>> types = new ConcurrentHashMap<>();
+
+    ImportIndex(ClassLoaderCache classLoaderCache, List<String> imports) {
+      this.classLoaderCache = classLoaderCache;
+      for (String target : imports) {
+        if (target.endsWith(".*")) {
+          packages.add(target.substring(0, target.length() - 2));
+        } else {
+          PackageClass s = Util.splitClassName(target);
+          if (s != null) {
+            classNames.put(target.substring(s.packageName.length() + 1), target);
+          }
+        }
+      }
+    }
+
+    /**
+     * Returns the class of the given unqualified name, or <tt>null</tt>.
+     */
+    Class<?> getType(String name) {
+      WeakReference<Class<?>> cache = types.get(name);
+      Class<?> type = cache == null ? null : cache.get();
+      if (type != null) {
+        return type;
+      }
+      String className = classNames.get(name);
+      type = className == null ? classLoaderCache.findClass(packages, name) : classLoaderCache.findClass(className);
+      if (type != null) {
+        types.put(name, new WeakReference<>(type));
+      }
+      return type;
+    }
+  }
+
+  /**
+   * Returns the process-wide class cache of the given class loader.
+   */
+  static ClassLoaderCache getClassLoaderCache(ClassLoader cl) {
+    if (cl == null) {
+      return nullClassLoaderCache;
+    }
+    ClassLoaderCache cache = classLoaders.get(new LoaderKey(cl, null));
+    if (cache == null) {
+      expungeClassLoaders();
+      cache = classLoaders.computeIfAbsent(new LoaderKey(cl, classLoaderQueue), k -> new ClassLoaderCache(cl));
+    }
+    return cache;
+  }
+
+  private static void expungeClassLoaders() {
+    Reference<? extends ClassLoader> key;
+    while ((key = classLoaderQueue.poll()) != null) {
+      classLoaders.remove(key);
+    }
+  }
+
+  /**
+   * Drops everything cached about the given class loader and the classes it or its descendants
+   * loaded.
+   */
+  static void clearCaches(ClassLoader cl) {
+    if (cl != null) {
+      classLoaders.remove(new LoaderKey(cl, null));
+    }
+    ClassCache.clearAll(cl);
+  }
+
+  static void clearMissingClasses(ClassLoader cl) {
+    ClassLoaderCache cache = cl == null ? nullClassLoaderCache : classLoaders.get(new LoaderKey(cl, null));
+    if (cache != null) {
+      cache.clearMisses();
+    }
+  }
+
+  /**
+   * The objects needed to parse one document, reused by the loads on this thread. Includes are
+   * loaded while their parent is still parsing, so each nesting level takes its own instance.
+   */
+  static final class Parser {
+    private final DecodingReader reader = new DecodingReader();
+    private final FXMLLoader.PrefixNormalizer delegate = new FXMLLoader.PrefixNormalizer();
+
+    XMLStreamReader open(XMLInputFactory xmlInputFactory, InputStream inputStream, Charset charset)
+        throws XMLStreamException {
+      reader.open(inputStream, charset);
+      delegate.setParent(xmlInputFactory.createXMLStreamReader(reader));
+      return delegate;
+    }
+
+    private void close() {
+      if (delegate.getParent() != null) {
+        try {
+          delegate.close();
+        } catch (XMLStreamException e) {
+          // No-op, the input stream is closed by its owner
+        }
+        delegate.setParent(null);
+      }
+      reader.close();
+    }
+  }
+
+  private XMLInputFactory xmlInputFactory = null;
+  private final Deque<Parser> parsers = new ArrayDeque<>();
+  private final FXMLSymbol.Table symbols = new FXMLSymbol.Table();
+  private final Deque<FXMLLexer> lexers = new ArrayDeque<>();
+
+  XMLInputFactory getXMLInputFactory() {
+    if (xmlInputFactory == null) {
+      xmlInputFactory = XMLInputFactory.newInstance();
+      xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+    return xmlInputFactory;
+  }
+
+  Parser acquireParser() {
+    Parser parser = parsers.poll();
+    return parser == null ? new Parser() : parser;
+  }
+
+  void releaseParser(Parser parser) {
+    parser.close();
+    parsers.push(parser);
+  }
+
+  FXMLLexer acquireLexer() {
+    FXMLLexer lexer = lexers.poll();
+    return lexer == null ? new FXMLLexer(symbols) : lexer;
+  }
+
+  void releaseLexer(FXMLLexer lexer) {
+    lexer.clear();
+    lexers.push(lexer);
+  }
+}
@@ -0,0 +1,629 @@
+/*
+ * Copyright 2019 XDean
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xdean.fastfxml;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * An immutable, already parsed FXML document. It keeps exactly the events {@link FXMLLoader}
+ * reacts to (whitespace is dropped) and can be replayed any number of times, from any thread.
+ */
+final class FXMLDocument {
+
+  static final class Event {
+    final int type;
+    final int line;
+    final String prefix;
+    // element local name or processing instruction target
+    final String localName;
+    // prefix, local name and value of each attribute, in document order
+    final String[] attributes;
+    // character data, comment text or processing instruction data
+    final String text;
+    // The classified element and attribute names, when read from the binary format
+    final FXMLSymbol symbol;
+    final FXMLSymbol[] attributeSymbols;
+    // The package and class names of an import, when read from the binary format
+    final String[] importEntry;
+
+    Event(int type, int line, String prefix, String localName, String[] attributes, String text) {
+      this(type, line, prefix, localName, attributes, text, null, null, null);
+    }
+
+    Event(int type, int line, String prefix, String localName, String[] attributes, String text,
+        FXMLSymbol symbol, FXMLSymbol[] attributeSymbols, String[] importEntry) {
+      this.type = type;
+      this.line = line;
+      this.prefix = prefix;
+      this.localName = localName;
+      this.attributes = attributes;
+      this.text = text;
+      this.symbol = symbol;
+      this.attributeSymbols = attributeSymbols;
+      this.importEntry = importEntry;
+    }
+  }
+
+  private static final String[] NO_ATTRIBUTES = new String[0];
+  private static final FXMLSymbol[] NO_SYMBOLS = new FXMLSymbol[0];
+
+  private static final int BINARY_MAGIC = 0x46584D42; // "FXMB"
+  private static final int BINARY_VERSION = 2;
+
+  final Event[] events;
+  final String fxNamespaceURI;
+  final String defaultNamespaceURI;
+  private volatile Set<String> typeNames = null;
+  private volatile Boolean lazyAttribute = null;
+
+  FXMLDocument(Event[] events, String fxNamespaceURI, String defaultNamespaceURI) {
+    this.events = events;
+    this.fxNamespaceURI = fxNamespaceURI;
+    this.defaultNamespaceURI = defaultNamespaceURI;
+  }
+
+  /**
+   * Records all remaining events of the given reader.
+   */
+  static FXMLDocument record(XMLStreamReader reader) throws XMLStreamException {
+    List<Event> events = new ArrayList<>();
+    String fxNamespaceURI = null;
+    String defaultNamespaceURI = null;
+    boolean root = true;
+    while (reader.hasNext()) {
+      int type = reader.next();
+      if (type == XMLStreamConstants.START_ELEMENT && root) {
+        fxNamespaceURI = reader.getNamespaceContext().getNamespaceURI(FXMLLoader.FX_NAMESPACE_PREFIX);
+        defaultNamespaceURI = reader.getNamespaceContext().getNamespaceURI(XMLConstants.DEFAULT_NS_PREFIX);
+        root = false;
+      }
+      Event event = toEvent(reader, type);
+      if (event != null) {
+        events.add(event);
+      }
+    }
+    return new FXMLDocument(events.toArray(new Event[events.size()]), fxNamespaceURI, defaultNamespaceURI);
+  }
+
+  /**
+   * Records the element the given reader is positioned on, up to and including its end tag. The
+   * given <tt>fx</tt> attributes are left out of its start tag.
+   */
+  static FXMLDocument recordElement(XMLStreamReader reader, String... excludedAttributes)
+      throws XMLStreamException {
+    List<Event> events = new ArrayList<>();
+    Event start = toEvent(reader, XMLStreamConstants.START_ELEMENT);
+    List<String> attributes = new ArrayList<>();
+    for (int i = 0; i < start.attributes.length; i += 3) {
+      if (!FXMLLoader.FX_NAMESPACE_PREFIX.equals(start.attributes[i])
+          || !Arrays.asList(excludedAttributes).contains(start.attributes[i + 1])) {
+        attributes.add(start.attributes[i]);
+        attributes.add(start.attributes[i + 1]);
+        attributes.add(start.attributes[i + 2]);
+      }
+    }
+    events.add(new Event(start.type, start.line, start.prefix, start.localName,
+        attributes.toArray(new String[attributes.size()]), null));
+
+    for (int depth = 1; depth > 0;) {
+      int type = reader.next();
+      if (type == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (type == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+      Event event = toEvent(reader, type);
+      if (event != null) {
+        events.add(event);
+      }
+    }
+    return new FXMLDocument(events.toArray(new Event[events.size()]),
+        reader.getNamespaceContext().getNamespaceURI(FXMLLoader.FX_NAMESPACE_PREFIX),
+        reader.getNamespaceContext().getNamespaceURI(XMLConstants.DEFAULT_NS_PREFIX));
+  }
+
+  private static Event toEvent(XMLStreamReader reader, int type) {
+    int line = reader.getLocation().getLineNumber();
+    switch (type) {
+    case XMLStreamConstants.START_ELEMENT: {
+      int n = reader.getAttributeCount();
+      String[] attributes = n == 0 ? NO_ATTRIBUTES : new String[n * 3];
+      for (int i = 0; i < n; i++) {
+        attributes[i * 3] = reader.getAttributePrefix(i);
+        attributes[i * 3 + 1] = reader.getAttributeLocalName(i);
+        attributes[i * 3 + 2] = reader.getAttributeValue(i);
+      }
+      return new Event(type, line, reader.getPrefix(), reader.getLocalName(), attributes, null);
+    }
+    case XMLStreamConstants.END_ELEMENT:
+      return new Event(type, line, reader.getPrefix(), reader.getLocalName(), NO_ATTRIBUTES, null);
+    case XMLStreamConstants.CDATA:
+    case XMLStreamConstants.CHARACTERS:
+      if (reader.isWhiteSpace()) {
+        return null;
+      }
+      return new Event(XMLStreamConstants.CHARACTERS, line, null, null, NO_ATTRIBUTES, reader.getText());
+    case XMLStreamConstants.COMMENT:
+      return new Event(type, line, null, null, NO_ATTRIBUTES, reader.getText());
+    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+      return new Event(type, line, null, reader.getPITarget(), NO_ATTRIBUTES, reader.getPIData());
+    default:
+      return null;
+    }
+  }
+
+  /**
+   * Writes this document in the binary format read by {@link #read(InputStream)}.
+   * <p>
+   * The format starts with a magic number and a version, followed by a table of every distinct
+   * string of the document (tag, attribute and class names, values, texts) and a table of every
+   * distinct element and attribute name, with the kind and the parts of a "Type.property" name the
+   * loader would otherwise derive from it. Events only refer to strings and names by their index in
+   * those tables, so reading a document allocates each distinct string and name once. Import
+   * processing instructions are stored with their package and class names already split.
+   */
+  void write(OutputStream outputStream) throws IOException {
+    Map<String, Integer> indexes = new HashMap<>();
+    List<String> strings = new ArrayList<>();
+    Map<String, Integer> symbolIndexes = new HashMap<>();
+    List<FXMLSymbol> symbols = new ArrayList<>();
+    index(indexes, strings, fxNamespaceURI);
+    index(indexes, strings, defaultNamespaceURI);
+    for (Event event : events) {
+      switch (event.type) {
+      case XMLStreamConstants.START_ELEMENT:
+        index(indexes, strings, symbolIndexes, symbols, event.prefix, event.localName);
+        for (int i = 0; i < event.attributes.length; i += 3) {
+          index(indexes, strings, symbolIndexes, symbols, event.attributes[i], event.attributes[i + 1]);
+          index(indexes, strings, event.attributes[i + 2]);
+        }
+        break;
+      case XMLStreamConstants.END_ELEMENT:
+        index(indexes, strings, symbolIndexes, symbols, event.prefix, event.localName);
+        break;
+      case XMLStreamConstants.PROCESSING_INSTRUCTION:
+        index(indexes, strings, event.localName);
+        index(indexes, strings, event.text);
+        String[] entry = splitImport(event);
+        if (entry != null) {
+          index(indexes, strings, entry[0]);
+          index(indexes, strings, entry[1]);
+        }
+        break;
+      default:
+        index(indexes, strings, event.text);
+        break;
+      }
+    }
+
+    DataOutputStream output = new DataOutputStream(outputStream);
+    output.writeInt(BINARY_MAGIC);
+    output.writeShort(BINARY_VERSION);
+    writeVarInt(output, strings.size());
+    for (String string : strings) {
+      byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+      writeVarInt(output, bytes.length);
+      output.write(bytes);
+    }
+    writeVarInt(output, symbols.size());
+    for (FXMLSymbol symbol : symbols) {
+      writeString(output, indexes, symbol.prefix);
+      writeString(output, indexes, symbol.localName);
+      output.writeByte(symbol.kind);
+      writeString(output, indexes, symbol.owner);
+      writeString(output, indexes, symbol.member);
+    }
+    writeString(output, indexes, fxNamespaceURI);
+    writeString(output, indexes, defaultNamespaceURI);
+    writeVarInt(output, events.length);
+    for (Event event : events) {
+      output.writeByte(event.type);
+      writeVarInt(output, event.line);
+      switch (event.type) {
+      case XMLStreamConstants.START_ELEMENT:
+        writeVarInt(output, symbolIndexes.get(qualifiedName(event.prefix, event.localName)));
+        writeVarInt(output, event.attributes.length / 3);
+        for (int i = 0; i < event.attributes.length; i += 3) {
+          writeVarInt(output, symbolIndexes.get(qualifiedName(event.attributes[i], event.attributes[i + 1])));
+          writeString(output, indexes, event.attributes[i + 2]);
+        }
+        break;
+      case XMLStreamConstants.END_ELEMENT:
+        writeVarInt(output, symbolIndexes.get(qualifiedName(event.prefix, event.localName)));
+        break;
+      case XMLStreamConstants.PROCESSING_INSTRUCTION:
+        writeString(output, indexes, event.localName);
+        writeString(output, indexes, event.text);
+        if (isImport(event.localName, event.text)) {
+          String[] entry = splitImport(event);
+          writeString(output, indexes, entry == null ? null : entry[0]);
+          writeString(output, indexes, entry == null ? null : entry[1]);
+        }
+        break;
+      default:
+        writeString(output, indexes, event.text);
+        break;
+      }
+    }
+    output.flush();
+  }
+
+  /**
+   * Reads a document written by {@link #write(OutputStream)}.
+   */
+  static FXMLDocument read(InputStream inputStream) throws IOException {
+    DataInputStream input = new DataInputStream(inputStream);
+    if (input.readInt() != BINARY_MAGIC) {
+      throw new IOException("Not a binary FXML document.");
+    }
+    int version = input.readUnsignedShort();
+    if (version != BINARY_VERSION) {
+      throw new IOException("Unsupported binary FXML version " + version + ".");
+    }
+    String[] strings = new String[readCount(input)];
+    byte[] buffer = new byte[256];
+    for (int i = 0; i < strings.length; i++) {
+      int length = readCount(input);
+      if (buffer.length < length) {
+        buffer = new byte[length];
+      }
+      input.readFully(buffer, 0, length);
+      strings[i] = new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+    FXMLSymbol[] symbols = new FXMLSymbol[readCount(input)];
+    for (int i = 0; i < symbols.length; i++) {
+      String prefix = readString(input, strings);
+      String localName = readString(input, strings);
+      int kind = input.readUnsignedByte();
+      if (localName == null || kind > FXMLSymbol.UNKNOWN_PREFIX) {
+        throw new IOException("Corrupted binary FXML document.");
+      }
+      symbols[i] = new FXMLSymbol(prefix, localName, kind, readString(input, strings), readString(input, strings));
+    }
+    String fxNamespaceURI = readString(input, strings);
+    String defaultNamespaceURI = readString(input, strings);
+    Event[] events = new Event[readCount(input)];
+    for (int i = 0; i < events.length; i++) {
+      int type = input.readUnsignedByte();
+      int line = readVarInt(input);
+      switch (type) {
+      case XMLStreamConstants.START_ELEMENT: {
+        FXMLSymbol symbol = readSymbol(input, symbols);
+        int n = readCount(input);
+        String[] attributes = n == 0 ? NO_ATTRIBUTES : new String[n * 3];
+        FXMLSymbol[] attributeSymbols = n == 0 ? NO_SYMBOLS : new FXMLSymbol[n];
+        for (int j = 0; j < n; j++) {
+          FXMLSymbol attributeSymbol = readSymbol(input, symbols);
+          attributes[j * 3] = attributeSymbol.prefix;
+          attributes[j * 3 + 1] = attributeSymbol.localName;
+          attributes[j * 3 + 2] = readString(input, strings);
+          attributeSymbols[j] = attributeSymbol;
+        }
+        events[i] = new Event(type, line, symbol.prefix, symbol.localName, attributes, null,
+            symbol, attributeSymbols, null);
+        break;
+      }
+      case XMLStreamConstants.END_ELEMENT: {
+        FXMLSymbol symbol = readSymbol(input, symbols);
+        events[i] = new Event(type, line, symbol.prefix, symbol.localName, NO_ATTRIBUTES, null,
+            symbol, null, null);
+        break;
+      }
+      case XMLStreamConstants.PROCESSING_INSTRUCTION: {
+        String target = readString(input, strings);
+        String data = readString(input, strings);
+        String[] entry = null;
+        if (isImport(target, data)) {
+          String packageName = readString(input, strings);
+          String className = readString(input, strings);
+          entry = packageName == null ? null : new String[] { packageName, className };
+        }
+        events[i] = new Event(type, line, null, target, NO_ATTRIBUTES, data, null, null, entry);
+        break;
+      }
+      case XMLStreamConstants.CHARACTERS:
+      case XMLStreamConstants.COMMENT:
+        events[i] = new Event(type, line, null, null, NO_ATTRIBUTES, readString(input, strings));
+        break;
+      default:
+        throw new IOException("Corrupted binary FXML document.");
+      }
+    }
+    return new FXMLDocument(events, fxNamespaceURI, defaultNamespaceURI);
+  }
+
+  private static boolean isImport(String target, String data) {
+    return target != null && data != null && target.trim().equals(FXMLLoader.IMPORT_PROCESSING_INSTRUCTION);
+  }
+
+  // The package and class names of an import, as the loader splits them, or null
+  private static String[] splitImport(Event event) {
+    if (!isImport(event.localName, event.text)) {
+      return null;
+    }
+    String name = event.text.trim();
+    if (name.endsWith(".*")) {
+      return new String[] { name.substring(0, name.length() - 2), null };
+    }
+    return FXMLLoader.splitQualifiedName(name);
+  }
+
+  private static void index(Map<String, Integer> indexes, List<String> strings, String string) {
+    if (string != null && !indexes.containsKey(string)) {
+      indexes.put(string, strings.size());
+      strings.add(string);
+    }
+  }
+
+  private static void index(Map<String, Integer> indexes, List<String> strings,
+      Map<String, Integer> symbolIndexes, List<FXMLSymbol> symbols, String prefix, String localName) {
+    String name = qualifiedName(prefix, localName);
+    if (!symbolIndexes.containsKey(name)) {
+      int i = localName.lastIndexOf('.');
+      FXMLSymbol symbol = new FXMLSymbol(prefix, localName, FXMLSymbol.kindOf(prefix, localName),
+          i == -1 ? null : localName.substring(0, i), i == -1 ? null : localName.substring(i + 1));
+      symbolIndexes.put(name, symbols.size());
+      symbols.add(symbol);
+      index(indexes, strings, symbol.prefix);
+      index(indexes, strings, symbol.localName);
+      index(indexes, strings, symbol.owner);
+      index(indexes, strings, symbol.member);
+    }
+  }
+
+  private static String qualifiedName(String prefix, String localName) {
+    return prefix == null ? localName : prefix + ":" + localName;
+  }
+
+  // 0 stands for null, so indexes are shifted by one
+  private static void writeString(DataOutputStream output, Map<String, Integer> indexes, String string)
+      throws IOException {
+    writeVarInt(output, string == null ? 0 : indexes.get(string) + 1);
+  }
+
+  private static String readString(DataInputStream input, String[] strings) throws IOException {
+    int index = readVarInt(input) - 1;
+    if (index < -1 || index >= strings.length) {
+      throw new IOException("Corrupted binary FXML document.");
+    }
+    return index == -1 ? null : strings[index];
+  }
+
+  private static FXMLSymbol readSymbol(DataInputStream input, FXMLSymbol[] symbols) throws IOException {
+    int index = readVarInt(input);
+    if (index < 0 || index >= symbols.length) {
+      throw new IOException("Corrupted binary FXML document.");
+    }
+    return symbols[index];
+  }
+
+  private static int readCount(DataInputStream input) throws IOException {
+    int count = readVarInt(input);
+    if (count < 0) {
+      throw new IOException("Corrupted binary FXML document.");
+    }
+    return count;
+  }
+
+  private static void writeVarInt(DataOutputStream output, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      output.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    output.writeByte(value);
+  }
+
+  private static int readVarInt(DataInputStream input) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = input.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Corrupted binary FXML document.");
+  }
+
+  /**
+   * Returns the unqualified class names used by the elements of this document.
+   */
+  Set<String> getTypeNames() {
+    Set<String> names = typeNames;
+    if (names == null) {
+      names = new LinkedHashSet<>();
+      for (Event event : events) {
+        if (event.type == XMLStreamConstants.START_ELEMENT) {
+          String name;
+          if (event.symbol != null) {
+            name = FXMLSymbol.typeNameOf(event.symbol.kind, event.localName, event.symbol.owner);
+          } else {
+            int kind = FXMLSymbol.kindOf(event.prefix, event.localName);
+            int i = event.localName.lastIndexOf('.');
+            name = FXMLSymbol.typeNameOf(kind, event.localName, i == -1 ? null : event.localName.substring(0, i));
+          }
+          if (name != null) {
+            names.add(name);
+          }
+        }
+      }
+      typeNames = names = Collections.unmodifiableSet(names);
+    }
+    return names;
+  }
+
+  /**
+   * Returns whether an element of this document has an <tt>fx:lazy</tt> attribute.
+   */
+  boolean hasLazyAttribute() {
+    Boolean result = lazyAttribute;
+    if (result == null) {
+      result = Boolean.FALSE;
+      for (Event event : events) {
+        for (int i = 0; event.type == XMLStreamConstants.START_ELEMENT && i < event.attributes.length; i += 3) {
+          if (FXMLLoader.FX_NAMESPACE_PREFIX.equals(event.attributes[i])
+              && FXMLLoader.FX_LAZY_ATTRIBUTE.equals(event.attributes[i + 1])) {
+            result = Boolean.TRUE;
+          }
+        }
+      }
+      lazyAttribute = result;
+    }
+    return result;
+  }
+
+  /**
+   * Creates a new reader over the recorded events.
+   */
+  XMLStreamReader newReader() {
+    return new Replay();
+  }
+
+  private final class Replay extends FXMLStreamReader {
+    private int index = -1;
+    private Event event = null;
+
+    @Override
+    public int next() throws XMLStreamException {
+      if (!hasNext()) {
+        throw new XMLStreamException("No more events.");
+      }
+      event = events[++index];
+      return event.type;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return index + 1 < events.length;
+    }
+
+    @Override
+    public int getEventType() {
+      return event == null ? START_DOCUMENT : event.type;
+    }
+
+    @Override
+    int getLineNumber() {
+      return event == null ? 1 : event.line;
+    }
+
+    @Override
+    Collection<String> getTypeNames() {
+      return FXMLDocument.this.getTypeNames();
+    }
+
+    @Override
+    boolean hasLazyAttribute() {
+      return FXMLDocument.this.hasLazyAttribute();
+    }
+
+    @Override
+    FXMLSymbol getSymbol() {
+      return event.symbol;
+    }
+
+    @Override
+    FXMLSymbol getAttributeSymbol(String prefix, String localName) {
+      FXMLSymbol[] symbols = event.attributeSymbols;
+      for (int i = 0; symbols != null && i < symbols.length; i++) {
+        if (symbols[i].localName.equals(localName) && Objects.equals(symbols[i].prefix, prefix)) {
+          return symbols[i];
+        }
+      }
+      return null;
+    }
+
+    @Override
+    String[] getImportEntry() {
+      return event.importEntry;
+    }
+
+    @Override
+    public String getNamespaceURI(String prefix) {
+      if (FXMLLoader.FX_NAMESPACE_PREFIX.equals(prefix)) {
+        return fxNamespaceURI;
+      } else if (XMLConstants.DEFAULT_NS_PREFIX.equals(prefix)) {
+        return defaultNamespaceURI;
+      }
+      return null;
+    }
+
+    @Override
+    public String getPrefix() {
+      return event.prefix;
+    }
+
+    @Override
+    public String getLocalName() {
+      return event.localName;
+    }
+
+    @Override
+    public int getAttributeCount() {
+      return event.attributes.length / 3;
+    }
+
+    @Override
+    public String getAttributePrefix(int index) {
+      return event.attributes[index * 3];
+    }
+
+    @Override
+    public String getAttributeLocalName(int index) {
+      return event.attributes[index * 3 + 1];
+    }
+
+    @Override
+    public String getAttributeValue(int index) {
+      return event.attributes[index * 3 + 2];
+    }
+
+    @Override
+    public String getText() {
+      return event.text;
+    }
+
+    @Override
+    public String getPITarget() {
+      return event.localName;
+    }
+
+    @Override
+    public String getPIData() {
+      return event.text;
+    }
+  }
+}
@@ -0,0 +1,1251 @@
+/*
+ * Copyright 2019 XDean
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xdean.fastfxml;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.function.Function;
+
+import javax.xml.stream.XMLStreamConstants;
+
+import com.sun.javafx.fxml.PropertyNotFoundException;
+import com.sun.javafx.fxml.expression.Expression;
+import com.sun.javafx.fxml.expression.KeyPath;
+
+import javafx.event.EventHandler;
+import javafx.fxml.LoadException;
+import sun.reflect.misc.MethodUtil;
+import xdean.fastfxml.FXMLCache.ImportIndex;
+import xdean.fastfxml.FXMLDocument.Event;
+import xdean.fastfxml.FXMLLoader.ElementType;
+
+/**
+ * The resolved instructions of a {@link FXMLTemplate}. Compiling a document resolves its classes,
+ * constructors, property accessors, converters and static property setters once, and the
+ * instructions build each instance by calling them directly. Attribute values of immutable types
+ * (strings, numbers, enums) are converted once as well.
+ * <p>
+ * Only the constructs whose meaning is fixed by the document are compiled. Documents with scripts,
+ * builders, binding expressions, <tt>fx:root</tt>, <tt>fx:copy</tt> or <tt>fx:lazy</tt>, or
+ * with properties of an element whose class is only known at load time, are not: their templates
+ * replay the events through the loader. So are the documents the loader rejects, the replay
+ * reports the error.
+ */
+final class FXMLInstructions {
+  // A step of the building of an instance
+  interface Instruction {
+    void execute(Frame frame) throws Exception;
+  }
+
+  // A value computed for each instance
+  interface Operand {
+    Object get(Frame frame) throws Exception;
+  }
+
+  // The state of the building of one instance
+  static final class Frame {
+    final FXMLLoader loader;
+    // The value of each element, by slot
+    final Object[] values;
+    private final int[] lines;
+    private int index = 0;
+
+    private Frame(FXMLLoader loader, int size, int[] lines) {
+      this.loader = loader;
+      this.values = new Object[size];
+      this.lines = lines;
+    }
+
+    LoadException error(String message) {
+      return new LoadException(message + trace());
+    }
+
+    private String trace() {
+      URL location = loader.getLocation();
+      return "\n" + (location != null ? location.getPath() : "unknown path") + ":" + lines[index] + "\n";
+    }
+  }
+
+  // A value known when the document is compiled
+  private static final class Constant implements Operand {
+    private final Object value;
+
+    private Constant(Object value) {
+      this.value = value;
+    }
+
+    @Override
+    public Object get(Frame frame) {
+      return value;
+    }
+  }
+
+  // A value of a known class computed for each instance
+  private static final class TypedOperand implements Operand {
+    private final Class<?> type;
+    private final Operand operand;
+
+    private TypedOperand(Class<?> type, Operand operand) {
+      this.type = type;
+      this.operand = operand;
+    }
+
+    @Override
+    public Object get(Frame frame) throws Exception {
+      return operand.get(frame);
+    }
+  }
+
+  // A property setter called through its handle, with the argument checks of BeanAdapter
+  private static final class Setter {
+    private final MethodHandle handle;
+    private final String name;
+    private final Class<?> valueType;
+    private final boolean primitive;
+
+    private Setter(MethodHandle handle, String name, Class<?> type) {
+      this.handle = handle;
+      this.name = name;
+      this.valueType = MethodType.methodType(type).wrap().returnType();
+      this.primitive = type.isPrimitive();
+    }
+
+    private void set(Object target, Object value) {
+      if (value == null && primitive) {
+        throw new IllegalArgumentException("Cannot set " + name + " to null.");
+      }
+      if (value != null && !valueType.isInstance(value)) {
+        throw new IllegalArgumentException("argument type mismatch");
+      }
+      try {
+        handle.invokeExact(target, value);
+      } catch (Error error) {
+        throw error;
+      } catch (Throwable exception) {
+        throw new RuntimeException(new InvocationTargetException(exception));
+      }
+    }
+  }
+
+  // A property getter called through its handle
+  private static final class Getter {
+    private final MethodHandle handle;
+
+    private Getter(MethodHandle handle) {
+      this.handle = handle;
+    }
+
+    private Object get(Object target) {
+      try {
+        return (Object) handle.invokeExact(target);
+      } catch (Error error) {
+        throw error;
+      } catch (Throwable exception) {
+        throw new RuntimeException(new InvocationTargetException(exception));
+      }
+    }
+  }
+
+  // Thrown when a document needs the loader
+  private static final class Unsupported extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private Unsupported() {
+      super(null, null, false, false);
+    }
+  }
+
+  private static final Unsupported UNSUPPORTED = new Unsupported();
+
+  private static final MethodType FACTORY_TYPE = MethodType.methodType(Object.class);
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+  private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+  private final Instruction[] instructions;
+  // The line of each instruction in the document
+  private final int[] lines;
+  private final int size;
+
+  private FXMLInstructions(Instruction[] instructions, int[] lines, int size) {
+    this.instructions = instructions;
+    this.lines = lines;
+    this.size = size;
+  }
+
+  /**
+   * Compiles the given document for the given class loader.
+   *
+   * @return The instructions of the document, or <tt>null</tt> if it must be loaded by replaying
+   *         its events.
+   */
+  static FXMLInstructions compile(FXMLDocument document, URL location, ClassLoader classLoader) {
+    try {
+      return new Compiler(document, location, classLoader).compile();
+    } catch (Unsupported | RuntimeException | LinkageError exception) {
+      // The replay reports the errors
+      return null;
+    }
+  }
+
+  /**
+   * Builds a new instance of the document into the namespace and controller of the given loader.
+   *
+   * @return The root value.
+   */
+  Object execute(FXMLLoader loader) throws LoadException {
+    Frame frame = new Frame(loader, size, lines);
+    for (; frame.index < instructions.length; frame.index++) {
+      try {
+        instructions[frame.index].execute(frame);
+      } catch (LoadException exception) {
+        throw exception;
+      } catch (Exception exception) {
+        throw new LoadException(frame.trace(), exception);
+      }
+    }
+    return frame.values[0];
+  }
+
+  // An element of the document
+  private static final class Node {
+    private final Event event;
+    private final int kind;
+    // Child elements and texts, in document order
+    private final List<Object> children = new ArrayList<>();
+    private int endLine;
+
+    private Node(Event event) {
+      this.event = event;
+      this.kind = FXMLSymbol.kindOf(event.prefix, event.localName);
+      this.endLine = event.line;
+    }
+  }
+
+  // The value of an element, held by a slot of the frame
+  private static final class Value {
+    private final int slot;
+    private final Class<?> type;
+    // Whether the value is exactly of the type, so that its accessors are resolved
+    private final boolean exact;
+
+    private Value(int slot, Class<?> type, boolean exact) {
+      this.slot = slot;
+      this.type = type;
+      this.exact = exact;
+    }
+
+    private Operand operand() {
+      int slot = this.slot;
+      Operand operand = frame -> frame.values[slot];
+      return exact ? new TypedOperand(type, operand) : operand;
+    }
+  }
+
+  private static final class Compiler {
+    private final FXMLDocument document;
+    private final URL location;
+    private final ClassLoader classLoader;
+
+    private final List<String> imports = new ArrayList<>();
+    private ImportIndex importIndex = null;
+
+    private final List<Instruction> instructions = new ArrayList<>();
+    private final List<Integer> lines = new ArrayList<>();
+    private int line = 0;
+    private int size = 0;
+
+    private Compiler(FXMLDocument document, URL location, ClassLoader classLoader) {
+      this.document = document;
+      this.location = location;
+      this.classLoader = classLoader;
+    }
+
+    private FXMLInstructions compile() throws Unsupported {
+      Node root = parse();
+      checkVersions();
+      if (root.kind != FXMLSymbol.INSTANCE && root.kind != FXMLSymbol.INCLUDE
+          && root.kind != FXMLSymbol.REFERENCE) {
+        throw UNSUPPORTED;
+      }
+      compileValue(root, true);
+
+      int[] lineArray = new int[lines.size()];
+      for (int i = 0; i < lineArray.length; i++) {
+        lineArray[i] = lines.get(i);
+      }
+      return new FXMLInstructions(instructions.toArray(new Instruction[instructions.size()]), lineArray, size);
+    }
+
+    private Node parse() throws Unsupported {
+      Node root = null;
+      Deque<Node> stack = new ArrayDeque<>();
+      for (Event event : document.events) {
+        switch (event.type) {
+        case XMLStreamConstants.PROCESSING_INSTRUCTION:
+          // Imports only apply to the elements after them
+          if (root != null) {
+            throw UNSUPPORTED;
+          }
+          processProcessingInstruction(event.localName.trim(), event.text);
+          break;
+        case XMLStreamConstants.START_ELEMENT: {
+          Node node = new Node(event);
+          if (stack.isEmpty()) {
+            if (root != null) {
+              throw UNSUPPORTED;
+            }
+            root = node;
+          } else {
+            stack.peek().children.add(node);
+          }
+          stack.push(node);
+          break;
+        }
+        case XMLStreamConstants.END_ELEMENT:
+          stack.pop().endLine = event.line;
+          break;
+        case XMLStreamConstants.CHARACTERS:
+          if (stack.isEmpty()) {
+            throw UNSUPPORTED;
+          }
+          stack.peek().children.add(event.text);
+          break;
+        default:
+          break;
+        }
+      }
+      if (root == null) {
+        throw UNSUPPORTED;
+      }
+      return root;
+    }
+
+    private void processProcessingInstruction(String target, String data) throws Unsupported {
+      if (target.equals(FXMLLoader.LANGUAGE_PROCESSING_INSTRUCTION)) {
+        throw UNSUPPORTED;
+      } else if (target.equals(FXMLLoader.IMPORT_PROCESSING_INSTRUCTION)) {
+        String name = data.trim();
+        if (!name.endsWith(".*") && loadQualifiedType(name) == null) {
+          throw UNSUPPORTED;
+        }
+        imports.add(name);
+        importIndex = null;
+      }
+    }
+
+    // The loader checks the versions of the namespaces for each load, and warns of a newer API
+    private void checkVersions() throws Unsupported {
+      String fxNamespaceURI = document.fxNamespaceURI;
+      if (fxNamespaceURI != null) {
+        String fxVersion = fxNamespaceURI.substring(fxNamespaceURI.lastIndexOf("/") + 1);
+        if (FXMLLoader.compareJFXVersions(FXMLLoader.FX_NAMESPACE_VERSION, fxVersion) < 0) {
+          throw UNSUPPORTED;
+        }
+      }
+      String defaultNamespaceURI = document.defaultNamespaceURI;
+      if (defaultNamespaceURI != null) {
+        String nsVersion = defaultNamespaceURI.substring(defaultNamespaceURI.lastIndexOf("/") + 1);
+        if (FXMLLoader.compareJFXVersions(FXMLLoader.JAVAFX_VERSION, nsVersion) < 0) {
+          throw UNSUPPORTED;
+        }
+      }
+    }
+
+    private Class<?> getType(String name) throws Unsupported {
+      Class<?> type;
+      if (Character.isLowerCase(name.charAt(0))) {
+        type = loadQualifiedType(name);
+      } else {
+        if (importIndex == null) {
+          importIndex = FXMLCache.getClassLoaderCache(classLoader).getImportIndex(imports);
+        }
+        type = importIndex.getType(name);
+      }
+      if (type == null) {
+        throw UNSUPPORTED;
+      }
+      FXMLManifest.recordClass(type);
+      return type;
+    }
+
+    private Class<?> loadQualifiedType(String name) {
+      String[] parts = FXMLLoader.splitQualifiedName(name);
+      if (parts == null) {
+        return null;
+      }
+      try {
+        return classLoader.loadClass(parts[0] + "." + parts[1].replace('.', '$'));
+      } catch (ClassNotFoundException exception) {
+        return null;
+      }
+    }
+
+    private void emit(Instruction instruction) {
+      instructions.add(instruction);
+      lines.add(line);
+    }
+
+    // Compiles an element with a value and its children, but not its addition to the parent
+    private Value compileValue(Node node, boolean root) throws Unsupported {
+      line = node.event.line;
+
+      String id = null;
+      String controllerType = null;
+      String fxValue = null;
+      String constant = null;
+      String factory = null;
+      String source = null;
+      String resources = null;
+      String charset = null;
+      List<String> instanceProperties = new ArrayList<>();
+      List<String> eventHandlers = new ArrayList<>();
+      List<Object> staticProperties = new ArrayList<>();
+
+      String[] attributes = node.event.attributes;
+      for (int i = 0; i < attributes.length; i += 3) {
+        String prefix = attributes[i];
+        String name = attributes[i + 1];
+        String value = attributes[i + 2];
+        if (prefix == null) {
+          if (node.kind == FXMLSymbol.INCLUDE && name.equals(FXMLLoader.INCLUDE_SOURCE_ATTRIBUTE)) {
+            source = value;
+          } else if (node.kind == FXMLSymbol.INCLUDE && name.equals(FXMLLoader.INCLUDE_RESOURCES_ATTRIBUTE)) {
+            resources = value;
+          } else if (node.kind == FXMLSymbol.INCLUDE && name.equals(FXMLLoader.INCLUDE_CHARSET_ATTRIBUTE)) {
+            charset = value;
+          } else if (node.kind == FXMLSymbol.REFERENCE && name.equals(FXMLLoader.REFERENCE_SOURCE_ATTRIBUTE)) {
+            source = value;
+          } else if (name.startsWith(FXMLLoader.EVENT_HANDLER_PREFIX)) {
+            eventHandlers.add(name);
+            eventHandlers.add(value);
+          } else {
+            int j = name.lastIndexOf('.');
+            if (j == -1) {
+              instanceProperties.add(name);
+              instanceProperties.add(value);
+            } else {
+              staticProperties.add(getType(name.substring(0, j)));
+              staticProperties.add(name.substring(j + 1));
+              staticProperties.add(value);
+            }
+          }
+        } else if (prefix.equals(FXMLLoader.FX_NAMESPACE_PREFIX)) {
+          if (name.equals(FXMLLoader.FX_ID_ATTRIBUTE)) {
+            if (value.equals(FXMLLoader.NULL_KEYWORD)) {
+              throw UNSUPPORTED;
+            }
+            for (int j = 0, n = value.length(); j < n; j++) {
+              if (!Character.isJavaIdentifierPart(value.charAt(j))) {
+                throw UNSUPPORTED;
+              }
+            }
+            id = value;
+          } else if (name.equals(FXMLLoader.FX_CONTROLLER_ATTRIBUTE) && root) {
+            controllerType = value;
+          } else if (name.equals(FXMLLoader.FX_VALUE_ATTRIBUTE) && node.kind == FXMLSymbol.INSTANCE) {
+            fxValue = value;
+          } else if (name.equals(FXMLLoader.FX_CONSTANT_ATTRIBUTE) && node.kind == FXMLSymbol.INSTANCE) {
+            constant = value;
+          } else if (name.equals(FXMLLoader.FX_FACTORY_ATTRIBUTE) && node.kind == FXMLSymbol.INSTANCE) {
+            factory = value;
+          } else {
+            throw UNSUPPORTED;
+          }
+        } else {
+          throw UNSUPPORTED;
+        }
+      }
+
+      // The controller is created before the root value
+      if (controllerType != null) {
+        Class<?> type;
+        try {
+          type = classLoader.loadClass(controllerType);
+        } catch (ClassNotFoundException exception) {
+          throw UNSUPPORTED;
+        }
+        emit(frame -> {
+          if (frame.loader.getController() != null) {
+            throw frame.error("Controller value already specified.");
+          }
+          frame.loader.createController(type);
+        });
+      }
+
+      Value value;
+      int slot = size++;
+      switch (node.kind) {
+      case FXMLSymbol.INSTANCE:
+        value = constructValue(slot, getType(node.event.localName), fxValue, constant, factory);
+        break;
+      case FXMLSymbol.INCLUDE:
+        value = includeValue(slot, source, resources, charset, id);
+        break;
+      case FXMLSymbol.REFERENCE:
+        value = referenceValue(slot, source);
+        break;
+      default:
+        throw UNSUPPORTED;
+      }
+
+      if (id != null) {
+        register(value, id);
+      }
+
+      for (Object child : node.children) {
+        if (child instanceof String) {
+          characters(value, (String) child);
+        } else {
+          Node element = (Node) child;
+          switch (element.kind) {
+          case FXMLSymbol.PROPERTY:
+            propertyElement(value, element);
+            break;
+          case FXMLSymbol.STATIC_PROPERTY:
+            staticPropertyElement(value, element);
+            break;
+          case FXMLSymbol.DEFINE:
+            defineElement(element);
+            break;
+          default:
+            add(value, compileValue(element, false));
+            break;
+          }
+        }
+      }
+
+      // The attributes are applied once the children are added
+      line = node.endLine;
+      for (int i = 0; i < instanceProperties.size(); i += 2) {
+        propertyAttribute(value, instanceProperties.get(i), instanceProperties.get(i + 1));
+      }
+      for (int i = 0; i < eventHandlers.size(); i += 2) {
+        eventHandlerAttribute(value, eventHandlers.get(i), eventHandlers.get(i + 1));
+      }
+      for (int i = 0; i < staticProperties.size(); i += 3) {
+        String attributeValue = (String) staticProperties.get(i + 2);
+        if (isBindingExpression(attributeValue)) {
+          throw UNSUPPORTED;
+        }
+        staticProperty(value, (Class<?>) staticProperties.get(i), (String) staticProperties.get(i + 1),
+            resolve(attributeValue));
+      }
+      return value;
+    }
+
+    private Value constructValue(int slot, Class<?> type, String fxValue, String constant, String factory)
+        throws Unsupported {
+      if (fxValue != null) {
+        Operand operand = coerce(new Constant(fxValue), type);
+        if (operand instanceof Constant) {
+          Object value = ((Constant) operand).value;
+          emit(frame -> frame.values[slot] = value);
+          return new Value(slot, value == null ? type : value.getClass(), value != null);
+        }
+        emit(frame -> frame.values[slot] = operand.get(frame));
+        return new Value(slot, type, false);
+      } else if (constant != null) {
+        // The loader keeps the constants too, each instance gets the same value
+        Object value = BeanAdapter.getConstantValue(type, constant);
+        emit(frame -> frame.values[slot] = value);
+        return new Value(slot, value == null ? type : value.getClass(), value != null);
+      } else if (factory != null) {
+        Method method;
+        try {
+          method = MethodUtil.getMethod(type, factory, new Class[] {});
+        } catch (NoSuchMethodException exception) {
+          throw UNSUPPORTED;
+        }
+        if (!Modifier.isStatic(method.getModifiers())) {
+          throw UNSUPPORTED;
+        }
+        MethodHandle handle = handle(method, FACTORY_TYPE);
+        if (handle == null) {
+          throw UNSUPPORTED;
+        }
+        emit(frame -> {
+          try {
+            frame.values[slot] = (Object) handle.invokeExact();
+          } catch (Error error) {
+            throw error;
+          } catch (Throwable exception) {
+            throw new InvocationTargetException(exception);
+          }
+        });
+        return new Value(slot, method.getReturnType(), false);
+      } else {
+        if (FXMLLoader.hasDefaultBuilder(type)
+            || type.isInterface()
+            || Modifier.isAbstract(type.getModifiers())) {
+          throw UNSUPPORTED;
+        }
+        MethodHandle handle;
+        try {
+          handle = MethodHandles.publicLookup().findConstructor(type, MethodType.methodType(void.class))
+              .asType(FACTORY_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException exception) {
+          throw UNSUPPORTED;
+        }
+        emit(frame -> {
+          try {
+            frame.values[slot] = (Object) handle.invokeExact();
+          } catch (Exception | Error exception) {
+            throw exception;
+          } catch (Throwable exception) {
+            throw new InvocationTargetException(exception);
+          }
+        });
+        return new Value(slot, type, true);
+      }
+    }
+
+    private Value includeValue(int slot, String source, String resources, String charset, String id)
+        throws Unsupported {
+      if (source == null) {
+        throw UNSUPPORTED;
+      }
+      URL includeLocation;
+      if (source.charAt(0) == '/') {
+        includeLocation = classLoader.getResource(source.substring(1));
+      } else {
+        try {
+          includeLocation = location == null ? null : new URL(location, source);
+        } catch (MalformedURLException exception) {
+          includeLocation = null;
+        }
+      }
+      if (includeLocation == null) {
+        throw UNSUPPORTED;
+      }
+      URL url = includeLocation;
+      Charset includeCharset = charset == null ? null : Charset.forName(charset);
+      emit(frame -> {
+        FXMLLoader loader = frame.loader;
+        ResourceBundle bundle = resources == null ? loader.getResources()
+            : ResourceBundle.getBundle(resources, Locale.getDefault(),
+                loader.getResources().getClass().getClassLoader());
+        frame.values[slot] = loader.loadInclude(url, bundle,
+            includeCharset == null ? loader.getCharset() : includeCharset, id);
+      });
+      return new Value(slot, Object.class, false);
+    }
+
+    private Value referenceValue(int slot, String source) throws Unsupported {
+      if (source == null) {
+        throw UNSUPPORTED;
+      }
+      KeyPath path = KeyPath.parse(source);
+      emit(frame -> {
+        Map<String, Object> namespace = frame.loader.getNamespace();
+        if (!Expression.isDefined(namespace, path)) {
+          throw frame.error("Value \"" + source + "\" does not exist.");
+        }
+        frame.values[slot] = Expression.get(namespace, path);
+      });
+      return new Value(slot, Object.class, false);
+    }
+
+    // Adds the value to the namespace, sets its ID property and injects it into the controller
+    private void register(Value value, String id) throws Unsupported {
+      int slot = value.slot;
+      if (!value.exact) {
+        emit(frame -> {
+          Object object = frame.values[slot];
+          frame.loader.getNamespace().put(id, object);
+          String idProperty = FXMLLoader.getElementType(object.getClass()).idProperty;
+          if (idProperty != null) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> properties = object instanceof Map<?, ?>
+                ? (Map<String, Object>) object
+                : new BeanAdapter(object);
+            if (properties.get(idProperty) == null) {
+              properties.put(idProperty, id);
+            }
+          }
+          frame.loader.injectFields(id, object);
+        });
+        return;
+      }
+
+      String idProperty = FXMLLoader.getElementType(value.type).idProperty;
+      if (idProperty == null) {
+        emit(frame -> {
+          frame.loader.getNamespace().put(id, frame.values[slot]);
+          frame.loader.injectFields(id, frame.values[slot]);
+        });
+      } else if (Map.class.isAssignableFrom(value.type)) {
+        emit(frame -> {
+          @SuppressWarnings("unchecked")
+          Map<String, Object> map = (Map<String, Object>) frame.values[slot];
+          frame.loader.getNamespace().put(id, map);
+          if (map.get(idProperty) == null) {
+            map.put(idProperty, id);
+          }
+          frame.loader.injectFields(id, map);
+        });
+      } else {
+        Class<?> type = BeanAdapter.getPropertyType(value.type, idProperty);
+        Getter getter = getter(value.type, idProperty);
+        Setter setter = setter(BeanAdapter.getSetter(value.type, idProperty), 0, idProperty);
+        if (type == null || getter == null || setter == null) {
+          throw UNSUPPORTED;
+        }
+        Operand idValue = coerce(new Constant(id), type);
+        emit(frame -> {
+          Object object = frame.values[slot];
+          frame.loader.getNamespace().put(id, object);
+          if (getter.get(object) == null) {
+            setter.set(object, idValue.get(frame));
+          }
+          frame.loader.injectFields(id, object);
+        });
+      }
+    }
+
+    // Text content, set to or added to the default property
+    private void characters(Value value, String text) throws Unsupported {
+      if (!value.exact || Map.class.isAssignableFrom(value.type)) {
+        throw UNSUPPORTED;
+      }
+      ElementType elementType = FXMLLoader.getElementType(value.type);
+      String defaultProperty = elementType.defaultProperty;
+      if (defaultProperty == null) {
+        throw UNSUPPORTED;
+      }
+      text = FXMLLoader.extraneousWhitespacePattern.matcher(text).replaceAll(" ");
+      if (elementType.defaultList) {
+        Operand item = new Constant(text);
+        Method getter = BeanAdapter.getGetter(value.type, defaultProperty);
+        if (getter.getGenericReturnType() != getter.getReturnType()) {
+          Class<?> itemType = BeanAdapter.getListItemType(value.type, defaultProperty);
+          if (itemType == null) {
+            throw UNSUPPORTED;
+          }
+          item = coerce(item, itemType);
+        }
+        addToList(value, defaultProperty, item);
+      } else {
+        setProperty(value, defaultProperty, new Constant(text.trim()));
+      }
+    }
+
+    // A child value, added to the list or set to the default property of the parent
+    private void add(Value parent, Value item) throws Unsupported {
+      int parentSlot = parent.slot;
+      int itemSlot = item.slot;
+      if (List.class.isAssignableFrom(parent.type)) {
+        emit(frame -> {
+          @SuppressWarnings("unchecked")
+          List<Object> list = (List<Object>) frame.values[parentSlot];
+          list.add(frame.values[itemSlot]);
+        });
+        return;
+      }
+      if (!parent.exact || Map.class.isAssignableFrom(parent.type)) {
+        throw UNSUPPORTED;
+      }
+
+      ElementType elementType = FXMLLoader.getElementType(parent.type);
+      String defaultProperty = elementType.defaultProperty;
+      if (defaultProperty == null) {
+        throw UNSUPPORTED;
+      }
+      if (elementType.defaultList) {
+        if (elementType.defaultItemType == null) {
+          throw UNSUPPORTED;
+        }
+        addToList(parent, defaultProperty, coerce(item.operand(), elementType.defaultItemType));
+      } else if (Boolean.FALSE.equals(elementType.defaultCollection)) {
+        setProperty(parent, defaultProperty, item.operand());
+      } else {
+        // Only the value of the default property tells whether it is a list
+        Class<?> type = BeanAdapter.getPropertyType(parent.type, defaultProperty);
+        Class<?> itemType = BeanAdapter.getListItemType(parent.type, defaultProperty);
+        Getter getter = getter(parent.type, defaultProperty);
+        Method setterMethod = BeanAdapter.getSetter(parent.type, defaultProperty);
+        Setter setter = setterMethod == null ? null : setter(setterMethod, 0, defaultProperty);
+        if (type == null || getter == null || (setterMethod != null && setter == null)) {
+          throw UNSUPPORTED;
+        }
+        Operand listItem = itemType == null ? null : coerce(item.operand(), itemType);
+        Operand propertyValue = coerce(item.operand(), type);
+        emit(frame -> {
+          Object target = frame.values[parentSlot];
+          Object current = getter.get(target);
+          if (current instanceof List<?>) {
+            @SuppressWarnings("unchecked")
+            List<Object> list = (List<Object>) current;
+            list.add(listItem == null ? BeanAdapter.coerce(frame.values[itemSlot], null) : listItem.get(frame));
+          } else if (setter == null) {
+            throw new PropertyNotFoundException("Property \"" + defaultProperty + "\" does not exist"
+                + " or is read-only.");
+          } else {
+            setter.set(target, propertyValue.get(frame));
+          }
+        });
+      }
+    }
+
+    // A property element of the value
+    private void propertyElement(Value parent, Node element) throws Unsupported {
+      line = element.event.line;
+      String name = element.event.localName;
+      if (!parent.exact
+          || Map.class.isAssignableFrom(parent.type)
+          || name.startsWith(FXMLLoader.EVENT_HANDLER_PREFIX)
+          || element.event.attributes.length > 0) {
+        throw UNSUPPORTED;
+      }
+      Class<?> type = BeanAdapter.getPropertyType(parent.type, name);
+      if (type == null) {
+        throw UNSUPPORTED;
+      }
+
+      if (BeanAdapter.getSetter(parent.type, name) != null) {
+        // Each child is set to the property
+        for (Object child : element.children) {
+          if (child instanceof String) {
+            setProperty(parent, name, new Constant(normalize((String) child)));
+          } else {
+            Node node = (Node) child;
+            if (node.kind == FXMLSymbol.DEFINE) {
+              defineElement(node);
+            } else if (node.kind == FXMLSymbol.PROPERTY || node.kind == FXMLSymbol.STATIC_PROPERTY) {
+              throw UNSUPPORTED;
+            } else {
+              Value item = compileValue(node, false);
+              setProperty(parent, name, item.operand());
+            }
+          }
+        }
+        return;
+      }
+
+      // A read-only property holds the list the children are added to
+      Getter getter = getter(parent.type, name);
+      if (!List.class.isAssignableFrom(type) || getter == null) {
+        throw UNSUPPORTED;
+      }
+      Class<?> itemType = BeanAdapter.getListItemType(parent.type, name);
+      int parentSlot = parent.slot;
+      int slot = size++;
+      emit(frame -> {
+        Object value = getter.get(frame.values[parentSlot]);
+        if (value == null) {
+          throw frame.error("Invalid property.");
+        }
+        frame.values[slot] = value;
+      });
+      Value list = new Value(slot, type, false);
+      for (Object child : element.children) {
+        if (itemType == null) {
+          throw UNSUPPORTED;
+        }
+        if (child instanceof String) {
+          add(list, new Constant(normalize((String) child)), itemType);
+        } else {
+          Node node = (Node) child;
+          if (node.kind == FXMLSymbol.DEFINE) {
+            defineElement(node);
+          } else if (node.kind == FXMLSymbol.PROPERTY || node.kind == FXMLSymbol.STATIC_PROPERTY) {
+            throw UNSUPPORTED;
+          } else {
+            Value item = compileValue(node, false);
+            add(list, item.operand(), itemType);
+          }
+        }
+      }
+    }
+
+    // A static property element of the value
+    private void staticPropertyElement(Value parent, Node element) throws Unsupported {
+      line = element.event.line;
+      String localName = element.event.localName;
+      int i = localName.lastIndexOf('.');
+      Class<?> sourceType = getType(localName.substring(0, i));
+      String name = localName.substring(i + 1);
+      if (element.event.attributes.length > 0) {
+        throw UNSUPPORTED;
+      }
+      for (Object child : element.children) {
+        if (child instanceof String) {
+          staticProperty(parent, sourceType, name, new Constant(normalize((String) child)));
+        } else {
+          Node node = (Node) child;
+          if (node.kind == FXMLSymbol.DEFINE) {
+            defineElement(node);
+          } else if (node.kind == FXMLSymbol.PROPERTY || node.kind == FXMLSymbol.STATIC_PROPERTY) {
+            throw UNSUPPORTED;
+          } else {
+            Value item = compileValue(node, false);
+            staticProperty(parent, sourceType, name, item.operand());
+          }
+        }
+      }
+    }
+
+    // The children of fx:define are created, but not added to anything
+    private void defineElement(Node element) throws Unsupported {
+      line = element.event.line;
+      if (element.event.attributes.length > 0) {
+        throw UNSUPPORTED;
+      }
+      for (Object child : element.children) {
+        if (child instanceof String) {
+          throw UNSUPPORTED;
+        }
+        Node node = (Node) child;
+        if (node.kind == FXMLSymbol.DEFINE) {
+          defineElement(node);
+        } else if (node.kind == FXMLSymbol.PROPERTY || node.kind == FXMLSymbol.STATIC_PROPERTY) {
+          throw UNSUPPORTED;
+        } else {
+          compileValue(node, false);
+        }
+      }
+    }
+
+    private void propertyAttribute(Value value, String name, String attributeValue) throws Unsupported {
+      if (!value.exact || isBindingExpression(attributeValue)) {
+        throw UNSUPPORTED;
+      }
+      int slot = value.slot;
+      if (Map.class.isAssignableFrom(value.type)) {
+        Operand operand = resolve(attributeValue);
+        emit(frame -> {
+          @SuppressWarnings("unchecked")
+          Map<String, Object> map = (Map<String, Object>) frame.values[slot];
+          map.put(name, operand.get(frame));
+        });
+        return;
+      }
+
+      Class<?> type = BeanAdapter.getPropertyType(value.type, name);
+      if (type == null) {
+        throw UNSUPPORTED;
+      }
+      if (List.class.isAssignableFrom(type) && BeanAdapter.getSetter(value.type, name) == null) {
+        // A read-only list gets the comma separated items
+        if (attributeValue.length() > 0) {
+          Class<?> itemType = BeanAdapter.getListItemType(value.type, name);
+          if (itemType == null) {
+            throw UNSUPPORTED;
+          }
+          for (String item : attributeValue.split(FXMLLoader.ARRAY_COMPONENT_DELIMITER)) {
+            addToList(value, name, coerce(resolve(item.trim()), itemType));
+          }
+        }
+      } else if (type.isArray()) {
+        // An array gets the comma separated items
+        Class<?> componentType = type.getComponentType();
+        String[] items = attributeValue.length() > 0
+            ? attributeValue.split(FXMLLoader.ARRAY_COMPONENT_DELIMITER)
+            : new String[0];
+        Operand[] operands = new Operand[items.length];
+        for (int i = 0; i < items.length; i++) {
+          operands[i] = coerce(resolve(items[i].trim()), componentType);
+        }
+        setProperty(value, name, new TypedOperand(type, frame -> {
+          Object array = Array.newInstance(componentType, operands.length);
+          for (int i = 0; i < operands.length; i++) {
+            Array.set(array, i, operands[i].get(frame));
+          }
+          return array;
+        }));
+      } else {
+        setProperty(value, name, resolve(attributeValue));
+      }
+    }
+
+    private void eventHandlerAttribute(Value value, String name, String handler) throws Unsupported {
+      if (!value.exact
+          || Map.class.isAssignableFrom(value.type)
+          || name.endsWith(FXMLLoader.CHANGE_EVENT_HANDLER_SUFFIX)) {
+        throw UNSUPPORTED;
+      }
+      Class<?> type = BeanAdapter.getPropertyType(value.type, name);
+      Setter setter = setter(BeanAdapter.getSetter(value.type, name), 0, name);
+      if (type == null || setter == null) {
+        throw UNSUPPORTED;
+      }
+      int slot = value.slot;
+      if (handler.startsWith(FXMLLoader.CONTROLLER_METHOD_PREFIX)
+          && handler.length() > FXMLLoader.CONTROLLER_METHOD_PREFIX.length()
+          && !handler.startsWith(FXMLLoader.CONTROLLER_METHOD_PREFIX, FXMLLoader.CONTROLLER_METHOD_PREFIX.length())) {
+        // A method of the controller
+        emit(frame -> {
+          EventHandler<?> eventHandler = frame.loader.getControllerEventHandler(handler);
+          if (eventHandler == null) {
+            throw frame.error("Error resolving " + name + "='" + handler
+                + "', either the event handler is not in the Namespace or there is an error in the script.");
+          }
+          setter.set(frame.values[slot], BeanAdapter.coerce(eventHandler, type));
+        });
+      } else if (handler.startsWith(FXMLLoader.EXPRESSION_PREFIX)
+          && handler.length() > FXMLLoader.EXPRESSION_PREFIX.length()) {
+        // An event handler of the namespace
+        String expression = handler.substring(FXMLLoader.EXPRESSION_PREFIX.length());
+        KeyPath path = KeyPath.parse(expression);
+        emit(frame -> {
+          Object eventHandler = Expression.get(frame.loader.getNamespace(), path);
+          if (eventHandler == null) {
+            throw frame.error("Unable to resolve expression : $" + expression);
+          }
+          if (!(eventHandler instanceof EventHandler)) {
+            throw frame.error("Error resolving \"" + handler + "\" expression."
+                + "Does not point to a " + EventHandler.class.getName());
+          }
+          setter.set(frame.values[slot], BeanAdapter.coerce(eventHandler, type));
+        });
+      } else {
+        throw UNSUPPORTED;
+      }
+    }
+
+    // Sets a static property, with the setter resolved when the classes of the target and the
+    // value are known
+    private void staticProperty(Value target, Class<?> sourceType, String name, Operand operand)
+        throws Unsupported {
+      int slot = target.slot;
+      Class<?> valueType = valueType(operand);
+      if (target.exact && valueType != null) {
+        Method method = BeanAdapter.getStaticSetterMethod(sourceType, name, valueType, target.type);
+        Operand value = operand;
+        if (method == null) {
+          Class<?> type = BeanAdapter.getType(sourceType, name, target.type);
+          if (type == null) {
+            throw UNSUPPORTED;
+          }
+          method = BeanAdapter.getStaticSetterMethod(sourceType, name, type, target.type);
+          value = coerce(operand, type);
+        }
+        Setter setter = method == null ? null : setter(method, 1, name);
+        if (setter != null) {
+          Operand setterValue = value;
+          emit(frame -> setter.set(frame.values[slot], setterValue.get(frame)));
+          return;
+        }
+      }
+      emit(frame -> BeanAdapter.put(frame.values[slot], sourceType, name, operand.get(frame)));
+    }
+
+    // Sets a property of a bean of a known class, as BeanAdapter does
+    private void setProperty(Value target, String name, Operand operand) throws Unsupported {
+      Class<?> type = BeanAdapter.getPropertyType(target.type, name);
+      Method method = BeanAdapter.getSetter(target.type, name);
+      if (type == null || method == null) {
+        throw UNSUPPORTED;
+      }
+      int slot = target.slot;
+      Setter setter = setter(method, 0, name);
+      if (setter == null) {
+        // Called reflectively
+        emit(frame -> new BeanAdapter(frame.values[slot]).put(name, operand.get(frame)));
+        return;
+      }
+      Operand value = coerce(operand, type);
+      emit(frame -> setter.set(frame.values[slot], value.get(frame)));
+    }
+
+    // Adds an item to a read-only list property of a bean of a known class
+    private void addToList(Value target, String name, Operand item) throws Unsupported {
+      Getter getter = getter(target.type, name);
+      if (getter == null) {
+        throw UNSUPPORTED;
+      }
+      int slot = target.slot;
+      emit(frame -> {
+        @SuppressWarnings("unchecked")
+        List<Object> list = (List<Object>) getter.get(frame.values[slot]);
+        list.add(item.get(frame));
+      });
+    }
+
+    // Adds an item to a list value
+    private void add(Value list, Operand item, Class<?> itemType) {
+      int slot = list.slot;
+      Operand value = coerce(item, itemType);
+      emit(frame -> {
+        @SuppressWarnings("unchecked")
+        List<Object> target = (List<Object>) frame.values[slot];
+        target.add(value.get(frame));
+      });
+    }
+
+    // An attribute value with its prefix resolved
+    private Operand resolve(String value) throws Unsupported {
+      if (value.startsWith(FXMLLoader.ESCAPE_PREFIX)) {
+        value = value.substring(FXMLLoader.ESCAPE_PREFIX.length());
+        if (value.length() == 0
+            || !(value.startsWith(FXMLLoader.ESCAPE_PREFIX)
+                || value.startsWith(FXMLLoader.RELATIVE_PATH_PREFIX)
+                || value.startsWith(FXMLLoader.RESOURCE_KEY_PREFIX)
+                || value.startsWith(FXMLLoader.EXPRESSION_PREFIX)
+                || value.startsWith(FXMLLoader.BI_DIRECTIONAL_BINDING_PREFIX))) {
+          throw UNSUPPORTED;
+        }
+        return new Constant(value);
+      } else if (value.startsWith(FXMLLoader.RELATIVE_PATH_PREFIX)) {
+        value = value.substring(FXMLLoader.RELATIVE_PATH_PREFIX.length());
+        // The deprecated escape sequence prints a warning on each load
+        if (value.length() == 0 || value.startsWith(FXMLLoader.RELATIVE_PATH_PREFIX)) {
+          throw UNSUPPORTED;
+        }
+        if (value.charAt(0) == '/') {
+          URL resource = classLoader.getResource(value.substring(1));
+          if (resource == null) {
+            throw UNSUPPORTED;
+          }
+          return new Constant(resource.toString());
+        }
+        try {
+          return new Constant(new URL(location, value).toString());
+        } catch (MalformedURLException exception) {
+          throw UNSUPPORTED;
+        }
+      } else if (value.startsWith(FXMLLoader.RESOURCE_KEY_PREFIX)) {
+        String key = value.substring(FXMLLoader.RESOURCE_KEY_PREFIX.length());
+        if (key.length() == 0 || key.startsWith(FXMLLoader.RESOURCE_KEY_PREFIX)) {
+          throw UNSUPPORTED;
+        }
+        return new TypedOperand(String.class, frame -> {
+          ResourceBundle resources = frame.loader.getResources();
+          if (resources == null) {
+            throw frame.error("No resources specified.");
+          }
+          if (!resources.containsKey(key)) {
+            throw frame.error("Resource \"" + key + "\" not found.");
+          }
+          return resources.getString(key);
+        });
+      } else if (value.startsWith(FXMLLoader.EXPRESSION_PREFIX)) {
+        String expression = value.substring(FXMLLoader.EXPRESSION_PREFIX.length());
+        if (expression.length() == 0 || expression.startsWith(FXMLLoader.EXPRESSION_PREFIX)) {
+          throw UNSUPPORTED;
+        } else if (expression.equals(FXMLLoader.NULL_KEYWORD)) {
+          return new Constant(null);
+        }
+        KeyPath path = KeyPath.parse(expression);
+        return frame -> Expression.get(frame.loader.getNamespace(), path);
+      }
+      return new Constant(value);
+    }
+
+    // Converts the values of the operand to the type. Constants of immutable types are converted
+    // once, the converters of values of a known class are resolved once
+    private Operand coerce(Operand operand, Class<?> type) {
+      if (operand instanceof Constant) {
+        Object value = ((Constant) operand).value;
+        if (value == null || type.isInstance(value)) {
+          return operand;
+        }
+        if (isImmutable(type) && !Coercion.isRegistered(type)) {
+          return new Constant(BeanAdapter.coerce(value, type));
+        }
+        Function<Object, Object> converter = Coercion.getCachedConverter(value.getClass(), type);
+        return frame -> converter.apply(value);
+      } else if (operand instanceof TypedOperand) {
+        Class<?> valueType = ((TypedOperand) operand).type;
+        if (type.isAssignableFrom(valueType)) {
+          return operand;
+        }
+        Function<Object, Object> converter = Coercion.getCachedConverter(valueType, type);
+        return new TypedOperand(type, frame -> {
+          Object value = operand.get(frame);
+          return value == null ? null : converter.apply(value);
+        });
+      }
+      return frame -> BeanAdapter.coerce(operand.get(frame), type);
+    }
+
+    // The class of the values of the operand, if they are never null and of a single class
+    private static Class<?> valueType(Operand operand) {
+      if (operand instanceof Constant) {
+        Object value = ((Constant) operand).value;
+        return value == null ? null : value.getClass();
+      } else if (operand instanceof TypedOperand) {
+        return ((TypedOperand) operand).type;
+      }
+      return null;
+    }
+
+    private static boolean isImmutable(Class<?> type) {
+      return type.isPrimitive()
+          || type == String.class
+          || type == Boolean.class
+          || type == Character.class
+          || type == Byte.class
+          || type == Short.class
+          || type == Integer.class
+          || type == Long.class
+          || type == Float.class
+          || type == Double.class
+          || type == Number.class
+          || type == BigInteger.class
+          || type == BigDecimal.class
+          || type.isEnum();
+    }
+
+    private static boolean isBindingExpression(String value) {
+      return (value.startsWith(FXMLLoader.BINDING_EXPRESSION_PREFIX)
+          && value.endsWith(FXMLLoader.BINDING_EXPRESSION_SUFFIX))
+          || value.startsWith(FXMLLoader.BI_DIRECTIONAL_BINDING_PREFIX);
+    }
+
+    private static String normalize(String text) {
+      return FXMLLoader.extraneousWhitespacePattern.matcher(text).replaceAll(" ").trim();
+    }
+
+    private static Getter getter(Class<?> type, String name) {
+      MethodHandle handle = handle(BeanAdapter.getGetter(type, name), GETTER_TYPE);
+      return handle == null ? null : new Getter(handle);
+    }
+
+    // The setter with its value parameter at the given index, or null if it is not public
+    private static Setter setter(Method method, int parameter, String name) {
+      MethodHandle handle = handle(method, SETTER_TYPE);
+      return handle == null ? null : new Setter(handle, name, method.getParameterTypes()[parameter]);
+    }
+
+    private static MethodHandle handle(Method method, MethodType type) {
+      if (method == null) {
+        return null;
+      }
+      try {
+        return MethodHandles.publicLookup().unreflect(method).asType(type);
+      } catch (IllegalAccessException exception) {
+        return null;
+      }
+    }
+  }
+}
@@ -0,0 +1,682 @@
+/*
+ * Copyright 2019 XDean
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xdean.fastfxml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * A pull parser for FXML documents encoded in UTF-8, used in place of StAX when
+ * {@link FXMLLoader#setUseLexer(boolean)} is set.
+ * <p>
+ * It works on the bytes of the document and reports the events the loader uses, coalescing text
+ * and CDATA like the StAX parser configured by the loader. Element and attribute names are
+ * interned in a {@link FXMLSymbol.Table}, so a name seen before costs a hash lookup and no
+ * allocation. Document type declarations and entities other than the predefined ones are not
+ * supported.
+ * <p>
+ * Instances are reused through {@link FXMLCache}.
+ */
+final class FXMLLexer extends FXMLStreamReader {
+  private static final String XMLNS = XMLConstants.XMLNS_ATTRIBUTE;
+
+  private final FXMLSymbol.Table symbols;
+
+  // The document being read, either the caller's buffer or a view of the pooled array
+  private ByteBuffer data;
+  private byte[] buffer = new byte[8192];
+  private int length;
+  private int position;
+  private int line;
+
+  private int eventType;
+  private int eventLine;
+  private FXMLSymbol symbol;
+  private boolean selfClosing;
+
+  private FXMLSymbol[] attributeSymbols = new FXMLSymbol[8];
+  private String[] attributeValues = new String[8];
+  private int attributeCount;
+  // whether an fx:lazy attribute was read from the current document
+  private boolean lazyAttribute;
+
+  private char[] text = new char[256];
+  private int textLength;
+  private boolean whiteSpace;
+  private String piTarget;
+  private String piData;
+
+  private FXMLSymbol[] elements = new FXMLSymbol[16];
+  private int depth;
+  private boolean rootSeen;
+
+  private String[] namespacePrefixes = new String[4];
+  private String[] namespaceURIs = new String[4];
+  private int[] namespaceDepths = new int[4];
+  private int namespaceCount;
+
+  FXMLLexer(FXMLSymbol.Table symbols) {
+    this.symbols = symbols;
+  }
+
+  /**
+   * Reads the document from the given stream and rewinds the lexer to its start.
+   */
+  void open(InputStream inputStream) throws IOException {
+    int size = 0;
+    int n;
+    while ((n = inputStream.read(buffer, size, buffer.length - size)) != -1) {
+      size += n;
+      if (size == buffer.length) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+    }
+    open(ByteBuffer.wrap(buffer, 0, size));
+  }
+
+  /**
+   * Rewinds the lexer to the start of the document held by the remaining bytes of the given buffer.
+   * The buffer is read in place and must not change until the lexer is cleared.
+   */
+  void open(ByteBuffer document) {
+    data = document;
+    position = document.position();
+    length = document.limit();
+    if (startsWith("\u00EF\u00BB\u00BF")) {
+      position += 3;
+    }
+    line = 1;
+    eventType = START_DOCUMENT;
+    eventLine = 1;
+    symbol = null;
+    selfClosing = false;
+    attributeCount = 0;
+    lazyAttribute = false;
+    depth = 0;
+    rootSeen = false;
+    namespaceCount = 0;
+  }
+
+  /**
+   * Drops the references to the last document.
+   */
+  void clear() {
+    Arrays.fill(attributeValues, 0, attributeCount, null);
+    attributeCount = 0;
+    piTarget = null;
+    piData = null;
+    data = null;
+    if (buffer.length > 65536) {
+      buffer = new byte[8192];
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    return eventType != END_DOCUMENT;
+  }
+
+  @Override
+  public int next() throws XMLStreamException {
+    if (eventType == END_DOCUMENT) {
+      throw new XMLStreamException("No more events.");
+    }
+    if (eventType == END_ELEMENT) {
+      while (namespaceCount > 0 && namespaceDepths[namespaceCount - 1] > depth) {
+        namespaceCount--;
+      }
+    }
+    if (selfClosing) {
+      selfClosing = false;
+      depth--;
+      return eventType = END_ELEMENT;
+    }
+
+    while (true) {
+      eventLine = line;
+      if (position >= length) {
+        if (depth > 0) {
+          throw error("Unexpected end of document");
+        }
+        return eventType = END_DOCUMENT;
+      }
+      if (data.get(position) != '<' || startsWith("<![CDATA[")) {
+        readText();
+        if (depth > 0) {
+          return eventType = CHARACTERS;
+        } else if (!whiteSpace) {
+          throw error("Content is not allowed outside the root element");
+        }
+      } else if (startsWith("<?")) {
+        readProcessingInstruction();
+        if (!piTarget.equalsIgnoreCase("xml")) {
+          return eventType = PROCESSING_INSTRUCTION;
+        }
+      } else if (startsWith("<!--")) {
+        readComment();
+        return eventType = COMMENT;
+      } else if (startsWith("<!")) {
+        throw error("Document type declarations are not supported");
+      } else if (startsWith("</")) {
+        readEndTag();
+        return eventType = END_ELEMENT;
+      } else {
+        readStartTag();
+        return eventType = START_ELEMENT;
+      }
+    }
+  }
+
+  private void readStartTag() throws XMLStreamException {
+    position++;
+    symbol = readName();
+    if (depth == 0 && rootSeen) {
+      throw error("Only one root element is allowed");
+    }
+    Arrays.fill(attributeValues, 0, attributeCount, null);
+    attributeCount = 0;
+    push(symbol);
+
+    while (true) {
+      boolean space = skipWhiteSpace();
+      if (position >= length) {
+        throw error("Unexpected end of document");
+      }
+      byte b = data.get(position);
+      if (b == '>') {
+        position++;
+        break;
+      } else if (b == '/') {
+        expect("/>");
+        selfClosing = true;
+        break;
+      } else if (!space) {
+        throw error("Whitespace is required between attributes");
+      }
+
+      FXMLSymbol name = readName();
+      skipWhiteSpace();
+      expect("=");
+      skipWhiteSpace();
+      String value = readAttributeValue();
+
+      if (name.prefix == null && name.localName.equals(XMLNS)) {
+        declareNamespace(XMLConstants.DEFAULT_NS_PREFIX, value);
+      } else if (XMLNS.equals(name.prefix)) {
+        declareNamespace(name.localName, value);
+      } else {
+        // StAX rejects them too, the document is not well-formed
+        for (int i = 0; i < attributeCount; i++) {
+          if (attributeSymbols[i].sameName(name)) {
+            throw error("Attribute " + qualifiedName(name) + " is specified more than once");
+          }
+        }
+        if (attributeCount == attributeSymbols.length) {
+          attributeSymbols = Arrays.copyOf(attributeSymbols, attributeCount * 2);
+          attributeValues = Arrays.copyOf(attributeValues, attributeCount * 2);
+        }
+        attributeSymbols[attributeCount] = name;
+        attributeValues[attributeCount] = value;
+        attributeCount++;
+        if (name.prefix == FXMLLoader.FX_NAMESPACE_PREFIX && name.localName.equals(FXMLLoader.FX_LAZY_ATTRIBUTE)) {
+          lazyAttribute = true;
+        }
+      }
+    }
+
+    checkBound(symbol);
+    for (int i = 0; i < attributeCount; i++) {
+      checkBound(attributeSymbols[i]);
+    }
+  }
+
+  private void push(FXMLSymbol element) {
+    if (depth == 0) {
+      rootSeen = true;
+    }
+    if (depth == elements.length) {
+      elements = Arrays.copyOf(elements, depth * 2);
+    }
+    elements[depth++] = element;
+  }
+
+  private void readEndTag() throws XMLStreamException {
+    position += 2;
+    FXMLSymbol name = readName();
+    skipWhiteSpace();
+    expect(">");
+    if (depth == 0 || !elements[depth - 1].sameName(name)) {
+      throw error("Unexpected end tag </" + qualifiedName(name) + ">");
+    }
+    symbol = name;
+    depth--;
+  }
+
+  private void declareNamespace(String prefix, String uri) {
+    if (namespaceCount == namespacePrefixes.length) {
+      namespacePrefixes = Arrays.copyOf(namespacePrefixes, namespaceCount * 2);
+      namespaceURIs = Arrays.copyOf(namespaceURIs, namespaceCount * 2);
+      namespaceDepths = Arrays.copyOf(namespaceDepths, namespaceCount * 2);
+    }
+    namespacePrefixes[namespaceCount] = prefix;
+    namespaceURIs[namespaceCount] = uri;
+    namespaceDepths[namespaceCount] = depth;
+    namespaceCount++;
+  }
+
+  private void checkBound(FXMLSymbol name) throws XMLStreamException {
+    if (name.prefix != null && !name.prefix.equals(XMLConstants.XML_NS_PREFIX)
+        && getNamespaceURI(name.prefix) == null) {
+      throw error("The prefix \"" + name.prefix + "\" for \"" + qualifiedName(name) + "\" is not bound");
+    }
+  }
+
+  private void readText() throws XMLStreamException {
+    textLength = 0;
+    whiteSpace = true;
+    while (position < length) {
+      byte b = data.get(position);
+      if (b == '<') {
+        if (!startsWith("<![CDATA[")) {
+          break;
+        }
+        position += 9;
+        int end = indexOf("]]>");
+        while (position < end) {
+          appendChar(false);
+        }
+        position = end + 3;
+      } else if (b == '&') {
+        appendText(readReference());
+        whiteSpace = false;
+      } else {
+        appendChar(false);
+      }
+    }
+  }
+
+  private void readComment() throws XMLStreamException {
+    position += 4;
+    int end = indexOf("-->");
+    textLength = 0;
+    while (position < end) {
+      appendChar(false);
+    }
+    position = end + 3;
+  }
+
+  private void readProcessingInstruction() throws XMLStreamException {
+    position += 2;
+    int start = position;
+    while (position < length && !isWhiteSpace(data.get(position)) && !startsWith("?>")) {
+      position++;
+    }
+    piTarget = string(start, position, StandardCharsets.UTF_8);
+    skipWhiteSpace();
+    int end = indexOf("?>");
+    textLength = 0;
+    while (position < end) {
+      appendChar(false);
+    }
+    piData = new String(text, 0, textLength);
+    position = end + 2;
+  }
+
+  private String readAttributeValue() throws XMLStreamException {
+    if (position >= length || (data.get(position) != '"' && data.get(position) != '\'')) {
+      throw error("Attribute value must be quoted");
+    }
+    byte quote = data.get(position++);
+    textLength = 0;
+    while (true) {
+      if (position >= length) {
+        throw error("Unexpected end of document");
+      }
+      byte b = data.get(position);
+      if (b == quote) {
+        position++;
+        break;
+      } else if (b == '<') {
+        throw error("'<' is not allowed in attribute values");
+      } else if (b == '&') {
+        appendText(readReference());
+      } else {
+        appendChar(true);
+      }
+    }
+    return new String(text, 0, textLength);
+  }
+
+  private String readReference() throws XMLStreamException {
+    int end = position + 1;
+    while (end < length && data.get(end) != ';' && end - position < 12) {
+      end++;
+    }
+    if (end >= length || data.get(end) != ';') {
+      throw error("Invalid entity reference");
+    }
+    String name = string(position + 1, end, StandardCharsets.US_ASCII);
+    position = end + 1;
+    switch (name) {
+    case "lt":
+      return "<";
+    case "gt":
+      return ">";
+    case "amp":
+      return "&";
+    case "quot":
+      return "\"";
+    case "apos":
+      return "'";
+    default:
+      try {
+        if (name.startsWith("#x")) {
+          return new String(Character.toChars(Integer.parseInt(name.substring(2), 16)));
+        } else if (name.startsWith("#")) {
+          return new String(Character.toChars(Integer.parseInt(name.substring(1))));
+        }
+      } catch (IllegalArgumentException exception) {
+        throw error("Invalid character reference &" + name + ";");
+      }
+      throw error("Entity \"" + name + "\" is not supported");
+    }
+  }
+
+  // Decodes one character at the position, normalizing line breaks, and whitespace in attributes
+  private void appendChar(boolean attribute) {
+    int b = data.get(position) & 0xFF;
+    if (b < 0x80) {
+      position++;
+      char c = (char) b;
+      if (c == '\r') {
+        if (position < length && data.get(position) == '\n') {
+          position++;
+        }
+        c = '\n';
+      }
+      if (c == '\n') {
+        line++;
+      }
+      if (attribute && (c == '\n' || c == '\t')) {
+        c = ' ';
+      }
+      if (whiteSpace && !isWhiteSpace((byte) c)) {
+        whiteSpace = false;
+      }
+      append(c);
+      return;
+    }
+
+    whiteSpace = false;
+    int codePoint;
+    int n;
+    if (b >= 0xF0) {
+      codePoint = b & 0x07;
+      n = 3;
+    } else if (b >= 0xE0) {
+      codePoint = b & 0x0F;
+      n = 2;
+    } else if (b >= 0xC0) {
+      codePoint = b & 0x1F;
+      n = 1;
+    } else {
+      position++;
+      append('\uFFFD');
+      return;
+    }
+    position++;
+    for (int i = 0; i < n; i++) {
+      if (position >= length || (data.get(position) & 0xC0) != 0x80) {
+        append('\uFFFD');
+        return;
+      }
+      codePoint = (codePoint << 6) | (data.get(position++) & 0x3F);
+    }
+    if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+      append(Character.highSurrogate(codePoint));
+      append(Character.lowSurrogate(codePoint));
+    } else {
+      append((char) codePoint);
+    }
+  }
+
+  private void appendText(String value) {
+    for (int i = 0, n = value.length(); i < n; i++) {
+      append(value.charAt(i));
+    }
+  }
+
+  private void append(char c) {
+    if (textLength == text.length) {
+      text = Arrays.copyOf(text, textLength * 2);
+    }
+    text[textLength++] = c;
+  }
+
+  private FXMLSymbol readName() throws XMLStreamException {
+    int start = position;
+    while (position < length) {
+      byte b = data.get(position);
+      if (isWhiteSpace(b) || b == '=' || b == '/' || b == '>' || b == '?') {
+        break;
+      }
+      position++;
+    }
+    if (position == start) {
+      throw error("Name expected");
+    }
+    return symbols.get(data, start, position);
+  }
+
+  private boolean skipWhiteSpace() {
+    int start = position;
+    while (position < length && isWhiteSpace(data.get(position))) {
+      if (data.get(position) == '\n') {
+        line++;
+      }
+      position++;
+    }
+    return position > start;
+  }
+
+  private static boolean isWhiteSpace(byte b) {
+    return b == ' ' || b == '\n' || b == '\t' || b == '\r';
+  }
+
+  private String string(int start, int end, Charset charset) {
+    byte[] bytes = new byte[end - start];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = data.get(start + i);
+    }
+    return new String(bytes, charset);
+  }
+
+  private boolean startsWith(String token) {
+    if (position + token.length() > length) {
+      return false;
+    }
+    for (int i = 0, n = token.length(); i < n; i++) {
+      if ((data.get(position + i) & 0xFF) != token.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int indexOf(String token) throws XMLStreamException {
+    for (int i = position, n = length - token.length(); i <= n; i++) {
+      boolean match = true;
+      for (int j = 0; j < token.length(); j++) {
+        if (data.get(i + j) != token.charAt(j)) {
+          match = false;
+          break;
+        }
+      }
+      if (match) {
+        return i;
+      }
+    }
+    throw error("Unterminated " + token);
+  }
+
+  private void expect(String token) throws XMLStreamException {
+    if (!startsWith(token)) {
+      throw error("'" + token + "' expected");
+    }
+    position += token.length();
+  }
+
+  private XMLStreamException error(String message) {
+    return new XMLStreamException("ParseError at [row,col]:[" + line + ",-1]\nMessage: " + message + ".",
+        getLocation());
+  }
+
+  private static String qualifiedName(FXMLSymbol name) {
+    return name.prefix == null ? name.localName : name.prefix + ":" + name.localName;
+  }
+
+  @Override
+  FXMLSymbol getSymbol() {
+    return symbol;
+  }
+
+  @Override
+  boolean hasLazyAttribute() {
+    return lazyAttribute;
+  }
+
+  @Override
+  FXMLSymbol getAttributeSymbol(String prefix, String localName) {
+    // The names are the strings of the symbols, getAttributePrefix() and getAttributeLocalName()
+    for (int i = 0; i < attributeCount; i++) {
+      if (attributeSymbols[i].localName == localName && attributeSymbols[i].prefix == prefix) {
+        return attributeSymbols[i];
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public int getEventType() {
+    return eventType;
+  }
+
+  @Override
+  int getLineNumber() {
+    return eventLine;
+  }
+
+  @Override
+  Collection<String> getTypeNames() {
+    // Every tag ahead, a few extra names from comments or CDATA sections do no harm
+    Set<String> names = new LinkedHashSet<>();
+    for (int i = position; i < length - 1; i++) {
+      if (data.get(i) != '<') {
+        continue;
+      }
+      int start = i + 1;
+      byte first = data.get(start);
+      if (first < 'A' || first > 'Z') {
+        continue;
+      }
+      int end = start;
+      while (end < length) {
+        byte b = data.get(end);
+        if (b <= ' ' || b == '/' || b == '>') {
+          break;
+        }
+        end++;
+      }
+      FXMLSymbol tag = symbols.get(data, start, end);
+      String name = FXMLSymbol.typeNameOf(tag.kind, tag.localName, tag.owner);
+      if (name != null) {
+        names.add(name);
+      }
+      i = end;
+    }
+    return names;
+  }
+
+  @Override
+  public boolean isWhiteSpace() {
+    return eventType == CHARACTERS && whiteSpace;
+  }
+
+  @Override
+  public String getNamespaceURI(String prefix) {
+    for (int i = namespaceCount - 1; i >= 0; i--) {
+      if (namespacePrefixes[i].equals(prefix)) {
+        return namespaceURIs[i];
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public String getPrefix() {
+    return symbol.prefix;
+  }
+
+  @Override
+  public String getLocalName() {
+    return symbol.localName;
+  }
+
+  @Override
+  public int getAttributeCount() {
+    return attributeCount;
+  }
+
+  @Override
+  public String getAttributePrefix(int index) {
+    return attributeSymbols[index].prefix;
+  }
+
+  @Override
+  public String getAttributeLocalName(int index) {
+    return attributeSymbols[index].localName;
+  }
+
+  @Override
+  public String getAttributeValue(int index) {
+    return attributeValues[index];
+  }
+
+  @Override
+  public String getText() {
+    return new String(text, 0, textLength);
+  }
+
+  @Override
+  public String getPITarget() {
+    return piTarget;
+  }
+
+  @Override
+  public String getPIData() {
+    return piData;
+  }
+}
@@ -36,24 +36,41 @@
  */
 package xdean.fastfxml;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.AccessController;
 import java.security.AllPermission;
 import java.security.PrivilegedAction;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 import javax.script.Bindings;
@@ -103,7 +120,9 @@ import sun.reflect.Reflection;
 import sun.reflect.misc.ConstructorUtil;
 import sun.reflect.misc.MethodUtil;
 import sun.reflect.misc.ReflectUtil;
+import xdean.fastfxml.FXMLCache.ClassCache;
 import xdean.fastfxml.FXMLCache.ClassLoaderCache;
+import xdean.fastfxml.FXMLCache.ImportIndex;
 
 /**
  * Loads an object hierarchy from an XML document.
@@ -139,13 +158,14 @@ public class FXMLLoader {
       if (value instanceof List<?>) {
         collection = true;
       } else {
-        Class<?> type = value.getClass();
-        DefaultProperty defaultProperty = type.getAnnotation(DefaultProperty.class);
+        ElementType elementType = getElementType();
 
-        if (defaultProperty != null) {
-          collection = getProperties().get(defaultProperty.value()) instanceof List<?>;
-        } else {
+        if (elementType.defaultProperty == null) {
           collection = false;
+        } else if (elementType.defaultCollection != null) {
+          collection = elementType.defaultCollection;
+        } else {
+          collection = getProperties().get(elementType.defaultProperty) instanceof List<?>;
         }
       }
 
@@ -160,17 +180,17 @@ public class FXMLLoader {
       if (value instanceof List<?>) {
         list = (List<Object>) value;
       } else {
-        Class<?> type = value.getClass();
-        DefaultProperty defaultProperty = type.getAnnotation(DefaultProperty.class);
-        String defaultPropertyName = defaultProperty.value();
+        ElementType elementType = getElementType();
+        String defaultPropertyName = elementType.defaultProperty;
 
         // Get the list value
         list = (List<Object>) getProperties().get(defaultPropertyName);
 
         // Coerce the element to the list item type
-        if (!Map.class.isAssignableFrom(type)) {
-          Type listType = getValueAdapter().getGenericType(defaultPropertyName);
-          element = BeanAdapter.coerce(element, BeanAdapter.getListItemType(listType));
+        if (isTyped()) {
+          element = BeanAdapter.coerce(element, elementType.defaultList
+              ? elementType.defaultItemType
+              : getValueAdapter().getListItemType(defaultPropertyName));
         }
       }
 
@@ -183,13 +203,12 @@ public class FXMLLoader {
       }
 
       // Apply value to this element's properties
-      Class<?> type = this.value.getClass();
-      DefaultProperty defaultProperty = type.getAnnotation(DefaultProperty.class);
+      String defaultProperty = getElementType().defaultProperty;
       if (defaultProperty == null) {
         throw constructLoadException("Element does not define a default property.");
       }
 
-      getProperties().put(defaultProperty.value(), value);
+      getProperties().put(defaultProperty, value);
     }
 
     public void updateValue(Object value) {
@@ -201,6 +220,10 @@ public class FXMLLoader {
       return !(value instanceof Map<?, ?>);
     }
 
+    public ElementType getElementType() {
+      return elementTypes.get(value.getClass());
+    }
+
     public BeanAdapter getValueAdapter() {
       if (valueAdapter == null) {
         valueAdapter = new BeanAdapter(value);
@@ -213,6 +236,10 @@ public class FXMLLoader {
       return (isTyped()) ? getValueAdapter() : (Map<String, Object>) value;
     }
 
+    public boolean isStreamed() {
+      return false;
+    }
+
     public void processStartElement() throws IOException {
       for (int i = 0, n = xmlStreamReader.getAttributeCount(); i < n; i++) {
         String prefix = xmlStreamReader.getAttributePrefix(i);
@@ -267,8 +294,11 @@ public class FXMLLoader {
             instancePropertyAttributes.add(new Attribute(localName, null, value));
           } else {
             // The attribute represents a static property
-            String name = localName.substring(i + 1);
-            Class<?> sourceType = getType(localName.substring(0, i));
+            FXMLSymbol symbol = xmlStreamReader instanceof FXMLStreamReader
+                ? ((FXMLStreamReader) xmlStreamReader).getAttributeSymbol(prefix, localName)
+                : null;
+            String name = symbol == null ? localName.substring(i + 1) : symbol.member;
+            Class<?> sourceType = getType(symbol == null ? localName.substring(0, i) : symbol.owner);
 
             if (sourceType != null) {
               if (loadListener != null) {
@@ -489,12 +519,7 @@ public class FXMLLoader {
         String stringValue) throws LoadException {
       // Split the string and add the values to the list
       List<Object> list = (List<Object>) valueAdapter.get(listPropertyName);
-      Type listType = valueAdapter.getGenericType(listPropertyName);
-      Type itemType = BeanAdapter.getGenericListItemType(listType);
-
-      if (itemType instanceof ParameterizedType) {
-        itemType = ((ParameterizedType) itemType).getRawType();
-      }
+      Class<?> itemType = valueAdapter.getListItemType(listPropertyName);
 
       if (stringValue.length() > 0) {
         String[] values = stringValue.split(ARRAY_COMPONENT_DELIMITER);
@@ -502,8 +527,7 @@ public class FXMLLoader {
         for (String aValue : values) {
           aValue = aValue.trim();
           list.add(
-              BeanAdapter.coerce(resolvePrefixedValue(aValue),
-                  (Class<?>) itemType));
+              BeanAdapter.coerce(resolvePrefixedValue(aValue), itemType));
         }
       }
     }
@@ -550,44 +574,6 @@ public class FXMLLoader {
       return null;
     }
 
-    private MethodHandler getControllerMethodHandle(String handlerName, SupportedType... types) throws LoadException {
-      if (handlerName.startsWith(CONTROLLER_METHOD_PREFIX)) {
-        handlerName = handlerName.substring(CONTROLLER_METHOD_PREFIX.length());
-
-        if (!handlerName.startsWith(CONTROLLER_METHOD_PREFIX)) {
-          if (handlerName.length() == 0) {
-            throw constructLoadException("Missing controller method.");
-          }
-
-          if (controller == null) {
-            throw constructLoadException("No controller specified.");
-          }
-
-          for (SupportedType t : types) {
-            Method method = controllerAccessor
-                .getControllerMethods()
-                .get(t)
-                .get(handlerName);
-            if (method != null) {
-              return new MethodHandler(controller, method, t);
-            }
-          }
-          Method method = controllerAccessor
-              .getControllerMethods()
-              .get(SupportedType.PARAMETERLESS)
-              .get(handlerName);
-          if (method != null) {
-            return new MethodHandler(controller, method, SupportedType.PARAMETERLESS);
-          }
-
-          return null;
-
-        }
-
-      }
-      return null;
-    }
-
     public void processEventHandlerAttributes() throws LoadException {
       if (eventHandlerAttributes.size() > 0 && !staticLoad) {
         for (Attribute attribute : eventHandlerAttributes) {
@@ -788,26 +774,30 @@ public class FXMLLoader {
 
       if (parent != null) {
         if (parent.isCollection()) {
-          parent.add(value);
+          if (parent.isStreamed()) {
+            // Hand the completed item over instead of keeping it in the container
+            streamHandler.accept(value);
+          } else {
+            parent.add(value);
+          }
         } else {
           parent.set(value);
         }
       }
     }
 
+    @Override
+    public boolean isStreamed() {
+      return streamHandler != null && fx_id != null && fx_id.equals(streamContainerId);
+    }
+
     private Object getListValue(Element parent, String listPropertyName, Object value) {
       // If possible, coerce the value to the list item type
       if (parent.isTyped()) {
-        Type listType = parent.getValueAdapter().getGenericType(listPropertyName);
-
-        if (listType != null) {
-          Type itemType = BeanAdapter.getGenericListItemType(listType);
+        BeanAdapter valueAdapter = parent.getValueAdapter();
 
-          if (itemType instanceof ParameterizedType) {
-            itemType = ((ParameterizedType) itemType).getRawType();
-          }
-
-          value = BeanAdapter.coerce(value, (Class<?>) itemType);
+        if (valueAdapter.getGenericType(listPropertyName) != null) {
+          value = BeanAdapter.coerce(value, valueAdapter.getListItemType(listPropertyName));
         }
       }
 
@@ -845,14 +835,14 @@ public class FXMLLoader {
         namespace.put(fx_id, value);
 
         // If the value defines an ID property, set it
-        IDProperty idProperty = value.getClass().getAnnotation(IDProperty.class);
+        String idProperty = getElementType().idProperty;
 
         if (idProperty != null) {
           Map<String, Object> properties = getProperties();
           // set fx:id property value to Node.id only if Node.id was not
           // already set when processing start element attributes
-          if (properties.get(idProperty.value()) == null) {
-            properties.put(idProperty.value(), fx_id);
+          if (properties.get(idProperty) == null) {
+            properties.put(idProperty, fx_id);
           }
         }
 
@@ -863,27 +853,25 @@ public class FXMLLoader {
 
     @Override
     public void processCharacters() throws LoadException {
-      Class<?> type = value.getClass();
-      DefaultProperty defaultProperty = type.getAnnotation(DefaultProperty.class);
+      ElementType elementType = getElementType();
 
       // If the default property is a read-only list, add the value to it;
       // otherwise, set the value as the default property
-      if (defaultProperty != null) {
+      if (elementType.defaultProperty != null) {
         String text = xmlStreamReader.getText();
         text = extraneousWhitespacePattern.matcher(text).replaceAll(" ");
 
-        String defaultPropertyName = defaultProperty.value();
+        String defaultPropertyName = elementType.defaultProperty;
         BeanAdapter valueAdapter = getValueAdapter();
 
-        if (valueAdapter.isReadOnly(defaultPropertyName)
-            && List.class.isAssignableFrom(valueAdapter.getType(defaultPropertyName))) {
+        if (elementType.defaultList) {
           List<Object> list = (List<Object>) valueAdapter.get(defaultPropertyName);
           list.add(getListValue(this, defaultPropertyName, text));
         } else {
           valueAdapter.put(defaultPropertyName, text.trim());
         }
       } else {
-        throw constructLoadException(type.getName() + " does not have a default property.");
+        throw constructLoadException(value.getClass().getName() + " does not have a default property.");
       }
     }
 
@@ -906,6 +894,12 @@ public class FXMLLoader {
 
           fx_id = value;
 
+        } else if (localName.equals(FX_LAZY_ATTRIBUTE)) {
+          // Lazy elements are recorded before reaching here, except the root
+          if (current.parent == null && Boolean.parseBoolean(value)) {
+            throw constructLoadException(FX_NAMESPACE_PREFIX + ":" + FX_LAZY_ATTRIBUTE
+                + " cannot be applied to root element.");
+          }
         } else if (localName.equals(FX_CONTROLLER_ATTRIBUTE)) {
           if (current.parent != null) {
             throw constructLoadException(FX_NAMESPACE_PREFIX + ":" + FX_CONTROLLER_ATTRIBUTE
@@ -924,17 +918,7 @@ public class FXMLLoader {
               throw constructLoadException(exception);
             }
 
-            try {
-              if (controllerFactory == null) {
-                setController(ReflectUtil.newInstance(type));
-              } else {
-                setController(controllerFactory.call(type));
-              }
-            } catch (InstantiationException exception) {
-              throw constructLoadException(exception);
-            } catch (IllegalAccessException exception) {
-              throw constructLoadException(exception);
-            }
+            createController(type);
           }
         } else {
           throw constructLoadException("Invalid attribute.");
@@ -985,11 +969,16 @@ public class FXMLLoader {
       } else if (constant != null) {
         value = BeanAdapter.getConstantValue(type, constant);
       } else if (factory != null) {
-        Method factoryMethod;
-        try {
-          factoryMethod = MethodUtil.getMethod(type, factory, new Class[] {});
-        } catch (NoSuchMethodException exception) {
-          throw constructLoadException(exception);
+        Method factoryMethod = factoryMethods.get(type).get(factory);
+        if (factoryMethod != null) {
+          ReflectUtil.checkPackageAccess(type);
+        } else {
+          try {
+            factoryMethod = MethodUtil.getMethod(type, factory, new Class[] {});
+          } catch (NoSuchMethodException exception) {
+            throw constructLoadException(exception);
+          }
+          factoryMethods.get(type).put(factory, factoryMethod);
         }
 
         try {
@@ -1035,7 +1024,7 @@ public class FXMLLoader {
           throw new NullPointerException();
         }
 
-        return (key.equals(getClass().getAnnotation(DefaultProperty.class).value())) ? items : values.get(key);
+        return (key.equals(elementTypes.get(getClass()).defaultProperty)) ? items : values.get(key);
       }
 
       @Override
@@ -1044,7 +1033,7 @@ public class FXMLLoader {
           throw new NullPointerException();
         }
 
-        if (key.equals(getClass().getAnnotation(DefaultProperty.class).value())) {
+        if (key.equals(elementTypes.get(getClass()).defaultProperty)) {
           throw new IllegalArgumentException();
         }
 
@@ -1126,36 +1115,109 @@ public class FXMLLoader {
         location = new URL(FXMLLoader.this.location, source);
       }
 
-      FXMLLoader fxmlLoader = new FXMLLoader(location, resources,
-          builderFactory, controllerFactory, charset,
-          loaders);
-      fxmlLoader.parentLoader = FXMLLoader.this;
+      return loadInclude(location, resources, charset, fx_id);
+    }
+  }
+
+  // Loads an included document with the settings of this loader, and binds its controller to the
+  // given fx:id
+  Object loadInclude(URL location, ResourceBundle resources, Charset charset, String id) throws IOException {
+    FXMLLoader fxmlLoader = new FXMLLoader(location, resources,
+        builderFactory, controllerFactory, charset,
+        loaders);
+    fxmlLoader.parentLoader = FXMLLoader.this;
+    if (template != null) {
+      fxmlLoader.template = template.getInclude(location, charset);
+    }
+
+    if (isCyclic(FXMLLoader.this, fxmlLoader)) {
+      throw new IOException(
+          String.format(
+              "Including \"%s\" in \"%s\" created cyclic reference.",
+              fxmlLoader.location.toExternalForm(),
+              FXMLLoader.this.location.toExternalForm()));
+    }
+    fxmlLoader.setClassLoader(getClassLoader());
+    fxmlLoader.impl_setStaticLoad(staticLoad);
+    fxmlLoader.setUseLexer(useLexer);
+    fxmlLoader.setUseBinary(useBinary);
+    fxmlLoader.setSourceCache(sourceCache);
+    fxmlLoader.setPrefetchExecutor(prefetchExecutor);
+
+    Object value = fxmlLoader.loadImpl(callerClass);
+
+    if (id != null) {
+      String controllerId = id + CONTROLLER_SUFFIX;
+      Object controller = fxmlLoader.getController();
+
+      namespace.put(controllerId, controller);
+      injectFields(controllerId, controller);
+    }
+
+    return value;
+  }
 
-      if (isCyclic(FXMLLoader.this, fxmlLoader)) {
-        throw new IOException(
-            String.format(
-                "Including \"%s\" in \"%s\" created cyclic reference.",
-                fxmlLoader.location.toExternalForm(),
-                FXMLLoader.this.location.toExternalForm()));
+  // Creates the controller declared by fx:controller
+  void createController(Class<?> type) throws LoadException {
+    try {
+      if (controllerFactory == null) {
+        setController(ReflectUtil.newInstance(type));
+      } else {
+        setController(controllerFactory.call(type));
       }
-      fxmlLoader.setClassLoader(cl);
-      fxmlLoader.impl_setStaticLoad(staticLoad);
+    } catch (InstantiationException exception) {
+      throw constructLoadException(exception);
+    } catch (IllegalAccessException exception) {
+      throw constructLoadException(exception);
+    }
+  }
 
-      Object value = fxmlLoader.loadImpl(callerClass);
+  private MethodHandler getControllerMethodHandle(String handlerName, SupportedType... types) throws LoadException {
+    if (handlerName.startsWith(CONTROLLER_METHOD_PREFIX)) {
+      handlerName = handlerName.substring(CONTROLLER_METHOD_PREFIX.length());
 
-      if (fx_id != null) {
-        String id = this.fx_id + CONTROLLER_SUFFIX;
-        Object controller = fxmlLoader.getController();
+      if (!handlerName.startsWith(CONTROLLER_METHOD_PREFIX)) {
+        if (handlerName.length() == 0) {
+          throw constructLoadException("Missing controller method.");
+        }
+
+        if (controller == null) {
+          throw constructLoadException("No controller specified.");
+        }
+
+        for (SupportedType t : types) {
+          Method method = controllerAccessor
+              .getControllerMethods()
+              .get(t)
+              .get(handlerName);
+          if (method != null) {
+            return new MethodHandler(controller, method, t);
+          }
+        }
+        Method method = controllerAccessor
+            .getControllerMethods()
+            .get(SupportedType.PARAMETERLESS)
+            .get(handlerName);
+        if (method != null) {
+          return new MethodHandler(controller, method, SupportedType.PARAMETERLESS);
+        }
+
+        return null;
 
-        namespace.put(id, controller);
-        injectFields(id, controller);
       }
 
-      return value;
     }
+    return null;
+  }
+
+  // The handler of an event handler attribute naming a controller method, or null if the
+  // controller has no such method
+  EventHandler<? extends Event> getControllerEventHandler(String handlerName) throws LoadException {
+    MethodHandler handler = getControllerMethodHandle(handlerName, SupportedType.EVENT);
+    return handler == null ? null : new ControllerMethodEventHandler<>(handler);
   }
 
-  private void injectFields(String fieldName, Object value) throws LoadException {
+  void injectFields(String fieldName, Object value) throws LoadException {
     if (controller != null && fieldName != null) {
       List<Field> fields = controllerAccessor.getControllerFields().get(fieldName);
       if (fields != null) {
@@ -1243,12 +1305,9 @@ public class FXMLLoader {
       Object sourceValue = Expression.get(namespace, path);
       Class<?> sourceValueType = sourceValue.getClass();
 
-      Constructor<?> constructor = null;
-      try {
-        constructor = ConstructorUtil.getConstructor(sourceValueType, new Class[] { sourceValueType });
-      } catch (NoSuchMethodException exception) {
-        // No-op
-      }
+      // The constructor is cached, the access is checked for each copy
+      ReflectUtil.checkPackageAccess(sourceValueType);
+      Constructor<?> constructor = copyConstructors.get(sourceValueType).orElse(null);
 
       Object value;
       if (constructor != null) {
@@ -1392,12 +1451,16 @@ public class FXMLLoader {
       return (readOnly) ? super.isCollection() : false;
     }
 
+    @Override
+    public boolean isStreamed() {
+      return parent.isStreamed();
+    }
+
     @Override
     public void add(Object element) throws LoadException {
       // Coerce the element to the list item type
       if (parent.isTyped()) {
-        Type listType = parent.getValueAdapter().getGenericType(name);
-        element = BeanAdapter.coerce(element, BeanAdapter.getListItemType(listType));
+        element = BeanAdapter.coerce(element, parent.getValueAdapter().getListItemType(name));
       }
 
       // Add the item to the list
@@ -1646,6 +1709,46 @@ public class FXMLLoader {
     }
   }
 
+  // Class representing the annotations of a value class, read once per class
+  static final class ElementType {
+    // The default property and the ID property, null if not defined
+    public final String defaultProperty;
+    public final String idProperty;
+    // Whether the default property is a list without a setter, and its item type
+    public final boolean defaultList;
+    public final Class<?> defaultItemType;
+    // Whether the default property holds a list, null if only its value can tell
+    public final Boolean defaultCollection;
+
+    public ElementType(Class<?> type) {
+      DefaultProperty defaultPropertyAnnotation = type.getAnnotation(DefaultProperty.class);
+      IDProperty idPropertyAnnotation = type.getAnnotation(IDProperty.class);
+      defaultProperty = defaultPropertyAnnotation == null ? null : defaultPropertyAnnotation.value();
+      idProperty = idPropertyAnnotation == null ? null : idPropertyAnnotation.value();
+
+      defaultList = defaultProperty != null && BeanAdapter.isReadOnlyList(type, defaultProperty);
+      defaultItemType = defaultList ? BeanAdapter.getListItemType(type, defaultProperty) : null;
+
+      if (defaultProperty == null
+          || Map.class.isAssignableFrom(type)
+          || defaultProperty.endsWith(BeanAdapter.PROPERTY_SUFFIX)) {
+        // Maps are their own properties
+        defaultCollection = null;
+      } else if (defaultList) {
+        defaultCollection = true;
+      } else {
+        // A property without a getter reads as null, and a final class can't be a list
+        Class<?> propertyType = BeanAdapter.getPropertyType(type, defaultProperty);
+        if (propertyType == null
+            || (Modifier.isFinal(propertyType.getModifiers()) && !List.class.isAssignableFrom(propertyType))) {
+          defaultCollection = false;
+        } else {
+          defaultCollection = null;
+        }
+      }
+    }
+  }
+
   // Event handler that delegates to a method defined by the controller object
   private static class ControllerMethodEventHandler<T extends Event> implements EventHandler<T> {
     private final MethodHandler handler;
@@ -1794,11 +1897,19 @@ public class FXMLLoader {
   private final LinkedList<FXMLLoader> loaders;
 
   private ClassLoader classLoader = null;
-  private ClassLoaderCache classLoaderCache = FXMLCache.getContext().getClassLoaderCache(getClassLoader());
+  private ClassLoaderCache classLoaderCache = FXMLCache.getClassLoaderCache(getClassLoader());
 
   private boolean staticLoad = false;
+  private boolean useLexer = DEFAULT_USE_LEXER;
+  private boolean useBinary = DEFAULT_USE_BINARY;
+  private FXMLSourceCache sourceCache = defaultSourceCache;
+  private Executor prefetchExecutor = defaultPrefetchExecutor;
+  private String streamContainerId = null;
+  private Consumer<Object> streamHandler = null;
   private LoadListener loadListener = null;
 
+  private FXMLTemplate template = null;
+
   private FXMLLoader parentLoader;
 
   private XMLStreamReader xmlStreamReader = null;
@@ -1806,22 +1917,90 @@ public class FXMLLoader {
 
   private ScriptEngine scriptEngine = null;
 
-  private List<String> packages = new LinkedList<String>();
-  private Map<String, Class<?>> classes = new HashMap<String, Class<?>>();
+  // import targets in document order, and the classes they make visible
+  private List<String> imports = new ArrayList<String>();
+  private ImportIndex importIndex = null;
 
   private ScriptEngineManager scriptEngineManager = null;
 
   private static ClassLoader defaultClassLoader = null;
+  private static FXMLSourceCache defaultSourceCache = null;
+  private static Executor defaultPrefetchExecutor = null;
 
-  private static final Pattern extraneousWhitespacePattern = Pattern.compile("\\s+");
+  static final Pattern extraneousWhitespacePattern = Pattern.compile("\\s+");
 
   private static BuilderFactory DEFAULT_BUILDER_FACTORY = new JavaFXBuilderFactory();
 
+  private static final boolean DEFAULT_USE_LEXER = AccessController
+      .doPrivileged((PrivilegedAction<Boolean>) () -> Boolean.getBoolean("xdean.fastfxml.lexer"));
+  private static final boolean DEFAULT_USE_BINARY = AccessController
+      .doPrivileged((PrivilegedAction<Boolean>) () -> Boolean.getBoolean("xdean.fastfxml.binary"));
+
+  // class -> factory method name -> method
+  private static final ClassCache<Map<String, Method>> factoryMethods = new ClassCache<>(
+      type -> new ConcurrentHashMap<>());
+  // class -> constructor taking an instance of the class, if any
+  private static final ClassCache<Optional<Constructor<?>>> copyConstructors = new ClassCache<>(type -> {
+    try {
+      return Optional.of(ConstructorUtil.getConstructor(type, new Class[] { type }));
+    } catch (NoSuchMethodException exception) {
+      return Optional.empty();
+    }
+  });
+
+  // class -> the annotations that elements consult for each child
+  private static final ClassCache<ElementType> elementTypes = new ClassCache<>(ElementType::new);
+
+  static ElementType getElementType(Class<?> type) {
+    return elementTypes.get(type);
+  }
+
+  // Whether an element of the given class is built by the default builder factory
+  static boolean hasDefaultBuilder(Class<?> type) {
+    return DEFAULT_BUILDER_FACTORY.getBuilder(type) != null;
+  }
+
+  // FXML locations known to have no precompiled sibling, forgotten all at once when full
+  private static final ConcurrentMap<String, Boolean> missingBinaries = new ConcurrentHashMap<>();
+  private static final int MISSING_BINARIES_SIZE = 1024;
+
+  // Binary documents already decoded by location, with the modification time of their file,
+  // forgotten all at once when full
+  private static final ConcurrentMap<String, DecodedBinary> decodedBinaries = new ConcurrentHashMap<>();
+  private static final int DECODED_BINARIES_SIZE = 256;
+
+  private static final class DecodedBinary {
+    final long lastModified;
+    final FXMLDocument document;
+
+    DecodedBinary(long lastModified, FXMLDocument document) {
+      this.lastModified = lastModified;
+      this.document = document;
+    }
+  }
+
   /**
    * The character set used when character set is not explicitly specified
    */
   public static final String DEFAULT_CHARSET_NAME = "UTF-8";
 
+  /**
+   * The extension of FXML documents
+   */
+  public static final String FXML_EXTENSION = ".fxml";
+  /**
+   * The extension of precompiled binary FXML documents. When loading from a location with
+   * {@link #setUseBinary(boolean)} enabled, a sibling file with this extension is read instead of
+   * the FXML document if present.
+   *
+   * @see FXMLTemplate#write(java.io.OutputStream)
+   */
+  public static final String BINARY_EXTENSION = ".fxmlb";
+  /**
+   * The size from which {@link #load(Path)} maps a file into memory instead of reading it.
+   */
+  public static final int MAPPED_FILE_SIZE = 64 * 1024;
+
   /**
    * The tag name of language processing instruction
    */
@@ -1857,6 +2036,13 @@ public class FXMLLoader {
    * The name of 'fx:factory' attribute
    */
   public static final String FX_FACTORY_ATTRIBUTE = "factory";
+  /**
+   * The name of 'fx:lazy' attribute. An element with <tt>fx:lazy="true"</tt> is not instantiated
+   * while loading; its <tt>fx:id</tt> is bound to a {@link java.util.function.Supplier} that loads
+   * the element on first call, and the element is not added to its parent. A failure to load it is
+   * thrown from the supplier as {@link java.io.UncheckedIOException}.
+   */
+  public static final String FX_LAZY_ATTRIBUTE = "lazy";
 
   /**
    * The tag name of &lt;fx:include&gt;
@@ -2320,6 +2506,123 @@ public class FXMLLoader {
     this.charset = charset;
   }
 
+  /**
+   * Returns whether documents are parsed by the built-in FXML lexer instead of StAX.
+   */
+  public boolean isUseLexer() {
+    return useLexer;
+  }
+
+  /**
+   * Sets whether documents are parsed by the built-in FXML lexer instead of StAX. The lexer reads
+   * UTF-8 documents without document type declarations; documents in other character sets are
+   * still parsed by StAX. Defaults to the <tt>xdean.fastfxml.lexer</tt> system property.
+   *
+   * @param useLexer
+   */
+  public void setUseLexer(boolean useLexer) {
+    this.useLexer = useLexer;
+  }
+
+  /**
+   * Returns whether a precompiled binary sibling is looked for when loading from a location.
+   */
+  public boolean isUseBinary() {
+    return useBinary;
+  }
+
+  /**
+   * Sets whether a precompiled binary sibling, with the {@link #BINARY_EXTENSION} extension, is
+   * read instead of the FXML document when loading from a location. Looking for it costs a probe
+   * per load. Files are checked every time, other locations found without one are remembered until
+   * {@link #clearCaches(ClassLoader)}.
+   * Defaults to the <tt>xdean.fastfxml.binary</tt> system property.
+   *
+   * @param useBinary
+   */
+  public void setUseBinary(boolean useBinary) {
+    this.useBinary = useBinary;
+  }
+
+  /**
+   * Returns the executor loading classes ahead of the parser, or <tt>null</tt>.
+   */
+  public Executor getPrefetchExecutor() {
+    return prefetchExecutor;
+  }
+
+  /**
+   * Sets the executor loading classes ahead of the parser. When the root element is reached, the
+   * imports are known, and the class names of the remaining elements are resolved and initialized
+   * on the executor while the document is being loaded. The names are known in advance for
+   * documents parsed by the lexer, precompiled or compiled into a {@link FXMLTemplate}; documents
+   * parsed by StAX are not prefetched. The names of a document held by the source cache are scanned
+   * once. Included documents use the same executor. Defaults to
+   * {@link #getDefaultPrefetchExecutor()}.
+   *
+   * @param prefetchExecutor The executor to use, or <tt>null</tt> to load classes when needed.
+   */
+  public void setPrefetchExecutor(Executor prefetchExecutor) {
+    this.prefetchExecutor = prefetchExecutor;
+  }
+
+  /**
+   * Returns the <tt>fx:id</tt> of the element whose items are streamed, or <tt>null</tt>.
+   */
+  public String getStreamContainerId() {
+    return streamContainerId;
+  }
+
+  /**
+   * Returns the handler of the streamed items, or <tt>null</tt>.
+   */
+  public Consumer<Object> getStreamHandler() {
+    return streamHandler;
+  }
+
+  /**
+   * Streams the items of a collection element to a handler instead of adding them to the
+   * collection. Each child of the element with the given <tt>fx:id</tt>, or of one of its
+   * read-only list properties, is passed to the handler as soon as it is complete, and the loader
+   * keeps no reference to it, so the memory taken by the load is bounded by the nesting depth of
+   * the document rather than its size. Items given their own <tt>fx:id</tt> are still kept in the
+   * namespace.
+   * <p>
+   * While streaming, documents are parsed by StAX, which reads the input incrementally, instead of
+   * by the lexer.
+   *
+   * @param containerId The <tt>fx:id</tt> of the collection element, or <tt>null</tt> to stop
+   *          streaming.
+   * @param handler The handler receiving the items in document order.
+   */
+  public void setStreamHandler(String containerId, Consumer<Object> handler) {
+    if (containerId == null || handler == null) {
+      this.streamContainerId = null;
+      this.streamHandler = null;
+    } else {
+      this.streamContainerId = containerId;
+      this.streamHandler = handler;
+    }
+  }
+
+  /**
+   * Returns the cache of the documents loaded from the location, or <tt>null</tt> if they are read
+   * on every load.
+   */
+  public FXMLSourceCache getSourceCache() {
+    return sourceCache;
+  }
+
+  /**
+   * Sets the cache of the documents loaded from the location. Included documents are read through
+   * the same cache. Defaults to {@link #getDefaultSourceCache()}.
+   *
+   * @param sourceCache The cache to use, or <tt>null</tt> to read the documents on every load.
+   */
+  public void setSourceCache(FXMLSourceCache sourceCache) {
+    this.sourceCache = sourceCache;
+  }
+
   /**
    * Returns the classloader used by this serializer.
    *
@@ -2347,11 +2650,15 @@ public class FXMLLoader {
     }
 
     this.classLoader = classLoader;
-    this.classLoaderCache = FXMLCache.getContext().getClassLoaderCache(classLoader);
+    this.classLoaderCache = FXMLCache.getClassLoaderCache(classLoader);
 
     clearImports();
   }
 
+  void setTemplate(FXMLTemplate template) {
+    this.template = template;
+  }
+
   /**
    * Returns the static load flag.
    *
@@ -2402,6 +2709,23 @@ public class FXMLLoader {
     this.loadListener = loadListener;
   }
 
+  /**
+   * Clears the state of the previous load, so that this loader can load again. The namespace is
+   * replaced by a new one and the root and controller are cleared, while the location, resources,
+   * factories, charset and class loader are kept. Reusing a loader this way avoids creating a new
+   * one for each load of the same document. The <tt>fx:lazy</tt> values of the previous load keep
+   * its namespace and controller.
+   */
+  public void reset() {
+    namespace = FXCollections.observableHashMap();
+    root = null;
+    setController(null);
+    current = null;
+    scriptEngine = null;
+    clearImports();
+    loaders.removeIf(loader -> loader == this);
+  }
+
   /**
    * Loads an object hierarchy from a FXML document. The location from which the document will be
    * loaded must have been set by a prior call to {@link #setLocation(URL)}.
@@ -2416,6 +2740,45 @@ public class FXMLLoader {
         : null);
   }
 
+  /**
+   * Loads an object hierarchy from a FXML document on the given executor. The location from which
+   * the document will be loaded must have been set by a prior call to {@link #setLocation(URL)}.
+   * <p>
+   * The whole load, including includes and the initialization of the controller, runs on the
+   * executor, so the nodes must not be attached to a scene before the future completes. Classes
+   * are resolved with the class loader this loader would use on the calling thread. This loader
+   * must not be used until the future completes; then {@link #getController()} and
+   * {@link #getNamespace()} return the loaded controller and namespace.
+   *
+   * @param executor The executor running the load.
+   * @return A future completed with the loaded object hierarchy, or exceptionally with the
+   *         {@link IOException} of a failed load.
+   */
+  @CallerSensitive
+  public <T> CompletableFuture<T> loadAsync(Executor executor) {
+    if (location == null) {
+      throw new IllegalStateException("Location is not set.");
+    }
+
+    final Class<?> callerClass = (System.getSecurityManager() != null)
+        ? Reflection.getCallerClass()
+        : null;
+    final ClassLoader loadClassLoader = (classLoader == null) ? getDefaultClassLoader(callerClass) : classLoader;
+
+    return CompletableFuture.supplyAsync(() -> {
+      Thread thread = Thread.currentThread();
+      ClassLoader contextClassLoader = thread.getContextClassLoader();
+      thread.setContextClassLoader(loadClassLoader);
+      try {
+        return this.<T> loadImpl(callerClass);
+      } catch (IOException exception) {
+        throw new CompletionException(exception);
+      } finally {
+        thread.setContextClassLoader(contextClassLoader);
+      }
+    }, executor);
+  }
+
   /**
    * Loads an object hierarchy from a FXML document.
    *
@@ -2429,13 +2792,109 @@ public class FXMLLoader {
         : null);
   }
 
+  /**
+   * Loads an object hierarchy from a FXML document held in memory. When the FXML lexer is enabled,
+   * see {@link #setUseLexer(boolean)}, a UTF-8 document is parsed directly from the array.
+   *
+   * @param document The FXML data to load.
+   * @return The loaded object hierarchy.
+   */
+  @CallerSensitive
+  public <T> T load(byte[] document) throws IOException {
+    return loadImpl(ByteBuffer.wrap(document), (System.getSecurityManager() != null)
+        ? Reflection.getCallerClass()
+        : null);
+  }
+
+  /**
+   * Loads an object hierarchy from a FXML document held in the remaining bytes of a buffer, which
+   * may be direct or mapped. When the FXML lexer is enabled, see {@link #setUseLexer(boolean)}, a
+   * UTF-8 document is parsed in place. The position of the buffer is not changed.
+   *
+   * @param document A buffer containing the FXML data to load.
+   * @return The loaded object hierarchy.
+   */
+  @CallerSensitive
+  public <T> T load(ByteBuffer document) throws IOException {
+    return loadImpl(document.duplicate(), (System.getSecurityManager() != null)
+        ? Reflection.getCallerClass()
+        : null);
+  }
+
+  /**
+   * Loads an object hierarchy from a FXML file. Files of {@link #MAPPED_FILE_SIZE} bytes or more
+   * are memory-mapped instead of read, and like {@link #load(ByteBuffer)} a UTF-8 document is
+   * parsed in place when the FXML lexer is enabled. The location is not changed by this method,
+   * relative references in the document are resolved against the location set by
+   * {@link #setLocation(URL)}.
+   *
+   * @param path The FXML file to load.
+   * @return The loaded object hierarchy.
+   */
+  @CallerSensitive
+  public <T> T load(Path path) throws IOException {
+    Class<?> callerClass = (System.getSecurityManager() != null)
+        ? Reflection.getCallerClass()
+        : null;
+    if (!useLexer || !charset.equals(StandardCharsets.UTF_8)) {
+      try (InputStream inputStream = Files.newInputStream(path)) {
+        return loadImpl(inputStream, callerClass);
+      }
+    }
+
+    ByteBuffer document;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size >= MAPPED_FILE_SIZE) {
+        document = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      } else {
+        document = ByteBuffer.allocate((int) size);
+        while (document.hasRemaining()) {
+          if (channel.read(document) == -1) {
+            break;
+          }
+        }
+        document.flip();
+      }
+    }
+    return loadImpl(document, callerClass);
+  }
+
   private Class<?> callerClass;
+  // The cached document being loaded, which keeps the class names to prefetch
+  private FXMLSourceCache.Content source = null;
 
   private <T> T loadImpl(final Class<?> callerClass) throws IOException {
     if (location == null) {
       throw new IllegalStateException("Location is not set.");
     }
 
+    if (template != null) {
+      FXMLInstructions instructions = canExecuteInstructions() ? template.getInstructions(getClassLoader()) : null;
+      if (instructions != null) {
+        return loadImpl(instructions, callerClass);
+      }
+      return loadImpl(template.getDocument().newReader(), callerClass);
+    }
+
+    FXMLDocument binary = useBinary ? readBinary() : null;
+    if (binary != null) {
+      return loadImpl(binary.newReader(), callerClass);
+    }
+
+    FXMLSourceCache.Content cached = sourceCache == null ? null : sourceCache.readContent(location);
+    if (cached != null) {
+      if (!useLexer) {
+        return loadImpl(new ByteArrayInputStream(cached.bytes), callerClass);
+      }
+      source = cached;
+      try {
+        return loadImpl(ByteBuffer.wrap(cached.bytes), callerClass);
+      } finally {
+        source = null;
+      }
+    }
+
     InputStream inputStream = null;
     T value;
     try {
@@ -2456,141 +2915,350 @@ public class FXMLLoader {
       throw new NullPointerException("inputStream is null.");
     }
 
-    this.callerClass = callerClass;
-    controllerAccessor.setCallerClass(callerClass);
+    // Create the parser, reusing the ones of the previous loads on this thread
+    FXMLCache cache = FXMLCache.getContext();
+    if (useLexer && streamHandler == null && charset.equals(StandardCharsets.UTF_8)) {
+      FXMLLexer lexer = cache.acquireLexer();
+      try {
+        lexer.open(inputStream);
+        return loadImpl(lexer, callerClass);
+      } finally {
+        cache.releaseLexer(lexer);
+      }
+    }
+
+    FXMLCache.Parser parser = cache.acquireParser();
     try {
-      clearImports();
+      XMLStreamReader xmlStreamReader;
+      try {
+        xmlStreamReader = parser.open(cache.getXMLInputFactory(), inputStream, charset);
+      } catch (XMLStreamException exception) {
+        throw constructLoadException(exception);
+      }
 
-      // Initialize the namespace
-      namespace.put(LOCATION_KEY, location);
-      namespace.put(RESOURCES_KEY, resources);
+      return loadImpl(xmlStreamReader, callerClass);
+    } finally {
+      cache.releaseParser(parser);
+    }
+  }
 
-      // Clear the script engine
-      scriptEngine = null;
+  private <T> T loadImpl(ByteBuffer document, Class<?> callerClass) throws IOException {
+    // StAX reads the buffer as a stream
+    if (!useLexer || !charset.equals(StandardCharsets.UTF_8)) {
+      if (document.hasArray()) {
+        return loadImpl(new ByteArrayInputStream(document.array(), document.arrayOffset() + document.position(),
+            document.remaining()), callerClass);
+      }
+      return loadImpl(new ByteBufferInputStream(document), callerClass);
+    }
 
-      // Create the parser
-      try {
-        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
-        xmlInputFactory.setProperty("javax.xml.stream.isCoalescing", true);
-
-        // Some stream readers incorrectly report an empty string as the prefix
-        // for the default namespace; correct this as needed
-        InputStreamReader inputStreamReader = new InputStreamReader(inputStream, charset);
-        xmlStreamReader = new StreamReaderDelegate(xmlInputFactory.createXMLStreamReader(inputStreamReader)) {
-          @Override
-          public String getPrefix() {
-            String prefix = super.getPrefix();
-
-            if (prefix != null
-                && prefix.length() == 0) {
-              prefix = null;
-            }
+    FXMLCache cache = FXMLCache.getContext();
+    FXMLLexer lexer = cache.acquireLexer();
+    try {
+      lexer.open(document);
+      return loadImpl(lexer, callerClass);
+    } finally {
+      cache.releaseLexer(lexer);
+    }
+  }
 
-            return prefix;
-          }
+  private FXMLDocument readBinary() throws IOException {
+    String source = location.toExternalForm();
+    if (!source.endsWith(FXML_EXTENSION) || missingBinaries.containsKey(source)) {
+      return null;
+    }
 
-          @Override
-          public String getAttributePrefix(int index) {
-            String attributePrefix = super.getAttributePrefix(index);
+    URL binaryLocation = new URL(source.substring(0, source.length() - FXML_EXTENSION.length()) + BINARY_EXTENSION);
+    if (isOutdated(binaryLocation)) {
+      return null;
+    }
 
-            if (attributePrefix != null
-                && attributePrefix.length() == 0) {
-              attributePrefix = null;
-            }
+    URLConnection connection = binaryLocation.openConnection();
+    InputStream inputStream;
+    try {
+      inputStream = connection.getInputStream();
+    } catch (IOException exception) {
+      if (missingBinaries.size() >= MISSING_BINARIES_SIZE) {
+        missingBinaries.clear();
+      }
+      missingBinaries.put(source, Boolean.TRUE);
+      return null;
+    }
 
-            return attributePrefix;
-          }
-        };
-      } catch (XMLStreamException exception) {
-        throw constructLoadException(exception);
+    // The same file is decoded once, the modification time is unknown (0) for some protocols
+    long lastModified = connection.getLastModified();
+    DecodedBinary decoded = decodedBinaries.get(source);
+    if (decoded != null && lastModified != 0 && decoded.lastModified == lastModified) {
+      inputStream.close();
+      return decoded.document;
+    }
+
+    FXMLDocument document;
+    try (InputStream binaryStream = new BufferedInputStream(inputStream)) {
+      document = FXMLDocument.read(binaryStream);
+    } catch (IOException exception) {
+      throw new LoadException("\n" + binaryLocation.getPath() + "\n", exception);
+    }
+    if (lastModified != 0) {
+      if (decodedBinaries.size() >= DECODED_BINARIES_SIZE) {
+        decodedBinaries.clear();
       }
+      decodedBinaries.put(source, new DecodedBinary(lastModified, document));
+    }
+    return document;
+  }
+
+  // A binary file older than its FXML document is ignored
+  private boolean isOutdated(URL binaryLocation) {
+    if (!"file".equals(location.getProtocol())) {
+      return false;
+    }
+
+    try {
+      return new File(location.toURI()).lastModified() > new File(binaryLocation.toURI()).lastModified();
+    } catch (URISyntaxException | IllegalArgumentException exception) {
+      return false;
+    }
+  }
+
+  static XMLStreamReader createXMLStreamReader(InputStream inputStream, Charset charset) throws XMLStreamException {
+    XMLInputFactory xmlInputFactory = FXMLCache.getContext().getXMLInputFactory();
+    PrefixNormalizer delegate = new PrefixNormalizer();
+    delegate.setParent(xmlInputFactory.createXMLStreamReader(new InputStreamReader(inputStream, charset)));
+    return delegate;
+  }
+
+  // Stream over the remaining bytes of a buffer, which is read without copying
+  private static final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    public ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, n);
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+
+  // Some stream readers incorrectly report an empty string as the prefix
+  // for the default namespace; correct this as needed
+  static final class PrefixNormalizer extends StreamReaderDelegate {
+    @Override
+    public String getPrefix() {
+      String prefix = super.getPrefix();
+
+      if (prefix != null
+          && prefix.length() == 0) {
+        prefix = null;
+      }
+
+      return prefix;
+    }
+
+    @Override
+    public String getAttributePrefix(int index) {
+      String attributePrefix = super.getAttributePrefix(index);
+
+      if (attributePrefix != null
+          && attributePrefix.length() == 0) {
+        attributePrefix = null;
+      }
+
+      return attributePrefix;
+    }
+  }
+
+  private <T> T loadImpl(XMLStreamReader xmlStreamReader,
+      Class<?> callerClass) throws IOException {
+    this.callerClass = callerClass;
+    controllerAccessor.setCallerClass(callerClass);
+    try {
+      clearImports();
+
+      // Initialize the namespace
+      namespace.put(LOCATION_KEY, location);
+      namespace.put(RESOURCES_KEY, resources);
+
+      // Clear the script engine
+      scriptEngine = null;
+
+      this.xmlStreamReader = xmlStreamReader;
 
       // Push this loader onto the stack
       loaders.push(this);
 
       // Parse the XML stream
-      try {
-        while (xmlStreamReader.hasNext()) {
-          int event = xmlStreamReader.next();
+      processEvents();
 
-          switch (event) {
-          case XMLStreamConstants.PROCESSING_INSTRUCTION: {
-            processProcessingInstruction();
-            break;
-          }
+      initializeController();
+    } catch (final LoadException exception) {
+      throw exception;
+    } catch (final Exception exception) {
+      throw constructLoadException(exception);
+    } finally {
+      controllerAccessor.setCallerClass(null);
+      // Clear controller accessor caches
+      controllerAccessor.reset();
+      // Clear the parser
+      xmlStreamReader = null;
+    }
 
-          case XMLStreamConstants.COMMENT: {
-            processComment();
-            break;
-          }
+    return (T) root;
+  }
 
-          case XMLStreamConstants.START_ELEMENT: {
-            processStartElement();
-            break;
-          }
+  private <T> T loadImpl(FXMLInstructions instructions, Class<?> callerClass) throws IOException {
+    this.callerClass = callerClass;
+    controllerAccessor.setCallerClass(callerClass);
+    try {
+      // Initialize the namespace
+      namespace.put(LOCATION_KEY, location);
+      namespace.put(RESOURCES_KEY, resources);
 
-          case XMLStreamConstants.END_ELEMENT: {
-            processEndElement();
-            break;
-          }
+      loaders.push(this);
 
-          case XMLStreamConstants.CHARACTERS: {
-            processCharacters();
-            break;
-          }
-          }
-        }
-      } catch (XMLStreamException exception) {
-        throw constructLoadException(exception);
-      }
+      // Build the hierarchy with the resolved instructions of the template
+      root = instructions.execute(this);
 
-      if (controller != null) {
-        if (controller instanceof Initializable) {
-          ((Initializable) controller).initialize(location, resources);
-        } else {
-          // Inject controller fields
-          controllerAccessor.getControllerFields();
+      initializeController();
+    } catch (final LoadException exception) {
+      throw exception;
+    } catch (final Exception exception) {
+      throw constructLoadException(exception);
+    } finally {
+      controllerAccessor.setCallerClass(null);
+      controllerAccessor.reset();
+    }
 
-          injectFields(LOCATION_KEY, location);
+    return (T) root;
+  }
 
-          injectFields(RESOURCES_KEY, resources);
+  // Whether the instructions of a template can build the document for the settings of this loader,
+  // the others replay its events
+  private boolean canExecuteInstructions() {
+    return System.getSecurityManager() == null
+        && root == null
+        && builderFactory == null
+        && loadListener == null
+        && streamHandler == null
+        && !staticLoad;
+  }
 
-          // Initialize the controller
-          Method initializeMethod = controllerAccessor
-              .getControllerMethods()
-              .get(SupportedType.PARAMETERLESS)
-              .get(INITIALIZE_METHOD_NAME);
+  private void initializeController() throws Exception {
+    if (controller != null) {
+      if (controller instanceof Initializable) {
+        ((Initializable) controller).initialize(location, resources);
+      } else {
+        // Inject controller fields
+        controllerAccessor.getControllerFields();
 
-          if (initializeMethod != null) {
-            try {
-              MethodUtil.invoke(initializeMethod, controller, new Object[] {});
-            } catch (IllegalAccessException exception) {
-              // TODO Throw when Initializable is deprecated/removed
-              // throw constructLoadException(exception);
-            } catch (InvocationTargetException exception) {
-              throw constructLoadException(exception);
-            }
+        injectFields(LOCATION_KEY, location);
+
+        injectFields(RESOURCES_KEY, resources);
+
+        // Initialize the controller
+        Method initializeMethod = controllerAccessor
+            .getControllerMethods()
+            .get(SupportedType.PARAMETERLESS)
+            .get(INITIALIZE_METHOD_NAME);
+
+        if (initializeMethod != null) {
+          try {
+            MethodUtil.invoke(initializeMethod, controller, new Object[] {});
+          } catch (IllegalAccessException exception) {
+            // TODO Throw when Initializable is deprecated/removed
+            // throw constructLoadException(exception);
+          } catch (InvocationTargetException exception) {
+            throw constructLoadException(exception);
           }
         }
       }
+    }
+  }
+
+  private Object loadLazy(LazyValue lazy) throws IOException {
+    this.callerClass = lazy.callerClass;
+    controllerAccessor.setCallerClass(callerClass);
+    try {
+      // Continue with the imports and script engine of the document the element was read from
+      imports.addAll(lazy.imports);
+      scriptEngine = lazy.scriptEngine;
+
+      this.xmlStreamReader = lazy.document.newReader();
+      loaders.push(this);
+      processEvents();
     } catch (final LoadException exception) {
       throw exception;
     } catch (final Exception exception) {
       throw constructLoadException(exception);
     } finally {
       controllerAccessor.setCallerClass(null);
-      // Clear controller accessor caches
       controllerAccessor.reset();
-      // Clear the parser
       xmlStreamReader = null;
     }
 
-    return (T) root;
+    return root;
+  }
+
+  private void processEvents() throws IOException {
+    try {
+      while (xmlStreamReader.hasNext()) {
+        int event = xmlStreamReader.next();
+
+        switch (event) {
+        case XMLStreamConstants.PROCESSING_INSTRUCTION: {
+          processProcessingInstruction();
+          break;
+        }
+
+        case XMLStreamConstants.COMMENT: {
+          processComment();
+          break;
+        }
+
+        case XMLStreamConstants.START_ELEMENT: {
+          processStartElement();
+          break;
+        }
+
+        case XMLStreamConstants.END_ELEMENT: {
+          processEndElement();
+          break;
+        }
+
+        case XMLStreamConstants.CHARACTERS: {
+          processCharacters();
+          break;
+        }
+        }
+      }
+    } catch (XMLStreamException exception) {
+      throw constructLoadException(exception);
+    }
   }
 
   private void clearImports() {
-    packages.clear();
-    classes.clear();
+    imports.clear();
+    importIndex = null;
   }
 
   private LoadException constructLoadException(String message) {
@@ -2683,7 +3351,17 @@ public class FXMLLoader {
       loadListener.readImportProcessingInstruction(target);
     }
 
-    if (target.endsWith(".*")) {
+    // The binary format has split the name already
+    String[] entry = xmlStreamReader instanceof FXMLStreamReader
+        ? ((FXMLStreamReader) xmlStreamReader).getImportEntry()
+        : null;
+    if (entry != null) {
+      if (entry[1] == null) {
+        importPackage(entry[0]);
+      } else {
+        importClass(target, entry[0], entry[1]);
+      }
+    } else if (target.endsWith(".*")) {
       importPackage(target.substring(0, target.length() - 2));
     } else {
       importClass(target);
@@ -2697,6 +3375,12 @@ public class FXMLLoader {
   }
 
   private void processStartElement() throws IOException {
+    if (current == null && prefetchExecutor != null) {
+      prefetchTypes();
+    } else if (current != null && processLazyElement()) {
+      return;
+    }
+
     // Create the element
     createElement();
 
@@ -2709,109 +3393,273 @@ public class FXMLLoader {
     }
   }
 
-  private void createElement() throws IOException {
-    String prefix = xmlStreamReader.getPrefix();
-    String localName = xmlStreamReader.getLocalName();
+  // Resolves and initializes the classes of the document in the background, the imports are
+  // complete once the root element is reached. StAX cannot look ahead, only the readers of the
+  // loader know the names: documents parsed by StAX are not prefetched
+  private void prefetchTypes() {
+    if (!(xmlStreamReader instanceof FXMLStreamReader) || staticLoad) {
+      return;
+    }
+    FXMLStreamReader reader = (FXMLStreamReader) xmlStreamReader;
+    Collection<String> names = source == null ? reader.getTypeNames() : source.getTypeNames(reader);
+    if (names == null || names.isEmpty()) {
+      return;
+    }
 
-    if (prefix == null) {
-      int i = localName.lastIndexOf('.');
+    if (importIndex == null) {
+      importIndex = classLoaderCache.getImportIndex(imports);
+    }
+    ImportIndex index = importIndex;
+    prefetchExecutor.execute(() -> {
+      for (String name : names) {
+        Class<?> type = index.getType(name);
+        if (type != null) {
+          try {
+            Class.forName(type.getName(), true, type.getClassLoader());
+          } catch (ClassNotFoundException | LinkageError e) {
+            // No-op, the loading thread reports it when it needs the class
+          }
+        }
+      }
+    });
+  }
 
-      if (Character.isLowerCase(localName.charAt(i + 1))) {
-        String name = localName.substring(i + 1);
+  // Records the current element instead of creating it if it is marked fx:lazy. The readers of
+  // the loader know whether the document has the attribute at all, StAX is scanned element by element
+  private boolean processLazyElement() throws IOException {
+    if (xmlStreamReader instanceof FXMLStreamReader
+        && !((FXMLStreamReader) xmlStreamReader).hasLazyAttribute()) {
+      return false;
+    }
+    String id = null;
+    boolean lazy = false;
+    for (int i = 0, n = xmlStreamReader.getAttributeCount(); i < n; i++) {
+      if (FX_NAMESPACE_PREFIX.equals(xmlStreamReader.getAttributePrefix(i))) {
+        String localName = xmlStreamReader.getAttributeLocalName(i);
+        if (localName.equals(FX_LAZY_ATTRIBUTE)) {
+          lazy = Boolean.parseBoolean(xmlStreamReader.getAttributeValue(i));
+        } else if (localName.equals(FX_ID_ATTRIBUTE)) {
+          id = xmlStreamReader.getAttributeValue(i);
+        }
+      }
+    }
+    if (!lazy) {
+      return false;
+    }
 
-        if (i == -1) {
-          // This is an instance property
-          if (loadListener != null) {
-            loadListener.beginPropertyElement(name, null);
-          }
+    if (id == null) {
+      throw constructLoadException(FX_NAMESPACE_PREFIX + ":" + FX_LAZY_ATTRIBUTE + " requires "
+          + FX_NAMESPACE_PREFIX + ":" + FX_ID_ATTRIBUTE + ".");
+    }
 
-          current = new PropertyElement(name, null);
-        } else {
-          // This is a static property
-          Class<?> sourceType = getType(localName.substring(0, i));
+    FXMLDocument document;
+    try {
+      document = FXMLDocument.recordElement(xmlStreamReader, FX_LAZY_ATTRIBUTE, FX_ID_ATTRIBUTE);
+    } catch (XMLStreamException exception) {
+      throw constructLoadException(exception);
+    }
 
-          if (sourceType != null) {
-            if (loadListener != null) {
-              loadListener.beginPropertyElement(name, sourceType);
-            }
+    LazyValue value = new LazyValue(id, document);
+    namespace.put(id, value);
+    injectFields(id, value);
+    return true;
+  }
 
-            current = new PropertyElement(name, sourceType);
-          } else if (staticLoad) {
-            // The source type was not recognized
-            if (loadListener != null) {
-              loadListener.beginUnknownStaticPropertyElement(localName);
-            }
+  // The value of an element marked fx:lazy, loaded by the first call on the loading thread
+  private final class LazyValue implements Supplier<Object> {
+    private final String id;
+    private final List<String> imports = new ArrayList<>(FXMLLoader.this.imports);
+    private final ScriptEngine scriptEngine = FXMLLoader.this.scriptEngine;
+    private final Class<?> callerClass = FXMLLoader.this.callerClass;
+    // The settings of the load, which the loader may change or reset before the value is loaded
+    private final URL location = FXMLLoader.this.location;
+    private final ResourceBundle resources = FXMLLoader.this.resources;
+    private final BuilderFactory builderFactory = FXMLLoader.this.builderFactory;
+    private final Callback<Class<?>, Object> controllerFactory = FXMLLoader.this.controllerFactory;
+    private final Charset charset = FXMLLoader.this.charset;
+    private final ClassLoader classLoader = getClassLoader();
+    private final boolean staticLoad = FXMLLoader.this.staticLoad;
+    private final boolean useLexer = FXMLLoader.this.useLexer;
+    private final FXMLSourceCache sourceCache = FXMLLoader.this.sourceCache;
+    private final Executor prefetchExecutor = FXMLLoader.this.prefetchExecutor;
+    private final FXMLTemplate template = FXMLLoader.this.template;
+    private final ObservableMap<String, Object> namespace = FXMLLoader.this.namespace;
+    private final Object controller = FXMLLoader.this.controller;
+    private FXMLDocument document;
+    private Object value = null;
+
+    LazyValue(String id, FXMLDocument document) {
+      this.id = id;
+      this.document = document;
+    }
 
-            current = new UnknownStaticPropertyElement();
-          } else {
-            throw constructLoadException(localName + " is not a valid property.");
-          }
+    @Override
+    public Object get() {
+      if (document != null) {
+        // Load the element into the namespace and controller of the document it was read from
+        FXMLLoader fxmlLoader = new FXMLLoader(location, resources, builderFactory, controllerFactory, charset,
+            new LinkedList<FXMLLoader>());
+        fxmlLoader.setClassLoader(classLoader);
+        fxmlLoader.impl_setStaticLoad(staticLoad);
+        fxmlLoader.setUseLexer(useLexer);
+        fxmlLoader.setSourceCache(sourceCache);
+        fxmlLoader.setPrefetchExecutor(prefetchExecutor);
+        fxmlLoader.template = template;
+        fxmlLoader.namespace = namespace;
+        fxmlLoader.setController(controller);
+
+        try {
+          value = fxmlLoader.loadLazy(this);
+        } catch (IOException exception) {
+          throw new UncheckedIOException(exception);
         }
-      } else {
-        if (current == null && root != null) {
-          throw constructLoadException("Root value already specified.");
+        document = null;
+
+        // The fx:id was left out of the recorded element, so that it stays bound to this supplier
+        if (value != null && !(value instanceof Map<?, ?>)) {
+          String idProperty = elementTypes.get(value.getClass()).idProperty;
+          if (idProperty != null) {
+            BeanAdapter valueAdapter = new BeanAdapter(value);
+            if (valueAdapter.get(idProperty) == null) {
+              valueAdapter.put(idProperty, id);
+            }
+          }
         }
+      }
+      return value;
+    }
+  }
 
-        Class<?> type = getType(localName);
+  private void createElement() throws IOException {
+    String prefix = xmlStreamReader.getPrefix();
+    String localName = xmlStreamReader.getLocalName();
 
-        if (type != null) {
-          if (loadListener != null) {
-            loadListener.beginInstanceDeclarationElement(type);
-          }
+    // The lexer or the binary format has classified the name already
+    FXMLSymbol symbol = xmlStreamReader instanceof FXMLStreamReader
+        ? ((FXMLStreamReader) xmlStreamReader).getSymbol()
+        : null;
+    int kind = symbol == null ? FXMLSymbol.kindOf(prefix, localName) : symbol.kind;
+
+    switch (kind) {
+    case FXMLSymbol.PROPERTY: {
+      // This is an instance property
+      if (loadListener != null) {
+        loadListener.beginPropertyElement(localName, null);
+      }
 
-          current = new InstanceDeclarationElement(type);
-        } else if (staticLoad) {
-          // The type was not recognized
-          if (loadListener != null) {
-            loadListener.beginUnknownTypeElement(localName);
-          }
+      current = new PropertyElement(localName, null);
+      break;
+    }
 
-          current = new UnknownTypeElement();
-        } else {
-          throw constructLoadException(localName + " is not a valid type.");
-        }
-      }
-    } else if (prefix.equals(FX_NAMESPACE_PREFIX)) {
-      if (localName.equals(INCLUDE_TAG)) {
-        if (loadListener != null) {
-          loadListener.beginIncludeElement();
-        }
+    case FXMLSymbol.STATIC_PROPERTY: {
+      // This is a static property
+      int i = localName.lastIndexOf('.');
+      String name = symbol == null ? localName.substring(i + 1) : symbol.member;
+      Class<?> sourceType = getType(symbol == null ? localName.substring(0, i) : symbol.owner);
 
-        current = new IncludeElement();
-      } else if (localName.equals(REFERENCE_TAG)) {
+      if (sourceType != null) {
         if (loadListener != null) {
-          loadListener.beginReferenceElement();
+          loadListener.beginPropertyElement(name, sourceType);
         }
 
-        current = new ReferenceElement();
-      } else if (localName.equals(COPY_TAG)) {
+        current = new PropertyElement(name, sourceType);
+      } else if (staticLoad) {
+        // The source type was not recognized
         if (loadListener != null) {
-          loadListener.beginCopyElement();
+          loadListener.beginUnknownStaticPropertyElement(localName);
         }
 
-        current = new CopyElement();
-      } else if (localName.equals(ROOT_TAG)) {
-        if (loadListener != null) {
-          loadListener.beginRootElement();
-        }
+        current = new UnknownStaticPropertyElement();
+      } else {
+        throw constructLoadException(localName + " is not a valid property.");
+      }
+      break;
+    }
+
+    case FXMLSymbol.INSTANCE: {
+      if (current == null && root != null) {
+        throw constructLoadException("Root value already specified.");
+      }
+
+      Class<?> type = getType(localName);
 
-        current = new RootElement();
-      } else if (localName.equals(SCRIPT_TAG)) {
+      if (type != null) {
         if (loadListener != null) {
-          loadListener.beginScriptElement();
+          loadListener.beginInstanceDeclarationElement(type);
         }
 
-        current = new ScriptElement();
-      } else if (localName.equals(DEFINE_TAG)) {
+        current = new InstanceDeclarationElement(type);
+      } else if (staticLoad) {
+        // The type was not recognized
         if (loadListener != null) {
-          loadListener.beginDefineElement();
+          loadListener.beginUnknownTypeElement(localName);
         }
 
-        current = new DefineElement();
+        current = new UnknownTypeElement();
       } else {
-        throw constructLoadException(prefix + ":" + localName + " is not a valid element.");
+        throw constructLoadException(localName + " is not a valid type.");
       }
-    } else {
+      break;
+    }
+
+    case FXMLSymbol.INCLUDE: {
+      if (loadListener != null) {
+        loadListener.beginIncludeElement();
+      }
+
+      current = new IncludeElement();
+      break;
+    }
+
+    case FXMLSymbol.REFERENCE: {
+      if (loadListener != null) {
+        loadListener.beginReferenceElement();
+      }
+
+      current = new ReferenceElement();
+      break;
+    }
+
+    case FXMLSymbol.COPY: {
+      if (loadListener != null) {
+        loadListener.beginCopyElement();
+      }
+
+      current = new CopyElement();
+      break;
+    }
+
+    case FXMLSymbol.ROOT: {
+      if (loadListener != null) {
+        loadListener.beginRootElement();
+      }
+
+      current = new RootElement();
+      break;
+    }
+
+    case FXMLSymbol.SCRIPT: {
+      if (loadListener != null) {
+        loadListener.beginScriptElement();
+      }
+
+      current = new ScriptElement();
+      break;
+    }
+
+    case FXMLSymbol.DEFINE: {
+      if (loadListener != null) {
+        loadListener.beginDefineElement();
+      }
+
+      current = new DefineElement();
+      break;
+    }
+
+    case FXMLSymbol.UNKNOWN_FX:
+      throw constructLoadException(prefix + ":" + localName + " is not a valid element.");
+
+    default:
       throw constructLoadException("Unexpected namespace prefix: " + prefix + ".");
     }
   }
@@ -2835,15 +3683,28 @@ public class FXMLLoader {
   }
 
   private void importPackage(String name) throws LoadException {
-    packages.add(name);
+    imports.add(name + ".*");
+    importIndex = null;
   }
 
   private void importClass(String name) throws LoadException {
     try {
-      loadType(name, true);
+      loadQualifiedType(name);
     } catch (ClassNotFoundException exception) {
       throw constructLoadException(exception);
     }
+    imports.add(name);
+    importIndex = null;
+  }
+
+  private void importClass(String name, String packageName, String className) throws LoadException {
+    try {
+      loadTypeForPackage(packageName, className);
+    } catch (ClassNotFoundException exception) {
+      throw constructLoadException(exception);
+    }
+    imports.add(name);
+    importIndex = null;
   }
 
   private Class<?> getType(String name) throws LoadException {
@@ -2852,28 +3713,40 @@ public class FXMLLoader {
     if (Character.isLowerCase(name.charAt(0))) {
       // This is a fully-qualified class name
       try {
-        type = loadType(name, false);
+        type = loadQualifiedType(name);
       } catch (ClassNotFoundException exception) {
         // No-op
       }
     } else {
-      // This is an unqualified class name
-      type = classes.get(name);
-
-      if (type == null) {
-        // The class has not been loaded yet; look it up
-        type = classLoaderCache.findClass(packages, name);
-
-        if (type != null) {
-          classes.put(name, type);
-        }
+      // This is an unqualified class name, resolved once for all documents with the same imports
+      if (importIndex == null) {
+        importIndex = classLoaderCache.getImportIndex(imports);
       }
+      type = importIndex.getType(name);
     }
 
+    if (type != null) {
+      FXMLManifest.recordClass(type);
+    }
     return type;
   }
 
-  private Class<?> loadType(String name, boolean cache) throws ClassNotFoundException {
+  private Class<?> loadQualifiedType(String name) throws ClassNotFoundException {
+    String[] parts = splitQualifiedName(name);
+    if (parts == null) {
+      throw new ClassNotFoundException();
+    }
+
+    return loadTypeForPackage(parts[0], parts[1]);
+  }
+
+  /**
+   * Splits a fully-qualified class name into its package name and its class name, which starts
+   * with the first upper case segment.
+   *
+   * @return The package and class names, or <tt>null</tt> if the name has no class segment.
+   */
+  static String[] splitQualifiedName(String name) {
     int i = name.indexOf('.');
     int n = name.length();
     while (i != -1
@@ -2883,19 +3756,10 @@ public class FXMLLoader {
     }
 
     if (i == -1 || i == n) {
-      throw new ClassNotFoundException();
-    }
-
-    String packageName = name.substring(0, i);
-    String className = name.substring(i + 1);
-
-    Class<?> type = loadTypeForPackage(packageName, className);
-
-    if (cache) {
-      classes.put(className, type);
+      return null;
     }
 
-    return type;
+    return new String[] { name.substring(0, i), name.substring(i + 1) };
   }
 
   // TODO Rename to loadType() when deprecated static version is removed
@@ -3062,6 +3926,122 @@ public class FXMLLoader {
     FXMLLoader.defaultClassLoader = defaultClassLoader;
   }
 
+  /**
+   * Drops everything cached about the given class loader: the classes resolved through it, and the
+   * reflective data of the classes it or its descendants loaded. Cached data never keeps a class
+   * loader alive, but a host that reloads plugins can release it at once when it unloads one.
+   * <p>
+   * The number of classes whose reflective data is cached is bounded by the
+   * <tt>xdean.fastfxml.classCacheSize</tt> system property, 4096 by default.
+   * <p>
+   * The locations known to have no precompiled binary sibling are forgotten as well, so that
+   * binaries added since are read.
+   *
+   * @param classLoader
+   */
+  public static void clearCaches(ClassLoader classLoader) {
+    FXMLCache.clearCaches(classLoader);
+    Coercion.clear(classLoader);
+    missingBinaries.clear();
+  }
+
+  /**
+   * Forgets the classes found missing from the imported packages of the given class loader.
+   * Unqualified class names are resolved once per package and class loader, including misses, so
+   * a class loader that can load more classes later must be invalidated when it does.
+   *
+   * @param classLoader
+   */
+  public static void clearMissingClasses(ClassLoader classLoader) {
+    FXMLCache.clearMissingClasses(classLoader);
+  }
+
+  /**
+   * Replays a manifest recorded by a previous session: loads and initializes its classes, adds
+   * them to the class cache, and scans the members of its beans and controllers, in parallel on
+   * the given executor. Classes are loaded with the default class loader; classes that cannot be
+   * loaded any more are skipped.
+   *
+   * @param manifest The manifest to replay.
+   * @param executor The executor running the warmup.
+   * @return A future completed when all classes are warmed up.
+   * @see FXMLManifest#startRecording()
+   */
+  @CallerSensitive
+  public static CompletableFuture<Void> warmup(FXMLManifest manifest, Executor executor) {
+    final Class<?> caller = (System.getSecurityManager() != null)
+        ? Reflection.getCallerClass()
+        : null;
+    final ClassLoader classLoader = getDefaultClassLoader(caller);
+    final ClassLoaderCache cache = FXMLCache.getClassLoaderCache(classLoader);
+
+    Set<String> names = new LinkedHashSet<>(manifest.getControllers());
+    names.addAll(manifest.getBeans());
+    names.addAll(manifest.getClasses());
+    List<CompletableFuture<Void>> tasks = new ArrayList<>(names.size());
+    for (String name : names) {
+      tasks.add(CompletableFuture.runAsync(() -> {
+        Class<?> type;
+        try {
+          type = Class.forName(name, true, classLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+          return;
+        }
+        if (manifest.getClasses().contains(name)) {
+          cache.add(type);
+        }
+        if (manifest.getBeans().contains(name)) {
+          BeanAdapter.warmup(type);
+        }
+        if (manifest.getControllers().contains(name)) {
+          ControllerAccessor.warmup(type);
+        }
+      }, executor));
+    }
+    return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[tasks.size()]));
+  }
+
+  // Returns whether the members of the given controller class are scanned already
+  static boolean isWarmController(Class<?> type) {
+    return ControllerAccessor.isWarm(type);
+  }
+
+  /**
+   * Returns the prefetch executor of new loaders, or <tt>null</tt> if there is none.
+   */
+  public static Executor getDefaultPrefetchExecutor() {
+    return defaultPrefetchExecutor;
+  }
+
+  /**
+   * Sets the prefetch executor of new loaders. Only documents read by the lexer, precompiled or
+   * compiled into a {@link FXMLTemplate} are prefetched, see
+   * {@link #setPrefetchExecutor(Executor)}.
+   *
+   * @param defaultPrefetchExecutor The executor to use, or <tt>null</tt> to load classes when
+   *          needed.
+   */
+  public static void setDefaultPrefetchExecutor(Executor defaultPrefetchExecutor) {
+    FXMLLoader.defaultPrefetchExecutor = defaultPrefetchExecutor;
+  }
+
+  /**
+   * Returns the source cache of new loaders, or <tt>null</tt> if there is none.
+   */
+  public static FXMLSourceCache getDefaultSourceCache() {
+    return defaultSourceCache;
+  }
+
+  /**
+   * Sets the source cache of new loaders.
+   *
+   * @param defaultSourceCache The cache to use, or <tt>null</tt> to read the documents on every
+   *          load.
+   */
+  public static void setDefaultSourceCache(FXMLSourceCache defaultSourceCache) {
+    FXMLLoader.defaultSourceCache = defaultSourceCache;
+  }
+
   /**
    * Loads an object hierarchy from a FXML document.
    *
@@ -3293,6 +4273,9 @@ public class FXMLLoader {
     private Map<String, List<Field>> controllerFields;
     private Map<SupportedType, Map<String, Method>> controllerMethods;
 
+    // controller class -> members found with full access, shared by the loads without a caller
+    private static final ClassCache<ControllerAccessor> scans = new ClassCache<>(ControllerAccessor::scan);
+
     void setController(final Object controller) {
       if (this.controller != controller) {
         this.controller = controller;
@@ -3316,13 +4299,17 @@ public class FXMLLoader {
 
     Map<String, List<Field>> getControllerFields() {
       if (controllerFields == null) {
-        controllerFields = new HashMap<>();
+        FXMLManifest.recordController(controller.getClass());
 
         if (callerClassLoader == null) {
           // allow null class loader only with full permission check
           checkAllPermissions();
+          controllerFields = scans.get(controller.getClass()).controllerFields;
+          return controllerFields;
         }
 
+        controllerFields = new HashMap<>();
+
         addAccessibleMembers(controller.getClass(),
             INITIAL_CLASS_ACCESS,
             INITIAL_MEMBER_ACCESS,
@@ -3334,14 +4321,18 @@ public class FXMLLoader {
 
     Map<SupportedType, Map<String, Method>> getControllerMethods() {
       if (controllerMethods == null) {
-        controllerMethods = new EnumMap<>(SupportedType.class);
-        for (SupportedType t : SupportedType.values()) {
-          controllerMethods.put(t, new HashMap<String, Method>());
-        }
+        FXMLManifest.recordController(controller.getClass());
 
         if (callerClassLoader == null) {
           // allow null class loader only with full permission check
           checkAllPermissions();
+          controllerMethods = scans.get(controller.getClass()).controllerMethods;
+          return controllerMethods;
+        }
+
+        controllerMethods = new EnumMap<>(SupportedType.class);
+        for (SupportedType t : SupportedType.values()) {
+          controllerMethods.put(t, new HashMap<String, Method>());
         }
 
         addAccessibleMembers(controller.getClass(),
@@ -3353,6 +4344,28 @@ public class FXMLLoader {
       return controllerMethods;
     }
 
+    // Scans the members of a controller class ahead of its first load
+    static void warmup(Class<?> type) {
+      scans.get(type);
+    }
+
+    static boolean isWarm(Class<?> type) {
+      return scans.contains(type);
+    }
+
+    // The members of a controller class, scanned with full access; the result is never modified
+    private static ControllerAccessor scan(Class<?> type) {
+      ControllerAccessor scan = new ControllerAccessor();
+      scan.controllerFields = new HashMap<>();
+      scan.controllerMethods = new EnumMap<>(SupportedType.class);
+      for (SupportedType t : SupportedType.values()) {
+        scan.controllerMethods.put(t, new HashMap<String, Method>());
+      }
+      scan.addAccessibleMembers(type, INITIAL_CLASS_ACCESS, INITIAL_MEMBER_ACCESS, FIELDS);
+      scan.addAccessibleMembers(type, INITIAL_CLASS_ACCESS, INITIAL_MEMBER_ACCESS, METHODS);
+      return scan;
+    }
+
     private void addAccessibleMembers(final Class<?> type,
         final int prevAllowedClassAccess,
         final int prevAllowedMemberAccess,
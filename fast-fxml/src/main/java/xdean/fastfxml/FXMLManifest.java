@@ -0,0 +1,216 @@
+/*
+ * Copyright 2019 XDean
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xdean.fastfxml;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The classes a session of loads needed: the classes of the elements, the beans whose methods were
+ * scanned and the controllers whose members were scanned. A manifest is recorded between
+ * {@link #startRecording()} and {@link #stopRecording()}, saved with {@link #write(Writer)}, and
+ * replayed at the next start by {@link FXMLLoader#warmup(FXMLManifest, java.util.concurrent.Executor)}
+ * so that the first documents loaded do not pay for class loading and reflection.
+ * <p>
+ * The text format has one <tt>class</tt>, <tt>bean</tt> or <tt>controller</tt> line per class,
+ * followed by the class name. {@link #writeClassList(Writer, ClassLoader)} writes the classes as a
+ * class list for the class data sharing archive of the JVM.
+ */
+public final class FXMLManifest {
+  private static final String CLASS = "class";
+  private static final String BEAN = "bean";
+  private static final String CONTROLLER = "controller";
+
+  private static volatile FXMLManifest recording = null;
+
+  private final Set<String> classes = ConcurrentHashMap.newKeySet();
+  private final Set<String> beans = ConcurrentHashMap.newKeySet();
+  private final Set<String> controllers = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Creates an empty manifest.
+   */
+  public FXMLManifest() {
+  }
+
+  /**
+   * Starts recording the classes used by all loaders into a new manifest.
+   */
+  public static void startRecording() {
+    recording = new FXMLManifest();
+  }
+
+  /**
+   * Stops recording.
+   *
+   * @return The recorded manifest, or <tt>null</tt> if recording was not started.
+   */
+  public static FXMLManifest stopRecording() {
+    FXMLManifest manifest = recording;
+    recording = null;
+    return manifest;
+  }
+
+  static void recordClass(Class<?> type) {
+    FXMLManifest manifest = recording;
+    if (manifest != null) {
+      manifest.classes.add(type.getName());
+    }
+  }
+
+  static void recordBean(Class<?> type) {
+    FXMLManifest manifest = recording;
+    if (manifest != null) {
+      manifest.beans.add(type.getName());
+    }
+  }
+
+  static void recordController(Class<?> type) {
+    FXMLManifest manifest = recording;
+    if (manifest != null) {
+      manifest.controllers.add(type.getName());
+    }
+  }
+
+  /**
+   * Returns the names of the classes resolved from element and attribute names.
+   */
+  public Set<String> getClasses() {
+    return Collections.unmodifiableSet(classes);
+  }
+
+  /**
+   * Returns the names of the classes whose properties were accessed.
+   */
+  public Set<String> getBeans() {
+    return Collections.unmodifiableSet(beans);
+  }
+
+  /**
+   * Returns the names of the controller classes.
+   */
+  public Set<String> getControllers() {
+    return Collections.unmodifiableSet(controllers);
+  }
+
+  /**
+   * Reads a manifest written by {@link #write(Writer)}.
+   *
+   * @param reader
+   */
+  public static FXMLManifest read(Reader reader) throws IOException {
+    FXMLManifest manifest = new FXMLManifest();
+    BufferedReader lines = new BufferedReader(reader);
+    String line;
+    while ((line = lines.readLine()) != null) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      int i = line.indexOf(' ');
+      String kind = i == -1 ? line : line.substring(0, i);
+      String name = i == -1 ? "" : line.substring(i + 1).trim();
+      if (name.isEmpty()) {
+        throw new IOException("Invalid manifest line: " + line);
+      }
+      switch (kind) {
+      case CLASS:
+        manifest.classes.add(name);
+        break;
+      case BEAN:
+        manifest.beans.add(name);
+        break;
+      case CONTROLLER:
+        manifest.controllers.add(name);
+        break;
+      default:
+        throw new IOException("Invalid manifest line: " + line);
+      }
+    }
+    return manifest;
+  }
+
+  /**
+   * Writes this manifest.
+   *
+   * @param writer
+   */
+  public void write(Writer writer) throws IOException {
+    writer.write("# Fast FXML warmup manifest\n");
+    write(writer, CLASS, classes);
+    write(writer, BEAN, beans);
+    write(writer, CONTROLLER, controllers);
+    writer.flush();
+  }
+
+  private static void write(Writer writer, String kind, Set<String> names) throws IOException {
+    for (String name : new TreeSet<>(names)) {
+      writer.write(kind);
+      writer.write(' ');
+      writer.write(name);
+      writer.write('\n');
+    }
+  }
+
+  /**
+   * Writes the classes of this manifest and their supertypes as a class list, the format of the
+   * <tt>-XX:SharedClassListFile</tt> option of the JVM.
+   *
+   * @param writer
+   * @param classLoader The class loader of the classes, used to find their supertypes.
+   */
+  public void writeClassList(Writer writer, ClassLoader classLoader) throws IOException {
+    Set<String> names = new LinkedHashSet<>();
+    Set<String> all = new TreeSet<>(classes);
+    all.addAll(beans);
+    all.addAll(controllers);
+    for (String name : all) {
+      try {
+        addClassList(names, Class.forName(name, false, classLoader));
+      } catch (ClassNotFoundException | LinkageError e) {
+        // No-op, the class is gone
+      }
+    }
+    for (String name : names) {
+      writer.write(name);
+      writer.write('\n');
+    }
+    writer.flush();
+  }
+
+  // Supertypes come first, as the JVM needs them to archive a class
+  private static void addClassList(Set<String> names, Class<?> type) {
+    if (type == null || type.isPrimitive() || type.isArray()) {
+      return;
+    }
+    String name = type.getName().replace('.', '/');
+    if (names.contains(name)) {
+      return;
+    }
+    addClassList(names, type.getSuperclass());
+    for (Class<?> i : type.getInterfaces()) {
+      addClassList(names, i);
+    }
+    names.add(name);
+  }
+}
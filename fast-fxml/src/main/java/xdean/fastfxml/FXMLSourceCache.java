@@ -0,0 +1,280 @@
+/*
+ * Copyright 2019 XDean
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xdean.fastfxml;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of the bytes of recently loaded FXML documents, so that loading a document from
+ * a jar again does not reopen and inflate the entry. Documents are kept by location and their
+ * contents by hash, a document found at several locations is held once.
+ * <p>
+ * Only <tt>jar:</tt> and <tt>file:</tt> locations are cached. A <tt>file:</tt> document is read
+ * again when its last modified time or length changes, a <tt>jar:</tt> document is kept until it
+ * is evicted or {@link #invalidate(URL) invalidated}. When the cached contents exceed the maximum
+ * size, the least recently used documents are evicted.
+ * <p>
+ * A cache can be shared by any number of loaders and threads.
+ *
+ * @see FXMLLoader#setSourceCache(FXMLSourceCache)
+ * @see FXMLLoader#setDefaultSourceCache(FXMLSourceCache)
+ */
+public final class FXMLSourceCache {
+  /**
+   * The bytes of a document, shared and never modified.
+   */
+  static final class Content {
+    final byte[] bytes;
+    private int hash;
+    private int references = 0;
+    // The class names the lexer found ahead of the root element, kept for the next loads
+    private volatile Collection<String> typeNames = null;
+
+    Content(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    /**
+     * Returns the class names of the document, scanned by the given reader on the first call.
+     */
+    Collection<String> getTypeNames(FXMLStreamReader reader) {
+      Collection<String> names = typeNames;
+      if (names == null) {
+        names = reader.getTypeNames();
+        if (names != null) {
+          typeNames = names = Collections.unmodifiableCollection(names);
+        }
+      }
+      return names;
+    }
+
+    @Override
+    public int hashCode() {
+      int h = hash;
+      if (h == 0) {
+        hash = h = Arrays.hashCode(bytes);
+      }
+      return h;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Content && obj.hashCode() == hashCode() && Arrays.equals(((Content) obj).bytes, bytes);
+    }
+  }
+
+  private static final class Entry {
+    final Content content;
+    final long lastModified;
+    final long length;
+
+    Entry(Content content, long lastModified, long length) {
+      this.content = content;
+      this.lastModified = lastModified;
+      this.length = length;
+    }
+  }
+
+  private final long maximumSize;
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<Content, Content> contents = new HashMap<>();
+  private long size = 0;
+  private long hitCount = 0;
+  private long missCount = 0;
+
+  /**
+   * @param maximumSize The maximum number of bytes held by the cache.
+   */
+  public FXMLSourceCache(long maximumSize) {
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("maximumSize is negative.");
+    }
+    this.maximumSize = maximumSize;
+  }
+
+  /**
+   * Returns the maximum number of bytes held by the cache.
+   */
+  public long getMaximumSize() {
+    return maximumSize;
+  }
+
+  /**
+   * Returns the number of bytes held by the cache.
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /**
+   * Returns the number of cached documents.
+   */
+  public synchronized int getDocumentCount() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the number of reads served from the cache.
+   */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Returns the number of reads of cacheable locations that had to read the document.
+   */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Returns the ratio of reads served from the cache, or <tt>0</tt> if nothing was read yet.
+   */
+  public synchronized double getHitRatio() {
+    long count = hitCount + missCount;
+    return count == 0 ? 0 : (double) hitCount / count;
+  }
+
+  /**
+   * Removes the document at the given location.
+   *
+   * @param location
+   */
+  public synchronized void invalidate(URL location) {
+    Entry entry = entries.remove(location.toExternalForm());
+    if (entry != null) {
+      release(entry.content);
+    }
+  }
+
+  /**
+   * Removes all documents and resets the statistics.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    contents.clear();
+    size = 0;
+    hitCount = 0;
+    missCount = 0;
+  }
+
+  /**
+   * Returns the bytes of the document at the given location, or <tt>null</tt> if the location is
+   * not cacheable. The returned array is shared and must not be modified.
+   */
+  byte[] read(URL location) throws IOException {
+    Content content = readContent(location);
+    return content == null ? null : content.bytes;
+  }
+
+  /**
+   * Returns the document at the given location, or <tt>null</tt> if the location is not cacheable.
+   */
+  Content readContent(URL location) throws IOException {
+    String key = location.toExternalForm();
+    long lastModified = 0;
+    long length = 0;
+    switch (location.getProtocol()) {
+    case "jar":
+      break;
+    case "file":
+      File file;
+      try {
+        file = new File(location.toURI());
+      } catch (URISyntaxException | IllegalArgumentException e) {
+        return null;
+      }
+      lastModified = file.lastModified();
+      length = file.length();
+      break;
+    default:
+      return null;
+    }
+
+    synchronized (this) {
+      Entry entry = entries.get(key);
+      if (entry != null && entry.lastModified == lastModified && entry.length == length) {
+        hitCount++;
+        return entry.content;
+      }
+      missCount++;
+    }
+
+    byte[] bytes;
+    try (InputStream inputStream = location.openStream()) {
+      bytes = readFully(inputStream);
+    }
+    if (bytes.length > maximumSize) {
+      return new Content(bytes);
+    }
+
+    synchronized (this) {
+      Content content = new Content(bytes);
+      Content shared = contents.get(content);
+      if (shared == null) {
+        contents.put(content, content);
+        size += bytes.length;
+        shared = content;
+      }
+      shared.references++;
+      Entry old = entries.put(key, new Entry(shared, lastModified, length));
+      if (old != null) {
+        release(old.content);
+      }
+      evict();
+      return shared;
+    }
+  }
+
+  private void evict() {
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (size > maximumSize && iterator.hasNext()) {
+      Content content = iterator.next().content;
+      iterator.remove();
+      release(content);
+    }
+  }
+
+  private void release(Content content) {
+    if (--content.references == 0) {
+      contents.remove(content);
+      size -= content.bytes.length;
+    }
+  }
+
+  private static byte[] readFully(InputStream inputStream) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream(8192);
+    byte[] buffer = new byte[8192];
+    int n;
+    while ((n = inputStream.read(buffer)) != -1) {
+      outputStream.write(buffer, 0, n);
+    }
+    return outputStream.toByteArray();
+  }
+}
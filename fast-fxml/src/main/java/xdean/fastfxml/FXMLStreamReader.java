@@ -0,0 +1,364 @@
+/*
+ * Copyright 2019 XDean
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xdean.fastfxml;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Base class of the stream readers that feed {@link FXMLLoader} without going through StAX. Only
+ * the part of {@link XMLStreamReader} used by the loader is supported. Prefixes are reported as
+ * <tt>null</tt> when absent, which is what the loader expects.
+ */
+abstract class FXMLStreamReader implements XMLStreamReader, XMLStreamConstants {
+
+  private final NamespaceContext namespaceContext = new NamespaceContext() {
+    @Override
+    public String getNamespaceURI(String prefix) {
+      return FXMLStreamReader.this.getNamespaceURI(prefix);
+    }
+
+    @Override
+    public String getPrefix(String namespaceURI) {
+      if (namespaceURI == null) {
+        throw new IllegalArgumentException("namespaceURI is null.");
+      }
+      if (namespaceURI.equals(XMLConstants.XML_NS_URI)) {
+        return XMLConstants.XML_NS_PREFIX;
+      }
+      if (namespaceURI.equals(XMLConstants.XMLNS_ATTRIBUTE_NS_URI)) {
+        return XMLConstants.XMLNS_ATTRIBUTE;
+      }
+      // The documents declare the fx and default namespaces only
+      if (namespaceURI.equals(getNamespaceURI(XMLConstants.DEFAULT_NS_PREFIX))) {
+        return XMLConstants.DEFAULT_NS_PREFIX;
+      }
+      if (namespaceURI.equals(getNamespaceURI(FXMLLoader.FX_NAMESPACE_PREFIX))) {
+        return FXMLLoader.FX_NAMESPACE_PREFIX;
+      }
+      return null;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Iterator getPrefixes(String namespaceURI) {
+      String prefix = getPrefix(namespaceURI);
+      return prefix == null ? Collections.emptyIterator() : Collections.singleton(prefix).iterator();
+    }
+  };
+
+  private final Location location = new Location() {
+    @Override
+    public int getLineNumber() {
+      return FXMLStreamReader.this.getLineNumber();
+    }
+
+    @Override
+    public int getColumnNumber() {
+      return -1;
+    }
+
+    @Override
+    public int getCharacterOffset() {
+      return -1;
+    }
+
+    @Override
+    public String getPublicId() {
+      return null;
+    }
+
+    @Override
+    public String getSystemId() {
+      return null;
+    }
+  };
+
+  /**
+   * Returns the line number of the current event.
+   */
+  abstract int getLineNumber();
+
+  /**
+   * Returns the unqualified class names used by the rest of the document, for prefetching, or
+   * <tt>null</tt> if they are not known in advance.
+   */
+  Collection<String> getTypeNames() {
+    return null;
+  }
+
+  /**
+   * Returns whether an <tt>fx:lazy</tt> attribute may have been read up to the current event. The
+   * loader looks for the attribute on each element only while this returns <tt>true</tt>.
+   */
+  boolean hasLazyAttribute() {
+    return true;
+  }
+
+  /**
+   * Returns the classified name of the current element, or <tt>null</tt> if it is not known.
+   */
+  FXMLSymbol getSymbol() {
+    return null;
+  }
+
+  /**
+   * Returns the classified name of the attribute of the current element with the given prefix and
+   * local name, or <tt>null</tt> if it is not known.
+   */
+  FXMLSymbol getAttributeSymbol(String prefix, String localName) {
+    return null;
+  }
+
+  /**
+   * Returns the package and class names of the current import processing instruction, the class
+   * name being <tt>null</tt> for a package import, or <tt>null</tt> if they are not known.
+   */
+  String[] getImportEntry() {
+    return null;
+  }
+
+  @Override
+  public boolean isWhiteSpace() {
+    if (getEventType() != CHARACTERS) {
+      return false;
+    }
+    String text = getText();
+    for (int i = 0, n = text.length(); i < n; i++) {
+      if (!Character.isWhitespace(text.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public NamespaceContext getNamespaceContext() {
+    return namespaceContext;
+  }
+
+  @Override
+  public Location getLocation() {
+    return location;
+  }
+
+  @Override
+  public boolean isStartElement() {
+    return getEventType() == START_ELEMENT;
+  }
+
+  @Override
+  public boolean isEndElement() {
+    return getEventType() == END_ELEMENT;
+  }
+
+  @Override
+  public boolean isCharacters() {
+    return getEventType() == CHARACTERS;
+  }
+
+  @Override
+  public boolean hasName() {
+    int type = getEventType();
+    return type == START_ELEMENT || type == END_ELEMENT;
+  }
+
+  @Override
+  public boolean hasText() {
+    int type = getEventType();
+    return type == CHARACTERS || type == COMMENT;
+  }
+
+  @Override
+  public QName getName() {
+    String prefix = getPrefix();
+    return new QName(getNamespaceURI(), getLocalName(), prefix == null ? XMLConstants.DEFAULT_NS_PREFIX : prefix);
+  }
+
+  @Override
+  public String getNamespaceURI() {
+    String prefix = getPrefix();
+    return getNamespaceURI(prefix == null ? XMLConstants.DEFAULT_NS_PREFIX : prefix);
+  }
+
+  @Override
+  public QName getAttributeName(int index) {
+    String prefix = getAttributePrefix(index);
+    return new QName(getAttributeNamespace(index), getAttributeLocalName(index),
+        prefix == null ? XMLConstants.DEFAULT_NS_PREFIX : prefix);
+  }
+
+  @Override
+  public String getAttributeNamespace(int index) {
+    String prefix = getAttributePrefix(index);
+    return prefix == null ? null : getNamespaceURI(prefix);
+  }
+
+  @Override
+  public String getAttributeType(int index) {
+    return "CDATA";
+  }
+
+  @Override
+  public boolean isAttributeSpecified(int index) {
+    return true;
+  }
+
+  @Override
+  public String getAttributeValue(String namespaceURI, String localName) {
+    for (int i = 0, n = getAttributeCount(); i < n; i++) {
+      if (getAttributeLocalName(i).equals(localName)
+          && (namespaceURI == null || namespaceURI.equals(getAttributeNamespace(i)))) {
+        return getAttributeValue(i);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public char[] getTextCharacters() {
+    return getText().toCharArray();
+  }
+
+  @Override
+  public int getTextCharacters(int sourceStart, char[] target, int targetStart, int length) {
+    String text = getText();
+    int n = Math.min(length, text.length() - sourceStart);
+    text.getChars(sourceStart, sourceStart + n, target, targetStart);
+    return n;
+  }
+
+  @Override
+  public int getTextStart() {
+    return 0;
+  }
+
+  @Override
+  public int getTextLength() {
+    return getText().length();
+  }
+
+  @Override
+  public Object getProperty(String name) {
+    return null;
+  }
+
+  @Override
+  public void require(int type, String namespaceURI, String localName) throws XMLStreamException {
+    if (type != getEventType()
+        || (localName != null && !localName.equals(getLocalName()))) {
+      throw new XMLStreamException("Unexpected event " + getEventType(), getLocation());
+    }
+  }
+
+  @Override
+  public String getElementText() throws XMLStreamException {
+    if (getEventType() != START_ELEMENT) {
+      throw new XMLStreamException("Parser must be on START_ELEMENT to read next text.", getLocation());
+    }
+    StringBuilder content = new StringBuilder();
+    for (int type = next(); type != END_ELEMENT; type = next()) {
+      switch (type) {
+      case CHARACTERS:
+      case CDATA:
+      case SPACE:
+      case ENTITY_REFERENCE:
+        content.append(getText());
+        break;
+      case PROCESSING_INSTRUCTION:
+      case COMMENT:
+        break;
+      case END_DOCUMENT:
+        throw new XMLStreamException("Unexpected end of document when reading element text content.",
+            getLocation());
+      case START_ELEMENT:
+        throw new XMLStreamException("Element text content may not contain START_ELEMENT.", getLocation());
+      default:
+        throw new XMLStreamException("Unexpected event type " + type + ".", getLocation());
+      }
+    }
+    return content.toString();
+  }
+
+  @Override
+  public int nextTag() throws XMLStreamException {
+    int type = next();
+    while (((type == CHARACTERS || type == CDATA) && isWhiteSpace())
+        || type == SPACE
+        || type == PROCESSING_INSTRUCTION
+        || type == COMMENT) {
+      type = next();
+    }
+    if (type != START_ELEMENT && type != END_ELEMENT) {
+      throw new XMLStreamException("Expected start or end tag.", getLocation());
+    }
+    return type;
+  }
+
+  @Override
+  public int getNamespaceCount() {
+    return 0;
+  }
+
+  @Override
+  public String getNamespacePrefix(int index) {
+    throw new IndexOutOfBoundsException();
+  }
+
+  @Override
+  public String getNamespaceURI(int index) {
+    throw new IndexOutOfBoundsException();
+  }
+
+  @Override
+  public String getEncoding() {
+    return null;
+  }
+
+  @Override
+  public String getVersion() {
+    return null;
+  }
+
+  @Override
+  public boolean isStandalone() {
+    return false;
+  }
+
+  @Override
+  public boolean standaloneSet() {
+    return false;
+  }
+
+  @Override
+  public String getCharacterEncodingScheme() {
+    return null;
+  }
+
+  @Override
+  public void close() throws XMLStreamException {
+    // No-op
+  }
+}
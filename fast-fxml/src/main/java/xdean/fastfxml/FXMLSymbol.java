@@ -0,0 +1,227 @@
+/*
+ * Copyright 2019 XDean
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xdean.fastfxml;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An element or attribute name interned by {@link FXMLLexer}. Everything the loader derives from a
+ * name is computed once per distinct name instead of once per occurrence, and the name strings are
+ * the {@link FXMLLoader} constants where they exist, so comparing them is an identity check.
+ */
+final class FXMLSymbol {
+  // Element kinds, see FXMLLoader.createElement()
+  static final int INSTANCE = 0;
+  static final int PROPERTY = 1;
+  static final int STATIC_PROPERTY = 2;
+  static final int INCLUDE = 3;
+  static final int REFERENCE = 4;
+  static final int COPY = 5;
+  static final int ROOT = 6;
+  static final int SCRIPT = 7;
+  static final int DEFINE = 8;
+  static final int UNKNOWN_FX = 9;
+  static final int UNKNOWN_PREFIX = 10;
+
+  final String prefix;
+  final String localName;
+  final int kind;
+  // The parts of a "Type.property" name, null if the name has no dot
+  final String owner;
+  final String member;
+
+  private final byte[] bytes;
+  private final int hash;
+  private FXMLSymbol next;
+
+  private FXMLSymbol(String prefix, String localName, byte[] bytes, int hash) {
+    this.prefix = prefix;
+    this.localName = localName;
+    this.kind = kindOf(prefix, localName);
+    int i = localName.lastIndexOf('.');
+    this.owner = i == -1 ? null : localName.substring(0, i);
+    this.member = i == -1 ? null : localName.substring(i + 1);
+    this.bytes = bytes;
+    this.hash = hash;
+  }
+
+  /**
+   * Creates a symbol classified ahead of time, as stored by the binary format.
+   */
+  FXMLSymbol(String prefix, String localName, int kind, String owner, String member) {
+    this.prefix = prefix;
+    this.localName = localName;
+    this.kind = kind;
+    this.owner = owner;
+    this.member = member;
+    this.bytes = (prefix == null ? localName : prefix + ":" + localName).getBytes(StandardCharsets.UTF_8);
+    int hash = 0;
+    for (byte b : bytes) {
+      hash = 31 * hash + b;
+    }
+    this.hash = hash;
+  }
+
+  /**
+   * Returns the unqualified class name an element of the given kind needs, or <tt>null</tt>.
+   */
+  static String typeNameOf(int kind, String localName, String owner) {
+    String name = kind == INSTANCE ? localName : kind == STATIC_PROPERTY ? owner : null;
+    return name != null && !name.isEmpty() && Character.isUpperCase(name.charAt(0)) ? name : null;
+  }
+
+  static int kindOf(String prefix, String localName) {
+    if (prefix == null) {
+      int i = localName.lastIndexOf('.');
+      if (i + 1 < localName.length() && Character.isLowerCase(localName.charAt(i + 1))) {
+        return i == -1 ? PROPERTY : STATIC_PROPERTY;
+      }
+      return INSTANCE;
+    } else if (prefix.equals(FXMLLoader.FX_NAMESPACE_PREFIX)) {
+      switch (localName) {
+      case FXMLLoader.INCLUDE_TAG:
+        return INCLUDE;
+      case FXMLLoader.REFERENCE_TAG:
+        return REFERENCE;
+      case FXMLLoader.COPY_TAG:
+        return COPY;
+      case FXMLLoader.ROOT_TAG:
+        return ROOT;
+      case FXMLLoader.SCRIPT_TAG:
+        return SCRIPT;
+      case FXMLLoader.DEFINE_TAG:
+        return DEFINE;
+      default:
+        return UNKNOWN_FX;
+      }
+    }
+    return UNKNOWN_PREFIX;
+  }
+
+  /**
+   * Returns whether the given symbol has the same name as this one. Symbols are compared by
+   * identity first, a name read once the table is full is not interned.
+   */
+  boolean sameName(FXMLSymbol symbol) {
+    return symbol == this || (symbol.hash == hash && Arrays.equals(symbol.bytes, bytes));
+  }
+
+  /**
+   * The symbols of one thread, looked up by their UTF-8 bytes so known names are never decoded. The
+   * table holds a bounded number of names, the names read once it is full are decoded on each
+   * occurrence.
+   */
+  static final class Table {
+    static final int MAXIMUM_SIZE = 4096;
+
+    private static final String[] KNOWN_NAMES = {
+        FXMLLoader.FX_NAMESPACE_PREFIX,
+        FXMLLoader.INCLUDE_TAG,
+        FXMLLoader.REFERENCE_TAG,
+        FXMLLoader.COPY_TAG,
+        FXMLLoader.ROOT_TAG,
+        FXMLLoader.SCRIPT_TAG,
+        FXMLLoader.DEFINE_TAG,
+        FXMLLoader.FX_ID_ATTRIBUTE,
+        FXMLLoader.FX_CONTROLLER_ATTRIBUTE,
+        FXMLLoader.FX_VALUE_ATTRIBUTE,
+        FXMLLoader.FX_CONSTANT_ATTRIBUTE,
+        FXMLLoader.FX_FACTORY_ATTRIBUTE,
+        FXMLLoader.FX_LAZY_ATTRIBUTE,
+        FXMLLoader.INCLUDE_SOURCE_ATTRIBUTE,
+        FXMLLoader.INCLUDE_RESOURCES_ATTRIBUTE,
+        FXMLLoader.INCLUDE_CHARSET_ATTRIBUTE,
+        FXMLLoader.ROOT_TYPE_ATTRIBUTE,
+    };
+
+    private final Map<String, String> knownNames = new HashMap<>();
+    private FXMLSymbol[] buckets = new FXMLSymbol[256];
+    private int size = 0;
+
+    Table() {
+      for (String name : KNOWN_NAMES) {
+        knownNames.put(name, name);
+      }
+    }
+
+    FXMLSymbol get(ByteBuffer data, int start, int end) {
+      int hash = 0;
+      for (int i = start; i < end; i++) {
+        hash = 31 * hash + data.get(i);
+      }
+      for (FXMLSymbol symbol = buckets[hash & (buckets.length - 1)]; symbol != null; symbol = symbol.next) {
+        if (symbol.hash == hash && equals(symbol.bytes, data, start, end)) {
+          return symbol;
+        }
+      }
+      return add(data, start, end, hash);
+    }
+
+    private FXMLSymbol add(ByteBuffer data, int start, int end, int hash) {
+      byte[] bytes = new byte[end - start];
+      for (int i = 0; i < bytes.length; i++) {
+        bytes[i] = data.get(start + i);
+      }
+      String name = new String(bytes, StandardCharsets.UTF_8);
+      int colon = name.indexOf(':');
+      String prefix = colon == -1 ? null : intern(name.substring(0, colon));
+      String localName = intern(colon == -1 ? name : name.substring(colon + 1));
+      FXMLSymbol symbol = new FXMLSymbol(prefix, localName, bytes, hash);
+      if (size == MAXIMUM_SIZE) {
+        return symbol;
+      }
+
+      if (++size > buckets.length * 3 / 4) {
+        FXMLSymbol[] old = buckets;
+        buckets = new FXMLSymbol[old.length * 2];
+        for (FXMLSymbol head : old) {
+          while (head != null) {
+            FXMLSymbol next = head.next;
+            int index = head.hash & (buckets.length - 1);
+            head.next = buckets[index];
+            buckets[index] = head;
+            head = next;
+          }
+        }
+      }
+      int index = hash & (buckets.length - 1);
+      symbol.next = buckets[index];
+      buckets[index] = symbol;
+      return symbol;
+    }
+
+    private String intern(String name) {
+      String known = knownNames.get(name);
+      return known == null ? name : known;
+    }
+
+    private static boolean equals(byte[] bytes, ByteBuffer data, int start, int end) {
+      if (bytes.length != end - start) {
+        return false;
+      }
+      for (int i = 0; i < bytes.length; i++) {
+        if (bytes[i] != data.get(start + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
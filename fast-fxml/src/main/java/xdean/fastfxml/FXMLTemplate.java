@@ -0,0 +1,228 @@
+/*
+ * Copyright 2019 XDean
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package xdean.fastfxml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.stream.XMLStreamException;
+
+import javafx.fxml.LoadException;
+
+/**
+ * A FXML document that is parsed once and can be instantiated many times. A template holds the
+ * recorded XML events of the document and the instructions resolved from them: element classes,
+ * constructors, property setters, coercions, <tt>fx:id</tt> slots and included locations are
+ * looked up once, and each instance only calls them. The instructions are resolved for the class
+ * loader of the loader, and again when it differs or when a coercion is registered.
+ * <p>
+ * Documents the instructions do not cover (scripts, builders, binding expressions,
+ * <tt>fx:root</tt>...), and loaders with a root, a builder factory, a load listener or a static
+ * load, replay the recorded events through a regular {@link FXMLLoader}, which only saves the XML
+ * parsing. Documents included by <tt>&lt;fx:include&gt;</tt> are compiled on first use and shared
+ * by all instances.
+ * <p>
+ * Templates are immutable and can be instantiated from any thread.
+ */
+public final class FXMLTemplate {
+  private final URL location;
+  private final Charset charset;
+  private final FXMLDocument document;
+
+  private final ConcurrentMap<String, FXMLTemplate> includes = new ConcurrentHashMap<>();
+
+  // The instructions of the document for a class loader and a version of the coercions
+  private static final class Resolved {
+    final ClassLoader classLoader;
+    final int version;
+    final FXMLInstructions instructions;
+
+    Resolved(ClassLoader classLoader, int version, FXMLInstructions instructions) {
+      this.classLoader = classLoader;
+      this.version = version;
+      this.instructions = instructions;
+    }
+  }
+
+  private volatile Resolved resolved;
+
+  FXMLTemplate(URL location, Charset charset, FXMLDocument document) {
+    this.location = location;
+    this.charset = charset;
+    this.document = document;
+    getInstructions(FXMLLoader.getDefaultClassLoader());
+  }
+
+  /**
+   * Compiles the FXML document at the given location.
+   *
+   * @param location
+   */
+  public static FXMLTemplate compile(URL location) throws IOException {
+    return compile(location, Charset.forName(FXMLLoader.DEFAULT_CHARSET_NAME));
+  }
+
+  /**
+   * Compiles the FXML document at the given location.
+   *
+   * @param location
+   * @param charset
+   */
+  public static FXMLTemplate compile(URL location, Charset charset) throws IOException {
+    if (location == null) {
+      throw new NullPointerException("Location is required.");
+    }
+
+    if (charset == null) {
+      throw new NullPointerException("charset is null.");
+    }
+
+    FXMLDocument document;
+    FXMLCache cache = FXMLCache.getContext();
+    FXMLCache.Parser parser = cache.acquireParser();
+    try (InputStream inputStream = location.openStream()) {
+      document = FXMLDocument.record(parser.open(cache.getXMLInputFactory(), inputStream, charset));
+    } catch (XMLStreamException exception) {
+      throw new LoadException("\n" + location.getPath() + "\n", exception);
+    } finally {
+      cache.releaseParser(parser);
+    }
+    return new FXMLTemplate(location, charset, document);
+  }
+
+  /**
+   * Reads a template written by {@link #write(OutputStream)}.
+   *
+   * @param location The location used to resolve relative paths and includes.
+   * @param inputStream
+   */
+  public static FXMLTemplate read(URL location, InputStream inputStream) throws IOException {
+    return read(location, Charset.forName(FXMLLoader.DEFAULT_CHARSET_NAME), inputStream);
+  }
+
+  /**
+   * Reads a template written by {@link #write(OutputStream)}.
+   *
+   * @param location The location used to resolve relative paths and includes.
+   * @param charset The character set of included documents.
+   * @param inputStream
+   */
+  public static FXMLTemplate read(URL location, Charset charset, InputStream inputStream) throws IOException {
+    if (charset == null) {
+      throw new NullPointerException("charset is null.");
+    }
+
+    return new FXMLTemplate(location, charset, FXMLDocument.read(inputStream));
+  }
+
+  /**
+   * Writes this template in the precompiled binary format. When a file with this content is
+   * placed next to a FXML document, with the {@link FXMLLoader#BINARY_EXTENSION} extension,
+   * {@link FXMLLoader} reads it instead of parsing the XML.
+   *
+   * @param outputStream
+   * @see FXMLBinaryCompiler
+   */
+  public void write(OutputStream outputStream) throws IOException {
+    document.write(outputStream);
+  }
+
+  /**
+   * Returns the location of the compiled document.
+   */
+  public URL getLocation() {
+    return location;
+  }
+
+  /**
+   * Returns the character set the document was compiled with.
+   */
+  public Charset getCharset() {
+    return charset;
+  }
+
+  /**
+   * Creates a loader bound to this template. The loader can be configured as usual (resources,
+   * controller, factories, root) before calling {@link FXMLLoader#load()}.
+   */
+  public FXMLLoader createLoader() {
+    FXMLLoader fxmlLoader = new FXMLLoader(location, null, null, null, charset);
+    fxmlLoader.setTemplate(this);
+    return fxmlLoader;
+  }
+
+  /**
+   * Creates a new instance of the object hierarchy.
+   *
+   * @return The loaded object hierarchy.
+   */
+  public <T> T instantiate() throws IOException {
+    return instantiate(null, null);
+  }
+
+  /**
+   * Creates a new instance of the object hierarchy.
+   *
+   * @param controller The controller to use, or <tt>null</tt> to let the document create it.
+   * @param resources
+   * @return The loaded object hierarchy.
+   */
+  public <T> T instantiate(Object controller, ResourceBundle resources) throws IOException {
+    FXMLLoader fxmlLoader = createLoader();
+    fxmlLoader.setResources(resources);
+    if (controller != null) {
+      fxmlLoader.setController(controller);
+    }
+    return fxmlLoader.load();
+  }
+
+  FXMLDocument getDocument() {
+    return document;
+  }
+
+  /**
+   * Returns the instructions of the document for the given class loader, or <tt>null</tt> if the
+   * document must be loaded by replaying its events.
+   */
+  FXMLInstructions getInstructions(ClassLoader classLoader) {
+    int version = Coercion.getVersion();
+    Resolved resolved = this.resolved;
+    if (resolved == null || resolved.classLoader != classLoader || resolved.version != version) {
+      resolved = new Resolved(classLoader, version, FXMLInstructions.compile(document, location, classLoader));
+      this.resolved = resolved;
+    }
+    return resolved.instructions;
+  }
+
+  FXMLTemplate getInclude(URL location, Charset charset) throws IOException {
+    String key = location.toExternalForm() + "#" + charset.name();
+    FXMLTemplate include = includes.get(key);
+    if (include == null) {
+      include = compile(location, charset);
+      FXMLTemplate previous = includes.putIfAbsent(key, include);
+      if (previous != null) {
+        include = previous;
+      }
+    }
+    return include;
+  }
+}
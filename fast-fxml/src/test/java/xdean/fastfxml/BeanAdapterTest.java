@@ -0,0 +1,312 @@
+package xdean.fastfxml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import com.sun.javafx.fxml.PropertyNotFoundException;
+
+import javafx.collections.ObservableList;
+import xdean.fastfxml.openjfx.Alignment;
+import xdean.fastfxml.openjfx.Widget;
+
+public class BeanAdapterTest {
+  @Test
+  public void testGetPut() {
+    Widget widget = new Widget();
+    BeanAdapter adapter = new BeanAdapter(widget);
+    adapter.put("name", "widget");
+    adapter.put("number", "5");
+    adapter.put("enabled", false);
+    assertEquals("widget", adapter.get("name"));
+    assertEquals(5, adapter.get("number"));
+    assertEquals(false, adapter.get("enabled"));
+    assertSame(widget.nameProperty(), adapter.getPropertyModel("name"));
+  }
+
+  @Test
+  public void testProperties() {
+    BeanAdapter adapter = new BeanAdapter(new Widget());
+    assertEquals(int.class, adapter.getType("number"));
+    assertEquals(ObservableList.class, adapter.getType("children"));
+    assertTrue(adapter.getGenericType("children").getTypeName().endsWith("<xdean.fastfxml.openjfx.Widget>"));
+    assertFalse(adapter.isReadOnly("name"));
+    assertTrue(adapter.isReadOnly("children"));
+    assertTrue(adapter.containsKey("enabled"));
+    assertFalse(adapter.containsKey("missing"));
+    assertNull(adapter.get("missing"));
+    assertNull(adapter.getPropertyModel("children"));
+    assertEquals(Widget.class, adapter.getListItemType("children"));
+    assertEquals(String.class, adapter.getListItemType("styles"));
+    assertEquals(Object.class, adapter.getMapValueType("properties"));
+  }
+
+  @Test(expected = PropertyNotFoundException.class)
+  public void testPutReadOnly() {
+    new BeanAdapter(new Widget()).put("children", null);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testPutMissing() {
+    new BeanAdapter(new Widget()).put("missing", null);
+  }
+
+  @Test
+  public void testCoerce() {
+    assertEquals(10d, BeanAdapter.coerce("10", double.class), 0);
+    assertEquals(Integer.valueOf(10), BeanAdapter.coerce(10.5, Integer.class));
+    assertEquals(new BigDecimal("1.5"), BeanAdapter.coerce("1.5", BigDecimal.class));
+    assertEquals(Alignment.CENTER, BeanAdapter.coerce("center", Alignment.class));
+    assertEquals(Alignment.CENTER, BeanAdapter.coerce("CENTER", Alignment.class));
+    assertEquals(TimeUnit.MILLISECONDS, BeanAdapter.coerce("MILLISECONDS", TimeUnit.class));
+    assertEquals(Thread.State.TIMED_WAITING, BeanAdapter.coerce("timedWaiting", Thread.State.class));
+    assertNull(BeanAdapter.coerce(null, String.class));
+  }
+
+  @Test
+  public void testCoerceInvalid() {
+    try {
+      BeanAdapter.coerce("Center", Alignment.class);
+      fail();
+    } catch (RuntimeException e) {
+      assertTrue(e.getCause() instanceof InvocationTargetException);
+    }
+    try {
+      BeanAdapter.coerce(new Object(), Alignment.class);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testConverter() {
+    BeanAdapter.registerConverter(String.class, Widget.class, Widget::new);
+    try {
+      assertEquals("converted", BeanAdapter.coerce("converted", Widget.class).getName());
+      Widget widget = new Widget();
+      assertSame(widget, BeanAdapter.coerce(widget, Widget.class));
+    } finally {
+      BeanAdapter.unregisterConverter(String.class, Widget.class);
+    }
+    try {
+      BeanAdapter.coerce("converted", Widget.class);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testConverterConcurrent() throws InterruptedException {
+    AtomicBoolean done = new AtomicBoolean();
+    Thread thread = new Thread(() -> {
+      while (!done.get()) {
+        BeanAdapter.coerce("1", Long.class);
+      }
+    });
+    thread.start();
+    try {
+      for (int i = 0; i < 1000; i++) {
+        BeanAdapter.registerConverter(String.class, Long.class, value -> -1L);
+        try {
+          assertEquals(Long.valueOf(-1), BeanAdapter.coerce("1", Long.class));
+        } finally {
+          BeanAdapter.unregisterConverter(String.class, Long.class);
+        }
+        assertEquals(Long.valueOf(1), BeanAdapter.coerce("1", Long.class));
+      }
+    } finally {
+      done.set(true);
+      thread.join();
+    }
+  }
+
+  @Test
+  public void testPrimitive() {
+    Primitives primitives = new Primitives();
+    BeanAdapter adapter = new BeanAdapter(primitives);
+    adapter.put("double", "1.5");
+    adapter.put("float", "2.5");
+    adapter.put("long", "3");
+    adapter.put("int", "4");
+    adapter.put("boolean", "true");
+    assertEquals(1.5, primitives.getDouble(), 0);
+    assertEquals(2.5f, primitives.getFloat(), 0);
+    assertEquals(3L, primitives.getLong());
+    assertEquals(4, primitives.getInt());
+    assertTrue(primitives.isBoolean());
+
+    BeanAdapter.registerConverter(String.class, int.class, Integer::decode);
+    try {
+      adapter.put("int", "0x10");
+      assertEquals(16, primitives.getInt());
+    } finally {
+      BeanAdapter.unregisterConverter(String.class, int.class);
+    }
+  }
+
+  @Test
+  public void testPrimitiveConverterBoxed() {
+    Primitives primitives = new Primitives();
+    BeanAdapter adapter = new BeanAdapter(primitives);
+    adapter.put("int", "4");
+
+    // A converter to a boxed class also converts to its primitive class, and the other way round
+    BeanAdapter.registerConverter(String.class, Integer.class, Integer::decode);
+    try {
+      assertTrue(Coercion.isRegistered(int.class));
+      adapter.put("int", "0x10");
+      assertEquals(16, primitives.getInt());
+      assertEquals(Integer.valueOf(16), BeanAdapter.coerce("0x10", int.class));
+    } finally {
+      BeanAdapter.unregisterConverter(String.class, int.class);
+    }
+    assertFalse(Coercion.isRegistered(Integer.class));
+    assertEquals(Integer.valueOf(10), BeanAdapter.coerce("10", int.class));
+    try {
+      adapter.put("int", "0x10");
+      fail();
+    } catch (NumberFormatException e) {
+      // expected
+    }
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testPrimitiveInvalid() {
+    new BeanAdapter(new Primitives()).put("double", "wide");
+  }
+
+  @Test
+  public void testStaticProperty() {
+    Widget widget = new Widget();
+    BeanAdapter.put(widget, Widget.class, "alignment", "right");
+    assertEquals(Alignment.RIGHT, Widget.getAlignment(widget));
+    BeanAdapter.put(widget, Widget.class, "alignment", Alignment.LEFT);
+    assertEquals(Alignment.LEFT, BeanAdapter.get(widget, Widget.class, "alignment"));
+    assertTrue(BeanAdapter.isDefined(Widget.class, "alignment", Widget.class));
+    assertEquals(Alignment.class, BeanAdapter.getType(Widget.class, "alignment", Widget.class));
+    assertFalse(BeanAdapter.isDefined(Widget.class, "missing", Widget.class));
+    assertNull(BeanAdapter.get(widget, Widget.class, "missing"));
+  }
+
+  @Test(expected = PropertyNotFoundException.class)
+  public void testStaticPropertyMissing() {
+    BeanAdapter.put(new Widget(), Widget.class, "missing", "value");
+  }
+
+  @Test
+  public void testSetterException() {
+    BeanAdapter adapter = new BeanAdapter(new Failing());
+    try {
+      adapter.put("value", "fail");
+      fail();
+    } catch (RuntimeException e) {
+      assertTrue(e.getCause() instanceof InvocationTargetException);
+      assertEquals("fail", e.getCause().getCause().getMessage());
+    }
+  }
+
+  @Test(expected = LinkageError.class)
+  public void testSetterError() {
+    new BeanAdapter(new Failing()).put("value", "error");
+  }
+
+  @Test
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  public void testArgumentMismatch() {
+    BeanAdapter.registerConverter((Class) Integer.class, Widget.class, (Function) value -> value);
+    try {
+      new BeanAdapter(new Holder()).put("widget", 1);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Thrown by Method.invoke too
+    } finally {
+      BeanAdapter.unregisterConverter(Integer.class, Widget.class);
+    }
+  }
+
+  public static class Failing {
+    public String getValue() {
+      return null;
+    }
+
+    public void setValue(String value) {
+      if (value.equals("error")) {
+        throw new LinkageError(value);
+      }
+      throw new IllegalStateException(value);
+    }
+  }
+
+  public static class Holder {
+    private Widget widget;
+
+    public Widget getWidget() {
+      return widget;
+    }
+
+    public void setWidget(Widget widget) {
+      this.widget = widget;
+    }
+  }
+
+  public static class Primitives {
+    private double d;
+    private float f;
+    private long l;
+    private int i;
+    private boolean b;
+
+    public double getDouble() {
+      return d;
+    }
+
+    public void setDouble(double d) {
+      this.d = d;
+    }
+
+    public float getFloat() {
+      return f;
+    }
+
+    public void setFloat(float f) {
+      this.f = f;
+    }
+
+    public long getLong() {
+      return l;
+    }
+
+    public void setLong(long l) {
+      this.l = l;
+    }
+
+    public int getInt() {
+      return i;
+    }
+
+    public void setInt(int i) {
+      this.i = i;
+    }
+
+    public boolean isBoolean() {
+      return b;
+    }
+
+    public void setBoolean(boolean b) {
+      this.b = b;
+    }
+  }
+}
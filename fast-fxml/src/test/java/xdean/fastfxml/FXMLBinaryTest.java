@@ -0,0 +1,156 @@
+package xdean.fastfxml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import org.junit.Test;
+
+import xdean.fastfxml.openjfx.Alignment;
+import xdean.fastfxml.openjfx.Widget;
+
+public class FXMLBinaryTest {
+  private static final String WIDGET = "<?import xdean.fastfxml.openjfx.*?>\n"
+      + "<Widget xmlns:fx=\"http://javafx.com/fxml\" name=\"%s\"/>";
+
+  @Test
+  public void testReadWrite() throws IOException {
+    URL location = getClass().getResource("widgets.fxml");
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    FXMLTemplate.compile(location).write(outputStream);
+
+    FXMLTemplate template = FXMLTemplate.read(location, new ByteArrayInputStream(outputStream.toByteArray()));
+    FXMLLoader loader = template.createLoader();
+    Widget root = loader.load();
+    WidgetsController controller = loader.getController();
+
+    assertEquals("root", root.getName());
+    assertTrue(controller.initialized);
+    assertSame(root.getChildren().get(0), controller.child);
+    assertEquals(Alignment.LEFT, Widget.getAlignment(controller.child));
+    assertEquals("a", controller.child.getStyles().get(0));
+    assertEquals(7, controller.include.getNumber());
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadInvalid() throws IOException {
+    FXMLTemplate.read(null, new ByteArrayInputStream("<Widget/>".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void testReadInvalidIndex() throws IOException {
+    // A string index past the end of the table, then a negative one
+    for (byte[] index : new byte[][] { { 1 }, { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F } }) {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(outputStream);
+      output.writeInt(0x46584D42);
+      output.writeShort(2);
+      output.writeByte(0);
+      output.writeByte(0);
+      output.write(index);
+      try {
+        FXMLTemplate.read(null, new ByteArrayInputStream(outputStream.toByteArray()));
+        fail();
+      } catch (IOException exception) {
+        assertEquals("Corrupted binary FXML document.", exception.getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void testDecodedOnce() throws IOException {
+    Path directory = Files.createTempDirectory("fxmlb");
+    Path source = directory.resolve("widget.fxml");
+    Path binary = directory.resolve("widget.fxmlb");
+    try {
+      write(source, "first");
+      FXMLBinaryCompiler.compile(directory);
+      Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(binary).toMillis() - 20000));
+      assertEquals("first", load(source, true).getName());
+      assertEquals("first", load(source, true).getName());
+
+      // A new binary is decoded again
+      write(source, "second");
+      FXMLBinaryCompiler.compile(directory);
+      Files.setLastModifiedTime(binary, FileTime.fromMillis(Files.getLastModifiedTime(binary).toMillis() + 10000));
+      Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(binary).toMillis() - 20000));
+      assertEquals("second", load(source, true).getName());
+    } finally {
+      Files.deleteIfExists(binary);
+      Files.deleteIfExists(source);
+      Files.delete(directory);
+    }
+  }
+
+  @Test
+  public void testLoadSibling() throws IOException {
+    Path directory = Files.createTempDirectory("fxmlb");
+    Path source = directory.resolve("widget.fxml");
+    try {
+      write(source, "compiled");
+      List<Path> binaries = FXMLBinaryCompiler.compile(directory);
+      assertEquals(1, binaries.size());
+      Path binary = binaries.get(0);
+      assertEquals(directory.resolve("widget.fxmlb"), binary);
+
+      // The binary is read instead of the document as long as it is up to date
+      write(source, "changed");
+      Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(binary).toMillis() - 10000));
+      assertEquals("compiled", load(source, true).getName());
+      assertEquals("changed", load(source, false).getName());
+
+      Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(binary).toMillis() + 10000));
+      assertEquals("changed", load(source, true).getName());
+    } finally {
+      Files.deleteIfExists(directory.resolve("widget.fxmlb"));
+      Files.deleteIfExists(source);
+      Files.delete(directory);
+    }
+  }
+
+  @Test
+  public void testBinaryAddedLater() throws IOException {
+    Path directory = Files.createTempDirectory("fxmlb");
+    Path source = directory.resolve("widget.fxml");
+    try {
+      write(source, "compiled");
+      assertEquals("compiled", load(source, true).getName());
+
+      FXMLBinaryCompiler.compile(directory);
+      write(source, "changed");
+      Files.setLastModifiedTime(source, FileTime.fromMillis(
+          Files.getLastModifiedTime(directory.resolve("widget.fxmlb")).toMillis() - 10000));
+      // A file is checked on every load, only other locations remember the miss
+      assertEquals("compiled", load(source, true).getName());
+    } finally {
+      Files.deleteIfExists(directory.resolve("widget.fxmlb"));
+      Files.deleteIfExists(source);
+      Files.delete(directory);
+    }
+  }
+
+  private static Widget load(Path path, boolean useBinary) throws IOException {
+    FXMLLoader loader = new FXMLLoader(path.toUri().toURL());
+    loader.setUseBinary(useBinary);
+    return loader.load();
+  }
+
+  private static void write(Path path, String name) throws IOException {
+    try (OutputStream outputStream = Files.newOutputStream(path)) {
+      outputStream.write(String.format(WIDGET, name).getBytes(StandardCharsets.UTF_8));
+    }
+  }
+}
@@ -0,0 +1,275 @@
+package xdean.fastfxml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import xdean.fastfxml.FXMLCache.ClassCache;
+import xdean.fastfxml.FXMLCache.ClassLoaderCache;
+import xdean.fastfxml.FXMLCache.ImportIndex;
+
+public class FXMLCacheTest {
+  @Test
+  public void testSharedClassLoaderCache() throws Exception {
+    ClassLoader classLoader = getClass().getClassLoader();
+    List<String> packages = Arrays.asList("java.lang", "java.util");
+    ClassLoaderCache cache = FXMLCache.getClassLoaderCache(classLoader);
+    assertSame(Map.Entry.class, cache.findClass(packages, "Map.Entry"));
+    assertSame(List.class, cache.findClass("java.util.List"));
+    assertNull(cache.findClass(packages, "Missing"));
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      assertSame(cache, executor.submit(() -> FXMLCache.getClassLoaderCache(classLoader)).get());
+      assertSame(Map.Entry.class, executor.submit(() -> cache.findClass(packages, "Map.Entry")).get());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testClassLoaderNotRetained() throws Exception {
+    ClassLoader classLoader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+    FXMLCache.getClassLoaderCache(classLoader).findClass(Arrays.asList("java.lang"), "String");
+    WeakReference<ClassLoader> reference = new WeakReference<>(classLoader);
+    classLoader = null;
+
+    for (int i = 0; i < 10 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertNull(reference.get());
+  }
+
+  @Test
+  public void testMissingClasses() throws Exception {
+    List<String> requests = new ArrayList<>();
+    boolean[] defined = { false };
+    ClassLoader classLoader = new ClassLoader(getClass().getClassLoader()) {
+      @Override
+      protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        requests.add(name);
+        if (name.equals("java.util.Dynamic") && defined[0]) {
+          return String.class;
+        }
+        return super.loadClass(name, resolve);
+      }
+    };
+    List<String> packages = Arrays.asList("java.net", "java.io", "java.util");
+    ClassLoaderCache cache = FXMLCache.getClassLoaderCache(classLoader);
+
+    assertSame(List.class, cache.findClass(packages, "List"));
+    assertSame(List.class, cache.findClass(packages, "List"));
+    assertEquals(Arrays.asList("java.net.List", "java.io.List", "java.util.List"), requests);
+
+    requests.clear();
+    assertNull(cache.findClass(packages, "Dynamic"));
+    assertNull(cache.findClass(packages, "Dynamic"));
+    assertEquals(3, requests.size());
+
+    defined[0] = true;
+    FXMLLoader.clearMissingClasses(classLoader);
+    assertSame(String.class, cache.findClass(packages, "Dynamic"));
+    assertEquals(6, requests.size());
+  }
+
+  @Test
+  public void testClassLoaderCacheBounded() {
+    List<String> requests = new ArrayList<>();
+    ClassLoader classLoader = new ClassLoader(getClass().getClassLoader()) {
+      @Override
+      protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        requests.add(name);
+        return super.loadClass(name, resolve);
+      }
+    };
+    List<String> packages = Arrays.asList("java.net", "java.util");
+    ClassLoaderCache cache = new ClassLoaderCache(classLoader, 2);
+
+    // The misses are forgotten past the maximum size
+    assertNull(cache.findClass(packages, "Missing"));
+    assertNull(cache.findClass(packages, "Missing"));
+    assertEquals(2, requests.size());
+    assertNull(cache.findClass(packages, "Other"));
+    assertNull(cache.findClass(packages, "Missing"));
+    assertEquals(6, requests.size());
+
+    // So are the class names
+    requests.clear();
+    assertSame(List.class, cache.findClass(packages, "List"));
+    assertSame(Map.class, cache.findClass(packages, "Map"));
+    assertSame(Set.class, cache.findClass(packages, "Set"));
+    assertEquals(6, requests.size());
+    assertSame(List.class, cache.findClass(packages, "List"));
+    assertEquals(8, requests.size());
+
+    // And the import indexes
+    ImportIndex index = cache.getImportIndex(Arrays.asList("java.util.*"));
+    assertSame(index, cache.getImportIndex(Arrays.asList("java.util.*")));
+    cache.getImportIndex(Arrays.asList("java.net.*"));
+    cache.getImportIndex(Arrays.asList("java.io.*"));
+    assertNotSame(index, cache.getImportIndex(Arrays.asList("java.util.*")));
+  }
+
+  @Test
+  public void testImportIndex() {
+    ClassLoaderCache cache = FXMLCache.getClassLoaderCache(getClass().getClassLoader());
+    List<String> imports = new ArrayList<>(Arrays.asList("java.awt.*", "java.util.*", "java.lang.Thread.State"));
+    ImportIndex index = cache.getImportIndex(imports);
+    assertSame(index, cache.getImportIndex(Arrays.asList("java.awt.*", "java.util.*", "java.lang.Thread.State")));
+    assertNotSame(index, cache.getImportIndex(Arrays.asList("java.util.*", "java.awt.*", "java.lang.Thread.State")));
+
+    assertSame(java.awt.List.class, index.getType("List"));
+    assertSame(Map.Entry.class, index.getType("Map.Entry"));
+    assertSame(Thread.State.class, index.getType("Thread.State"));
+    assertNull(index.getType("Missing"));
+
+    imports.add("java.io.*");
+    assertSame(index, cache.getImportIndex(Arrays.asList("java.awt.*", "java.util.*", "java.lang.Thread.State")));
+  }
+
+  @Test
+  public void testClassCacheEviction() {
+    AtomicInteger computed = new AtomicInteger();
+    ClassCache<String> cache = new ClassCache<>(type -> {
+      computed.incrementAndGet();
+      return type.getName();
+    }, 2);
+    assertEquals("java.lang.String", cache.get(String.class));
+    assertEquals("java.lang.Integer", cache.get(Integer.class));
+    assertEquals("java.lang.String", cache.get(String.class));
+    assertEquals(2, computed.get());
+
+    cache.get(Long.class);
+    assertEquals(2, cache.size());
+    cache.get(String.class);
+    assertEquals(3, computed.get());
+    cache.get(Integer.class);
+    assertEquals(4, computed.get());
+  }
+
+  @Test
+  public void testClassCacheContains() {
+    AtomicInteger computed = new AtomicInteger();
+    ClassCache<String> cache = new ClassCache<>(type -> {
+      computed.incrementAndGet();
+      return type.getName();
+    }, 1);
+    assertFalse(cache.contains(String.class));
+    cache.get(String.class);
+    assertTrue(cache.contains(String.class));
+    assertFalse(cache.contains(Integer.class));
+    assertEquals(1, computed.get());
+
+    cache.get(Integer.class);
+    assertFalse(cache.contains(String.class));
+    assertTrue(cache.contains(Integer.class));
+  }
+
+  @Test
+  public void testClassCacheConcurrent() throws Exception {
+    ClassCache<String> cache = new ClassCache<>(Class::getName, 3);
+    List<Class<?>> types = Arrays.asList(String.class, Integer.class, Long.class, Double.class, Float.class);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        int offset = t;
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 10000; i++) {
+            Class<?> type = types.get((i + offset) % types.size());
+            assertEquals(type.getName(), cache.get(type));
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertTrue(cache.size() <= 3);
+  }
+
+  @Test
+  public void testClassCacheUnload() throws Exception {
+    ClassCache<Object> cache = new ClassCache<>(type -> type.getDeclaredMethods());
+    ClassLoader classLoader = new PluginClassLoader();
+    cache.get(classLoader.loadClass(Plugin.class.getName()));
+    assertEquals(1, cache.size());
+
+    FXMLLoader.clearCaches(classLoader);
+    assertEquals(0, cache.size());
+
+    cache.get(classLoader.loadClass(Plugin.class.getName()));
+    WeakReference<ClassLoader> reference = new WeakReference<>(classLoader);
+    classLoader = null;
+    for (int i = 0; i < 10 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertNull(reference.get());
+    assertEquals(0, cache.size());
+  }
+
+  public static class Plugin {
+    public void run() {
+    }
+  }
+
+  private static class PluginClassLoader extends ClassLoader {
+    PluginClassLoader() {
+      super(FXMLCacheTest.class.getClassLoader());
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      if (!name.equals(Plugin.class.getName())) {
+        return super.loadClass(name, resolve);
+      }
+      synchronized (getClassLoadingLock(name)) {
+        Class<?> type = findLoadedClass(name);
+        if (type == null) {
+          byte[] bytes = read(name.substring(name.lastIndexOf('.') + 1) + ".class");
+          type = defineClass(name, bytes, 0, bytes.length);
+        }
+        return type;
+      }
+    }
+
+    private static byte[] read(String name) throws ClassNotFoundException {
+      try (InputStream inputStream = FXMLCacheTest.class.getResourceAsStream(name)) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = inputStream.read(buffer)) != -1) {
+          outputStream.write(buffer, 0, n);
+        }
+        return outputStream.toByteArray();
+      } catch (IOException e) {
+        throw new ClassNotFoundException(name, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,209 @@
+package xdean.fastfxml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.junit.Test;
+
+import xdean.fastfxml.openjfx.Widget;
+
+public class FXMLLexerTest {
+  @Test
+  public void testSameEventsAsStAX() throws Exception {
+    FXMLLexer lexer = new FXMLLexer(new FXMLSymbol.Table());
+    for (Path path : documents()) {
+      try (InputStream expected = Files.newInputStream(path); InputStream actual = Files.newInputStream(path)) {
+        lexer.open(actual);
+        assertEquals(path.toString(),
+            events(FXMLLoader.createXMLStreamReader(expected, StandardCharsets.UTF_8)), events(lexer));
+      }
+    }
+  }
+
+  @Test
+  public void testText() throws Exception {
+    String document = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n"
+        + "<a xmlns:fx=\"http://javafx.com/fxml\" b=\"1&amp;&#x32;\r\n\t3\" fx:id='&quot;'>"
+        + "x &lt; <![CDATA[<y>]]>\r\nz<!-- c --><b/>\u00e9\ud83d\ude00</a>";
+    FXMLLexer lexer = new FXMLLexer(new FXMLSymbol.Table());
+    lexer.open(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)));
+    assertEquals(events(FXMLLoader.createXMLStreamReader(
+        new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8)),
+        events(lexer));
+  }
+
+  @Test
+  public void testSymbols() throws Exception {
+    FXMLLexer lexer = new FXMLLexer(new FXMLSymbol.Table());
+    lexer.open(new ByteArrayInputStream(
+        "<fx:include xmlns:fx=\"http://javafx.com/fxml\" GridPane.rowIndex=\"1\"/>".getBytes(StandardCharsets.UTF_8)));
+    assertEquals(XMLStreamConstants.START_ELEMENT, lexer.next());
+    assertSame(FXMLLoader.FX_NAMESPACE_PREFIX, lexer.getPrefix());
+    assertSame(FXMLLoader.INCLUDE_TAG, lexer.getLocalName());
+    assertEquals(FXMLSymbol.INCLUDE, lexer.getSymbol().kind);
+    FXMLSymbol attribute = lexer.getAttributeSymbol(lexer.getAttributePrefix(0), lexer.getAttributeLocalName(0));
+    assertEquals("GridPane", attribute.owner);
+    assertEquals("rowIndex", attribute.member);
+  }
+
+  @Test
+  public void testAttributeSymbolsWithSameLocalName() throws Exception {
+    FXMLLexer lexer = new FXMLLexer(new FXMLSymbol.Table());
+    lexer.open(new ByteArrayInputStream(
+        "<Widget xmlns:fx=\"http://javafx.com/fxml\" fx:id=\"a\" id=\"b\"/>".getBytes(StandardCharsets.UTF_8)));
+    assertEquals(XMLStreamConstants.START_ELEMENT, lexer.next());
+    for (int i = 0; i < 2; i++) {
+      FXMLSymbol attribute = lexer.getAttributeSymbol(lexer.getAttributePrefix(i), lexer.getAttributeLocalName(i));
+      assertSame(lexer.getAttributePrefix(i), attribute.prefix);
+      assertSame(lexer.getAttributeLocalName(i), attribute.localName);
+    }
+    assertEquals(FXMLSymbol.UNKNOWN_FX, lexer.getAttributeSymbol(FXMLLoader.FX_NAMESPACE_PREFIX, "id").kind);
+    assertEquals(FXMLSymbol.PROPERTY, lexer.getAttributeSymbol(null, "id").kind);
+  }
+
+  @Test
+  public void testElementTextAndNextTag() throws Exception {
+    FXMLLexer lexer = new FXMLLexer(new FXMLSymbol.Table());
+    lexer.open(new ByteArrayInputStream(("<a xmlns:fx=\"http://javafx.com/fxml\">\n  <!-- c -->\n"
+        + "  <b>x<!-- c -->y</b>\n</a>").getBytes(StandardCharsets.UTF_8)));
+    assertEquals(XMLStreamConstants.START_ELEMENT, lexer.nextTag());
+    assertEquals("a", lexer.getLocalName());
+    assertEquals(FXMLLoader.FX_NAMESPACE_PREFIX,
+        lexer.getNamespaceContext().getPrefix("http://javafx.com/fxml"));
+    assertEquals(XMLStreamConstants.START_ELEMENT, lexer.nextTag());
+    assertEquals("xy", lexer.getElementText());
+    assertEquals(XMLStreamConstants.END_ELEMENT, lexer.getEventType());
+    assertEquals(XMLStreamConstants.END_ELEMENT, lexer.nextTag());
+    assertEquals("a", lexer.getLocalName());
+  }
+
+  @Test
+  public void testLazyAttribute() throws Exception {
+    FXMLLexer lexer = new FXMLLexer(new FXMLSymbol.Table());
+    lexer.open(new ByteArrayInputStream(("<a xmlns:fx=\"http://javafx.com/fxml\" lazy=\"true\">"
+        + "<b fx:lazy=\"true\"/></a>").getBytes(StandardCharsets.UTF_8)));
+    assertEquals(XMLStreamConstants.START_ELEMENT, lexer.next());
+    assertFalse(lexer.hasLazyAttribute());
+    assertEquals(XMLStreamConstants.START_ELEMENT, lexer.next());
+    assertTrue(lexer.hasLazyAttribute());
+
+    lexer.open(new ByteArrayInputStream("<a/>".getBytes(StandardCharsets.UTF_8)));
+    assertFalse(lexer.hasLazyAttribute());
+  }
+
+  @Test(expected = XMLStreamException.class)
+  public void testMismatchedTag() throws Exception {
+    FXMLLexer lexer = new FXMLLexer(new FXMLSymbol.Table());
+    lexer.open(new ByteArrayInputStream("<a><b></a>".getBytes(StandardCharsets.UTF_8)));
+    while (lexer.hasNext()) {
+      lexer.next();
+    }
+  }
+
+  @Test
+  public void testLoad() throws IOException {
+    FXMLLoader loader = new FXMLLoader(getClass().getResource("widgets.fxml"));
+    loader.setUseLexer(true);
+    Widget root = loader.load();
+    WidgetsController controller = loader.getController();
+
+    assertTrue(loader.isUseLexer());
+    assertEquals("root", root.getName());
+    assertTrue(controller.initialized);
+    assertSame(root.getChildren().get(0), controller.child);
+    assertEquals("a", controller.child.getStyles().get(0));
+    assertEquals(7, controller.include.getNumber());
+  }
+
+  @Test(expected = XMLStreamException.class)
+  public void testDuplicateAttribute() throws Exception {
+    FXMLLexer lexer = new FXMLLexer(new FXMLSymbol.Table());
+    lexer.open(new ByteArrayInputStream("<a b=\"1\" c=\"2\" b=\"3\"/>".getBytes(StandardCharsets.UTF_8)));
+    lexer.next();
+  }
+
+  @Test
+  public void testFullTable() throws Exception {
+    FXMLSymbol.Table symbols = new FXMLSymbol.Table();
+    StringBuilder document = new StringBuilder("<a>");
+    for (int i = 0; i < FXMLSymbol.Table.MAXIMUM_SIZE; i++) {
+      document.append("<n").append(i).append("/>");
+    }
+    document.append("<b c=\"1\"><d/></b></a>");
+    FXMLLexer lexer = new FXMLLexer(symbols);
+    lexer.open(new ByteArrayInputStream(document.toString().getBytes(StandardCharsets.UTF_8)));
+    List<String> events = events(lexer);
+    assertEquals("<null:b null:c=1 fx=null default=null", events.get(events.size() - 6));
+    assertEquals("</null:a", events.get(events.size() - 2));
+
+    // Names read once the table is full are not interned, but still match
+    lexer.open(new ByteArrayInputStream("<b c=\"1\"/>".getBytes(StandardCharsets.UTF_8)));
+    lexer.next();
+    assertNotSame(lexer.getSymbol(), symbols.get(ByteBuffer.wrap("b".getBytes(StandardCharsets.UTF_8)), 0, 1));
+  }
+
+  private static List<Path> documents() throws IOException, URISyntaxException {
+    Path root = Paths.get(FXMLLexerTest.class.getResource("widgets.fxml").toURI()).getParent();
+    try (Stream<Path> stream = Files.walk(root)) {
+      return stream.filter(p -> p.toString().endsWith(FXMLLoader.FXML_EXTENSION)).sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private static List<String> events(XMLStreamReader reader) throws XMLStreamException {
+    List<String> events = new ArrayList<>();
+    while (reader.hasNext()) {
+      int event = reader.next();
+      switch (event) {
+      case XMLStreamConstants.START_ELEMENT:
+        StringBuilder builder = new StringBuilder("<").append(reader.getPrefix()).append(':')
+            .append(reader.getLocalName());
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+          builder.append(' ').append(reader.getAttributePrefix(i)).append(':')
+              .append(reader.getAttributeLocalName(i)).append("=").append(reader.getAttributeValue(i));
+        }
+        builder.append(" fx=").append(reader.getNamespaceContext().getNamespaceURI("fx"));
+        builder.append(" default=").append(reader.getNamespaceContext().getNamespaceURI(""));
+        events.add(builder.toString());
+        break;
+      case XMLStreamConstants.END_ELEMENT:
+        events.add("</" + reader.getPrefix() + ":" + reader.getLocalName());
+        break;
+      case XMLStreamConstants.CHARACTERS:
+        events.add((reader.isWhiteSpace() ? "space " : "text ") + reader.getText());
+        break;
+      case XMLStreamConstants.COMMENT:
+        events.add("comment " + reader.getText());
+        break;
+      case XMLStreamConstants.PROCESSING_INSTRUCTION:
+        events.add("pi " + reader.getPITarget() + " " + reader.getPIData());
+        break;
+      case XMLStreamConstants.END_DOCUMENT:
+        events.add("end");
+        break;
+      }
+    }
+    return events;
+  }
+}
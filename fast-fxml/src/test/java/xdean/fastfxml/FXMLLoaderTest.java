@@ -0,0 +1,330 @@
+package xdean.fastfxml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import xdean.fastfxml.openjfx.Widget;
+
+public class FXMLLoaderTest {
+  @Test
+  public void testReset() throws IOException {
+    FXMLLoader loader = new FXMLLoader(getClass().getResource("widgets.fxml"));
+    Widget root1 = loader.load();
+    WidgetsController controller1 = loader.getController();
+
+    loader.reset();
+    Widget root2 = loader.load();
+    WidgetsController controller2 = loader.getController();
+
+    assertNotSame(root1, root2);
+    assertNotSame(controller1, controller2);
+    assertSame(root2, loader.getRoot());
+    assertTrue(controller2.initialized);
+    assertSame(root2.getChildren().get(0), controller2.child);
+    assertSame(controller2.child, loader.getNamespace().get("child"));
+    assertEquals(7, controller2.include.getNumber());
+  }
+
+  @Test
+  public void testLoadLargeDocument() throws IOException {
+    // Longer than the decode buffer, with multi-byte characters across its boundary
+    StringBuilder name = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      name.append(i % 2 == 0 ? '\u00e9' : '\u4e2d');
+    }
+    String document = "<?import xdean.fastfxml.openjfx.*?>\n"
+        + "<Widget xmlns:fx=\"http://javafx.com/fxml\" name=\"" + name + "\"/>";
+    for (int i = 0; i < 2; i++) {
+      Widget root = new FXMLLoader().load(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)));
+      assertEquals(name.toString(), root.getName());
+    }
+  }
+
+  @Test
+  public void testLoadBytes() throws IOException {
+    byte[] document = widget("bytes").getBytes(StandardCharsets.UTF_8);
+    Widget root = new FXMLLoader().load(document);
+    assertEquals("bytes", root.getName());
+
+    ByteBuffer buffer = ByteBuffer.allocateDirect(document.length + 4);
+    buffer.put(new byte[] { 'a', 'b' }).put(document).flip().position(2);
+    root = new FXMLLoader().load(buffer);
+    assertEquals("bytes", root.getName());
+    assertEquals(2, buffer.position());
+  }
+
+  @Test
+  public void testLoadBytesWithoutLexer() throws IOException {
+    byte[] document = ("<?import xdean.fastfxml.openjfx.*?>\n"
+        + "<!DOCTYPE Widget [<!ENTITY name \"entity\">]>\n"
+        + "<Widget xmlns:fx=\"http://javafx.com/fxml\" name=\"&name;\"/>").getBytes(StandardCharsets.UTF_8);
+    FXMLLoader loader = new FXMLLoader();
+    loader.setUseLexer(false);
+    Widget root = loader.load(document);
+    assertEquals("entity", root.getName());
+
+    ByteBuffer buffer = ByteBuffer.allocateDirect(document.length).put(document);
+    buffer.flip();
+    loader = new FXMLLoader();
+    loader.setUseLexer(false);
+    root = loader.load(buffer);
+    assertEquals("entity", root.getName());
+    assertEquals(0, buffer.position());
+
+    loader = new FXMLLoader();
+    loader.setUseLexer(true);
+    try {
+      loader.load(document);
+      fail();
+    } catch (IOException exception) {
+      // The lexer does not read document type declarations
+    }
+  }
+
+  @Test
+  public void testConstantFactoryCopy() throws IOException {
+    byte[] document = ("<?import java.lang.*?>\n"
+        + "<?import java.util.*?>\n"
+        + "<ArrayList xmlns:fx=\"http://javafx.com/fxml\">\n"
+        + "  <Integer fx:constant=\"MAX_VALUE\"/>\n"
+        + "  <Collections fx:factory=\"emptyList\"/>\n"
+        + "  <String fx:id=\"text\" fx:value=\"copied\"/>\n"
+        + "  <fx:copy source=\"text\"/>\n"
+        + "</ArrayList>").getBytes(StandardCharsets.UTF_8);
+    for (int i = 0; i < 2; i++) {
+      List<Object> list = new FXMLLoader().load(document);
+      assertEquals(Arrays.asList(Integer.MAX_VALUE, Collections.emptyList(), "copied", "copied"), list);
+      assertNotSame(list.get(2), list.get(3));
+    }
+  }
+
+  @Test
+  public void testLoadPath() throws IOException {
+    StringBuilder name = new StringBuilder();
+    for (int i = 0; i < FXMLLoader.MAPPED_FILE_SIZE; i++) {
+      name.append((char) ('a' + i % 26));
+    }
+    for (String value : new String[] { "small", name.toString() }) {
+      // A mapped file cannot be deleted on some platforms until the buffer is collected
+      Path file = Files.createTempFile("widget", FXMLLoader.FXML_EXTENSION);
+      file.toFile().deleteOnExit();
+      Files.write(file, widget(value).getBytes(StandardCharsets.UTF_8));
+      Widget root = new FXMLLoader().load(file);
+      assertEquals(value, root.getName());
+    }
+  }
+
+  @Test
+  public void testStream() throws IOException {
+    StringBuilder document = new StringBuilder("<?import xdean.fastfxml.openjfx.*?>\n"
+        + "<Widget xmlns:fx=\"http://javafx.com/fxml\" name=\"root\">"
+        + "<Widget fx:id=\"rows\"><children>");
+    for (int i = 0; i < 1000; i++) {
+      document.append("<Widget name=\"row").append(i).append("\"><Widget name=\"cell\"/></Widget>");
+    }
+    document.append("</children></Widget><Widget fx:id=\"footer\"><Widget name=\"kept\"/></Widget></Widget>");
+
+    List<Object> rows = new ArrayList<>();
+    FXMLLoader loader = new FXMLLoader();
+    loader.setStreamHandler("rows", rows::add);
+    Widget root = loader.load(new ByteArrayInputStream(document.toString().getBytes(StandardCharsets.UTF_8)));
+
+    assertEquals(1000, rows.size());
+    for (int i = 0; i < rows.size(); i++) {
+      Widget row = (Widget) rows.get(i);
+      assertEquals("row" + i, row.getName());
+      assertEquals(1, row.getChildren().size());
+    }
+    Widget container = (Widget) loader.getNamespace().get("rows");
+    assertSame(container, root.getChildren().get(0));
+    assertTrue(container.getChildren().isEmpty());
+    assertEquals(1, ((Widget) loader.getNamespace().get("footer")).getChildren().size());
+  }
+
+  @Test
+  public void testDefaultAndIdProperty() throws IOException {
+    String document = "<?import xdean.fastfxml.openjfx.*?>\n"
+        + "<Widget xmlns:fx=\"http://javafx.com/fxml\">\n"
+        + "  <Widget fx:id=\"first\"><Widget/><Widget/></Widget>\n"
+        + "  <Widget fx:id=\"second\" id=\"custom\"/>\n"
+        + "</Widget>";
+    for (int i = 0; i < 2; i++) {
+      Widget root = new FXMLLoader().load(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)));
+      assertEquals(2, root.getChildren().size());
+      assertEquals("first", root.getChildren().get(0).getId());
+      assertEquals(2, root.getChildren().get(0).getChildren().size());
+      assertEquals("custom", root.getChildren().get(1).getId());
+    }
+  }
+
+  @Test
+  public void testLazy() throws IOException {
+    String document = "<?import java.lang.*?>\n"
+        + "<?import xdean.fastfxml.openjfx.*?>\n"
+        + "<Widget xmlns:fx=\"http://javafx.com/fxml\" fx:controller=\"xdean.fastfxml.WidgetsController\">"
+        + "<fx:define><String fx:id=\"title\" fx:value=\"tab\"/></fx:define>"
+        + "<Widget name=\"eager\"/>"
+        + "<Widget fx:id=\"lazy\" fx:lazy=\"true\" name=\"$title\"><Widget fx:id=\"child\" name=\"inner\"/></Widget>"
+        + "<fx:define><Widget fx:id=\"defined\" fx:lazy=\"true\" name=\"defined\"/></fx:define>"
+        + "</Widget>";
+    FXMLLoader loader = new FXMLLoader();
+    Widget root = loader.load(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)));
+    WidgetsController controller = loader.getController();
+
+    assertEquals(1, root.getChildren().size());
+    assertTrue(controller.initialized);
+    assertNull(controller.child);
+    assertSame(controller.lazy, loader.getNamespace().get("lazy"));
+
+    Widget lazy = controller.lazy.get();
+    assertEquals("tab", lazy.getName());
+    assertEquals("lazy", lazy.getId());
+    assertSame(lazy, controller.lazy.get());
+    assertSame(lazy.getChildren().get(0), controller.child);
+    assertSame(controller.child, loader.getNamespace().get("child"));
+    assertEquals(1, root.getChildren().size());
+
+    Widget defined = ((Supplier<Widget>) loader.getNamespace().get("defined")).get();
+    assertEquals("defined", defined.getName());
+  }
+
+  @Test
+  public void testLazyAfterReset() throws IOException {
+    String document = "<?import xdean.fastfxml.openjfx.*?>\n"
+        + "<Widget xmlns:fx=\"http://javafx.com/fxml\" fx:controller=\"xdean.fastfxml.WidgetsController\">"
+        + "<Widget fx:id=\"lazy\" fx:lazy=\"true\" name=\"lazy\"><Widget fx:id=\"child\" name=\"inner\"/></Widget>"
+        + "</Widget>";
+    FXMLLoader loader = new FXMLLoader();
+    loader.load(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)));
+    WidgetsController controller1 = loader.getController();
+    Map<String, Object> namespace1 = loader.getNamespace();
+
+    loader.reset();
+    loader.setLocation(getClass().getResource("widgets.fxml"));
+    loader.load();
+    WidgetsController controller2 = loader.getController();
+    Widget child2 = controller2.child;
+
+    Widget lazy = controller1.lazy.get();
+    assertEquals("lazy", lazy.getName());
+    assertSame(lazy.getChildren().get(0), controller1.child);
+    assertSame(controller1.child, namespace1.get("child"));
+    assertSame(child2, controller2.child);
+    assertSame(child2, loader.getNamespace().get("child"));
+  }
+
+  @Test
+  public void testLazyFailure() throws IOException {
+    String document = "<?import xdean.fastfxml.openjfx.*?>\n"
+        + "<Widget xmlns:fx=\"http://javafx.com/fxml\">"
+        + "<fx:define><Missing fx:id=\"missing\" fx:lazy=\"true\"/></fx:define>"
+        + "</Widget>";
+    FXMLLoader loader = new FXMLLoader();
+    loader.load(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)));
+    try {
+      ((Supplier<?>) loader.getNamespace().get("missing")).get();
+      fail();
+    } catch (UncheckedIOException exception) {
+      assertTrue(exception.getCause() instanceof IOException);
+    }
+  }
+
+  @Test
+  public void testLoadAsync() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Thread worker = executor.submit(Thread::currentThread).get();
+      for (int i = 0; i < 2; i++) {
+        FXMLLoader loader = new FXMLLoader(getClass().getResource("widgets.fxml"));
+        CompletableFuture<Widget> future = loader.loadAsync(executor);
+        Widget root = future.get(10, TimeUnit.SECONDS);
+        WidgetsController controller = loader.getController();
+
+        assertSame(root, loader.getRoot());
+        assertTrue(controller.initialized);
+        assertSame(worker, controller.initializeThread);
+        assertSame(root.getChildren().get(0), controller.child);
+        assertEquals(7, controller.include.getNumber());
+      }
+
+      FXMLLoader loader = new FXMLLoader(new URL(getClass().getResource("widgets.fxml"), "missing.fxml"));
+      try {
+        loader.loadAsync(executor).get(10, TimeUnit.SECONDS);
+        fail();
+      } catch (ExecutionException exception) {
+        assertTrue(exception.getCause() instanceof IOException);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static final CountDownLatch PREFETCHED = new CountDownLatch(1);
+
+  public static class Prefetched extends Widget {
+    static final Thread INITIALIZE_THREAD = Thread.currentThread();
+
+    static {
+      PREFETCHED.countDown();
+    }
+  }
+
+  // Holds the loading thread until the prefetch reached the next element
+  public static class Gate extends Widget {
+    public Gate() throws InterruptedException {
+      assertTrue(PREFETCHED.await(10, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void testPrefetch() throws Exception {
+    String document = "<?import xdean.fastfxml.*?>\n"
+        + "<?import xdean.fastfxml.openjfx.*?>\n"
+        + "<Widget xmlns:fx=\"http://javafx.com/fxml\"><FXMLLoaderTest.Gate/><FXMLLoaderTest.Prefetched/></Widget>";
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Thread worker = executor.submit(Thread::currentThread).get();
+      FXMLLoader loader = new FXMLLoader();
+      loader.setUseLexer(true);
+      loader.setPrefetchExecutor(executor);
+      Widget root = loader.load(document.getBytes(StandardCharsets.UTF_8));
+
+      assertTrue(root.getChildren().get(1) instanceof Prefetched);
+      assertSame(worker, Prefetched.INITIALIZE_THREAD);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static String widget(String name) {
+    return "<?import xdean.fastfxml.openjfx.*?>\n"
+        + "<Widget xmlns:fx=\"http://javafx.com/fxml\" name=\"" + name + "\"/>";
+  }
+}
@@ -0,0 +1,115 @@
+package xdean.fastfxml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javafx.fxml.FXML;
+
+import org.junit.Test;
+
+import xdean.fastfxml.openjfx.Widget;
+
+public class FXMLManifestTest {
+  @Test
+  public void testRecord() throws IOException {
+    FXMLManifest.startRecording();
+    FXMLManifest manifest;
+    try {
+      new FXMLLoader(getClass().getResource("widgets.fxml")).load();
+    } finally {
+      manifest = FXMLManifest.stopRecording();
+    }
+    assertNull(FXMLManifest.stopRecording());
+    assertTrue(manifest.getClasses().contains(Widget.class.getName()));
+    assertTrue(manifest.getBeans().contains(Widget.class.getName()));
+    assertTrue(manifest.getControllers().contains(WidgetsController.class.getName()));
+
+    StringWriter writer = new StringWriter();
+    manifest.write(writer);
+    FXMLManifest read = FXMLManifest.read(new StringReader(writer.toString()));
+    assertEquals(manifest.getClasses(), read.getClasses());
+    assertEquals(manifest.getBeans(), read.getBeans());
+    assertEquals(manifest.getControllers(), read.getControllers());
+  }
+
+  public static class WarmBean {
+    public String getName() {
+      return null;
+    }
+  }
+
+  public static class WarmController {
+    @FXML
+    private Widget child;
+
+    @FXML
+    private void initialize() {
+    }
+  }
+
+  @Test
+  public void testWarmup() throws Exception {
+    String bean = WarmBean.class.getName();
+    String controller = WarmController.class.getName();
+    FXMLManifest manifest = FXMLManifest.read(new StringReader("# warmup\n"
+        + "class " + bean + "\n"
+        + "class xdean.fastfxml.Missing\n"
+        + "bean " + bean + "\n"
+        + "controller " + controller + "\n"));
+    List<String> loaded = new CopyOnWriteArrayList<>();
+    ClassLoader classLoader = new ClassLoader(getClass().getClassLoader()) {
+      @Override
+      public Class<?> loadClass(String name) throws ClassNotFoundException {
+        loaded.add(name);
+        return super.loadClass(name);
+      }
+    };
+    assertFalse(BeanAdapter.isWarm(WarmBean.class));
+    assertFalse(FXMLLoader.isWarmController(WarmController.class));
+
+    Thread thread = Thread.currentThread();
+    ClassLoader contextClassLoader = thread.getContextClassLoader();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      thread.setContextClassLoader(classLoader);
+      FXMLLoader.warmup(manifest, executor).get();
+    } finally {
+      thread.setContextClassLoader(contextClassLoader);
+      executor.shutdown();
+    }
+
+    assertTrue(BeanAdapter.isWarm(WarmBean.class));
+    assertTrue(FXMLLoader.isWarmController(WarmController.class));
+    loaded.clear();
+    List<String> packages = Arrays.asList(FXMLManifestTest.class.getPackage().getName());
+    assertEquals(WarmBean.class,
+        FXMLCache.getClassLoaderCache(classLoader).findClass(packages, "FXMLManifestTest.WarmBean"));
+    assertTrue(loaded.toString(), loaded.isEmpty());
+  }
+
+  @Test(expected = IOException.class)
+  public void testInvalid() throws IOException {
+    FXMLManifest.read(new StringReader("widget xdean.fastfxml.openjfx.Widget\n"));
+  }
+
+  @Test
+  public void testClassList() throws IOException {
+    FXMLManifest manifest = FXMLManifest.read(new StringReader("class xdean.fastfxml.openjfx.Widget\n"));
+    StringWriter writer = new StringWriter();
+    manifest.writeClassList(writer, getClass().getClassLoader());
+    List<String> lines = Arrays.asList(writer.toString().split("\n"));
+    assertTrue(lines.contains("xdean/fastfxml/openjfx/Widget"));
+    assertTrue(lines.indexOf("java/lang/Object") < lines.indexOf("xdean/fastfxml/openjfx/Widget"));
+  }
+}
@@ -0,0 +1,154 @@
+package xdean.fastfxml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.junit.Test;
+
+import xdean.fastfxml.openjfx.Widget;
+
+public class FXMLSourceCacheTest {
+  @Test
+  public void testJar() throws IOException {
+    Path jar = Files.createTempFile("widgets", ".jar");
+    jar.toFile().deleteOnExit();
+    try (JarOutputStream outputStream = new JarOutputStream(Files.newOutputStream(jar))) {
+      for (String name : new String[] { "widgets.fxml", "widgets_include.fxml" }) {
+        outputStream.putNextEntry(new ZipEntry(name));
+        try (InputStream inputStream = getClass().getResourceAsStream(name)) {
+          copy(inputStream, outputStream);
+        }
+      }
+    }
+    URL location = new URL("jar:" + jar.toUri() + "!/widgets.fxml");
+
+    FXMLSourceCache cache = new FXMLSourceCache(1024 * 1024);
+    for (int i = 0; i < 3; i++) {
+      FXMLLoader loader = new FXMLLoader(location);
+      loader.setSourceCache(cache);
+      Widget root = loader.load();
+      WidgetsController controller = loader.getController();
+      assertEquals("root", root.getName());
+      assertEquals(7, controller.include.getNumber());
+    }
+    assertEquals(2, cache.getDocumentCount());
+    assertEquals(2, cache.getMissCount());
+    assertEquals(4, cache.getHitCount());
+    assertEquals(4 / 6d, cache.getHitRatio(), 1e-9);
+  }
+
+  @Test
+  public void testFileModified() throws IOException {
+    Path file = Files.createTempFile("widget", FXMLLoader.FXML_EXTENSION);
+    file.toFile().deleteOnExit();
+    FXMLSourceCache cache = new FXMLSourceCache(1024 * 1024);
+
+    Files.write(file, widget("first").getBytes(StandardCharsets.UTF_8));
+    assertEquals("first", load(file, cache).getName());
+    assertEquals("first", load(file, cache).getName());
+    assertEquals(1, cache.getHitCount());
+
+    Files.write(file, widget("second").getBytes(StandardCharsets.UTF_8));
+    file.toFile().setLastModified(file.toFile().lastModified() + 2000);
+    assertEquals("second", load(file, cache).getName());
+    assertEquals(2, cache.getMissCount());
+    assertEquals(1, cache.getDocumentCount());
+  }
+
+  @Test
+  public void testSharedContent() throws IOException {
+    byte[] document = widget("shared").getBytes(StandardCharsets.UTF_8);
+    Path file1 = Files.createTempFile("widget", FXMLLoader.FXML_EXTENSION);
+    Path file2 = Files.createTempFile("widget", FXMLLoader.FXML_EXTENSION);
+    file1.toFile().deleteOnExit();
+    file2.toFile().deleteOnExit();
+    Files.write(file1, document);
+    Files.write(file2, document);
+
+    FXMLSourceCache cache = new FXMLSourceCache(1024 * 1024);
+    assertSame(cache.read(file1.toUri().toURL()), cache.read(file2.toUri().toURL()));
+    assertEquals(2, cache.getDocumentCount());
+    assertEquals(document.length, cache.getSize());
+
+    cache.invalidate(file1.toUri().toURL());
+    assertEquals(document.length, cache.getSize());
+    cache.invalidate(file2.toUri().toURL());
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void testTypeNames() throws Exception {
+    Path file = Files.createTempFile("widget", FXMLLoader.FXML_EXTENSION);
+    file.toFile().deleteOnExit();
+    Files.write(file, "<Widget><Widget/></Widget>".getBytes(StandardCharsets.UTF_8));
+    FXMLSourceCache cache = new FXMLSourceCache(1024 * 1024);
+
+    FXMLSourceCache.Content content = cache.readContent(file.toUri().toURL());
+    assertSame(content, cache.readContent(file.toUri().toURL()));
+    FXMLLexer lexer = new FXMLLexer(new FXMLSymbol.Table());
+    lexer.open(ByteBuffer.wrap(content.bytes));
+    lexer.next();
+    Collection<String> names = content.getTypeNames(lexer);
+    assertEquals(Collections.singleton("Widget"), new HashSet<>(names));
+    // Scanned once per document, whatever the reader
+    lexer.open(ByteBuffer.wrap("<Widget><Label/></Widget>".getBytes(StandardCharsets.UTF_8)));
+    lexer.next();
+    assertSame(names, content.getTypeNames(lexer));
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+    byte[] document = widget("evicted").getBytes(StandardCharsets.UTF_8);
+    FXMLSourceCache cache = new FXMLSourceCache(document.length * 2 + 1);
+    for (int i = 0; i < 3; i++) {
+      Path file = Files.createTempFile("widget", FXMLLoader.FXML_EXTENSION);
+      file.toFile().deleteOnExit();
+      document[document.length - 4] = (byte) ('0' + i);
+      Files.write(file, document);
+      cache.read(file.toUri().toURL());
+    }
+    assertEquals(2, cache.getDocumentCount());
+    assertEquals(document.length * 2, cache.getSize());
+  }
+
+  @Test
+  public void testNotCached() throws IOException {
+    FXMLSourceCache cache = new FXMLSourceCache(1024 * 1024);
+    assertNull(cache.read(new URL("http://localhost/widgets.fxml")));
+    assertEquals(0, cache.getMissCount());
+  }
+
+  private static Widget load(Path file, FXMLSourceCache cache) throws IOException {
+    FXMLLoader loader = new FXMLLoader(file.toUri().toURL());
+    loader.setSourceCache(cache);
+    return loader.load();
+  }
+
+  private static String widget(String name) {
+    return "<?import xdean.fastfxml.openjfx.*?>\n"
+        + "<Widget xmlns:fx=\"http://javafx.com/fxml\" name=\"" + name + "\"/>";
+  }
+
+  private static void copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+    byte[] buffer = new byte[8192];
+    int n;
+    while ((n = inputStream.read(buffer)) != -1) {
+      outputStream.write(buffer, 0, n);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package xdean.fastfxml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import xdean.fastfxml.openjfx.Alignment;
+import xdean.fastfxml.openjfx.MyWidget;
+import xdean.fastfxml.openjfx.Widget;
+
+public class FXMLTemplateTest {
+  @Test
+  public void testInstantiate() throws IOException {
+    FXMLTemplate template = FXMLTemplate.compile(getClass().getResource("widgets.fxml"));
+    assertNotNull(template.getInstructions(FXMLLoader.getDefaultClassLoader()));
+
+    FXMLLoader loader1 = template.createLoader();
+    Widget root1 = loader1.load();
+    FXMLLoader loader2 = template.createLoader();
+    Widget root2 = loader2.load();
+
+    assertNotSame(root1, root2);
+    for (FXMLLoader loader : new FXMLLoader[] { loader1, loader2 }) {
+      Widget root = loader.getRoot();
+      WidgetsController controller = loader.getController();
+      assertEquals("root", root.getName());
+      assertEquals(2, root.getChildren().size());
+      assertTrue(controller.initialized);
+      assertSame(root.getChildren().get(0), controller.child);
+      assertEquals(3, controller.child.getNumber());
+      assertEquals(Alignment.LEFT, Widget.getAlignment(controller.child));
+      assertEquals("a", controller.child.getStyles().get(0));
+      assertSame(root.getChildren().get(1), controller.include);
+      assertEquals("include", controller.include.getName());
+      assertEquals(7, controller.include.getNumber());
+    }
+  }
+
+  @Test
+  public void testInstantiateWithController() throws IOException {
+    FXMLTemplate template = FXMLTemplate.compile(getClass().getResource("openjfx/rt_19112.fxml"));
+    assertNotNull(template.getInstructions(FXMLLoader.getDefaultClassLoader()));
+
+    Object controller = new Object();
+    FXMLLoader loader = template.createLoader();
+    loader.setController(controller);
+    loader.load();
+
+    assertSame(controller, loader.getController());
+    Widget widget1 = (Widget) loader.getNamespace().get("widget1");
+    assertEquals(Alignment.LEFT, Widget.getAlignment(widget1));
+    Widget widget2 = (Widget) loader.getNamespace().get("widget2");
+    assertEquals(Alignment.RIGHT, Widget.getAlignment(widget2));
+  }
+
+  @Test
+  public void testReplayWithBuilderFactory() throws IOException {
+    FXMLTemplate template = FXMLTemplate.compile(getClass().getResource("widgets.fxml"));
+
+    FXMLLoader loader = template.createLoader();
+    loader.setBuilderFactory(type -> null);
+    Widget root = loader.load();
+
+    WidgetsController controller = loader.getController();
+    assertEquals("root", root.getName());
+    assertSame(root.getChildren().get(0), controller.child);
+    assertEquals(Alignment.LEFT, Widget.getAlignment(controller.child));
+    assertEquals("include", controller.include.getName());
+  }
+
+  @Test
+  public void testReplayUnresolvedDocument() throws IOException {
+    FXMLTemplate template = FXMLTemplate.compile(getClass().getResource("openjfx/rt_19870.fxml"));
+    assertNull(template.getInstructions(FXMLLoader.getDefaultClassLoader()));
+
+    Widget root = new Widget();
+    FXMLLoader loader = template.createLoader();
+    loader.setRoot(root);
+    loader.setController(new MyWidget());
+    loader.load();
+
+    assertEquals("My Widget", root.getName());
+    assertEquals("Child Widget", root.getChildren().get(0).getName());
+  }
+}
@@ -0,0 +1,24 @@
+package xdean.fastfxml;
+
+import java.util.function.Supplier;
+
+import javafx.fxml.FXML;
+import xdean.fastfxml.openjfx.Widget;
+
+public class WidgetsController {
+  @FXML
+  Widget child;
+  @FXML
+  Widget include;
+  @FXML
+  Supplier<Widget> lazy;
+
+  boolean initialized = false;
+  Thread initializeThread = null;
+
+  @FXML
+  void initialize() {
+    initialized = true;
+    initializeThread = Thread.currentThread();
+  }
+}
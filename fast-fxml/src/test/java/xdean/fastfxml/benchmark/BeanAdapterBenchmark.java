@@ -0,0 +1,99 @@
+package xdean.fastfxml.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import com.sun.javafx.application.PlatformImpl;
+
+import javafx.scene.control.Button;
+import xdean.fastfxml.BeanAdapter;
+
+/**
+ * Sets and gets the properties of a control through a bean adapter, as every attribute of a
+ * document does.
+ */
+@State(Scope.Thread)
+public class BeanAdapterBenchmark {
+  static {
+    PlatformImpl.startup(() -> {
+    });
+  }
+
+  private final Button button = new Button();
+  private final BeanAdapter adapter = new BeanAdapter(button);
+  private final com.sun.javafx.fxml.BeanAdapter openjfxAdapter = new com.sun.javafx.fxml.BeanAdapter(button);
+
+  public static void main(String[] args) throws Exception {
+    Options options = new OptionsBuilder()
+        .include(BeanAdapterBenchmark.class.getName() + ".*")
+        .mode(Mode.AverageTime)
+        .warmupTime(TimeValue.seconds(1))
+        .warmupIterations(2)
+        .threads(1)
+        .measurementIterations(5)
+        .measurementTime(TimeValue.seconds(1))
+        .forks(1)
+        .shouldFailOnError(true)
+        .shouldDoGC(true)
+        .build();
+
+    new Runner(options).run();
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Object fastFxmlPut() {
+    adapter.put("text", "OK");
+    return adapter.put("prefWidth", 100d);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Object fastFxmlPutAttribute() {
+    return adapter.put("prefWidth", "100");
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Object fastFxmlGet() {
+    adapter.get("text");
+    return adapter.get("prefWidth");
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Object openjfxPut() {
+    openjfxAdapter.put("text", "OK");
+    return openjfxAdapter.put("prefWidth", 100d);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Object openjfxPutAttribute() {
+    return openjfxAdapter.put("prefWidth", "100");
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Object openjfxGet() {
+    openjfxAdapter.get("text");
+    return openjfxAdapter.get("prefWidth");
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Object direct() {
+    button.setText("OK");
+    button.setPrefWidth(100d);
+    return button.getText();
+  }
+}
@@ -0,0 +1,64 @@
+package xdean.fastfxml.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import com.sun.javafx.application.PlatformImpl;
+
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextField;
+import xdean.fastfxml.BeanAdapter;
+
+/**
+ * Adapts controls and sets their properties from many threads at once, as concurrent loads do, so
+ * that any lock on the shared method cache shows. Compare the throughput of 1 to 32 threads.
+ */
+public class BeanAdapterContentionBenchmark {
+  static {
+    PlatformImpl.startup(() -> {
+    });
+  }
+
+  public static void main(String[] args) throws Exception {
+    for (int threads : new int[] { 1, 2, 4, 8, 16, 32 }) {
+      Options options = new OptionsBuilder()
+          .include(BeanAdapterContentionBenchmark.class.getName() + ".*")
+          .mode(Mode.Throughput)
+          .warmupTime(TimeValue.seconds(1))
+          .warmupIterations(2)
+          .threads(threads)
+          .measurementIterations(5)
+          .measurementTime(TimeValue.seconds(1))
+          .forks(1)
+          .shouldFailOnError(true)
+          .shouldDoGC(true)
+          .build();
+
+      new Runner(options).run();
+    }
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Object fastFxml() {
+    new BeanAdapter(new Button()).put("text", "OK");
+    new BeanAdapter(new Label()).put("text", "Name:");
+    return new BeanAdapter(new TextField()).put("text", "");
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Object openjfx() {
+    new com.sun.javafx.fxml.BeanAdapter(new Button()).put("text", "OK");
+    new com.sun.javafx.fxml.BeanAdapter(new Label()).put("text", "Name:");
+    return new com.sun.javafx.fxml.BeanAdapter(new TextField()).put("text", "");
+  }
+}
@@ -0,0 +1,73 @@
+package xdean.fastfxml.benchmark;
+
+import java.net.URL;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import com.sun.javafx.application.PlatformImpl;
+
+import xdean.fastfxml.FXMLLoader;
+
+/**
+ * Loads from many threads at once, on threads that have never loaded before, as pool and virtual
+ * threads do. Compare the throughput of 1, 4 and 16 threads.
+ */
+public class ConcurrentLoadBenchmark {
+  static {
+    PlatformImpl.startup(() -> {
+    });
+  }
+
+  private static final URL SIMPLE = ConcurrentLoadBenchmark.class.getResource("simple.fxml");
+
+  public static void main(String[] args) throws Exception {
+    for (int threads : new int[] { 1, 4, 16 }) {
+      Options options = new OptionsBuilder()
+          .include(ConcurrentLoadBenchmark.class.getName() + ".*")
+          .mode(Mode.Throughput)
+          .warmupTime(TimeValue.seconds(1))
+          .warmupIterations(2)
+          .threads(threads)
+          .measurementIterations(5)
+          .measurementTime(TimeValue.seconds(1))
+          .forks(1)
+          .shouldFailOnError(true)
+          .shouldDoGC(true)
+          .build();
+
+      new Runner(options).run();
+    }
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public Object fastFxml() throws Exception {
+    return new FXMLLoader(SIMPLE).load();
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public Object fastFxmlNewThread() throws Exception {
+    return onNewThread(new FutureTask<>(() -> new FXMLLoader(SIMPLE).load()));
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public Object openjfxFxmlNewThread() throws Exception {
+    return onNewThread(new FutureTask<>(() -> new javafx.fxml.FXMLLoader(SIMPLE).load()));
+  }
+
+  private static Object onNewThread(FutureTask<Object> task) throws Exception {
+    Thread thread = new Thread(task);
+    thread.start();
+    return task.get();
+  }
+}
@@ -6,6 +6,10 @@ import java.util.concurrent.TimeUnit;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
@@ -14,13 +18,22 @@ import org.openjdk.jmh.runner.options.TimeValue;
 import com.sun.javafx.application.PlatformImpl;
 
 import xdean.fastfxml.FXMLLoader;
+import xdean.fastfxml.FXMLTemplate;
 
+@State(Scope.Benchmark)
 public class FXMLLoaderBenchmark {
   static {
     PlatformImpl.startup(() -> {
     });
   }
 
+  private FXMLTemplate template;
+
+  @Setup
+  public void setup() throws Exception {
+    template = FXMLTemplate.compile(FXMLLoaderBenchmark.class.getResource("simple.fxml"));
+  }
+
   public static void main(String[] args) throws Exception {
     Options options = new OptionsBuilder()
         .include(FXMLLoaderBenchmark.class.getName() + ".*")
@@ -33,6 +46,8 @@ public class FXMLLoaderBenchmark {
         .forks(1)
         .shouldFailOnError(true)
         .shouldDoGC(true)
+        // Allocation rate per operation, same as -prof gc
+        .addProfiler(GCProfiler.class)
         .build();
 
     new Runner(options).run();
@@ -48,6 +63,25 @@ public class FXMLLoaderBenchmark {
     }
   }
 
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public void fastFxmlReuse() throws Exception {
+    URL u = FXMLLoaderBenchmark.class.getResource("simple.fxml");
+    FXMLLoader fxmlLoader = new FXMLLoader(u);
+    for (int i = 0; i < 100; i++) {
+      fxmlLoader.reset();
+      fxmlLoader.load();
+    }
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public void fastFxmlTemplate() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      template.instantiate();
+    }
+  }
+
   @Benchmark
   @OutputTimeUnit(TimeUnit.MILLISECONDS)
   public void openjfxFxml() throws Exception {
@@ -0,0 +1,58 @@
+package xdean.fastfxml.benchmark;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import com.sun.javafx.application.PlatformImpl;
+
+import xdean.fastfxml.FXMLLoader;
+
+/**
+ * Loads a form laid out in a grid, where most attributes are attached properties such as
+ * <tt>GridPane.rowIndex</tt> and <tt>HBox.hgrow</tt>.
+ */
+public class GridBenchmark {
+  static {
+    PlatformImpl.startup(() -> {
+    });
+  }
+
+  private static final URL GRID = GridBenchmark.class.getResource("grid.fxml");
+
+  public static void main(String[] args) throws Exception {
+    Options options = new OptionsBuilder()
+        .include(GridBenchmark.class.getName() + ".*")
+        .mode(Mode.AverageTime)
+        .warmupTime(TimeValue.seconds(1))
+        .warmupIterations(2)
+        .threads(1)
+        .measurementIterations(5)
+        .measurementTime(TimeValue.seconds(1))
+        .forks(1)
+        .shouldFailOnError(true)
+        .shouldDoGC(true)
+        .build();
+
+    new Runner(options).run();
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Object fastFxml() throws Exception {
+    return new FXMLLoader(GRID).load();
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Object openjfxFxml() throws Exception {
+    return new javafx.fxml.FXMLLoader(GRID).load();
+  }
+}